@@ -15,4 +15,11 @@ public class Configuration {
     }
 
     public static int getMaxProgress() {return 100;}
+
+    /**
+     * Max size of decoded posting lists cached by index opened from file, a quarter of the heap.
+     */
+    public static long getPostingsCacheSize() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
 }
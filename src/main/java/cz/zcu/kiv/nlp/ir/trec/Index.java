@@ -1,12 +1,15 @@
 package cz.zcu.kiv.nlp.ir.trec;
 
 import cz.zcu.kiv.nlp.ir.trec.core.*;
+import cz.zcu.kiv.nlp.ir.trec.core.bitmap.BitmapQueryEvaluator;
 import cz.zcu.kiv.nlp.ir.trec.core.retrieval.BooleanRetrievalWithProgress;
-import cz.zcu.kiv.nlp.ir.trec.core.retrieval.CosineSimilarityWithProgress;
+import cz.zcu.kiv.nlp.ir.trec.core.retrieval.TermAtATimeWithProgress;
 import cz.zcu.kiv.nlp.ir.trec.core.retrieval.RetrievalWithProgress;
 import cz.zcu.kiv.nlp.ir.trec.data.Document;
+import cz.zcu.kiv.nlp.ir.trec.data.DocumentSource;
 import cz.zcu.kiv.nlp.ir.trec.data.Result;
-import cz.zcu.kiv.nlp.ir.trec.data.ResultImpl;
+import cz.zcu.kiv.nlp.ir.trec.ingest.IngestPipeline;
+import cz.zcu.kiv.nlp.ir.trec.ingest.StageStatistics;
 import cz.zcu.kiv.nlp.ir.trec.preprocess.Preprocessor;
 import cz.zcu.kiv.nlp.ir.trec.preprocess.Stemmer;
 import cz.zcu.kiv.nlp.ir.trec.preprocess.Tokenizer;
@@ -15,6 +18,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author tigi
@@ -34,9 +42,15 @@ public class Index implements Indexer, Searcher {
     public static final int DEF_TOP_RESULT_COUNT = 50;
 
     /**
-     * Inverted index for documents.
+     * Number of documents one indexing thread takes at once. Lists with less documents are indexed in one thread.
      */
-    private InvertedIndex invertedIndex;
+    public static final int INDEXING_BATCH_SIZE = 64;
+
+    /**
+     * Inverted index for documents. Documents can be indexed only if it's an {@link InvertedIndex},
+     * indexes opened from a file are read-only.
+     */
+    private SearchableIndex invertedIndex;
 
     /**
      * Preprocessor used to index documents.
@@ -48,6 +62,21 @@ public class Index implements Indexer, Searcher {
      */
     private int topResultCount;
 
+    /**
+     * How boolean queries are evaluated.
+     */
+    private BooleanExecution booleanExecution;
+
+    /**
+     * How ranked queries are evaluated when only top results are requested.
+     */
+    private RankedExecution rankedExecution;
+
+    /**
+     * Number of threads used by bulk indexing.
+     */
+    private int indexingThreads;
+
     public Index(Tokenizer tokenizer, Stemmer stemmer, Set<String> stopwords) {
         this(tokenizer, stemmer, stopwords, true, true);
     }
@@ -56,6 +85,9 @@ public class Index implements Indexer, Searcher {
         this.preprocessor = new Preprocessor(tokenizer, stemmer, stopwords, useStemmer, useStopWords);
         invertedIndex = new InvertedIndex();
         topResultCount = DEF_TOP_RESULT_COUNT;
+        booleanExecution = BooleanExecution.ITERATORS;
+        rankedExecution = RankedExecution.BLOCK_MAX_WAND;
+        indexingThreads = Runtime.getRuntime().availableProcessors();
     }
 
     @Override
@@ -120,6 +152,54 @@ public class Index implements Indexer, Searcher {
 
     @Override
     public void index(List<Document> documents) {
+        int threads = Math.min(indexingThreads, (documents.size() + INDEXING_BATCH_SIZE - 1) / INDEXING_BATCH_SIZE);
+        if (threads > 1) {
+            indexInParallel(documents, threads);
+        } else {
+            indexSequentially(documents);
+        }
+        finishIndexing();
+    }
+
+    /**
+     * Indexes documents streamed from the source by {@link IngestPipeline}: documents are read, preprocessed
+     * by {@link #getIndexingThreads()} threads and inverted concurrently, so the source doesn't have to be loaded
+     * into memory first. Statistics of the index are recalculated at the end, same as by {@link #index(List)},
+     * even if the pipeline fails, so the documents indexed before the failure are searchable.
+     *
+     * @param source Source of documents. It's not closed.
+     * @return Throughput of the stages of the pipeline.
+     * @throws RuntimeException If the source can't be read or a document is already indexed.
+     */
+    public List<StageStatistics> indexStream(DocumentSource source) {
+        IngestPipeline pipeline = new IngestPipeline(getWritableIndex(), preprocessor, indexingThreads);
+        try {
+            pipeline.run(source);
+        } finally {
+            finishIndexing();
+        }
+        return pipeline.getStatistics();
+    }
+
+    /**
+     * Recalculates statistics after bulk indexing and compresses postings.
+     */
+    private void finishIndexing() {
+        InvertedIndex invertedIndex = getWritableIndex();
+        if (invertedIndex.getIdfMode() == IdfMode.INDEX_TIME) {
+            log.debug("Re-calculating term IDF");
+            invertedIndex.recalculateTermIdfs();
+
+            log.debug("Re-calculating TF-IDF");
+            invertedIndex.recalculateDocumentTfIdfs();
+        }
+
+        log.debug("Compressing postings");
+        invertedIndex.compressPostings();
+    }
+
+    private void indexSequentially(List<Document> documents) {
+        InvertedIndex invertedIndex = getWritableIndex();
         double progress = 0;
         double progressStep = documents.isEmpty() ? 100 : 100.0 / documents.size();
         int progLimit = 10;
@@ -129,7 +209,7 @@ public class Index implements Indexer, Searcher {
             String dText = d.getText();
 
             // check that the document isn't already indexed
-            if (invertedIndex.getIndexedDocuments().contains(dId)) {
+            if (invertedIndex.isIndexed(dId)) {
                 throw new RuntimeException("Document with id "+dId+" is already indexed!");
             }
 
@@ -144,21 +224,80 @@ public class Index implements Indexer, Searcher {
                 progLimit+=10;
             }
         }
+    }
+
+    /**
+     * Indexes documents by several threads. Ordinals of the documents are reserved first, then every thread
+     * repeatedly takes next batch of documents, preprocesses them by its own copy of the preprocessor and adds them
+     * to its own partial index. Partial indexes are merged into the inverted index at the end.
+     *
+     * @param documents Documents to index.
+     * @param threads Number of threads.
+     */
+    private void indexInParallel(List<Document> documents, int threads) {
+        InvertedIndex invertedIndex = getWritableIndex();
+        log.debug("Indexing {} documents by {} threads.", documents.size(), threads);
+        List<String> documentIds = new ArrayList<>(documents.size());
+        for (Document d : documents) {
+            documentIds.add(d.getId());
+        }
+        int firstOrdinal;
+        try {
+            firstOrdinal = invertedIndex.reserveDocuments(documentIds);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
 
-        log.debug("Re-calculating term IDF");
-        invertedIndex.recalculateTermIdfs();
+        AtomicInteger nextBatch = new AtomicInteger();
+        AtomicInteger indexedCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<PartialIndex>> partialIndexes = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                Preprocessor threadPreprocessor = preprocessor.copy();
+                partialIndexes.add(executor.submit(() -> {
+                    PartialIndex partialIndex = invertedIndex.createPartialIndex();
+                    int from;
+                    while ((from = nextBatch.getAndIncrement() * INDEXING_BATCH_SIZE) < documents.size()) {
+                        int to = Math.min(from + INDEXING_BATCH_SIZE, documents.size());
+                        for (int i = from; i < to; i++) {
+                            partialIndex.indexDocument(threadPreprocessor.processText(documents.get(i).getText()), firstOrdinal + i);
+                        }
+
+                        // log every 10 %
+                        int indexed = indexedCount.addAndGet(to - from);
+                        if (indexed * 10L / documents.size() > (indexed - (to - from)) * 10L / documents.size()) {
+                            log.debug("Indexing progress: {}.", indexed * 10L / documents.size() * 10);
+                        }
+                    }
+                    return partialIndex;
+                }));
+            }
 
-        log.debug("Re-calculating TF-IDF");
-        invertedIndex.recalculateDocumentTfIdfs();
+            List<PartialIndex> merged = new ArrayList<>(threads);
+            for (Future<PartialIndex> partialIndex : partialIndexes) {
+                merged.add(partialIndex.get());
+            }
+            log.debug("Merging {} partial indexes", merged.size());
+            invertedIndex.merge(merged);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Indexing interrupted!", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while indexing documents: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     @Override
     public void index(Document document) {
+        InvertedIndex invertedIndex = getWritableIndex();
         String dId = document.getId();
         String dText = document.getText();
 
         // check that the document isn't already indexed
-        if (invertedIndex.getIndexedDocuments().contains(dId)) {
+        if (invertedIndex.isIndexed(dId)) {
             throw new RuntimeException("Document with id "+dId+" is already indexed!");
         }
 
@@ -172,14 +311,59 @@ public class Index implements Indexer, Searcher {
         this.topResultCount = topResultCount;
     }
 
-    public void setInvertedIndex(InvertedIndex invertedIndex) {
+    public void setBooleanExecution(BooleanExecution booleanExecution) {
+        this.booleanExecution = booleanExecution;
+    }
+
+    public BooleanExecution getBooleanExecution() {
+        return booleanExecution;
+    }
+
+    public void setRankedExecution(RankedExecution rankedExecution) {
+        this.rankedExecution = rankedExecution;
+    }
+
+    public RankedExecution getRankedExecution() {
+        return rankedExecution;
+    }
+
+    public int getIndexingThreads() {
+        return indexingThreads;
+    }
+
+    /**
+     * Sets the number of threads used by {@link #index(List)}.
+     *
+     * @param indexingThreads Number of threads, 1 to index documents in the calling thread.
+     */
+    public void setIndexingThreads(int indexingThreads) {
+        if (indexingThreads < 1) {
+            throw new IllegalArgumentException("Number of indexing threads must be positive: " + indexingThreads);
+        }
+        this.indexingThreads = indexingThreads;
+    }
+
+    public void setInvertedIndex(SearchableIndex invertedIndex) {
         this.invertedIndex = invertedIndex;
     }
 
-    public InvertedIndex getInvertedIndex() {
+    public SearchableIndex getInvertedIndex() {
         return invertedIndex;
     }
 
+    /**
+     * Returns the inverted index if documents can be added to it.
+     *
+     * @return Inverted index.
+     * @throws UnsupportedOperationException If the index is read-only, i.e. it's backed by a file.
+     */
+    public InvertedIndex getWritableIndex() {
+        if (!(invertedIndex instanceof InvertedIndex)) {
+            throw new UnsupportedOperationException("Index backed by file is read-only!");
+        }
+        return (InvertedIndex) invertedIndex;
+    }
+
     /**
      * Returns the number of indexed documents.
      * @return Number of indexed documents.
@@ -200,37 +384,38 @@ public class Index implements Indexer, Searcher {
     private List<Result> booleanRetrieval(SearchQueryNode rootQuery) {
         log.debug("Getting results for query.");
 
-        // get list of postings to search
-        log.trace("Getting list of postings to search.");
-        List<Posting> postings = invertedIndex.getPostingsForQuery(rootQuery);
-        if(postings.isEmpty()) {
+        // get lazy iterator over matching documents
+        log.trace("Getting iterator over postings to search.");
+        PostingsIterator postingsIterator = getIteratorForBooleanQuery(rootQuery);
+        long expectedCount = postingsIterator.cost();
+        if(expectedCount == 0) {
             return new ArrayList<>();
         }
 
-        // calculate similarity
+        // all matching documents have the same score so the search can stop once top K documents are found
         log.trace("Calculating similarity.");
-        PriorityQueue<Result> resultQueue = prepareTopKQueue(postings.size());
+        TopKCollector collector = prepareTopKCollector(expectedCount);
         int progressLevel = 0;
         int docProcessed = 0;
-        for(Posting p : postings) {
-            ResultImpl r = new ResultImpl();
-            r.setDocumentID(p.getDocumentId());
-            r.setScore(1f);
-            resultQueue.add(r);
+        while ((topResultCount < 0 || docProcessed < topResultCount) && postingsIterator.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+            collector.collect(postingsIterator.docOrdinal(), 1f);
 
             docProcessed++;
-            if (100.0*docProcessed / postings.size() > progressLevel) {
+            if (100.0*docProcessed / expectedCount > progressLevel) {
                 log.debug("{}% of documents processed.", progressLevel);
                 progressLevel += 10;
             }
         }
 
         log.trace("Fetching results.");
-        return getTopKResults(resultQueue, topResultCount);
+        return collector.toResults(invertedIndex);
     }
 
     /**
-     * Internal method which performs ranked retrieval search.
+     * Internal method which performs ranked retrieval search. If only top K results are requested,
+     * documents are scored according to current {@link RankedExecution}, which may skip documents
+     * that can't get to the top K. Otherwise all documents are needed and they are scored term-at-a-time,
+     * so only postings of query terms are visited.
      * @param queryRoot Root of term query.
      * @return List of results.
      */
@@ -241,99 +426,100 @@ public class Index implements Indexer, Searcher {
         log.trace("Extracting terms from query.");
         String[] terms = queryRoot.getTerms().toArray(new String[0]);
 
-        // prepare similarity calculator
-        log.trace("Initializing cosine similarity calculator.");
-        SimilarityCalculator similarityCalculator = new CosineSimilarityCalculator(invertedIndex, terms);
-
         // calculate similarity
         log.trace("Calculating similarity.");
-        final int docCount = invertedIndex.getDocumentCount();
-        PriorityQueue<Result> resultQueue = prepareTopKQueue(docCount);
-        int progressLevel = 0;
-        int docProcessed = 0;
-        for(String documentId : invertedIndex.getIndexedDocuments()) {
-            double score = similarityCalculator.calculateScore(documentId);
-            if (Math.abs(score - 0) > 0.001 ) {
-                ResultImpl r = new ResultImpl();
-                r.setDocumentID(documentId);
-                r.setScore((float) score);
-                resultQueue.add(r);
-            }
-
-            docProcessed++;
-            if (100.0*docProcessed / docCount > progressLevel) {
-                log.debug("{}% of documents processed.", progressLevel);
-                progressLevel += 10;
+        TopKCollector collector;
+        if (topResultCount > 0 && rankedExecution != RankedExecution.TERM_AT_A_TIME) {
+            TopKScorer scorer = getTopKScorer(terms);
+            collector = new TopKCollector(topResultCount);
+            scorer.score(collector);
+            log.debug("{}: {} documents scored, {} postings skipped.", rankedExecution, scorer.getScoredDocuments(), scorer.getSkippedPostings());
+            if (scorer instanceof WandScorer) {
+                log.debug("{} blocks skipped.", ((WandScorer) scorer).getSkippedBlocks());
             }
+        } else {
+            TermAtATimeScorer scorer = new TermAtATimeScorer(invertedIndex, terms);
+            scorer.scorePostings(Long.MAX_VALUE);
+            collector = prepareTopKCollector(scorer.getTouchedDocumentCount());
+            scorer.collect(collector);
         }
 
         log.trace("Fetching results.");
-        return getTopKResults(resultQueue, topResultCount);
+        return collector.toResults(invertedIndex);
+    }
+
+    /**
+     * Returns top K scorer according to current {@link RankedExecution}.
+     * @param terms Query terms.
+     * @return Scorer.
+     */
+    private TopKScorer getTopKScorer(String[] terms) {
+        switch (rankedExecution) {
+            case WAND:
+                return new WandScorer(invertedIndex, terms);
+            case BLOCK_MAX_WAND:
+                return new BlockMaxWandScorer(invertedIndex, terms);
+            case MAX_SCORE:
+                return new MaxScoreScorer(invertedIndex, terms);
+            default:
+                throw new RuntimeException("Unsupported ranked execution: "+rankedExecution);
+        }
     }
 
     private BooleanRetrievalWithProgress prepareBooleanRetrievalWithProgress(SearchQueryNode queryRoot) {
         log.debug("Getting results for boolean query.");
 
-        log.trace("Getting list of postings to search.");
-        List<Posting> postings = invertedIndex.getPostingsForQuery(queryRoot);
-        if(postings.isEmpty()) {
+        log.trace("Getting iterator over postings to search.");
+        PostingsIterator postings = getIteratorForBooleanQuery(queryRoot);
+        if(postings.cost() == 0) {
             log.warn("No postings.");
             return null;
         }
 
-        PriorityQueue<Result> resultQueue = prepareTopKQueue(postings.size());
-
         log.debug("Creating boolean retrieval object.");
-        return new BooleanRetrievalWithProgress(postings, resultQueue);
+        return new BooleanRetrievalWithProgress(postings, prepareTopKCollector(postings.cost()));
     }
 
-    private CosineSimilarityWithProgress prepareRankedRetrievalWithProgress(SearchQueryNode queryRoot) {
-        log.debug("Preparing search query calculator.");
+    /**
+     * Returns iterator over documents matching boolean query according to current {@link BooleanExecution}.
+     * @param queryRoot Root of boolean query.
+     * @return Iterator over matching documents.
+     */
+    private PostingsIterator getIteratorForBooleanQuery(SearchQueryNode queryRoot) {
+        switch (booleanExecution) {
+            case BITMAPS:
+                return new BitmapQueryEvaluator(invertedIndex).evaluate(queryRoot).iterator();
+            case ITERATORS:
+                return invertedIndex.getIteratorForQuery(queryRoot);
+            default:
+                throw new RuntimeException("Unsupported boolean execution: "+booleanExecution);
+        }
+    }
+
+    private TermAtATimeWithProgress prepareRankedRetrievalWithProgress(SearchQueryNode queryRoot) {
+        log.debug("Preparing search query scorer.");
 
         // get list of terms in query
         log.trace("Extracting terms from query.");
         String[] terms = queryRoot.getTerms().toArray(new String[0]);
 
-        // prepare similarity calculator
-        log.trace("Initializing cosine similarity calculator.");
-        SimilarityCalculator similarityCalculator = new CosineSimilarityCalculator(invertedIndex, terms);
-
         // calculate similarity
-        log.trace("Creating similarity progress calculator.");
-        PriorityQueue<Result> resultQueue = prepareTopKQueue(invertedIndex.getDocumentCount());
-        return new CosineSimilarityWithProgress(invertedIndex.getIndexedDocuments(), resultQueue, similarityCalculator);
+        log.trace("Creating term-at-a-time scorer with progress.");
+        TermAtATimeScorer scorer = new TermAtATimeScorer(invertedIndex, terms);
+        return new TermAtATimeWithProgress(scorer, prepareTopKCollector(scorer.getPostingCount()));
     }
 
     /**
-     * Create result queue with descending comparator and initial capacity.
-     * @param initialCapacity Initial capacity.
-     * @return Prepared queue.
+     * Creates collector of top {@link #topResultCount} results. If all results are requested, the collector
+     * is large enough for all expected hits.
+     * @param expectedHits Max number of documents which will be offered to the collector.
+     * @return Prepared collector.
      */
-    private PriorityQueue<Result> prepareTopKQueue(int initialCapacity)  {
-        return new PriorityQueue<>(initialCapacity, (o1, o2) -> Float.compare(o2.getScore(), o1.getScore()));
-    }
-
-    /**
-     * Pulls out tok K results from queue and returns them.
-     *
-     * @param queue Queue to pull results from.
-     * @param k Max number of results to pull from query.
-     * @return Results sorted by their score in descending order.
-     */
-    public List<Result> getTopKResults(PriorityQueue<Result> queue, int k)  {
-        List<Result> results = new ArrayList<>();
-        int max;
-        if (k < 0) {
-            max = queue.size();
-        } else {
-            max = Math.min(queue.size(), k);
+    private TopKCollector prepareTopKCollector(long expectedHits) {
+        long k = Math.min(expectedHits, invertedIndex.getDocumentCount());
+        if (topResultCount > 0) {
+            k = Math.min(k, topResultCount);
         }
-        for(int i = 0; i < max; i++) {
-            ResultImpl res = (ResultImpl)queue.poll();
-            res.setRank(i+1);
-            results.add(res);
-        }
-
-        return results;
+        return new TopKCollector((int) Math.max(1, k));
     }
 }
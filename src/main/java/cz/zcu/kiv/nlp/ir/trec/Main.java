@@ -1,9 +1,13 @@
 package cz.zcu.kiv.nlp.ir.trec;
 
+import cz.zcu.kiv.nlp.ir.trec.core.IndexFile;
 import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
 import cz.zcu.kiv.nlp.ir.trec.core.SearchMode;
+import cz.zcu.kiv.nlp.ir.trec.core.SearchableIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKCollector;
 import cz.zcu.kiv.nlp.ir.trec.core.retrieval.RetrievalWithProgress;
 import cz.zcu.kiv.nlp.ir.trec.data.Document;
+import cz.zcu.kiv.nlp.ir.trec.data.DocumentSource;
 import cz.zcu.kiv.nlp.ir.trec.data.Result;
 import cz.zcu.kiv.nlp.ir.trec.gui.MainWindow;
 import cz.zcu.kiv.nlp.ir.trec.preprocess.AdvancedTokenizer;
@@ -14,6 +18,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
@@ -157,20 +163,55 @@ public class Main {
     }
 
     /**
-     * Loads index from file. May throw exceptions.
+     * Loads index from file written by {@link #saveIndexToFile(String)}. May throw exceptions.
      * @param fileName Source file name.
      */
-    public static void loadIndexFromFile(String fileName) throws IOException, ClassNotFoundException {
-        InvertedIndex invertedIndex = IOUtils.loadIndex(fileName);
+    public static void loadIndexFromFile(String fileName) throws IOException {
+        InvertedIndex invertedIndex = IndexFile.read(new File(fileName));
+        replaceInvertedIndex(invertedIndex);
+    }
+
+    /**
+     * Opens index file written by {@link #saveIndexToFile(String)} as a read-only memory-mapped index.
+     * Nothing is read from the file until it's searched, so it's ready immediately. May throw exceptions.
+     * @param fileName Source file name.
+     */
+    public static void mapIndexFromFile(String fileName) throws IOException {
+        replaceInvertedIndex(IndexFile.map(new File(fileName)));
+    }
+
+    /**
+     * Opens index file written by {@link #saveIndexToFile(String)} as a read-only index which reads posting lists
+     * from the file when they're needed and caches them, see {@link Configuration#getPostingsCacheSize()}.
+     * Used for indexes which don't fit in memory. May throw exceptions.
+     * @param fileName Source file name.
+     */
+    public static void openIndexFromFile(String fileName) throws IOException {
+        replaceInvertedIndex(IndexFile.open(new File(fileName), Configuration.getPostingsCacheSize()));
+    }
+
+    /**
+     * Replaces the searched index. The previous index is closed if it's backed by an open file.
+     * @param invertedIndex New index.
+     */
+    private static void replaceInvertedIndex(SearchableIndex invertedIndex) {
+        SearchableIndex previous = index.getInvertedIndex();
         index.setInvertedIndex(invertedIndex);
+        if (previous instanceof Closeable) {
+            try {
+                ((Closeable) previous).close();
+            } catch (IOException e) {
+                log.warn("Error while closing previous index: " + e.getMessage());
+            }
+        }
     }
 
     /**
-     * Saves index to file. May throw exceptions.
+     * Saves index to file in the binary format of {@link IndexFile}. May throw exceptions.
      * @param fileName Target file name.
      */
     public static void saveIndexToFile(String fileName) throws IOException {
-        IOUtils.saveIndex(index.getInvertedIndex(), fileName);
+        IndexFile.write(index.getInvertedIndex(), new File(fileName));
     }
 
     /**
@@ -184,10 +225,35 @@ public class Main {
         }
     }
 
+    /**
+     * Indexes documents streamed from the source and recalculates the index.
+     *
+     * @param source Source of documents.
+     */
+    public static void indexDocuments(DocumentSource source) {
+        if (index != null) {
+            index.indexStream(source);
+        }
+    }
+
     public static void recalculateIndex() {
         if (index != null){
-            index.getInvertedIndex().recalculateTermIdfs();
-            index.getInvertedIndex().recalculateDocumentTfIdfs();
+            InvertedIndex invertedIndex = index.getWritableIndex();
+            invertedIndex.recalculateTermIdfs();
+            invertedIndex.recalculateDocumentTfIdfs();
+            invertedIndex.compressPostings();
+        }
+    }
+
+    /**
+     * Updates statistics of the index after documents were added by {@link #indexDocument(Document)}.
+     * Only the statistics affected by the new documents are recalculated, see {@link InvertedIndex#updateStatistics()}.
+     */
+    public static void updateIndex() {
+        if (index != null){
+            InvertedIndex invertedIndex = index.getWritableIndex();
+            invertedIndex.updateStatistics();
+            invertedIndex.compressPostings();
         }
     }
 
@@ -209,12 +275,12 @@ public class Main {
         }
     }
 
-    public static List<Result> extractTopKResults(PriorityQueue<Result> queue, int k) {
+    public static List<Result> extractTopKResults(TopKCollector collector) {
         if (index == null) {
             log.warn("No index.");
             return Collections.emptyList();
         }
 
-        return index.getTopKResults(queue, k);
+        return collector.toResults(index.getInvertedIndex());
     }
 }
@@ -0,0 +1,50 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+/**
+ * Implicit posting list which contains every indexed document (ordinals 0..documentCount-1) with term
+ * frequency 1. Used as the universe for NOT so that complements don't have to be built from the whole vocabulary.
+ */
+public class AllDocumentsIterator implements PostingsIterator {
+
+    private final int documentCount;
+
+    private int doc;
+
+    /**
+     * @param documentCount Number of indexed documents.
+     */
+    public AllDocumentsIterator(int documentCount) {
+        this.documentCount = documentCount;
+        doc = -1;
+    }
+
+    @Override
+    public int docOrdinal() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+
+        doc = target < documentCount ? target : NO_MORE_DOCS;
+        return doc;
+    }
+
+    @Override
+    public int termFrequency() {
+        return 1;
+    }
+
+    @Override
+    public long cost() {
+        return documentCount;
+    }
+}
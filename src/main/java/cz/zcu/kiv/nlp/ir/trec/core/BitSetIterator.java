@@ -0,0 +1,69 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import java.util.BitSet;
+
+/**
+ * Posting stream over documents whose bits are set in a {@link BitSet}. Term frequency is always 1.
+ */
+public class BitSetIterator implements PostingsIterator {
+
+    private final BitSet documents;
+    private final long cost;
+
+    private int doc;
+
+    /**
+     * @param documents Set of document ordinals.
+     */
+    public BitSetIterator(BitSet documents) {
+        this.documents = documents;
+        this.cost = documents.cardinality();
+        doc = -1;
+    }
+
+    /**
+     * Collects documents from iterator to a new bit set.
+     *
+     * @param postings Iterator which wasn't moved yet.
+     * @param documentCount Number of documents in index.
+     * @return Bit set with documents of the iterator.
+     */
+    public static BitSet toBitSet(PostingsIterator postings, int documentCount) {
+        BitSet documents = new BitSet(documentCount);
+        while (postings.nextDoc() != NO_MORE_DOCS) {
+            documents.set(postings.docOrdinal());
+        }
+        return documents;
+    }
+
+    @Override
+    public int docOrdinal() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+
+        int next = documents.nextSetBit(target);
+        doc = next < 0 ? NO_MORE_DOCS : next;
+        return doc;
+    }
+
+    @Override
+    public int termFrequency() {
+        return 1;
+    }
+
+    @Override
+    public long cost() {
+        return cost;
+    }
+}
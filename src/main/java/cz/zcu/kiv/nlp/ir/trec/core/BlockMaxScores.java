@@ -0,0 +1,63 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.codec.BlockPForCodec;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Upper bounds of score contributions of one term in blocks of {@link #BLOCK_SIZE} consecutive postings.
+ * Blocks are aligned with the blocks of {@link BlockPForCodec}.
+ *
+ * For every block the ordinal of its last document and the max TF-IDF / norm of its postings are stored.
+ */
+public class BlockMaxScores implements Serializable {
+
+    public static final int BLOCK_SIZE = BlockPForCodec.BLOCK_SIZE;
+
+    private final int[] lastDocuments;
+    private final float[] maxScores;
+
+    /**
+     * @param lastDocuments Ordinals of the last documents of blocks in ascending order.
+     * @param maxScores Max score contributions in blocks. Values are rounded up to floats, so they remain upper bounds.
+     */
+    public BlockMaxScores(int[] lastDocuments, double[] maxScores) {
+        if (lastDocuments.length != maxScores.length) {
+            throw new IllegalArgumentException("Number of last documents and max scores differ!");
+        }
+        this.lastDocuments = lastDocuments;
+        this.maxScores = new float[maxScores.length];
+        for (int i = 0; i < maxScores.length; i++) {
+            float maxScore = (float) maxScores[i];
+            this.maxScores[i] = maxScore < maxScores[i] ? Math.nextUp(maxScore) : maxScore;
+        }
+    }
+
+    public int getBlockCount() {
+        return lastDocuments.length;
+    }
+
+    public int getLastDocument(int block) {
+        return lastDocuments[block];
+    }
+
+    public float getMaxScore(int block) {
+        return maxScores[block];
+    }
+
+    /**
+     * Finds the first block which may contain given document.
+     *
+     * @param documentOrdinal Ordinal of the document.
+     * @param fromBlock First block to search from.
+     * @return Index of the block or block count if the document is after the last block.
+     */
+    public int findBlock(int documentOrdinal, int fromBlock) {
+        if (fromBlock >= lastDocuments.length || lastDocuments[fromBlock] >= documentOrdinal) {
+            return fromBlock;
+        }
+        int i = Arrays.binarySearch(lastDocuments, fromBlock, lastDocuments.length, documentOrdinal);
+        return i >= 0 ? i : -i - 1;
+    }
+}
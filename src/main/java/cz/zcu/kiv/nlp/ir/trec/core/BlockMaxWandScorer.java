@@ -0,0 +1,67 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+/**
+ * Block-Max WAND: {@link WandScorer} which checks the pivot document also against the upper bounds of the
+ * posting blocks it falls into (see {@link BlockMaxScores}).
+ *
+ * Global max score of a term is usually reached by a single short document, so the WAND bound is loose.
+ * Block bounds are much tighter. If even they can't beat the threshold, no document up to the end of the
+ * nearest block can get to the top K. Cursors then move over whole blocks without touching their postings
+ * until the block bounds can beat the threshold again.
+ */
+public class BlockMaxWandScorer extends WandScorer {
+
+    public BlockMaxWandScorer(SearchableIndex invertedIndex, String[] query) {
+        super(invertedIndex, query);
+    }
+
+    @Override
+    protected void moveToPivot(int pivot, double threshold, TopKCollector collector) {
+        int pivotDoc = cursors[pivot].docOrdinal();
+
+        // cursors after the pivot which are on the pivot document contribute to its score too
+        int last = pivot;
+        while (last + 1 < cursorCount && cursors[last + 1].docOrdinal() == pivotDoc) {
+            last++;
+        }
+
+        double blockUpperBound = 0;
+        for (int i = 0; i <= last; i++) {
+            cursors[i].shallowAdvance(pivotDoc);
+            blockUpperBound += cursors[i].blockMaxScore();
+        }
+
+        if (blockUpperBound > threshold) {
+            super.moveToPivot(pivot, threshold, collector);
+            return;
+        }
+
+        // no document before the end of the nearest block can beat the threshold, keep moving over blocks
+        // until their bounds can beat it or the next document of the following cursors is reached
+        int following = last + 1 < cursorCount ? cursors[last + 1].docOrdinal() : PostingsIterator.NO_MORE_DOCS;
+        int next = pivotDoc;
+        do {
+            int blockEnd = following;
+            for (int i = 0; i <= last; i++) {
+                int blockLast = cursors[i].blockLastDocument();
+                if (blockLast != PostingsIterator.NO_MORE_DOCS) {
+                    blockEnd = Math.min(blockEnd, blockLast + 1);
+                }
+            }
+            next = Math.max(blockEnd, next + 1);
+            if (next >= following) {
+                break;
+            }
+
+            blockUpperBound = 0;
+            for (int i = 0; i <= last; i++) {
+                cursors[i].shallowAdvance(next);
+                blockUpperBound += cursors[i].blockMaxScore();
+            }
+        } while (blockUpperBound <= threshold);
+
+        for (int i = 0; i <= last; i++) {
+            cursors[i].advance(next);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+/**
+ * Ways of evaluating boolean queries.
+ */
+public enum BooleanExecution {
+
+    /**
+     * Lazy iterators over posting lists, see {@link BooleanQueryPlanner}.
+     */
+    ITERATORS,
+
+    /**
+     * Operations over compressed bitmaps of terms, see {@link cz.zcu.kiv.nlp.ir.trec.core.bitmap.BitmapQueryEvaluator}.
+     */
+    BITMAPS
+}
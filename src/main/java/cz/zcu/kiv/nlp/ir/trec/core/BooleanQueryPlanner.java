@@ -0,0 +1,363 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import org.apache.lucene.search.BooleanClause;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns boolean query tree created by {@link QueryParser} into a lazy iterator over matching documents.
+ *
+ * The query is rewritten first: nested ANDs and ORs are flattened into their parents and double negations
+ * are removed. Then each node is built from its children: MUST clauses are ordered by their cost (document
+ * frequency for terms) so the rarest one drives the conjunction, MUST_NOT clauses are excluded from the
+ * conjunction and SHOULD clauses are united with it. Every conjunction and disjunction gets a {@link Strategy}
+ * according to the costs of its operands.
+ *
+ * Semantics are the same as described in {@link SearchableIndex#getIteratorForQuery(SearchQueryNode)}.
+ */
+public class BooleanQueryPlanner {
+
+    private static Logger log = LoggerFactory.getLogger(BooleanQueryPlanner.class);
+
+    /**
+     * How the operands of one node are combined.
+     */
+    public enum Strategy {
+        /**
+         * Step through operands in parallel, good for operands of similar length.
+         */
+        MERGE,
+
+        /**
+         * Advance longer operands to the candidates of the shortest one.
+         */
+        GALLOP,
+
+        /**
+         * Materialize operands to bit sets and combine them word by word, good for dense operands.
+         */
+        BITSET
+    }
+
+    /**
+     * Conjunction gallops if the longest operand is at least this times longer than the shortest one.
+     */
+    public static final int GALLOP_RATIO = 8;
+
+    /**
+     * Operand is dense if it contains at least 1/DENSITY_RATIO of all documents. Its bit set is then
+     * smaller than its postings.
+     */
+    public static final int DENSITY_RATIO = 32;
+
+    private final SearchableIndex invertedIndex;
+
+    public BooleanQueryPlanner(SearchableIndex invertedIndex) {
+        this.invertedIndex = invertedIndex;
+    }
+
+    /**
+     * Rewrites the query and builds iterator over matching documents.
+     *
+     * @param root Root of the query.
+     * @return Iterator over documents matching the query.
+     */
+    public PostingsIterator plan(SearchQueryNode root) {
+        return build(rewrite(root));
+    }
+
+    /**
+     * Returns simplified copy of the query tree. Original tree is not modified.
+     *
+     * Unknown terms are ignored only among MUST clauses of the node they're in, so the rules which would move them
+     * to other node are not applied if they'd change the result: a AND (zzz AND NOT c) matches nothing, while
+     * a AND zzz AND NOT c would match a AND NOT c.
+     *
+     * <ul>
+     *     <li>MUST child consisting only of MUST and MUST_NOT clauses, some of the MUST ones known, is merged into the parent: a AND (b AND NOT c) = a AND b AND NOT c</li>
+     *     <li>SHOULD child consisting only of SHOULD clauses is merged into the parent: a OR (b OR c) = a OR b OR c</li>
+     *     <li>MUST_NOT child consisting only of SHOULD clauses is merged into the parent: NOT (a OR b) = NOT a NOT b</li>
+     *     <li>MUST_NOT child consisting only of MUST_NOT clauses, other than a single unknown term, becomes MUST clause: a AND NOT (NOT b) = a AND b</li>
+     *     <li>Node with single clause (other than MUST_NOT or unknown MUST term) is replaced by the clause</li>
+     * </ul>
+     *
+     * @param node Query node.
+     * @return Rewritten query node.
+     */
+    public SearchQueryNode rewrite(SearchQueryNode node) {
+        if (node.isTerm()) {
+            return node;
+        }
+
+        List<SearchQueryNode> must = new ArrayList<>();
+        List<SearchQueryNode> should = new ArrayList<>();
+        List<SearchQueryNode> mustNot = new ArrayList<>();
+
+        for (SearchQueryNode child : children(node, BooleanClause.Occur.MUST)) {
+            child = rewrite(child);
+            if (hasOnly(child, BooleanClause.Occur.MUST, BooleanClause.Occur.MUST_NOT)
+                    && !children(child, BooleanClause.Occur.MUST).isEmpty()
+                    && !allUnknownTerms(children(child, BooleanClause.Occur.MUST))) {
+                must.addAll(children(child, BooleanClause.Occur.MUST));
+                mustNot.addAll(children(child, BooleanClause.Occur.MUST_NOT));
+            } else {
+                must.add(child);
+            }
+        }
+
+        for (SearchQueryNode child : children(node, BooleanClause.Occur.SHOULD)) {
+            child = rewrite(child);
+            if (hasOnly(child, BooleanClause.Occur.SHOULD)) {
+                should.addAll(children(child, BooleanClause.Occur.SHOULD));
+            } else {
+                should.add(child);
+            }
+        }
+
+        for (SearchQueryNode child : children(node, BooleanClause.Occur.MUST_NOT)) {
+            child = rewrite(child);
+            if (hasOnly(child, BooleanClause.Occur.SHOULD)) {
+                mustNot.addAll(children(child, BooleanClause.Occur.SHOULD));
+            } else if (hasOnly(child, BooleanClause.Occur.MUST_NOT)
+                    && !isUnknownTerm(union(children(child, BooleanClause.Occur.MUST_NOT)))) {
+                must.add(union(children(child, BooleanClause.Occur.MUST_NOT)));
+            } else {
+                mustNot.add(child);
+            }
+        }
+
+        // single clause, unknown MUST term would be ignored by the parent
+        if (mustNot.isEmpty() && must.size() + should.size() == 1 && !(must.size() == 1 && isUnknownTerm(must.get(0)))) {
+            return must.isEmpty() ? should.get(0) : must.get(0);
+        }
+
+        SearchQueryNode rewritten = new SearchQueryNode();
+        rewritten.setText(node.getText());
+        rewritten.setTerm(false);
+        addChildren(rewritten, BooleanClause.Occur.MUST, must);
+        addChildren(rewritten, BooleanClause.Occur.SHOULD, should);
+        addChildren(rewritten, BooleanClause.Occur.MUST_NOT, mustNot);
+        return rewritten;
+    }
+
+    /**
+     * Chooses strategy for conjunction of operands with given costs.
+     *
+     * @param costs Costs of operands sorted in ascending order.
+     * @return Strategy.
+     */
+    public Strategy conjunctionStrategy(long[] costs) {
+        long denseCost = denseCost();
+        if (costs.length > 1 && costs[0] >= denseCost) {
+            return Strategy.BITSET;
+        } else if (costs[costs.length - 1] >= GALLOP_RATIO * Math.max(costs[0], 1)) {
+            return Strategy.GALLOP;
+        } else {
+            return Strategy.MERGE;
+        }
+    }
+
+    /**
+     * Chooses strategy for disjunction of operands with given costs.
+     *
+     * @param costs Costs of operands.
+     * @return Strategy.
+     */
+    public Strategy disjunctionStrategy(long[] costs) {
+        long total = 0;
+        for (long cost : costs) {
+            total += cost;
+        }
+        return costs.length > 2 && total >= denseCost() ? Strategy.BITSET : Strategy.MERGE;
+    }
+
+    private PostingsIterator build(SearchQueryNode node) {
+        if (node.isTerm()) {
+            return invertedIndex.getPostingsForTerm(node.getText()).iterator();
+        }
+
+        PostingsIterator res = null;
+
+        // NOT
+        PostingsIterator excluded = null;
+        List<SearchQueryNode> mustNot = children(node, BooleanClause.Occur.MUST_NOT);
+        if (!mustNot.isEmpty()) {
+            excluded = disjunction(buildAll(mustNot));
+        }
+
+        // AND, terms which are not indexed are ignored
+        List<SearchQueryNode> must = children(node, BooleanClause.Occur.MUST);
+        if (!must.isEmpty()) {
+            List<PostingsIterator> operands = new ArrayList<>();
+            for (SearchQueryNode child : must) {
+                if (!isUnknownTerm(child)) {
+                    operands.add(build(child));
+                }
+            }
+
+            if (operands.isEmpty()) {
+                res = emptyIterator();
+            } else {
+                // exclusion is checked only for documents which passed the conjunction driven by the rarest operand
+                res = conjunction(operands);
+                if (excluded != null) {
+                    res = new ExclusionIterator(res, excluded);
+                }
+            }
+        } else if (excluded != null) {
+            res = new ExclusionIterator(new AllDocumentsIterator(invertedIndex.getDocumentCount()), excluded);
+        }
+
+        // OR
+        List<SearchQueryNode> should = children(node, BooleanClause.Occur.SHOULD);
+        if (!should.isEmpty()) {
+            List<PostingsIterator> operands = buildAll(should);
+            if (res != null) {
+                operands.add(res);
+            }
+            res = disjunction(operands);
+        }
+
+        return res == null ? emptyIterator() : res;
+    }
+
+    /**
+     * Whether the node is a term which is not in the index.
+     *
+     * @param node Query node.
+     * @return True for unknown term.
+     */
+    public boolean isUnknownTerm(SearchQueryNode node) {
+        return node.isTerm() && invertedIndex.documentFrequency(node.getText()) == 0;
+    }
+
+    /**
+     * Whether all the nodes are unknown terms.
+     */
+    private boolean allUnknownTerms(List<SearchQueryNode> nodes) {
+        for (SearchQueryNode node : nodes) {
+            if (!isUnknownTerm(node)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<PostingsIterator> buildAll(List<SearchQueryNode> nodes) {
+        List<PostingsIterator> iterators = new ArrayList<>(nodes.size() + 1);
+        for (SearchQueryNode node : nodes) {
+            iterators.add(build(node));
+        }
+        return iterators;
+    }
+
+    private PostingsIterator conjunction(List<PostingsIterator> operands) {
+        if (operands.size() == 1) {
+            return operands.get(0);
+        }
+
+        operands.sort(Comparator.comparingLong(PostingsIterator::cost));
+        long[] costs = costs(operands);
+        Strategy strategy = conjunctionStrategy(costs);
+        log.trace("Conjunction of {} operands with costs from {} to {}: {}.", operands.size(), costs[0], costs[costs.length - 1], strategy);
+
+        switch (strategy) {
+            case BITSET:
+                BitSet documents = BitSetIterator.toBitSet(operands.get(0), invertedIndex.getDocumentCount());
+                for (int i = 1; i < operands.size(); i++) {
+                    documents.and(BitSetIterator.toBitSet(operands.get(i), invertedIndex.getDocumentCount()));
+                }
+                return new BitSetIterator(documents);
+            case GALLOP:
+                return new ConjunctionIterator(operands, true);
+            default:
+                return new ConjunctionIterator(operands, false);
+        }
+    }
+
+    private PostingsIterator disjunction(List<PostingsIterator> operands) {
+        if (operands.size() == 1) {
+            return operands.get(0);
+        }
+
+        long[] costs = costs(operands);
+        Strategy strategy = disjunctionStrategy(costs);
+        log.trace("Disjunction of {} operands: {}.", operands.size(), strategy);
+
+        if (strategy == Strategy.BITSET) {
+            BitSet documents = new BitSet(invertedIndex.getDocumentCount());
+            for (PostingsIterator operand : operands) {
+                documents.or(BitSetIterator.toBitSet(operand, invertedIndex.getDocumentCount()));
+            }
+            return new BitSetIterator(documents);
+        }
+        return new DisjunctionIterator(operands);
+    }
+
+    private long denseCost() {
+        return Math.max(1, invertedIndex.getDocumentCount() / DENSITY_RATIO);
+    }
+
+    private long[] costs(List<PostingsIterator> operands) {
+        long[] costs = new long[operands.size()];
+        for (int i = 0; i < costs.length; i++) {
+            costs[i] = operands.get(i).cost();
+        }
+        return costs;
+    }
+
+    private PostingsIterator emptyIterator() {
+        return new PostingList(0).iterator();
+    }
+
+    /**
+     * OR node of given nodes, or the node itself if there's only one.
+     */
+    private SearchQueryNode union(List<SearchQueryNode> nodes) {
+        if (nodes.size() == 1) {
+            return nodes.get(0);
+        }
+        SearchQueryNode union = new SearchQueryNode();
+        union.setTerm(false);
+        addChildren(union, BooleanClause.Occur.SHOULD, nodes);
+        return union;
+    }
+
+    private static List<SearchQueryNode> children(SearchQueryNode node, BooleanClause.Occur occur) {
+        List<SearchQueryNode> children = node.getChildren().get(occur);
+        return children == null ? Collections.emptyList() : children;
+    }
+
+    /**
+     * Whether the node is not a term and has children only with given occurrences.
+     */
+    private static boolean hasOnly(SearchQueryNode node, BooleanClause.Occur... occurs) {
+        if (node.isTerm() || node.getChildren().isEmpty()) {
+            return false;
+        }
+
+        for (Map.Entry<BooleanClause.Occur, List<SearchQueryNode>> entry : node.getChildren().entrySet()) {
+            boolean allowed = false;
+            for (BooleanClause.Occur occur : occurs) {
+                allowed |= entry.getKey() == occur;
+            }
+            if (!allowed && !entry.getValue().isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addChildren(SearchQueryNode node, BooleanClause.Occur occur, List<SearchQueryNode> children) {
+        for (SearchQueryNode child : children) {
+            node.addChild(occur, child);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lazy AND of several posting streams. The cheapest iterator leads and the others are moved to its
+ * candidates. By default they're advanced (galloping over whole ranges of the longer lists), for lists
+ * of similar length a plain merge which steps them one posting at a time can be used instead.
+ */
+public class ConjunctionIterator implements PostingsIterator {
+
+    /**
+     * Sub-iterators sorted by their cost, the first one leads.
+     */
+    private final PostingsIterator[] iterators;
+
+    /**
+     * If false, non-leading iterators are moved by nextDoc() instead of advance().
+     */
+    private final boolean gallop;
+
+    private int doc;
+
+    /**
+     * @param iterators Iterators to be intersected, at least one.
+     */
+    public ConjunctionIterator(List<PostingsIterator> iterators) {
+        this(iterators, true);
+    }
+
+    /**
+     * @param iterators Iterators to be intersected, at least one.
+     * @param gallop Whether to advance non-leading iterators or to merge them linearly.
+     */
+    public ConjunctionIterator(List<PostingsIterator> iterators, boolean gallop) {
+        this.gallop = gallop;
+        if (iterators.isEmpty()) {
+            throw new IllegalArgumentException("At least one iterator is needed for conjunction.");
+        }
+        this.iterators = iterators.toArray(new PostingsIterator[0]);
+        Arrays.sort(this.iterators, Comparator.comparingLong(PostingsIterator::cost));
+        doc = -1;
+    }
+
+    @Override
+    public int docOrdinal() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return doNext(iterators[0].nextDoc());
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        return doNext(iterators[0].advance(target));
+    }
+
+    /**
+     * Term frequency of the leading iterator.
+     */
+    @Override
+    public int termFrequency() {
+        return iterators[0].termFrequency();
+    }
+
+    @Override
+    public long cost() {
+        return iterators[0].cost();
+    }
+
+    /**
+     * Finds the first document >= candidate which is in all iterators.
+     */
+    private int doNext(int candidate) {
+        PostingsIterator lead = iterators[0];
+        while (candidate != NO_MORE_DOCS) {
+            int i = 1;
+            for (; i < iterators.length; i++) {
+                int other = gallop ? iterators[i].advance(candidate) : stepTo(iterators[i], candidate);
+                if (other > candidate) {
+                    candidate = lead.advance(other);
+                    break;
+                }
+            }
+
+            if (i == iterators.length) {
+                break;
+            }
+        }
+
+        doc = candidate;
+        return doc;
+    }
+
+    private int stepTo(PostingsIterator iterator, int target) {
+        int other = iterator.docOrdinal();
+        while (other < target) {
+            other = iterator.nextDoc();
+        }
+        return other;
+    }
+}
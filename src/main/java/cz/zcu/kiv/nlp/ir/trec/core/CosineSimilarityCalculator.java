@@ -3,19 +3,56 @@ package cz.zcu.kiv.nlp.ir.trec.core;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Calculates cosine similarity between query and documents.
+ *
+ * Postings of query terms are streamed by iterators, so documents should be scored in ascending
+ * order of their ordinals. Scoring a document with lower ordinal than the previous one is possible
+ * but the iterators have to be restarted.
+ *
+ * If the index stores {@link Impacts}, they are summed directly instead of calculating TF-IDF of postings.
+ */
 public class CosineSimilarityCalculator implements SimilarityCalculator {
 
-    private InvertedIndex invertedIndex;
+    private SearchableIndex invertedIndex;
 
     private String[] query;
 
     private Map<String, Double> queryTfIdf = new HashMap<>();
 
-    public CosineSimilarityCalculator(InvertedIndex invertedIndex, String[] query) {
+    /**
+     * Indexed terms of the query, their IDFs, iterators over their postings and their impacts (null if not stored).
+     */
+    private String[] queryTerms;
+    private double[] queryTermIdfs;
+    private PostingsIterator[] queryTermPostings;
+    private byte[][] queryTermImpacts;
+
+    /**
+     * Ordinal of the last scored document.
+     */
+    private int lastDocumentOrdinal;
+
+    public CosineSimilarityCalculator(SearchableIndex invertedIndex, String[] query) {
         this.invertedIndex = invertedIndex;
         this.query = query;
 
         calculateQueryTFIDF();
+        initPostingIterators();
+    }
+
+    private void initPostingIterators() {
+        queryTerms = queryTfIdf.keySet().toArray(new String[0]);
+        queryTermIdfs = new double[queryTerms.length];
+        queryTermPostings = new PostingsIterator[queryTerms.length];
+        queryTermImpacts = new byte[queryTerms.length][];
+        Impacts impacts = invertedIndex.getImpacts();
+        for (int i = 0; i < queryTerms.length; i++) {
+            queryTermIdfs[i] = invertedIndex.idf(queryTerms[i]);
+            queryTermImpacts[i] = impacts == null ? null : impacts.getImpactsForTerm(queryTerms[i]);
+            queryTermPostings[i] = invertedIndex.getPostingsForTerm(queryTerms[i]).iterator();
+        }
+        lastDocumentOrdinal = -1;
     }
 
     private void calculateQueryTFIDF() {
@@ -42,17 +79,33 @@ public class CosineSimilarityCalculator implements SimilarityCalculator {
 
     }
 
-    public double calculateScore(String documentId) {
+    public double calculateScore(int documentOrdinal) {
         double cosSim = 0;
 
-        double tfIdfNorm = invertedIndex.getTfIdfNormForDocument(documentId);
-        for(String token : queryTfIdf.keySet()) {
+        if (documentOrdinal < lastDocumentOrdinal) {
+            // iterators already moved past this document
+            initPostingIterators();
+        }
+        lastDocumentOrdinal = documentOrdinal;
+
+        double impactSum = 0;
+        for (int i = 0; i < queryTermPostings.length; i++) {
             // relative value, the query term TF-IDF is 1
-            cosSim += invertedIndex.getTfIdfOfTermInDocument(token, documentId);
+            PostingsIterator postings = queryTermPostings[i];
+            if (postings.advance(documentOrdinal) == documentOrdinal) {
+                if (queryTermImpacts[i] != null) {
+                    impactSum += invertedIndex.getImpacts().getImpact(queryTermImpacts[i], postings.position());
+                } else {
+                    cosSim += Posting.tfIdf(postings.termFrequency(), queryTermIdfs[i]);
+                }
+            }
+        }
+        if (cosSim > 0) {
+            cosSim /= invertedIndex.getTfIdfNormForDocument(documentOrdinal);
         }
 
         // query tf-idf vector is already normalized so no need to divide by 1
-        return cosSim / tfIdfNorm;
+        return cosSim + impactSum;
     }
 
     /**
@@ -0,0 +1,100 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import java.util.List;
+
+/**
+ * Lazy OR of several posting streams. Sub-iterators are kept in a min-heap ordered by their current document.
+ */
+public class DisjunctionIterator implements PostingsIterator {
+
+    /**
+     * Heap of sub-iterators, the one with the lowest current document is on index 0.
+     */
+    private final PostingsIterator[] heap;
+
+    private final long cost;
+
+    private int doc;
+
+    /**
+     * @param iterators Iterators to be united. None of them may be moved yet.
+     */
+    public DisjunctionIterator(List<PostingsIterator> iterators) {
+        heap = iterators.toArray(new PostingsIterator[0]);
+        long c = 0;
+        for (PostingsIterator iterator : heap) {
+            c += iterator.cost();
+        }
+        cost = c;
+        doc = -1;
+    }
+
+    @Override
+    public int docOrdinal() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        if (heap.length == 0) {
+            doc = NO_MORE_DOCS;
+            return doc;
+        }
+
+        // move all iterators behind the target, top of the heap is then the next document
+        while (heap[0].docOrdinal() < target) {
+            heap[0].advance(target);
+            siftDown(0);
+        }
+        doc = heap[0].docOrdinal();
+        return doc;
+    }
+
+    /**
+     * Sum of term frequencies of all sub-iterators positioned on the current document.
+     */
+    @Override
+    public int termFrequency() {
+        return termFrequency(0);
+    }
+
+    @Override
+    public long cost() {
+        return cost;
+    }
+
+    private int termFrequency(int i) {
+        if (i >= heap.length || heap[i].docOrdinal() != doc) {
+            return 0;
+        }
+        return heap[i].termFrequency() + termFrequency(2 * i + 1) + termFrequency(2 * i + 2);
+    }
+
+    private void siftDown(int i) {
+        PostingsIterator node = heap[i];
+        int nodeDoc = node.docOrdinal();
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heap.length) {
+                break;
+            }
+            if (child + 1 < heap.length && heap[child + 1].docOrdinal() < heap[child].docOrdinal()) {
+                child++;
+            }
+            if (heap[child].docOrdinal() >= nodeDoc) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = node;
+    }
+}
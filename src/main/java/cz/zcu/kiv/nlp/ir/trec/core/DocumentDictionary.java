@@ -0,0 +1,90 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary which assigns dense integer ordinals to document ids.
+ *
+ * Ordinals are assigned in the order in which documents are added, starting at 0, so they can be used
+ * directly as array indexes. External (String) ids are only needed when the final results are created.
+ */
+public class DocumentDictionary implements Serializable {
+
+    /**
+     * Returned by {@link #getOrdinal(String)} when the document is not in the dictionary.
+     */
+    public static final int NOT_FOUND = -1;
+
+    /**
+     * Document id -> ordinal.
+     */
+    private Map<String, Integer> ordinals;
+
+    /**
+     * Ordinal -> document id.
+     */
+    private List<String> documentIds;
+
+    public DocumentDictionary() {
+        ordinals = new HashMap<>();
+        documentIds = new ArrayList<>();
+    }
+
+    /**
+     * Adds document id to dictionary and returns its ordinal. If the id is already in the dictionary,
+     * its existing ordinal is returned.
+     *
+     * @param documentId Id of the document.
+     * @return Ordinal of the document.
+     */
+    public int add(String documentId) {
+        Integer ordinal = ordinals.get(documentId);
+        if (ordinal != null) {
+            return ordinal;
+        }
+
+        ordinal = documentIds.size();
+        ordinals.put(documentId, ordinal);
+        documentIds.add(documentId);
+        return ordinal;
+    }
+
+    /**
+     * Returns ordinal of given document.
+     *
+     * @param documentId Id of the document.
+     * @return Ordinal or {@link #NOT_FOUND} if the document is not in the dictionary.
+     */
+    public int getOrdinal(String documentId) {
+        Integer ordinal = ordinals.get(documentId);
+        return ordinal == null ? NOT_FOUND : ordinal;
+    }
+
+    /**
+     * Returns id of the document with given ordinal.
+     *
+     * @param ordinal Ordinal of the document.
+     * @return Document id.
+     */
+    public String getDocumentId(int ordinal) {
+        return documentIds.get(ordinal);
+    }
+
+    public boolean contains(String documentId) {
+        return ordinals.containsKey(documentId);
+    }
+
+    /**
+     * Returns number of documents in the dictionary. This is also the ordinal which will be
+     * assigned to the next added document.
+     *
+     * @return Number of documents.
+     */
+    public int size() {
+        return documentIds.size();
+    }
+}
@@ -0,0 +1,63 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+/**
+ * Lazy difference of two sorted posting streams: returns postings of the included iterator whose documents
+ * are not in the excluded iterator. The excluded iterator is only advanced to the candidates, so
+ * "a AND NOT b" costs roughly the length of a.
+ */
+public class ExclusionIterator implements PostingsIterator {
+
+    private final PostingsIterator included;
+    private final PostingsIterator excluded;
+
+    private int doc;
+
+    /**
+     * @param included Postings to be returned.
+     * @param excluded Postings of documents to be left out.
+     */
+    public ExclusionIterator(PostingsIterator included, PostingsIterator excluded) {
+        this.included = included;
+        this.excluded = excluded;
+        doc = -1;
+    }
+
+    @Override
+    public int docOrdinal() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return toNonExcluded(included.nextDoc());
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        return toNonExcluded(included.advance(target));
+    }
+
+    @Override
+    public int termFrequency() {
+        return included.termFrequency();
+    }
+
+    @Override
+    public long cost() {
+        return included.cost();
+    }
+
+    /**
+     * Moves the included iterator from candidate to the first document which is not excluded.
+     */
+    private int toNonExcluded(int candidate) {
+        while (candidate != NO_MORE_DOCS && excluded.advance(candidate) == candidate) {
+            candidate = included.nextDoc();
+        }
+        doc = candidate;
+        return doc;
+    }
+}
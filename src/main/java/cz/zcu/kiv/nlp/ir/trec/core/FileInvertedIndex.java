@@ -0,0 +1,305 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.codec.PostingsCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only index backed by an index file written by {@link IndexFile#write(SearchableIndex, File)}. Document ids,
+ * norms and the term dictionary are read directly from buffers with the sections of the file, either mapped
+ * ({@link MappedInvertedIndex}) or read to the heap ({@link LazyInvertedIndex}). Subclasses decide how posting lists
+ * are read from the postings section.
+ *
+ * Terms are mapped to ids by the front-coded {@link TermDictionary} of the file and the values of a term are read
+ * from the fixed-length term values at the position given by its id. Impacts and block max scores are not stored
+ * in the file, so scores are calculated from term frequencies, stored IDFs and norms.
+ *
+ * Ids of documents are mapped to ordinals only when a document is looked up by its id for the first time.
+ * The index can't be modified, use {@link IndexFile#read(File)} to load an {@link InvertedIndex} which can be.
+ */
+public abstract class FileInvertedIndex extends SearchableIndex {
+
+    /**
+     * Positions of the values of a term relative to the beginning of its values.
+     */
+    private static final int TERM_DOCUMENT_FREQUENCY = 0;
+    private static final int TERM_FLAGS = 4;
+    private static final int TERM_IDF = 5;
+    private static final int TERM_MAX_SCORE = 13;
+    private static final int TERM_POSTINGS_OFFSET = 21;
+    private static final int TERM_POSTINGS_LENGTH = 29;
+
+    final File file;
+    private final IdfMode idfMode;
+    final PostingsCodec postingsCodec;
+    private final int documentCount;
+    private final int statisticsDocumentCount;
+
+    private final ByteBuffer documents;
+    private final IntBuffer documentIndex;
+    private final DoubleBuffer norms;
+    private final TermDictionary terms;
+    private final ByteBuffer termValues;
+
+    /**
+     * Offset of the postings section in the file.
+     */
+    final long postingsOffset;
+
+    /**
+     * Ids of documents, created when they're needed.
+     */
+    private DocumentDictionary documentDictionary;
+
+    /**
+     * @param file Index file.
+     * @param header Header of the file.
+     * @param postingsCodec Codec of the postings.
+     * @param sections Buffers with the content of the sections of the file before the postings section.
+     * @throws IOException If the term dictionary is invalid.
+     */
+    FileInvertedIndex(File file, IndexFile.Header header, PostingsCodec postingsCodec, ByteBuffer[] sections) throws IOException {
+        this.file = file;
+        this.idfMode = header.idfMode;
+        this.postingsCodec = postingsCodec;
+        this.documentCount = header.documentCount;
+        this.statisticsDocumentCount = header.statisticsDocumentCount;
+        this.postingsOffset = header.sectionOffsets[IndexFile.SECTION_POSTINGS];
+
+        documents = sections[IndexFile.SECTION_DOCUMENTS];
+        documentIndex = sections[IndexFile.SECTION_DOCUMENT_INDEX].asIntBuffer();
+        norms = sections[IndexFile.SECTION_NORMS].asDoubleBuffer();
+        terms = IndexFile.readTermDictionary(header, sections[IndexFile.SECTION_TERMS]);
+        termValues = sections[IndexFile.SECTION_TERM_VALUES];
+    }
+
+    /**
+     * Returns posting list of a term from the postings section.
+     *
+     * @param term Term.
+     * @param offset Offset of the encoded postings in the postings section.
+     * @param length Length of the encoded postings in bytes.
+     * @param size Number of postings.
+     * @return Posting list.
+     */
+    abstract PostingList getPostings(String term, long offset, int length, int size);
+
+    /**
+     * Finds term in the dictionary.
+     *
+     * @param term Term.
+     * @return Position of the values of the term in the term values or -1 if the term is not indexed.
+     */
+    private int findTerm(String term) {
+        int termId = terms.getTermId(term);
+        return termId == TermDictionary.NOT_FOUND ? -1 : termId * IndexFile.TERM_VALUES_LENGTH;
+    }
+
+    private static String readString(ByteBuffer buffer, int offset) {
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset + 4);
+        duplicate.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public PostingList getPostingsForTerm(String term) {
+        int position = findTerm(term);
+        if (position < 0) {
+            return new PostingList(0);
+        }
+        return getPostings(term, termValues.getLong(position + TERM_POSTINGS_OFFSET), termValues.getInt(position + TERM_POSTINGS_LENGTH),
+                termValues.getInt(position + TERM_DOCUMENT_FREQUENCY));
+    }
+
+    @Override
+    public int documentFrequency(String term) {
+        int position = findTerm(term);
+        return position < 0 ? 0 : termValues.getInt(position + TERM_DOCUMENT_FREQUENCY);
+    }
+
+    @Override
+    public double idf(String term) {
+        if (idfMode == IdfMode.QUERY_TIME) {
+            int documentFrequency = documentFrequency(term);
+            return documentFrequency == 0 ? 0 : Math.log10(documentCount / (double) documentFrequency);
+        }
+        double idf = getStoredIdf(term);
+        return Double.isNaN(idf) ? 0 : idf;
+    }
+
+    @Override
+    public double maxScore(String term) {
+        double maxScore = getStoredMaxScore(term);
+        if (Double.isNaN(maxScore)) {
+            return 0;
+        }
+        return idfMode == IdfMode.QUERY_TIME ? maxScore * idf(term) : maxScore;
+    }
+
+    @Override
+    public double getTfIdfOfTermInDocument(String term, int documentOrdinal) {
+        int termFrequency = getPostingsForTerm(term).termFrequencyOf(documentOrdinal);
+        return termFrequency > 0 ? Posting.tfIdf(termFrequency, idf(term)) : 0;
+    }
+
+    @Override
+    public double getTfIdfNormForDocument(int documentOrdinal) {
+        if (documentOrdinal < 0 || documentOrdinal >= norms.limit()) {
+            return 0.0;
+        }
+        return norms.get(documentOrdinal);
+    }
+
+    @Override
+    public Map<String, Double> getDocumentTfIdf(String documentId) {
+        int documentOrdinal = getDocumentOrdinal(documentId);
+        if (documentOrdinal == DocumentDictionary.NOT_FOUND) {
+            return Collections.emptyMap();
+        }
+        Map<String, Double> docTfIdf = new HashMap<>();
+        for (String term : getTerms()) {
+            double tfIdf = getTfIdfOfTermInDocument(term, documentOrdinal);
+            if (tfIdf > 0) {
+                docTfIdf.put(term, tfIdf);
+            }
+        }
+        return docTfIdf;
+    }
+
+    @Override
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    @Override
+    public int getTermFrequency(String term, String documentId) {
+        int documentOrdinal = getDocumentOrdinal(documentId);
+        return documentOrdinal == DocumentDictionary.NOT_FOUND ? 0 : getPostingsForTerm(term).termFrequencyOf(documentOrdinal);
+    }
+
+    @Override
+    public boolean isIndexed(String documentId) {
+        return getDocumentDictionary().contains(documentId);
+    }
+
+    @Override
+    public int getDocumentOrdinal(String documentId) {
+        return getDocumentDictionary().getOrdinal(documentId);
+    }
+
+    @Override
+    public String getDocumentId(int documentOrdinal) {
+        return readString(documents, documentIndex.get(documentOrdinal));
+    }
+
+    /**
+     * Returns dictionary of all document ids, it's read from the file when it's needed for the first time.
+     *
+     * @return Document dictionary.
+     */
+    @Override
+    public synchronized DocumentDictionary getDocumentDictionary() {
+        if (documentDictionary == null) {
+            DocumentDictionary dictionary = new DocumentDictionary();
+            for (int i = 0; i < documentCount; i++) {
+                dictionary.add(getDocumentId(i));
+            }
+            documentDictionary = dictionary;
+        }
+        return documentDictionary;
+    }
+
+    @Override
+    public IdfMode getIdfMode() {
+        return idfMode;
+    }
+
+    /**
+     * Impacts are not stored in the index file.
+     *
+     * @return Null.
+     */
+    @Override
+    public ImpactPrecision getImpactPrecision() {
+        return null;
+    }
+
+    @Override
+    public Impacts getImpacts() {
+        return null;
+    }
+
+    @Override
+    public BlockMaxScores getBlockMaxScores(String term) {
+        return null;
+    }
+
+    @Override
+    public PostingsCodec getPostingsCodec() {
+        return postingsCodec;
+    }
+
+    /**
+     * Returns the term dictionary of the file.
+     *
+     * @return Term dictionary backed by the terms section.
+     */
+    @Override
+    public TermDictionary getTermDictionary() {
+        return terms;
+    }
+
+    /**
+     * Returns all terms in the order of the dictionary.
+     */
+    @Override
+    Set<String> getTerms() {
+        Set<String> allTerms = new LinkedHashSet<>(terms.size() * 4 / 3 + 1);
+        for (String term : terms) {
+            allTerms.add(term);
+        }
+        return allTerms;
+    }
+
+    @Override
+    double getStoredIdf(String term) {
+        int position = findTerm(term);
+        return position < 0 || idfMode == IdfMode.QUERY_TIME ? Double.NaN : termValues.getDouble(position + TERM_IDF);
+    }
+
+    @Override
+    double getStoredMaxScore(String term) {
+        int position = findTerm(term);
+        return position < 0 ? Double.NaN : termValues.getDouble(position + TERM_MAX_SCORE);
+    }
+
+    @Override
+    boolean isPending(String term) {
+        int position = findTerm(term);
+        return position >= 0 && (termValues.get(position + TERM_FLAGS) & IndexFile.TERM_PENDING) != 0;
+    }
+
+    @Override
+    double[] getDocumentNorms() {
+        double[] documentNorms = new double[norms.limit()];
+        norms.duplicate().get(documentNorms);
+        return documentNorms;
+    }
+
+    @Override
+    int getStatisticsDocumentCount() {
+        return statisticsDocumentCount;
+    }
+}
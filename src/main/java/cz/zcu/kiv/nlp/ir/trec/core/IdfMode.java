@@ -0,0 +1,22 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+/**
+ * When term IDFs are calculated and how document norms are weighted.
+ */
+public enum IdfMode {
+
+    /**
+     * IDFs and TF-IDF norms of documents are calculated by a full pass over the index after indexing
+     * ({@link InvertedIndex#recalculateTermIdfs()}, {@link InvertedIndex#recalculateDocumentTfIdfs()}).
+     */
+    INDEX_TIME,
+
+    /**
+     * IDFs are calculated from the live document frequencies whenever they're needed. Norms of documents are
+     * calculated from term frequencies only (1 + log tf, without IDF) when the document is indexed, so no pass
+     * over the whole index is needed. Document vectors are then weighted without IDF and only the query
+     * terms are weighted by IDF (lnc.ltc scheme). Impacts and block max scores are not used, they would
+     * depend on the IDF.
+     */
+    QUERY_TIME
+}
@@ -0,0 +1,99 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+/**
+ * How impacts (TF-IDF / norm of a term in a document) are stored. Impacts are components of a unit vector,
+ * so they are always in [0, 1] and can be quantized linearly. Every impact takes {@link #getBytes()} bytes.
+ */
+public enum ImpactPrecision {
+
+    /**
+     * Impact stored as 32 bit float.
+     */
+    FLOAT(32),
+
+    /**
+     * Impact quantized to 65536 levels. Error of a single impact is at most 0.0000077.
+     */
+    BITS_16(16),
+
+    /**
+     * Impact quantized to 256 levels. Error of a single impact is at most 0.002.
+     */
+    BITS_8(8);
+
+    private final int bits;
+
+    ImpactPrecision(int bits) {
+        this.bits = bits;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    public int getBytes() {
+        return bits / 8;
+    }
+
+    /**
+     * Encodes impact to an integer of {@link #getBits()} bits.
+     *
+     * @param impact Impact in [0, 1].
+     * @return Encoded impact.
+     */
+    public int encode(double impact) {
+        if (this == FLOAT) {
+            return Float.floatToIntBits((float) impact);
+        }
+        return (int) Math.round(Math.max(0, Math.min(1, impact)) * maxLevel());
+    }
+
+    /**
+     * Decodes impact encoded by {@link #encode(double)}.
+     *
+     * @param value Encoded impact.
+     * @return Impact.
+     */
+    public double decode(int value) {
+        if (this == FLOAT) {
+            return Float.intBitsToFloat(value);
+        }
+        return value / (double) maxLevel();
+    }
+
+    /**
+     * Reads impact from an array of impacts stored by {@link #set(byte[], int, double)}.
+     *
+     * @param impacts Encoded impacts, {@link #getBytes()} per impact.
+     * @param position Position of the impact.
+     * @return Impact.
+     */
+    public double get(byte[] impacts, int position) {
+        int offset = position * getBytes();
+        int value = 0;
+        for (int i = 0; i < getBytes(); i++) {
+            value = value << 8 | impacts[offset + i] & 0xff;
+        }
+        return decode(value);
+    }
+
+    /**
+     * Stores encoded impact to an array of impacts, big-endian.
+     *
+     * @param impacts Encoded impacts, {@link #getBytes()} per impact.
+     * @param position Position of the impact.
+     * @param impact Impact in [0, 1].
+     */
+    public void set(byte[] impacts, int position, double impact) {
+        int offset = position * getBytes();
+        int value = encode(impact);
+        for (int i = getBytes() - 1; i >= 0; i--) {
+            impacts[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private int maxLevel() {
+        return (1 << bits) - 1;
+    }
+}
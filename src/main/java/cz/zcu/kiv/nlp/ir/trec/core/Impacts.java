@@ -0,0 +1,115 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Precomputed impacts of all terms: for every posting the final TF-IDF divided by the norm of the document,
+ * so that cosine similarity of a document is a plain sum of impacts of query terms.
+ *
+ * Impacts of a term are a byte array with one impact of fixed length ({@link ImpactPrecision#getBytes()}) per posting,
+ * in the order of the term's postings. Impact of the current posting is read at {@link PostingsIterator#position()},
+ * so the documents are not stored again and quantized impacts take one or two bytes per posting.
+ */
+public class Impacts implements Serializable {
+
+    private final ImpactPrecision precision;
+
+    private final Map<String, byte[]> termImpacts;
+
+    private Impacts(ImpactPrecision precision, Map<String, byte[]> termImpacts) {
+        this.precision = precision;
+        this.termImpacts = termImpacts;
+    }
+
+    /**
+     * Calculates impacts of all postings of given terms. Term IDFs and document norms must be up to date.
+     *
+     * @param invertedIndex Index.
+     * @param terms Terms.
+     * @param postings Posting lists of the terms.
+     * @param precision How impacts are stored.
+     * @param pool Pool the terms are processed in or null to process them in the calling thread.
+     * @return Impacts.
+     */
+    static Impacts calculate(InvertedIndex invertedIndex, String[] terms, PostingList[] postings, ImpactPrecision precision, ForkJoinPool pool) {
+        byte[][] impacts = new byte[terms.length][];
+        ParallelRangeTask.forTerms(pool, postings, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                impacts[i] = calculate(invertedIndex, terms[i], postings[i], precision);
+            }
+        });
+
+        Map<String, byte[]> termImpacts = new HashMap<>(terms.length * 4 / 3 + 1);
+        for (int i = 0; i < terms.length; i++) {
+            termImpacts.put(terms[i], impacts[i]);
+        }
+        return new Impacts(precision, termImpacts);
+    }
+
+    private static byte[] calculate(InvertedIndex invertedIndex, String term, PostingList postings, ImpactPrecision precision) {
+        double idf = invertedIndex.idf(term);
+        byte[] impacts = new byte[postings.size() * precision.getBytes()];
+        PostingsIterator it = postings.iterator();
+        while (it.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+            double norm = invertedIndex.getTfIdfNormForDocument(it.docOrdinal());
+            double impact = norm > 0 ? Posting.tfIdf(it.termFrequency(), idf) / norm : 0;
+            precision.set(impacts, it.position(), impact);
+        }
+        return impacts;
+    }
+
+    /**
+     * Recalculates impacts of given terms, impacts of other terms are kept.
+     *
+     * @param invertedIndex Index.
+     * @param terms Terms.
+     * @param postings Posting lists of the terms.
+     */
+    void update(InvertedIndex invertedIndex, String[] terms, PostingList[] postings) {
+        for (int i = 0; i < terms.length; i++) {
+            termImpacts.put(terms[i], calculate(invertedIndex, terms[i], postings[i], precision));
+        }
+    }
+
+    public ImpactPrecision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Returns impacts of given term, impact of a posting is read by {@link #getImpact(byte[], int)}.
+     *
+     * @param term Term.
+     * @return Encoded impacts or null if the term is not indexed.
+     */
+    public byte[] getImpactsForTerm(String term) {
+        return termImpacts.get(term);
+    }
+
+    /**
+     * Returns impact of a posting. New postings are appended to the lists, so postings added after the impacts
+     * were calculated have no impacts yet and don't contribute to scores until the statistics are updated.
+     *
+     * @param impacts Impacts of the term returned by {@link #getImpactsForTerm(String)}.
+     * @param position Position of the posting in the term's posting list.
+     * @return Impact or 0 if the posting was added after the impacts were calculated.
+     */
+    public double getImpact(byte[] impacts, int position) {
+        return position < impacts.length / precision.getBytes() ? precision.get(impacts, position) : 0;
+    }
+
+    /**
+     * Size of impacts of all terms in bytes.
+     *
+     * @return Size in bytes.
+     */
+    public long sizeInBytes() {
+        long size = 0;
+        for (byte[] impacts : termImpacts.values()) {
+            size += impacts.length;
+        }
+        return size;
+    }
+}
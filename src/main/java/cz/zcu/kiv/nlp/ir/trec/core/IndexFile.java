@@ -0,0 +1,722 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.codec.PostingsCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary file format of {@link InvertedIndex}, used instead of Java serialization. The file consists of a header
+ * and six sections which are written and read sequentially through a buffered file channel:
+ *
+ * <ol>
+ *     <li>documents: ids of documents in the order of their ordinals,</li>
+ *     <li>document index: offset of every document id in the documents section,</li>
+ *     <li>norms: TF-IDF norms of documents,</li>
+ *     <li>terms: front-coded {@link TermDictionary} which assigns ids to terms sorted by their UTF-8 bytes,</li>
+ *     <li>term values: for every term in the order of term ids its document frequency, flags, stored IDF and max score
+ *     and the position of its postings in the postings section, all of fixed length,</li>
+ *     <li>postings: posting lists of all terms in the order of term ids, encoded by the codec of the index.</li>
+ * </ol>
+ *
+ * The document index, the term dictionary and the fixed-length term values allow {@link #map(File)} and
+ * {@link #open(File, long)} to find documents and terms in the file without loading the whole index.
+ *
+ * The header holds the format version, settings of the index and the offset, length and CRC32 checksum of every
+ * section. The header itself is protected by a checksum too. Since the offsets and checksums are known only after
+ * the sections are written, space for the header is reserved first and the header is written when the rest of
+ * the file is complete. The file is written to a temporary file next to the target which replaces the target only
+ * when it's complete, so a failed write never leaves a truncated index behind.
+ *
+ * Impacts and block max scores are not stored, they're calculated from the stored IDFs and norms when the index
+ * is read, so scores of the read index are exactly the same as of the written one.
+ *
+ * All numbers are big-endian, strings are UTF-8 prefixed by their length in bytes.
+ */
+public class IndexFile {
+
+    private static Logger log = LoggerFactory.getLogger(IndexFile.class);
+
+    /**
+     * First bytes of the file: "TRIX".
+     */
+    public static final int MAGIC = 0x54524958;
+
+    public static final int VERSION = 3;
+
+    static final int SECTION_DOCUMENTS = 0;
+    static final int SECTION_DOCUMENT_INDEX = 1;
+    static final int SECTION_NORMS = 2;
+    static final int SECTION_TERMS = 3;
+    static final int SECTION_TERM_VALUES = 4;
+    static final int SECTION_POSTINGS = 5;
+    static final int SECTION_COUNT = 6;
+
+    private static final String[] SECTION_NAMES = {"documents", "document index", "norms", "terms", "term values", "postings"};
+
+    /**
+     * Flags of the index in the header.
+     */
+    private static final int INDEX_HAS_IMPACTS = 1;
+
+    /**
+     * Flags of a term in the term values.
+     */
+    static final int TERM_PENDING = 1;
+
+    /**
+     * Length of the values of a term: document frequency, flags, IDF, max score, postings offset and length.
+     */
+    static final int TERM_VALUES_LENGTH = 4 + 1 + 8 + 8 + 8 + 4;
+
+    /**
+     * Marks null impact precision in the header.
+     */
+    private static final byte NO_IMPACT_PRECISION = -1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private IndexFile() {
+    }
+
+    /**
+     * Writes the index to file. Existing file is atomically replaced once the new one is written and synced
+     * to disk, until then it stays untouched.
+     *
+     * @param invertedIndex Index to be written.
+     * @param file Target file.
+     * @throws IOException If the file can't be written.
+     */
+    public static void write(SearchableIndex invertedIndex, File file) throws IOException {
+        long start = System.nanoTime();
+        PostingsCodec codec = invertedIndex.getPostingsCodec();
+        TermDictionary terms = invertedIndex.getTermDictionary();
+        int documentCount = invertedIndex.getDocumentCount();
+        double[] norms = invertedIndex.getDocumentNorms();
+
+        // same directory, so that the file can be renamed to the target
+        Path target = file.toPath().toAbsolutePath();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        boolean written = false;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Header header = new Header();
+            header.documentCount = documentCount;
+            header.termCount = terms.size();
+            header.normCount = norms.length;
+            header.statisticsDocumentCount = invertedIndex.getStatisticsDocumentCount();
+            header.idfMode = invertedIndex.getIdfMode();
+            header.impactPrecision = invertedIndex.getImpactPrecision();
+            header.flags = invertedIndex.getImpacts() != null ? INDEX_HAS_IMPACTS : 0;
+            header.codecName = codec.getName();
+
+            // space for the header, it's written when offsets and checksums of the sections are known
+            channel.position(header.toBuffer().remaining());
+            SectionWriter out = new SectionWriter(channel);
+
+            int[] documentOffsets = new int[documentCount];
+            out.beginSection();
+            for (int i = 0; i < documentCount; i++) {
+                documentOffsets[i] = out.getSectionPosition();
+                out.putString(invertedIndex.getDocumentId(i));
+            }
+            out.endSection(header, SECTION_DOCUMENTS);
+
+            out.beginSection();
+            for (int documentOffset : documentOffsets) {
+                out.putInt(documentOffset);
+            }
+            out.endSection(header, SECTION_DOCUMENT_INDEX);
+
+            out.beginSection();
+            for (double norm : norms) {
+                out.putDouble(norm);
+            }
+            out.endSection(header, SECTION_NORMS);
+
+            out.beginSection();
+            out.putBytes(terms.getBuffer());
+            out.endSection(header, SECTION_TERMS);
+
+            // postings are encoded twice if they're not encoded by the index's codec already, once here
+            // to learn their lengths and once when they're written, but it's better than keeping them all in memory
+            out.beginSection();
+            long postingsOffset = 0;
+            for (String term : terms) {
+                PostingList postings = invertedIndex.getPostingsForTerm(term);
+                int length = postings.getEncodedPostings(codec).length;
+                out.putInt(postings.size());
+                out.putByte(invertedIndex.isPending(term) ? TERM_PENDING : 0);
+                out.putDouble(invertedIndex.getStoredIdf(term));
+                out.putDouble(invertedIndex.getStoredMaxScore(term));
+                out.putLong(postingsOffset);
+                out.putInt(length);
+                postingsOffset += length;
+            }
+            out.endSection(header, SECTION_TERM_VALUES);
+
+            out.beginSection();
+            for (String term : terms) {
+                out.putBytes(invertedIndex.getPostingsForTerm(term).getEncodedPostings(codec));
+            }
+            out.endSection(header, SECTION_POSTINGS);
+
+            ByteBuffer headerBuffer = header.toBuffer();
+            while (headerBuffer.hasRemaining()) {
+                channel.write(headerBuffer, headerBuffer.position());
+            }
+            channel.force(false);
+            channel.close();
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            written = true;
+        } finally {
+            if (!written) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        log.info("Index with {} documents and {} terms written to {} in {} ms.", documentCount, terms.size(),
+                file.getPath(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Reads index from file. Checksums of all sections are verified.
+     *
+     * @param file Source file.
+     * @return Read index with compressed postings and the statistics as they were when the index was written.
+     * @throws IOException If the file can't be read, it's not an index file, it was written by unsupported
+     *                     version or it's corrupted.
+     */
+    public static InvertedIndex read(File file) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Header header = Header.read(channel);
+            if (channel.size() != header.getFileLength()) {
+                throw new IOException("Index file " + file.getPath() + " is truncated or has trailing bytes!");
+            }
+            PostingsCodec codec = codecOf(header);
+            InvertedIndex invertedIndex = new InvertedIndex(header.idfMode, header.impactPrecision, codec);
+            SectionReader in = new SectionReader(channel);
+
+            in.beginSection();
+            DocumentDictionary documentDictionary = new DocumentDictionary();
+            for (int i = 0; i < header.documentCount; i++) {
+                if (documentDictionary.add(in.getString()) != i) {
+                    throw new IOException("Duplicate document id in index file!");
+                }
+            }
+            in.endSection(header, SECTION_DOCUMENTS);
+
+            // offsets are needed only by the mapped index
+            in.beginSection();
+            in.skip(header.sectionLengths[SECTION_DOCUMENT_INDEX]);
+            in.endSection(header, SECTION_DOCUMENT_INDEX);
+
+            in.beginSection();
+            double[] norms = new double[header.normCount];
+            for (int i = 0; i < norms.length; i++) {
+                norms[i] = in.getDouble();
+            }
+            in.endSection(header, SECTION_NORMS);
+            invertedIndex.restoreDocuments(documentDictionary, norms, header.statisticsDocumentCount);
+
+            in.beginSection();
+            if (header.sectionLengths[SECTION_TERMS] > Integer.MAX_VALUE) {
+                throw new IOException("Section " + SECTION_NAMES[SECTION_TERMS] + " of index file is too large to be read to memory!");
+            }
+            byte[] dictionary = new byte[(int) header.sectionLengths[SECTION_TERMS]];
+            in.getBytes(dictionary);
+            in.endSection(header, SECTION_TERMS);
+            String[] terms = new String[header.termCount];
+            int termId = 0;
+            for (String term : readTermDictionary(header, ByteBuffer.wrap(dictionary))) {
+                terms[termId++] = term;
+            }
+
+            in.beginSection();
+            int[] sizes = new int[terms.length];
+            int[] lengths = new int[terms.length];
+            byte[] flags = new byte[terms.length];
+            double[] idfs = new double[terms.length];
+            double[] maxScores = new double[terms.length];
+            long postingsOffset = 0;
+            for (int i = 0; i < terms.length; i++) {
+                sizes[i] = in.getInt();
+                flags[i] = in.getByte();
+                idfs[i] = in.getDouble();
+                maxScores[i] = in.getDouble();
+                if (in.getLong() != postingsOffset) {
+                    throw new IOException("Postings of term " + terms[i] + " are not where they are expected!");
+                }
+                lengths[i] = in.getInt();
+                postingsOffset += lengths[i];
+            }
+            in.endSection(header, SECTION_TERM_VALUES);
+
+            in.beginSection();
+            for (int i = 0; i < terms.length; i++) {
+                byte[] encodedPostings = new byte[lengths[i]];
+                in.getBytes(encodedPostings);
+                invertedIndex.restoreTerm(terms[i], PostingList.encoded(encodedPostings, sizes[i], codec),
+                        idfs[i], maxScores[i], (flags[i] & TERM_PENDING) != 0);
+            }
+            in.endSection(header, SECTION_POSTINGS);
+
+            invertedIndex.restoreDerivedStatistics((header.flags & INDEX_HAS_IMPACTS) != 0);
+            invertedIndex.compressPostings();
+            log.info("Index with {} documents and {} terms read from {} in {} ms.", header.documentCount, terms.length,
+                    file.getPath(), (System.nanoTime() - start) / 1_000_000);
+            return invertedIndex;
+        }
+    }
+
+    /**
+     * Maps the index file to memory. Only the header of the file is read and checked, checksums of the sections
+     * are not verified as that would require reading the whole file.
+     *
+     * @param file Index file.
+     * @return Read-only index backed by the mapped file.
+     * @throws IOException If the file can't be mapped, it's not an index file or it was written by unsupported version.
+     */
+    public static MappedInvertedIndex map(File file) throws IOException {
+        return map(file, MappedInvertedIndex.SEGMENT_SIZE);
+    }
+
+    /**
+     * Maps the index file to memory with postings mapped in segments of given size.
+     *
+     * @param file Index file.
+     * @param segmentSize Size of the mapped segments of the postings section, see {@link MappedInvertedIndex}.
+     * @return Read-only index backed by the mapped file.
+     * @throws IOException If the file can't be mapped, it's not an index file or it was written by unsupported version.
+     */
+    public static MappedInvertedIndex map(File file, int segmentSize) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Header header = Header.read(channel);
+            if (channel.size() != header.getFileLength()) {
+                throw new IOException("Index file " + file.getPath() + " is truncated or has trailing bytes!");
+            }
+            MappedInvertedIndex invertedIndex = new MappedInvertedIndex(file, channel, header, codecOf(header), segmentSize);
+            log.info("Index with {} documents and {} terms mapped from {} in {} ms.", header.documentCount, header.termCount,
+                    file.getPath(), (System.nanoTime() - start) / 1_000_000);
+            return invertedIndex;
+        }
+    }
+
+    /**
+     * Opens the index file with the term dictionary in memory and posting lists read from the file when they're needed.
+     * Checksums of all sections except the postings are verified.
+     *
+     * @param file Index file.
+     * @param cacheSize Max size of decoded posting lists cached in memory in bytes.
+     * @return Read-only index backed by the file, it must be closed when it's no longer used.
+     * @throws IOException If the file can't be read, it's not an index file, it was written by unsupported version
+     *                     or it's corrupted.
+     */
+    public static LazyInvertedIndex open(File file, long cacheSize) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Header header = Header.read(channel);
+            if (channel.size() != header.getFileLength()) {
+                throw new IOException("Index file " + file.getPath() + " is truncated or has trailing bytes!");
+            }
+
+            SectionReader in = new SectionReader(channel);
+            ByteBuffer[] sections = new ByteBuffer[SECTION_POSTINGS];
+            for (int i = 0; i < sections.length; i++) {
+                if (header.sectionLengths[i] > Integer.MAX_VALUE) {
+                    throw new IOException("Section " + SECTION_NAMES[i] + " of index file is too large to be read to memory!");
+                }
+                byte[] section = new byte[(int) header.sectionLengths[i]];
+                in.beginSection();
+                in.getBytes(section);
+                in.endSection(header, i);
+                sections[i] = ByteBuffer.wrap(section);
+            }
+
+            LazyInvertedIndex invertedIndex = new LazyInvertedIndex(file, header, codecOf(header), sections, cacheSize);
+            log.info("Index with {} documents and {} terms opened from {} in {} ms.", header.documentCount, header.termCount,
+                    file.getPath(), (System.nanoTime() - start) / 1_000_000);
+            return invertedIndex;
+        }
+    }
+
+    private static PostingsCodec codecOf(Header header) throws IOException {
+        try {
+            return PostingsCodec.forName(header.codecName);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Index file is encoded by unknown codec: " + header.codecName + "!", e);
+        }
+    }
+
+    /**
+     * Wraps the terms section and checks that it holds as many terms as the header says.
+     *
+     * @param header Header of the file.
+     * @param section Content of the terms section.
+     * @return Term dictionary backed by the section.
+     * @throws IOException If the section doesn't hold a valid dictionary.
+     */
+    static TermDictionary readTermDictionary(Header header, ByteBuffer section) throws IOException {
+        TermDictionary dictionary;
+        try {
+            dictionary = new TermDictionary(section);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid term dictionary in index file!", e);
+        }
+        if (dictionary.size() != header.termCount) {
+            throw new IOException("Term dictionary of index file has " + dictionary.size() + " terms, expected "
+                    + header.termCount + "!");
+        } else if (header.sectionLengths[SECTION_TERM_VALUES] != (long) header.termCount * TERM_VALUES_LENGTH) {
+            throw new IOException("Section " + SECTION_NAMES[SECTION_TERM_VALUES] + " of index file has unexpected length!");
+        }
+        return dictionary;
+    }
+
+    /**
+     * Header of the file.
+     */
+    static class Header {
+
+        /**
+         * Length of the fixed part of the header: magic, version and header length.
+         */
+        private static final int PREFIX_LENGTH = 12;
+
+        int documentCount;
+        int termCount;
+        int normCount;
+        int statisticsDocumentCount;
+        IdfMode idfMode;
+        ImpactPrecision impactPrecision;
+        int flags;
+        String codecName;
+
+        final long[] sectionOffsets = new long[SECTION_COUNT];
+        final long[] sectionLengths = new long[SECTION_COUNT];
+        final int[] sectionChecksums = new int[SECTION_COUNT];
+
+        long getFileLength() {
+            return sectionOffsets[SECTION_COUNT - 1] + sectionLengths[SECTION_COUNT - 1];
+        }
+
+        ByteBuffer toBuffer() {
+            byte[] codecNameBytes = codecName.getBytes(StandardCharsets.UTF_8);
+            int length = PREFIX_LENGTH + 4 * 4 + 3 + 4 + codecNameBytes.length + SECTION_COUNT * (8 + 8 + 4) + 4;
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(length);
+            buffer.putInt(documentCount);
+            buffer.putInt(termCount);
+            buffer.putInt(normCount);
+            buffer.putInt(statisticsDocumentCount);
+            buffer.put((byte) idfMode.ordinal());
+            buffer.put(impactPrecision == null ? NO_IMPACT_PRECISION : (byte) impactPrecision.ordinal());
+            buffer.put((byte) flags);
+            buffer.putInt(codecNameBytes.length);
+            buffer.put(codecNameBytes);
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                buffer.putLong(sectionOffsets[i]);
+                buffer.putLong(sectionLengths[i]);
+                buffer.putInt(sectionChecksums[i]);
+            }
+            buffer.putInt(checksum(buffer.array(), length - 4));
+            buffer.flip();
+            return buffer;
+        }
+
+        static Header read(FileChannel channel) throws IOException {
+            ByteBuffer prefix = ByteBuffer.allocate(PREFIX_LENGTH);
+            readFully(channel, prefix);
+            if (prefix.getInt() != MAGIC) {
+                throw new IOException("Not an index file!");
+            }
+            int version = prefix.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version of index file: " + version + ", expected " + VERSION + "!");
+            }
+            int length = prefix.getInt();
+            if (length < PREFIX_LENGTH + 4 || length > BUFFER_SIZE) {
+                throw new IOException("Invalid length of index file header: " + length + "!");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            buffer.put(prefix.array());
+            readFully(channel, buffer);
+            buffer.position(length - 4);
+            if (buffer.getInt() != checksum(buffer.array(), length - 4)) {
+                throw new IOException("Checksum of index file header doesn't match, the file is corrupted!");
+            }
+
+            try {
+                buffer.position(PREFIX_LENGTH);
+                Header header = new Header();
+                header.documentCount = buffer.getInt();
+                header.termCount = buffer.getInt();
+                header.normCount = buffer.getInt();
+                header.statisticsDocumentCount = buffer.getInt();
+                header.idfMode = IdfMode.values()[buffer.get()];
+                byte impactPrecision = buffer.get();
+                header.impactPrecision = impactPrecision == NO_IMPACT_PRECISION ? null : ImpactPrecision.values()[impactPrecision];
+                header.flags = buffer.get();
+                byte[] codecName = new byte[buffer.getInt()];
+                buffer.get(codecName);
+                header.codecName = new String(codecName, StandardCharsets.UTF_8);
+                for (int i = 0; i < SECTION_COUNT; i++) {
+                    header.sectionOffsets[i] = buffer.getLong();
+                    header.sectionLengths[i] = buffer.getLong();
+                    header.sectionChecksums[i] = buffer.getInt();
+                }
+                if (header.documentCount < 0 || header.termCount < 0 || header.normCount < 0 || header.normCount > header.documentCount) {
+                    throw new IOException("Invalid counts of documents and terms in index file header!");
+                }
+                return header;
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid index file header!", e);
+            }
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of index file!");
+                }
+            }
+            buffer.flip();
+        }
+
+        private static int checksum(byte[] bytes, int length) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, length);
+            return (int) crc.getValue();
+        }
+    }
+
+    /**
+     * Writes sections through a buffer and calculates their checksums.
+     */
+    private static class SectionWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final CRC32 crc;
+
+        private long sectionOffset;
+
+        SectionWriter(FileChannel channel) {
+            this.channel = channel;
+            buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            crc = new CRC32();
+        }
+
+        void beginSection() throws IOException {
+            sectionOffset = channel.position() + buffer.position();
+            crc.reset();
+        }
+
+        /**
+         * Position of the next written byte relative to the beginning of the current section.
+         */
+        int getSectionPosition() throws IOException {
+            long position = channel.position() + buffer.position() - sectionOffset;
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException("Section of index file is too large!");
+            }
+            return (int) position;
+        }
+
+        void endSection(Header header, int section) throws IOException {
+            flush();
+            header.sectionOffsets[section] = sectionOffset;
+            header.sectionLengths[section] = channel.position() - sectionOffset;
+            header.sectionChecksums[section] = (int) crc.getValue();
+        }
+
+        void putByte(int value) throws IOException {
+            ensureRemaining(1);
+            buffer.put((byte) value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensureRemaining(8);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensureRemaining(8);
+            buffer.putDouble(value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            putBytes(bytes);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensureRemaining(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void putBytes(ByteBuffer bytes) throws IOException {
+            ByteBuffer remaining = bytes.duplicate();
+            while (remaining.hasRemaining()) {
+                ensureRemaining(1);
+                int limit = remaining.limit();
+                remaining.limit(remaining.position() + Math.min(buffer.remaining(), remaining.remaining()));
+                buffer.put(remaining);
+                remaining.limit(limit);
+            }
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads sections through a buffer and verifies their checksums.
+     */
+    private static class SectionReader {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final CRC32 crc;
+
+        /**
+         * Position in the buffer up to which the read bytes were added to the checksum.
+         */
+        private int checksumPosition;
+        private long sectionOffset;
+
+        SectionReader(FileChannel channel) {
+            this.channel = channel;
+            buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.flip();
+            crc = new CRC32();
+        }
+
+        void beginSection() throws IOException {
+            sectionOffset = position();
+            crc.reset();
+        }
+
+        void endSection(Header header, int section) throws IOException {
+            updateChecksum();
+            if (sectionOffset != header.sectionOffsets[section] || position() - sectionOffset != header.sectionLengths[section]) {
+                throw new IOException("Section " + SECTION_NAMES[section] + " of index file has unexpected length!");
+            } else if ((int) crc.getValue() != header.sectionChecksums[section]) {
+                throw new IOException("Checksum of section " + SECTION_NAMES[section] + " doesn't match, the index file is corrupted!");
+            }
+        }
+
+        byte getByte() throws IOException {
+            ensureRemaining(1);
+            return buffer.get();
+        }
+
+        int getInt() throws IOException {
+            ensureRemaining(4);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensureRemaining(8);
+            return buffer.getLong();
+        }
+
+        double getDouble() throws IOException {
+            ensureRemaining(8);
+            return buffer.getDouble();
+        }
+
+        String getString() throws IOException {
+            int length = getInt();
+            if (length < 0 || length > BUFFER_SIZE) {
+                throw new IOException("Invalid length of string in index file: " + length + "!");
+            }
+            byte[] bytes = new byte[length];
+            getBytes(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void getBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensureRemaining(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void skip(long bytes) throws IOException {
+            while (bytes > 0) {
+                ensureRemaining(1);
+                int length = (int) Math.min(buffer.remaining(), bytes);
+                buffer.position(buffer.position() + length);
+                bytes -= length;
+            }
+        }
+
+        /**
+         * Position of the next byte to be read in the file.
+         */
+        private long position() throws IOException {
+            return channel.position() - buffer.remaining();
+        }
+
+        private void updateChecksum() {
+            crc.update(buffer.array(), checksumPosition, buffer.position() - checksumPosition);
+            checksumPosition = buffer.position();
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            updateChecksum();
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of index file!");
+                }
+            }
+            buffer.flip();
+            checksumPosition = 0;
+        }
+    }
+}
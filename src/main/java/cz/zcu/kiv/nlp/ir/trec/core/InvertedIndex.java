@@ -1,471 +1,907 @@
 package cz.zcu.kiv.nlp.ir.trec.core;
 
+import cz.zcu.kiv.nlp.ir.trec.core.bitmap.RoaringBitmap;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.PostingsCodec;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.VByteCodec;
 import org.apache.lucene.search.BooleanClause;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Wrapper for inverted index.
  */
-public class InvertedIndex implements Serializable{
+public class InvertedIndex extends SearchableIndex implements Serializable{
+
+    /**
+     * Relative growth of the document count since the last full recalculation of statistics after which
+     * {@link #updateStatistics()} recalculates all statistics again instead of updating them incrementally.
+     */
+    public static final double FULL_RECALCULATION_RATIO = 0.1;
 
     /**
      * Index which maps terms to postings.
-     * Each posting is mapped to document id for easier retrieval.
+     * Each posting list is sorted by document ordinal.
      */
-    private Map<String, Map<String,Posting>> invertedIndex;
+    private Map<String, PostingList> invertedIndex;
 
     /**
-     * Ids of indexed documents.
+     * Ids of indexed documents mapped to their ordinals.
      */
-    private Set<String> indexedDocuments;
+    private DocumentDictionary documentDictionary;
 
     /**
      * Inverted document frequencies of terms.
      */
     private Map<String, Double> termIdf;
 
+    /**
+     * Upper bound of the score contribution of each term: max TF-IDF / norm over the term's postings.
+     * Used to skip documents which can't get to top K results. In {@link IdfMode#QUERY_TIME} the bound
+     * is stored without IDF, see {@link #maxScore(String)}.
+     */
+    private Map<String, Double> termMaxScore;
+
+    /**
+     * Upper bounds of the score contributions of each term in blocks of its postings.
+     */
+    private Map<String, BlockMaxScores> termBlockMaxScores;
+
+    /**
+     * When IDFs are calculated.
+     */
+    private IdfMode idfMode;
+
+    /**
+     * Precision of impacts calculated by {@link #recalculateDocumentTfIdfs()}, null if impacts are not used.
+     */
+    private ImpactPrecision impactPrecision;
+
+    /**
+     * TF-IDF / norm of every posting, null if not calculated.
+     */
+    private Impacts impacts;
+
     /**
      * Size of TF-IDF vectors.
      *
-     * docId -> size
+     * document ordinal -> size
+     */
+    private double[] documentTfIdfNorms;
+
+    /**
+     * Number of documents at the time of the last full recalculation of statistics.
+     */
+    private int statisticsDocumentCount;
+
+    /**
+     * Terms whose postings changed since the statistics were last updated.
+     */
+    private Set<String> pendingTerms;
+
+    /**
+     * Codec used to compress posting lists.
+     */
+    private PostingsCodec postingsCodec;
+
+    /**
+     * Number of threads used to recalculate statistics, 0 for the common fork-join pool.
+     */
+    private transient int parallelism;
+
+    /**
+     * Pool used if the parallelism is set explicitly, created on demand and shut down when the parallelism changes.
+     */
+    private transient ForkJoinPool pool;
+
+    /**
+     * Bitmaps of terms created on demand for boolean queries. Dropped whenever new document is indexed.
      */
-    private Map<String, Double> documentTfIdfNorms;
+    private transient Map<String, RoaringBitmap> termBitmaps;
 
     /**
-     * Comparator which compares postings by document id hash.
-     * Must be serializable.
+     * Sorted dictionary of all terms created on demand. Dropped whenever new document is indexed.
      */
-    private Comparator<Posting> postingComparator;
+    private transient TermDictionary termDictionary;
 
     public InvertedIndex() {
         invertedIndex = new HashMap<>();
-        indexedDocuments = new HashSet<>();
-        postingComparator = new PostingsComparator();
+        documentDictionary = new DocumentDictionary();
         termIdf = new HashMap<>();
-        documentTfIdfNorms = new HashMap<>();
+        termMaxScore = new HashMap<>();
+        termBlockMaxScores = new HashMap<>();
+        idfMode = IdfMode.INDEX_TIME;
+        impactPrecision = ImpactPrecision.BITS_16;
+        documentTfIdfNorms = new double[0];
+        statisticsDocumentCount = 0;
+        pendingTerms = new HashSet<>();
+        postingsCodec = new VByteCodec();
     }
 
     /**
-     * Adds document to index.
+     * Adds document to index. In {@link IdfMode#QUERY_TIME} the norm of the document is calculated too.
      * @param tokens Text of the document to be indexed represented as preprocessed tokens.
      * @param documentId Id of the document to be indexed.
      */
     public void indexDocument(String[] tokens, String documentId) {
-        indexedDocuments.add(documentId);
+        int documentOrdinal = documentDictionary.add(documentId);
+        termBitmaps = null;
+        termDictionary = null;
 
         for(String token : tokens) {
-            Map<String, Posting> postingMap;
-            if (!invertedIndex.containsKey(token)) {
-                postingMap = new HashMap<>();
-                invertedIndex.put(token, postingMap);
-            } else {
-                postingMap = invertedIndex.get(token);
+            PostingList postingList = invertedIndex.get(token);
+            if (postingList == null) {
+                postingList = new PostingList();
+                invertedIndex.put(token, postingList);
             }
 
-            if (!postingMap.containsKey(documentId)) {
-                postingMap.put(documentId, new Posting(documentId));
-            } else {
-                postingMap.get(documentId).incrementTermFrequency();
-            }
+            postingList.addOccurrence(documentOrdinal);
+            pendingTerms.add(token);
+        }
+
+        if (getIdfMode() == IdfMode.QUERY_TIME) {
+            pendingTerms.clear();
+            indexTermFrequencyNorm(tokens, documentOrdinal);
         }
     }
 
     /**
-     * Recalculates inversed DF of terms.
+     * Calculates norm of a new document from its term frequencies and updates max score contributions
+     * (without IDF) of its terms. Used in {@link IdfMode#QUERY_TIME}.
+     *
+     * @param tokens Tokens of the document.
+     * @param documentOrdinal Ordinal of the document.
      */
-    public void recalculateTermIdfs() {
-        for(String term : invertedIndex.keySet()) {
-            double idf = invertedIndex.get(term).size();
-            idf = Math.log10(getDocumentCount() / idf);
+    private void indexTermFrequencyNorm(String[] tokens, int documentOrdinal) {
+        Map<String, Integer> termFrequencies = termFrequencies(tokens);
+        double norm = termFrequencyNorm(termFrequencies.values());
 
-            termIdf.put(term, idf);
+        if (documentOrdinal >= documentTfIdfNorms.length) {
+            // grow by doubling, norms of not yet indexed documents stay 0
+            documentTfIdfNorms = Arrays.copyOf(documentTfIdfNorms, Math.max(documentOrdinal + 1, documentTfIdfNorms.length * 2));
         }
+        documentTfIdfNorms[documentOrdinal] = norm;
+
+        for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+            termMaxScore.merge(entry.getKey(), Posting.tfIdf(entry.getValue(), 1) / norm, Math::max);
+        }
+    }
+
+    static Map<String, Integer> termFrequencies(String[] tokens) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        for (String token : tokens) {
+            termFrequencies.merge(token, 1, Integer::sum);
+        }
+        return termFrequencies;
     }
 
     /**
-     * Recalculates TF-IDF for all terms and documents.
-     * Assumes term IDF was already calculated.
+     * Norm of a document vector weighted without IDF, used in {@link IdfMode#QUERY_TIME}.
+     *
+     * @param termFrequencies Frequencies of the terms of the document.
+     * @return Norm.
      */
-    public void recalculateDocumentTfIdfs() {
-        for(String term : invertedIndex.keySet()) {
-            for(Posting p : invertedIndex.get(term).values()) {
-                p.recalculateTfIdf(termIdf.get(term));
+    static double termFrequencyNorm(Collection<Integer> termFrequencies) {
+        double norm = 0;
+        for (int termFrequency : termFrequencies) {
+            double weight = Posting.tfIdf(termFrequency, 1);
+            norm += weight*weight;
+        }
+        return Math.sqrt(norm);
+    }
 
-                // add tf-idf of current term and document to document norm
-                if (!documentTfIdfNorms.containsKey(p.getDocumentId())) {
-                    documentTfIdfNorms.put(p.getDocumentId(), 0.0);
-                }
+    /**
+     * Creates partial index for one thread of parallel indexing.
+     *
+     * @return Empty partial index.
+     */
+    public PartialIndex createPartialIndex() {
+        return new PartialIndex(getIdfMode() == IdfMode.QUERY_TIME);
+    }
 
-                double currentTfIdf = documentTfIdfNorms.get(p.getDocumentId());
-                documentTfIdfNorms.put(p.getDocumentId(),currentTfIdf + p.getTfIdf()*p.getTfIdf());
+    /**
+     * Assigns ordinals to documents which will be indexed by partial indexes. The documents have no postings
+     * until the partial indexes are merged by {@link #merge(List)}.
+     *
+     * @param documentIds Ids of the documents.
+     * @return Ordinal of the first document, the others follow in the order of the list.
+     * @throws IllegalArgumentException If some of the documents is already indexed or is in the list twice.
+     */
+    public int reserveDocuments(List<String> documentIds) {
+        Set<String> ids = new HashSet<>(documentIds.size() * 4 / 3 + 1);
+        for (String documentId : documentIds) {
+            if (documentDictionary.contains(documentId) || !ids.add(documentId)) {
+                throw new IllegalArgumentException("Document with id " + documentId + " is already indexed!");
             }
         }
 
-        // sqrt(sumsqr) for each document
-        for(Map.Entry<String, Double> entry : documentTfIdfNorms.entrySet()) {
-            double tfIdfNorm = entry.getValue();
-            tfIdfNorm = Math.sqrt(tfIdfNorm);
-            documentTfIdfNorms.put(entry.getKey(), tfIdfNorm);
+        int firstOrdinal = getDocumentCount();
+        for (String documentId : documentIds) {
+            documentDictionary.add(documentId);
         }
+        return firstOrdinal;
     }
 
     /**
-     * Returns tf-idf for given term-document combination.
-     * @param term Term.
-     * @param docId Id of document.
-     * @return TF-IDF for given document-term or 0 if such combination is not indexed.
+     * Merges postings of partial indexes into this index. Postings of each term are merged by a k-way merge
+     * of its lists from all partial indexes and appended to its existing postings. Terms are merged in parallel,
+     * see {@link #setParallelism(int)}.
+     *
+     * Documents of the partial indexes must have been reserved by {@link #reserveDocuments(List)}. Statistics
+     * have to be updated afterwards same as after {@link #indexDocument(String[], String)}.
+     *
+     * @param partialIndexes Partial indexes with disjoint sets of documents.
      */
-    public double getTfIdfOfTermInDocument(String term, String docId) {
-        if (invertedIndex.containsKey(term) && invertedIndex.get(term).containsKey(docId)) {
-            return invertedIndex.get(term).get(docId).getTfIdf();
-        } else {
-            return 0;
+    public void merge(List<PartialIndex> partialIndexes) {
+        termBitmaps = null;
+        termDictionary = null;
+
+        Map<String, List<PostingList>> termParts = new HashMap<>();
+        for (PartialIndex partialIndex : partialIndexes) {
+            for (Map.Entry<String, PostingList> entry : partialIndex.getPostings().entrySet()) {
+                termParts.computeIfAbsent(entry.getKey(), term -> new ArrayList<>(partialIndexes.size())).add(entry.getValue());
+            }
+        }
+
+        String[] terms = termParts.keySet().toArray(new String[0]);
+        long[] weights = new long[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            for (PostingList part : termParts.get(terms[i])) {
+                weights[i] += part.size();
+            }
+        }
+        PostingList[] merged = new PostingList[terms.length];
+        ParallelRangeTask.forWeights(getPool(), weights, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                merged[i] = mergePostings(invertedIndex.get(terms[i]), termParts.get(terms[i]));
+            }
+        });
+        for (int i = 0; i < terms.length; i++) {
+            invertedIndex.put(terms[i], merged[i]);
+            pendingTerms.add(terms[i]);
+        }
+
+        if (getIdfMode() == IdfMode.QUERY_TIME) {
+            pendingTerms.clear();
+            if (documentTfIdfNorms.length < getDocumentCount()) {
+                documentTfIdfNorms = Arrays.copyOf(documentTfIdfNorms, getDocumentCount());
+            }
+            for (PartialIndex partialIndex : partialIndexes) {
+                partialIndex.copyNormsTo(documentTfIdfNorms);
+                for (Map.Entry<String, Double> entry : partialIndex.getTermMaxScores().entrySet()) {
+                    termMaxScore.merge(entry.getKey(), entry.getValue(), Math::max);
+                }
+            }
         }
     }
 
     /**
-     * Returns the
-     * @param docId
-     * @return
+     * Appends postings of all parts to the existing postings of a term. Parts are merged by a k-way merge,
+     * documents of the parts follow the documents of the existing postings.
+     *
+     * @param postingList Existing postings or null.
+     * @param parts Postings from partial indexes.
+     * @return Merged postings.
      */
-    public double getTfIdfNormForDocument(String docId) {
-        if (!documentTfIdfNorms.containsKey(docId)) {
-            return 0.0;
+    private static PostingList mergePostings(PostingList postingList, List<PostingList> parts) {
+        if (postingList == null && parts.size() == 1) {
+            return parts.get(0);
+        }
+
+        int size = postingList == null ? 0 : postingList.size();
+        for (PostingList part : parts) {
+            size += part.size();
+        }
+        PostingList res = new PostingList(size);
+        if (postingList != null) {
+            PostingsIterator it = postingList.iterator();
+            while (it.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                res.add(it.docOrdinal(), it.termFrequency());
+            }
+        }
+
+        // min-heap of iterators ordered by their current document
+        PostingsIterator[] heap = new PostingsIterator[parts.size()];
+        int heapSize = 0;
+        for (PostingList part : parts) {
+            PostingsIterator it = part.iterator();
+            if (it.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                heap[heapSize++] = it;
+            }
         }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(heap, i, heapSize);
+        }
+        while (heapSize > 0) {
+            PostingsIterator top = heap[0];
+            res.add(top.docOrdinal(), top.termFrequency());
+            if (top.nextDoc() == PostingsIterator.NO_MORE_DOCS) {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(heap, 0, heapSize);
+        }
+        return res;
+    }
 
-        return documentTfIdfNorms.get(docId);
+    private static void siftDown(PostingsIterator[] heap, int i, int size) {
+        PostingsIterator it = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1].docOrdinal() < heap[child].docOrdinal()) {
+                child++;
+            }
+            if (it.docOrdinal() <= heap[child].docOrdinal()) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = it;
     }
 
     /**
-     * Returns TF-IDF vector for given document.
-     * @param documentId Id of document.
-     * @return term -> TF-IDF map.
+     * Recalculates inversed DF of terms. Does nothing in {@link IdfMode#QUERY_TIME}, IDFs are calculated when they're needed.
+     * Terms are processed in parallel, see {@link #setParallelism(int)}.
      */
-    public Map<String, Double> getDocumentTfIdf(String documentId) {
-        if (!indexedDocuments.contains(documentId)) {
-            return Collections.emptyMap();
+    public void recalculateTermIdfs() {
+        if (getIdfMode() == IdfMode.QUERY_TIME) {
+            return;
         }
-        Map<String, Double> docTfIdf = new HashMap<>();
+        String[] terms = invertedIndex.keySet().toArray(new String[0]);
+        PostingList[] postings = postingsOf(terms);
+        double documentCount = getDocumentCount();
+        double[] idfs = new double[terms.length];
+        ParallelRangeTask.forRange(getPool(), terms.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                idfs[i] = Math.log10(documentCount / postings[i].size());
+            }
+        });
 
+        for (int i = 0; i < terms.length; i++) {
+            termIdf.put(terms[i], idfs[i]);
+        }
+    }
 
-        for(String term : invertedIndex.keySet()) {
-            if (invertedIndex.get(term).containsKey(documentId)) {
-                docTfIdf.put(term, invertedIndex.get(term).get(documentId).getTfIdf());
+    /**
+     * Recalculates TF-IDF norms for all documents, impacts of all postings and max score contributions of all terms.
+     * Assumes term IDF was already calculated.
+     *
+     * TF-IDF of a single term-document pair is derived from the term frequency and term IDF
+     * whenever it's needed, so postings themselves are not rewritten.
+     *
+     * Terms are split among threads of a fork-join pool (see {@link #setParallelism(int)}). Every thread adds
+     * contributions of its terms to its own array of norms, the arrays are summed when all terms are processed.
+     *
+     * In {@link IdfMode#QUERY_TIME} the norms are calculated without IDF and impacts and block max scores
+     * are not calculated. The norms are already calculated during indexing in this mode, so calling this is not needed.
+     */
+    public void recalculateDocumentTfIdfs() {
+        boolean queryTimeIdf = getIdfMode() == IdfMode.QUERY_TIME;
+        ForkJoinPool pool = getPool();
+        String[] terms = invertedIndex.keySet().toArray(new String[0]);
+        PostingList[] postings = postingsOf(terms);
+        int documentCount = getDocumentCount();
+
+        // not a ThreadLocal, the arrays would stay referenced by the pool threads
+        Map<Thread, double[]> threadNorms = new ConcurrentHashMap<>();
+        ParallelRangeTask.forTerms(pool, postings, (from, to) -> {
+            double[] norms = threadNorms.computeIfAbsent(Thread.currentThread(), thread -> new double[documentCount]);
+            for (int i = from; i < to; i++) {
+                double idf = queryTimeIdf ? 1 : idf(terms[i]);
+                PostingsIterator it = postings[i].iterator();
+                while (it.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                    double tfIdf = Posting.tfIdf(it.termFrequency(), idf);
+
+                    // add tf-idf of current term and document to document norm
+                    norms[it.docOrdinal()] += tfIdf*tfIdf;
+                }
+            }
+        });
+
+        // sum the threads' norms and sqrt(sumsqr) for each document
+        List<double[]> accumulators = new ArrayList<>(threadNorms.values());
+        double[] norms = accumulators.isEmpty() ? new double[documentCount] : accumulators.get(0);
+        ParallelRangeTask.forRange(pool, documentCount, (from, to) -> {
+            for (int a = 1; a < accumulators.size(); a++) {
+                double[] other = accumulators.get(a);
+                for (int i = from; i < to; i++) {
+                    norms[i] += other[i];
+                }
+            }
+            for (int i = from; i < to; i++) {
+                norms[i] = Math.sqrt(norms[i]);
             }
+        });
+        documentTfIdfNorms = norms;
+
+        impacts = impactPrecision == null || queryTimeIdf ? null : Impacts.calculate(this, terms, postings, impactPrecision, pool);
+        recalculateTermMaxScores(terms, postings, pool);
+        if (queryTimeIdf) {
+            // new documents would not be covered by the blocks
+            termBlockMaxScores.clear();
         }
 
-        return docTfIdf;
+        statisticsDocumentCount = norms.length;
+        pendingTerms = new HashSet<>();
     }
 
     /**
-     * Returns number of indexed documents.
-     * @return
+     * Brings term IDFs, document norms, impacts and max scores up to date after new documents were indexed.
+     *
+     * Only the statistics touched by the new documents are recalculated: IDFs, impacts and max scores of their
+     * terms and norms of the new documents. Other terms keep their IDFs and other documents keep their norms
+     * from the time they were calculated, so the cost is proportional to the postings of the new terms and
+     * not to the size of the index. Scores and their bounds are calculated from the same stored statistics,
+     * so top K scorers remain exact with respect to them. Once the document count grows by more than
+     * {@link #FULL_RECALCULATION_RATIO} since the last full recalculation, all statistics are recalculated
+     * by {@link #recalculateTermIdfs()} and {@link #recalculateDocumentTfIdfs()}.
+     *
+     * Does nothing in {@link IdfMode#QUERY_TIME}, the statistics are maintained during indexing.
      */
-    public int getDocumentCount() {
-        return indexedDocuments.size();
+    public void updateStatistics() {
+        int documentCount = getDocumentCount();
+        if (getIdfMode() == IdfMode.QUERY_TIME) {
+            return;
+        } else if ((impacts == null ? impactPrecision != null : impacts.getPrecision() != impactPrecision)
+                || documentCount - statisticsDocumentCount > FULL_RECALCULATION_RATIO * statisticsDocumentCount) {
+            recalculateTermIdfs();
+            recalculateDocumentTfIdfs();
+            return;
+        } else if (pendingTerms.isEmpty() && documentTfIdfNorms.length == documentCount) {
+            return;
+        }
+
+        String[] terms = pendingTerms.toArray(new String[0]);
+        PostingList[] postings = postingsOf(terms);
+        for (int i = 0; i < terms.length; i++) {
+            termIdf.put(terms[i], Math.log10(documentCount / (double) postings[i].size()));
+        }
+
+        // only the new documents, norms of the others are kept
+        int firstNew = documentTfIdfNorms.length;
+        double[] norms = Arrays.copyOf(documentTfIdfNorms, documentCount);
+        for (int i = 0; i < terms.length; i++) {
+            double idf = idf(terms[i]);
+            PostingsIterator it = postings[i].iterator();
+            for (int doc = it.advance(firstNew); doc != PostingsIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+                double tfIdf = Posting.tfIdf(it.termFrequency(), idf);
+                norms[doc] += tfIdf*tfIdf;
+            }
+        }
+        for (int i = firstNew; i < norms.length; i++) {
+            norms[i] = Math.sqrt(norms[i]);
+        }
+        documentTfIdfNorms = norms;
+
+        if (impacts != null) {
+            impacts.update(this, terms, postings);
+        }
+        recalculateTermMaxScores(terms, postings, null);
+        pendingTerms.clear();
     }
 
     /**
-     * Get document frequency of one term.
-     * @param term Term.
-     * @return Document frequency of one term.
+     * Recalculates max score contribution of given terms in all their postings and in blocks of their postings.
+     * Assumes the norms and impacts are already calculated. If impacts are used, the bounds are the maximum
+     * of the exact scores and the stored (possibly quantized) impacts, so they hold both for the scores calculated
+     * from the impacts and for the exact scores of the index read from file.
+     *
+     * @param terms Terms.
+     * @param postings Posting lists of the terms.
+     * @param pool Pool the terms are processed in or null to process them in the calling thread.
      */
-    public int documentFrequency(String term) {
-        if (!invertedIndex.containsKey(term)) {
-            return 0;
+    private void recalculateTermMaxScores(String[] terms, PostingList[] postings, ForkJoinPool pool) {
+        boolean queryTimeIdf = getIdfMode() == IdfMode.QUERY_TIME;
+        double[] maxScores = new double[terms.length];
+        BlockMaxScores[] blocks = new BlockMaxScores[terms.length];
+        ParallelRangeTask.forTerms(pool, postings, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                double idf = queryTimeIdf ? 1 : idf(terms[i]);
+                int blockCount = (postings[i].size() + BlockMaxScores.BLOCK_SIZE - 1) / BlockMaxScores.BLOCK_SIZE;
+                int[] blockLastDocuments = new int[blockCount];
+                double[] blockMaxScores = new double[blockCount];
+
+                double maxScore = 0;
+                int count = 0;
+                byte[] termImpacts = impacts == null ? null : impacts.getImpactsForTerm(terms[i]);
+                PostingsIterator it = postings[i].iterator();
+                while (it.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                    double norm = documentTfIdfNorms[it.docOrdinal()];
+                    double score = norm > 0 ? Posting.tfIdf(it.termFrequency(), idf) / norm : 0;
+                    if (termImpacts != null) {
+                        // quantized impact may be rounded down, file indexes score exactly, so bound both
+                        score = Math.max(score, impacts.getImpact(termImpacts, it.position()));
+                    }
+                    int block = count / BlockMaxScores.BLOCK_SIZE;
+                    maxScore = Math.max(maxScore, score);
+                    blockMaxScores[block] = Math.max(blockMaxScores[block], score);
+                    blockLastDocuments[block] = it.docOrdinal();
+                    count++;
+                }
+                maxScores[i] = maxScore;
+                blocks[i] = new BlockMaxScores(blockLastDocuments, blockMaxScores);
+            }
+        });
+
+        for (int i = 0; i < terms.length; i++) {
+            termMaxScore.put(terms[i], maxScores[i]);
+            termBlockMaxScores.put(terms[i], blocks[i]);
         }
+    }
 
-        return invertedIndex.get(term).size();
+    private PostingList[] postingsOf(String[] terms) {
+        PostingList[] postings = new PostingList[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            postings[i] = invertedIndex.get(terms[i]);
+        }
+        return postings;
     }
 
     /**
-     * Get term frequency of term in document.
-     * @param term Term.
-     * @param documentId Document.
-     * @return Term frequency.
+     * Creates empty index with given settings. Used by {@link IndexFile} which restores the rest.
      */
-    public int getTermFrequency(String term, String documentId) {
-        if (!invertedIndex.containsKey(term) || !invertedIndex.get(term).containsKey(documentId)) {
-            return 0;
-        }
-        return invertedIndex.get(term).get(documentId).getTermFrequency();
+    InvertedIndex(IdfMode idfMode, ImpactPrecision impactPrecision, PostingsCodec postingsCodec) {
+        this();
+        this.idfMode = idfMode;
+        this.impactPrecision = impactPrecision;
+        this.postingsCodec = postingsCodec;
     }
 
-    public Set<String> getIndexedDocuments() {
-        return indexedDocuments;
+    @Override
+    Set<String> getTerms() {
+        return invertedIndex.keySet();
+    }
+
+    @Override
+    double getStoredIdf(String term) {
+        Double idf = getIdfMode() == IdfMode.QUERY_TIME ? null : termIdf.get(term);
+        return idf == null ? Double.NaN : idf;
+    }
+
+    @Override
+    double getStoredMaxScore(String term) {
+        Double maxScore = termMaxScore.get(term);
+        return maxScore == null ? Double.NaN : maxScore;
+    }
+
+    @Override
+    boolean isPending(String term) {
+        return pendingTerms.contains(term);
     }
 
     /**
-     * Returns postings list for a term. The list will be sorted by document id hash in ascending order.
-     *
-     * @param term Term.
-     * @return
+     * Norms of the documents, without the spare capacity the norms grow by in query time IDF mode.
      */
-    public List<Posting> getPostingsForTerm(String term) {
-        if (!invertedIndex.containsKey(term)) {
-            return new ArrayList<>();
-        } else {
-            List<Posting> postings = new ArrayList<>(invertedIndex.get(term).values());
-            postings.sort(postingComparator);
+    @Override
+    double[] getDocumentNorms() {
+        int documentCount = getDocumentCount();
+        return documentTfIdfNorms.length > documentCount ? Arrays.copyOf(documentTfIdfNorms, documentCount) : documentTfIdfNorms;
+    }
 
-            return postings;
-        }
+    @Override
+    int getStatisticsDocumentCount() {
+        return statisticsDocumentCount;
     }
 
     /**
-     * Gets the posting list that should be used for query. In case of term, simple postings list from
-     * inverted index is returned. Otherwise intersection of more postings list is performed and the result
-     * is returned.
-     *
-     * This method uses recursion when intersecting postings lists.
+     * Restores documents of the index read from file.
      *
-     * @param rootQuery Node which represents root of the query.
-     * @return
+     * @param documentDictionary Ids of documents.
+     * @param norms Norms of documents, may be shorter than the dictionary if the statistics are not up to date.
+     * @param statisticsDocumentCount Number of documents at the time of the last full recalculation of statistics.
      */
-    public List<Posting> getPostingsForQuery(SearchQueryNode rootQuery) {
-        return getPostingsForQueryRec(rootQuery, false);
+    void restoreDocuments(DocumentDictionary documentDictionary, double[] norms, int statisticsDocumentCount) {
+        this.documentDictionary = documentDictionary;
+        this.documentTfIdfNorms = norms;
+        this.statisticsDocumentCount = statisticsDocumentCount;
     }
 
     /**
-     * Returns IDF of given term.
+     * Restores a term of the index read from file.
      *
      * @param term Term.
-     * @return IDF of given term or 0 if the term is not indexed.
+     * @param postings Posting list of the term.
+     * @param idf Stored IDF or NaN.
+     * @param maxScore Stored max score or NaN.
+     * @param pending Whether statistics of the term are not up to date.
      */
-    public double idf(String term) {
-        if (termIdf.containsKey(term)) {
-            return termIdf.get(term);
-        } else {
-            return 0;
+    void restoreTerm(String term, PostingList postings, double idf, double maxScore, boolean pending) {
+        invertedIndex.put(term, postings);
+        termDictionary = null;
+        if (!Double.isNaN(idf)) {
+            termIdf.put(term, idf);
+        }
+        if (!Double.isNaN(maxScore)) {
+            termMaxScore.put(term, maxScore);
+        }
+        if (pending || (getIdfMode() == IdfMode.INDEX_TIME && Double.isNaN(idf))) {
+            pendingTerms.add(term);
         }
     }
 
     /**
-     * Recursion method for getting postings for queries.
-     * @param node
-     * @param notClause If node is term and this is true, all postings except the ones of this term will be returned.
-     * @return
+     * Calculates impacts and block max scores of the restored terms from their stored IDFs and norms of documents,
+     * so they're the same as when the index was written. Terms with pending statistics are left
+     * to {@link #updateStatistics()}.
+     *
+     * @param calculateImpacts Whether the written index had impacts.
      */
-    public List<Posting> getPostingsForQueryRec(SearchQueryNode node, boolean notClause) {
-        // node is term
-        if (node.isTerm()) {
-            if (notClause) {
-                // return posting of all but this term
-                String notTerm = node.getText();
-
-                // first get all unique postings except the notTerm
-                Set<Posting> allPostings = new HashSet<>();
-                for(String term : invertedIndex.keySet()) {
-                    if (!term.equals(notTerm)) {
-                        allPostings.addAll(invertedIndex.get(term).values());
-                    }
-                }
-
-                // now remove all postings which are relevant to notTerm
-                if (invertedIndex.containsKey(notTerm)) {
-                    for(Posting p : invertedIndex.get(notTerm).values()) {
-                        allPostings.remove(p);
-                    }
-                }
+    void restoreDerivedStatistics(boolean calculateImpacts) {
+        if (getIdfMode() == IdfMode.QUERY_TIME) {
+            return;
+        }
+        List<String> upToDate = new ArrayList<>(invertedIndex.size());
+        for (String term : invertedIndex.keySet()) {
+            if (!pendingTerms.contains(term)) {
+                upToDate.add(term);
+            }
+        }
+        String[] terms = upToDate.toArray(new String[0]);
+        PostingList[] postings = postingsOf(terms);
+        ForkJoinPool pool = getPool();
+        impacts = calculateImpacts && impactPrecision != null ? Impacts.calculate(this, terms, postings, impactPrecision, pool) : null;
+        recalculateTermMaxScores(terms, postings, pool);
+    }
 
-                // convert set to list and sort
-                List<Posting> postings = new ArrayList<>(allPostings);
-                postings.sort(postingComparator);
-                return postings;
+    /**
+     * Returns pool used to recalculate statistics.
+     *
+     * @return Pool or null if the statistics should be calculated in the calling thread.
+     */
+    private ForkJoinPool getPool() {
+        if (parallelism == 1) {
+            return null;
+        } else if (parallelism <= 0) {
+            return ForkJoinPool.commonPool();
+        }
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
 
-            } else {
-                return getPostingsForTerm(node.getText());
-            }
+    public int getParallelism() {
+        return parallelism;
+    }
 
-        // rootQuery represents root of boolean query tree, perform intersection of posting lists
-        } else {
-            Collection<SearchQueryNode> childQuery;
-            List<Posting> res = new ArrayList<>();
-            for(BooleanClause.Occur occurrence : node.getChildren().keySet()) {
-                childQuery = node.getChildren().get(occurrence);
-                switch (occurrence) {
-
-                    // AND
-                    case MUST:
-                        if (notClause) {
-                            // not(a and b ... z) => not(a) OR not(b) ... not(z)
-                            for(SearchQueryNode child : childQuery) {
-                                res = orIntersect(res, getPostingsForQueryRec(child, true));
-                            }
-                        } else {
-                            // standard and operation
-                            for(SearchQueryNode child : childQuery) {
-                                res = andIntersect(res, getPostingsForQueryRec(child, false));
-                            }
-                        }
-                        break;
-
-                    // OR
-                    case SHOULD:
-                        if (notClause) {
-                            // not(a or b ... z) => not(a) and not(b) ... not(z)
-                            for(SearchQueryNode child : childQuery) {
-                                res = andIntersect(res, getPostingsForQueryRec(child, true));
-                            }
-                        } else {
-                            // standard or operation
-                            for(SearchQueryNode child : childQuery) {
-                                res = orIntersect(res, getPostingsForQueryRec(child, false));
-                            }
-                        }
-                        break;
-
-                        // NOT
-                    case MUST_NOT:
-                        for(SearchQueryNode child : childQuery) {
-                            res = notIntersect(res, getPostingsForQueryRec(child, true));
-                        }
-                        break;
-                }
-            }
+    /**
+     * Sets the number of threads used to recalculate IDFs, norms, impacts and max scores. Pool created for
+     * the previous number of threads is shut down.
+     *
+     * @param parallelism Number of threads, 1 to calculate them in the calling thread or 0 to use
+     *                    the common fork-join pool (default).
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException("Parallelism must not be negative: " + parallelism);
+        }
+        if (pool != null && parallelism != this.parallelism) {
+            // already submitted tasks are still finished, then the threads of the pool terminate
+            pool.shutdown();
+            pool = null;
+        }
+        this.parallelism = parallelism;
+    }
 
-            return res;
+    /**
+     * Compresses all posting lists which are not compressed yet by the current postings codec.
+     * Lists are decoded lazily when they're iterated and decoded back to arrays if a new document is added to them.
+     */
+    public void compressPostings() {
+        for (PostingList postingList : invertedIndex.values()) {
+            postingList.encode(postingsCodec);
         }
     }
 
+    @Override
+    public IdfMode getIdfMode() {
+        return idfMode;
+    }
+
     /**
-     * Intersect two lists so that none of them will contain postings of given term.
-     * Basically: resultList = sourceList \ index[notTem].
+     * Sets when IDFs are calculated. Norms of documents are weighted differently in each mode,
+     * so the mode can be changed only before any document is indexed.
      *
-     * @param postingList1 Result list.
-     * @param postingList2 Source list. It is expected that this list already contains NOT [term] postings
-     *                     so the actual intersection is AND (NOT [term]).
-     * @return List of postings.
-     */
-    public List<Posting> notIntersect(List<Posting> postingList1, List<Posting> postingList2) {
-        if (postingList1.isEmpty() && postingList2.isEmpty()) {
-            return new ArrayList<>();
-        } else if (postingList2.isEmpty()) {
-            return postingList1;
-        } else if (postingList1.isEmpty()) {
-            return postingList2;
-        }
-
-        List<Posting> res = new ArrayList<>();
-
-        // lists are not empty, take items from source lists which are also in result list
-        for(Posting p : postingList2) {
-            if (postingList1.contains(p)) {
-                res.add(p);
-            }
+     * @param idfMode Mode.
+     * @throws IllegalArgumentException If the mode is null.
+     * @throws IllegalStateException If some documents are already indexed.
+     */
+    public void setIdfMode(IdfMode idfMode) {
+        if (idfMode == null) {
+            throw new IllegalArgumentException("IDF mode must not be null!");
+        } else if (getDocumentCount() > 0) {
+            throw new IllegalStateException("IDF mode can't be changed, " + getDocumentCount() + " documents are already indexed!");
         }
-        return res;
+        this.idfMode = idfMode;
+    }
+
+    @Override
+    public ImpactPrecision getImpactPrecision() {
+        return impactPrecision;
     }
 
     /**
-     * Performs AND intersection over two posting lists and returns result.
-     * Both lists are expected to be sorted by document id hash.
+     * Sets precision of impacts, {@link ImpactPrecision#BITS_16} by default. Takes effect on the next {@link #recalculateDocumentTfIdfs()}.
      *
-     * @param postingList1 Posting list 1.
-     * @param postingList2 Posting list 2.
-     * @return AND intersection of two posting lists.
-     */
-    public List<Posting> andIntersect(List<Posting> postingList1, List<Posting> postingList2) {
-
-        // check for 'first timers' where at least one of the provided lists is empty.
-        List<Posting> resultForEmptyPosting = checkEmptyPostingsLists(postingList1, postingList2);
-        if (resultForEmptyPosting != null) {
-            return resultForEmptyPosting;
-        }
-
-        int p1Cur = 0;
-        int p2Cur = 0;
-        List<Posting> res = new ArrayList<>();
-
-        while (p1Cur < postingList1.size() && p2Cur < postingList2.size()) {
-            int h1 = postingList1.get(p1Cur).documentIdHash();
-            int h2 = postingList2.get(p2Cur).documentIdHash();
-            if (h1 == h2) {
-                res.add(postingList1.get(p1Cur));
-                p1Cur++;
-                p2Cur++;
-            } else if (h1 < h2) {
-                p1Cur++;
-            } else {
-                p2Cur++;
-            }
-        }
-        return res;
+     * @param impactPrecision Precision or null if impacts should not be stored. Scores are then calculated from term frequencies.
+     */
+    public void setImpactPrecision(ImpactPrecision impactPrecision) {
+        this.impactPrecision = impactPrecision;
+    }
+
+    @Override
+    public Impacts getImpacts() {
+        return impacts;
+    }
+
+    @Override
+    public PostingsCodec getPostingsCodec() {
+        return postingsCodec;
     }
 
     /**
-     * Performs OR intersection over two posting lists and returns result.
-     * Both lists are expected to be sorted by document id hash.
+     * Sets the codec used by {@link #compressPostings()}. Already compressed lists are re-encoded
+     * the next time the postings are compressed.
      *
-     * @param postingList1 Posting list 1.
-     * @param postingList2 Posting list 2.
-     * @return OR intersection of two posting lists.
-     */
-    public List<Posting> orIntersect(List<Posting> postingList1, List<Posting> postingList2) {
-
-        // check for 'first timers' where at least one of the provided lists is empty.
-        List<Posting> resultForEmptyPosting = checkEmptyPostingsLists(postingList1, postingList2);
-        if (resultForEmptyPosting != null) {
-            return resultForEmptyPosting;
-        }
-
-        int p1Cur = 0;
-        int p2Cur = 0;
-        List<Posting> res = new ArrayList<>();
-
-        // merge lists together while sorting them
-        while (p1Cur < postingList1.size() && p2Cur < postingList2.size()) {
-            int h1 = postingList1.get(p1Cur).documentIdHash();
-            int h2 = postingList2.get(p2Cur).documentIdHash();
-            if (h1 == h2) {
-                res.add(postingList1.get(p1Cur));
-                p1Cur++;
-                p2Cur++;
-            } else if (h1 < h2) {
-                res.add(postingList1.get(p1Cur));
-                p1Cur++;
-            } else {
-                res.add(postingList2.get(p2Cur));
-                p2Cur++;
+     * @param postingsCodec Codec.
+     */
+    public void setPostingsCodec(PostingsCodec postingsCodec) {
+        this.postingsCodec = postingsCodec;
+    }
+
+    @Override
+    public double getTfIdfOfTermInDocument(String term, int documentOrdinal) {
+        PostingList postingList = invertedIndex.get(term);
+        int termFrequency = postingList == null ? 0 : postingList.termFrequencyOf(documentOrdinal);
+        if (termFrequency > 0) {
+            return Posting.tfIdf(termFrequency, idf(term));
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public double getTfIdfNormForDocument(int documentOrdinal) {
+        if (documentOrdinal < 0 || documentOrdinal >= documentTfIdfNorms.length) {
+            return 0.0;
+        }
+
+        return documentTfIdfNorms[documentOrdinal];
+    }
+
+    @Override
+    public Map<String, Double> getDocumentTfIdf(String documentId) {
+        int documentOrdinal = documentDictionary.getOrdinal(documentId);
+        if (documentOrdinal == DocumentDictionary.NOT_FOUND) {
+            return Collections.emptyMap();
+        }
+        Map<String, Double> docTfIdf = new HashMap<>();
+
+
+        for(Map.Entry<String, PostingList> entry : invertedIndex.entrySet()) {
+            int termFrequency = entry.getValue().termFrequencyOf(documentOrdinal);
+            if (termFrequency > 0) {
+                docTfIdf.put(entry.getKey(), Posting.tfIdf(termFrequency, idf(entry.getKey())));
             }
         }
 
-        // add rest of the postings
-        while (p1Cur < postingList1.size()) {
-            res.add(postingList1.get(p1Cur));
-            p1Cur++;
+        return docTfIdf;
+    }
+
+    @Override
+    public int getDocumentCount() {
+        return documentDictionary.size();
+    }
+
+    @Override
+    public int documentFrequency(String term) {
+        if (!invertedIndex.containsKey(term)) {
+            return 0;
         }
-        while (p2Cur < postingList2.size()) {
-            res.add(postingList2.get(p2Cur));
-            p2Cur++;
+
+        return invertedIndex.get(term).size();
+    }
+
+    @Override
+    public int getTermFrequency(String term, String documentId) {
+        int documentOrdinal = documentDictionary.getOrdinal(documentId);
+        if (!invertedIndex.containsKey(term) || documentOrdinal == DocumentDictionary.NOT_FOUND) {
+            return 0;
         }
+        return invertedIndex.get(term).termFrequencyOf(documentOrdinal);
+    }
 
-        return res;
+    @Override
+    public boolean isIndexed(String documentId) {
+        return documentDictionary.contains(documentId);
+    }
+
+    @Override
+    public int getDocumentOrdinal(String documentId) {
+        return documentDictionary.getOrdinal(documentId);
+    }
+
+    @Override
+    public String getDocumentId(int documentOrdinal) {
+        return documentDictionary.getDocumentId(documentOrdinal);
+    }
+
+    @Override
+    public DocumentDictionary getDocumentDictionary() {
+        return documentDictionary;
     }
 
-    private List<Posting> checkEmptyPostingsLists(List<Posting> postings1, List<Posting> postings2) {
-        if (postings1.isEmpty() && postings2.isEmpty()) {
-            return new ArrayList<>();
-        } else if (postings1.isEmpty()) {
-            return new ArrayList<>(postings2);
-        } else if (postings2.isEmpty()) {
-            return new ArrayList<>(postings1);
+    @Override
+    public PostingList getPostingsForTerm(String term) {
+        if (!invertedIndex.containsKey(term)) {
+            return new PostingList(0);
+        } else {
+            return invertedIndex.get(term);
+        }
+    }
+
+    /**
+     * Returns compressed bitmap of documents which contain the term. Bitmaps are created
+     * when they're needed for the first time and kept until the index is modified.
+     *
+     * @param term Term.
+     * @return Bitmap of documents.
+     */
+    @Override
+    public synchronized RoaringBitmap getBitmapForTerm(String term) {
+        if (termBitmaps == null) {
+            termBitmaps = new HashMap<>();
         }
 
-        return null;
+        RoaringBitmap bitmap = termBitmaps.get(term);
+        if (bitmap == null) {
+            bitmap = super.getBitmapForTerm(term);
+            termBitmaps.put(term, bitmap);
+        }
+        return bitmap;
     }
 
     /**
-     * Postings comparator. Serializable so that it can be saved to file.
+     * Returns sorted dictionary of all indexed terms, e.g. to find terms with a prefix. The dictionary
+     * is created when it's needed for the first time and kept until the index is modified.
+     *
+     * @return Term dictionary.
      */
-    private class PostingsComparator implements Comparator<Posting>, Serializable {
-        @Override
-        public int compare(Posting o1, Posting o2) {
-            if (o1.documentIdHash() > o2.documentIdHash()) return 1;
-            if (o1.documentIdHash() == o2.documentIdHash()) return 0;
-            return -1;
+    @Override
+    public synchronized TermDictionary getTermDictionary() {
+        if (termDictionary == null) {
+            termDictionary = TermDictionary.build(invertedIndex.keySet());
         }
+        return termDictionary;
     }
+
+    @Override
+    public double idf(String term) {
+        if (getIdfMode() == IdfMode.QUERY_TIME) {
+            int documentFrequency = documentFrequency(term);
+            return documentFrequency == 0 ? 0 : Math.log10(getDocumentCount() / (double) documentFrequency);
+        } else if (termIdf.containsKey(term)) {
+            return termIdf.get(term);
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public double maxScore(String term) {
+        Double maxScore = termMaxScore.get(term);
+        if (maxScore == null) {
+            return 0;
+        }
+        return getIdfMode() == IdfMode.QUERY_TIME ? maxScore * idf(term) : maxScore;
+    }
+
+    @Override
+    public BlockMaxScores getBlockMaxScores(String term) {
+        return termBlockMaxScores == null ? null : termBlockMaxScores.get(term);
+    }
+
 }
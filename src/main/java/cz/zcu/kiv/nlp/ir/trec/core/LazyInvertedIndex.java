@@ -0,0 +1,86 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.codec.PostingsCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only index for indexes larger than the heap. Document ids, norms and the term dictionary of an index file
+ * are kept in memory, posting lists are read from the file when they're requested for the first time.
+ * Decoded lists are kept in a {@link PostingsCache} of limited size, so frequently queried terms are not read
+ * again and the memory used by postings doesn't depend on the size of the index. All queries get the postings
+ * through {@link #getPostingsForTerm(String)} and therefore through the cache.
+ *
+ * Checksums of the sections kept in memory are verified when the index is opened, postings are not verified.
+ * The file stays open until the index is closed.
+ */
+public class LazyInvertedIndex extends FileInvertedIndex implements Closeable {
+
+    private static Logger log = LoggerFactory.getLogger(LazyInvertedIndex.class);
+
+    /**
+     * Not a FileChannel: a channel is closed when a thread reading from it is interrupted,
+     * which would break the index for all other threads.
+     */
+    private final RandomAccessFile postingsFile;
+
+    private final PostingsCache cache;
+
+    /**
+     * @param file Index file.
+     * @param header Header of the file.
+     * @param postingsCodec Codec of the postings.
+     * @param sections Content of the sections of the file before the postings section.
+     * @param cacheSize Max size of the decoded postings in the cache in bytes.
+     */
+    LazyInvertedIndex(File file, IndexFile.Header header, PostingsCodec postingsCodec, ByteBuffer[] sections, long cacheSize) throws IOException {
+        super(file, header, postingsCodec, sections);
+        cache = new PostingsCache(cacheSize);
+        postingsFile = new RandomAccessFile(file, "r");
+    }
+
+    @Override
+    PostingList getPostings(String term, long offset, int length, int size) {
+        return cache.get(term, t -> load(offset, length, size));
+    }
+
+    private PostingList load(long offset, int length, int size) {
+        byte[] encodedPostings = new byte[length];
+        try {
+            synchronized (postingsFile) {
+                postingsFile.seek(postingsOffset + offset);
+                postingsFile.readFully(encodedPostings);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't read postings from index file " + file.getPath(), e);
+        }
+
+        PostingList postings = PostingList.encoded(encodedPostings, size, postingsCodec);
+        postings.decode();
+        return postings;
+    }
+
+    /**
+     * Returns cache of decoded postings with its statistics.
+     *
+     * @return Cache.
+     */
+    public PostingsCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Closes the index file and logs statistics of the cache. Postings which are not cached can't be read afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        log.info("Closing index file {}, {}", file.getPath(), cache);
+        postingsFile.close();
+    }
+}
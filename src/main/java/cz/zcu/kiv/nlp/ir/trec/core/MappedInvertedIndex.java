@@ -0,0 +1,85 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.codec.PostingsCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only index which reads documents, norms, terms and postings directly from an index file mapped to memory.
+ * Opening the index only maps sections of the file and nothing is read until it's needed, so it takes the same
+ * time regardless of the size of the index. Pages of the file are cached by the operating system and shared
+ * by all processes which map it.
+ *
+ * Posting lists are slices of the mapped file which are decoded while they're iterated. A mapped buffer can't be
+ * larger than 2 GB, so the postings section is mapped in segments of {@link #SEGMENT_SIZE} bytes which start every
+ * half segment and overlap. Every posting list shorter than half a segment lies entirely in one of them; longer
+ * lists are mapped separately whenever they're requested.
+ */
+public class MappedInvertedIndex extends FileInvertedIndex {
+
+    public static final int SEGMENT_SIZE = 1 << 30;
+
+    private final int segmentSize;
+    private final ByteBuffer[] postingSegments;
+
+    /**
+     * Maps sections of the file. The channel may be closed afterwards, the mapped buffers stay valid.
+     */
+    MappedInvertedIndex(File file, FileChannel channel, IndexFile.Header header, PostingsCodec postingsCodec, int segmentSize) throws IOException {
+        super(file, header, postingsCodec, map(channel, header));
+        if (segmentSize < 2 || segmentSize % 2 != 0) {
+            throw new IllegalArgumentException("Segment size must be positive and even: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+
+        long postingsLength = header.sectionLengths[IndexFile.SECTION_POSTINGS];
+        int halfSegment = segmentSize / 2;
+        postingSegments = new ByteBuffer[(int) ((postingsLength + halfSegment - 1) / halfSegment)];
+        for (int i = 0; i < postingSegments.length; i++) {
+            long start = (long) i * halfSegment;
+            postingSegments[i] = channel.map(FileChannel.MapMode.READ_ONLY, postingsOffset + start, Math.min(segmentSize, postingsLength - start));
+        }
+    }
+
+    /**
+     * Maps all sections before the postings section.
+     */
+    private static ByteBuffer[] map(FileChannel channel, IndexFile.Header header) throws IOException {
+        ByteBuffer[] sections = new ByteBuffer[IndexFile.SECTION_POSTINGS];
+        for (int i = 0; i < sections.length; i++) {
+            if (header.sectionLengths[i] > Integer.MAX_VALUE) {
+                throw new IOException("Section of index file is too large to be mapped!");
+            }
+            sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, header.sectionOffsets[i], header.sectionLengths[i]);
+        }
+        return sections;
+    }
+
+    /**
+     * Returns the postings as a slice of the mapped file, they're not copied.
+     */
+    @Override
+    PostingList getPostings(String term, long offset, int length, int size) {
+        int halfSegment = segmentSize / 2;
+        int segment = (int) (offset / halfSegment);
+        ByteBuffer encodedPostings;
+        if (length <= halfSegment && segment < postingSegments.length) {
+            encodedPostings = postingSegments[segment].duplicate();
+            int position = (int) (offset - (long) segment * halfSegment);
+            encodedPostings.position(position);
+            encodedPostings.limit(position + length);
+            encodedPostings = encodedPostings.slice();
+        } else {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                encodedPostings = channel.map(FileChannel.MapMode.READ_ONLY, postingsOffset + offset, length);
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't map postings from index file " + file.getPath(), e);
+            }
+        }
+        return PostingList.mapped(encodedPostings, size, postingsCodec);
+    }
+}
@@ -0,0 +1,124 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Document-at-a-time top K ranked retrieval using the MaxScore algorithm, suited for long queries.
+ *
+ * Query terms are sorted by the upper bound of their contribution to the score (see {@link SearchableIndex#maxScore(String)}).
+ * Terms with the lowest bounds whose bounds sum up to at most the score of the K-th best document found so far are
+ * non-essential: a document which contains only them can't get to the top K. Candidate documents are therefore taken
+ * only from postings of the essential terms. Postings of the non-essential terms are probed only for the candidates,
+ * from the highest bound to the lowest, and the probing stops as soon as the candidate can't beat the threshold.
+ *
+ * Scores are the same as the ones calculated by {@link CosineSimilarityCalculator}.
+ */
+public class MaxScoreScorer implements TopKScorer {
+
+    /**
+     * Cursors of query terms sorted by their max score in ascending order.
+     */
+    private final TermCursor[] cursors;
+
+    /**
+     * Sums of max scores of cursors 0..i.
+     */
+    private final double[] upperBounds;
+
+    /**
+     * Number of fully scored documents.
+     */
+    private long scoredDocuments;
+
+    public MaxScoreScorer(SearchableIndex invertedIndex, String[] query) {
+        String[] terms = QueryTerms.scoredTerms(invertedIndex, query);
+        cursors = new TermCursor[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            cursors[i] = new TermCursor(invertedIndex, terms[i]);
+        }
+        Arrays.sort(cursors, Comparator.comparingDouble(TermCursor::getMaxScore));
+
+        upperBounds = new double[cursors.length];
+        double upperBound = 0;
+        for (int i = 0; i < cursors.length; i++) {
+            upperBound += cursors[i].getMaxScore();
+            upperBounds[i] = upperBound;
+        }
+    }
+
+    @Override
+    public void score(TopKCollector collector) {
+        for (TermCursor cursor : cursors) {
+            cursor.nextDoc();
+        }
+
+        double threshold = TermAtATimeScorer.MIN_SCORE;
+        int firstEssential = firstEssential(threshold, 0);
+        while (firstEssential < cursors.length) {
+            // next candidate is the lowest document of essential terms
+            int doc = PostingsIterator.NO_MORE_DOCS;
+            for (int i = firstEssential; i < cursors.length; i++) {
+                doc = Math.min(doc, cursors[i].docOrdinal());
+            }
+            if (doc == PostingsIterator.NO_MORE_DOCS) {
+                break;
+            }
+
+            double score = 0;
+            for (int i = firstEssential; i < cursors.length; i++) {
+                if (cursors[i].docOrdinal() == doc) {
+                    score += cursors[i].score();
+                    cursors[i].nextDoc();
+                }
+            }
+
+            // probe non-essential terms while the candidate can still beat the threshold
+            boolean candidate = true;
+            for (int i = firstEssential - 1; i >= 0; i--) {
+                if (score + upperBounds[i] <= threshold) {
+                    candidate = false;
+                    break;
+                }
+                if (cursors[i].advance(doc) == doc) {
+                    score += cursors[i].score();
+                }
+            }
+            if (!candidate) {
+                continue;
+            }
+            scoredDocuments++;
+
+            if ((float) score > TermAtATimeScorer.MIN_SCORE && collector.collect(doc, (float) score)) {
+                threshold = Math.max(collector.threshold(), TermAtATimeScorer.MIN_SCORE);
+                firstEssential = firstEssential(threshold, firstEssential);
+            }
+        }
+    }
+
+    @Override
+    public long getScoredDocuments() {
+        return scoredDocuments;
+    }
+
+    @Override
+    public long getSkippedPostings() {
+        long skipped = 0;
+        for (TermCursor cursor : cursors) {
+            skipped += cursor.getPostingCount() - cursor.getVisitedPostings();
+        }
+        return skipped;
+    }
+
+    /**
+     * Number of non-essential terms, i.e. index of the first cursor whose upper bound exceeds the threshold.
+     * Threshold never decreases, so the search can start at the previous value.
+     */
+    private int firstEssential(double threshold, int from) {
+        int i = from;
+        while (i < upperBounds.length && upperBounds[i] <= threshold) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,129 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join task which processes a range of items (terms, documents) in parallel. The range is split
+ * in halves until the parts are small enough. Items may have weights, terms are weighted by the length
+ * of their posting lists so that a few long lists of frequent terms don't end up in one task.
+ */
+class ParallelRangeTask extends RecursiveAction {
+
+    /**
+     * Min weight of items processed by one task.
+     */
+    static final long MIN_TASK_WEIGHT = 1 << 14;
+
+    /**
+     * Processes items from (inclusive) to (exclusive). Called concurrently for disjoint ranges.
+     */
+    interface RangeBody {
+        void process(int from, int to);
+    }
+
+    /**
+     * cumulativeWeights[i] = sum of weights of items lower than i, null if all items weigh 1.
+     */
+    private final long[] cumulativeWeights;
+    private final int from;
+    private final int to;
+    private final RangeBody body;
+
+    private ParallelRangeTask(long[] cumulativeWeights, int from, int to, RangeBody body) {
+        this.cumulativeWeights = cumulativeWeights;
+        this.from = from;
+        this.to = to;
+        this.body = body;
+    }
+
+    /**
+     * Processes terms weighted by the number of their postings.
+     *
+     * @param pool Pool to run in or null to process all terms in the calling thread.
+     * @param postings Posting lists of the terms.
+     * @param body Processing of a range of terms.
+     */
+    static void forTerms(ForkJoinPool pool, PostingList[] postings, RangeBody body) {
+        long[] weights = new long[postings.length];
+        for (int i = 0; i < postings.length; i++) {
+            weights[i] = postings[i].size();
+        }
+        forWeights(pool, weights, body);
+    }
+
+    /**
+     * Processes items with given weights.
+     *
+     * @param pool Pool to run in or null to process all items in the calling thread.
+     * @param weights Weights of the items, e.g. number of postings.
+     * @param body Processing of a range of items.
+     */
+    static void forWeights(ForkJoinPool pool, long[] weights, RangeBody body) {
+        long[] cumulativeWeights = new long[weights.length + 1];
+        for (int i = 0; i < weights.length; i++) {
+            cumulativeWeights[i + 1] = cumulativeWeights[i] + Math.max(weights[i], 1);
+        }
+        run(pool, cumulativeWeights, weights.length, body);
+    }
+
+    /**
+     * Processes items which all have the same weight.
+     *
+     * @param pool Pool to run in or null to process all items in the calling thread.
+     * @param count Number of items.
+     * @param body Processing of a range of items.
+     */
+    static void forRange(ForkJoinPool pool, int count, RangeBody body) {
+        run(pool, null, count, body);
+    }
+
+    private static void run(ForkJoinPool pool, long[] cumulativeWeights, int count, RangeBody body) {
+        if (count == 0) {
+            return;
+        }
+        if (pool == null) {
+            body.process(0, count);
+        } else {
+            pool.invoke(new ParallelRangeTask(cumulativeWeights, 0, count, body));
+        }
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= 1 || weight(from, to) <= MIN_TASK_WEIGHT) {
+            body.process(from, to);
+            return;
+        }
+
+        int middle = split();
+        invokeAll(new ParallelRangeTask(cumulativeWeights, from, middle, body),
+                new ParallelRangeTask(cumulativeWeights, middle, to, body));
+    }
+
+    private long weight(int from, int to) {
+        return cumulativeWeights == null ? to - from : cumulativeWeights[to] - cumulativeWeights[from];
+    }
+
+    /**
+     * Finds the item which splits the range in two halves of roughly the same weight.
+     */
+    private int split() {
+        if (cumulativeWeights == null) {
+            return (from + to) >>> 1;
+        }
+
+        long half = cumulativeWeights[from] + weight(from, to) / 2;
+        int low = from + 1;
+        int high = to - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulativeWeights[middle] < half) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
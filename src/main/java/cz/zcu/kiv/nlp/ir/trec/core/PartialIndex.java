@@ -0,0 +1,109 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Postings of a part of documents built by one indexing thread. Ordinals of the documents are reserved
+ * in the main index beforehand by {@link InvertedIndex#reserveDocuments(java.util.List)}, so partial indexes
+ * of several threads can be merged by {@link InvertedIndex#merge(java.util.List)} without renumbering.
+ *
+ * Partial index is not thread safe, every thread has its own. Use {@link InvertedIndex#createPartialIndex()}
+ * to create one.
+ */
+public class PartialIndex {
+
+    private final Map<String, PostingList> postings;
+
+    /**
+     * Whether norms of the documents and max scores of the terms are calculated during indexing ({@link IdfMode#QUERY_TIME}).
+     */
+    private final boolean termFrequencyNorms;
+
+    /**
+     * Indexed documents and their norms, only if the norms are calculated.
+     */
+    private int[] documentOrdinals;
+    private double[] documentNorms;
+
+    /**
+     * Max score contributions of the terms without IDF, only if the norms are calculated.
+     */
+    private final Map<String, Double> termMaxScores;
+
+    /**
+     * Number of documents indexed in this partial index.
+     */
+    private int documentCount;
+
+    PartialIndex(boolean termFrequencyNorms) {
+        this.termFrequencyNorms = termFrequencyNorms;
+        postings = new HashMap<>();
+        documentOrdinals = new int[termFrequencyNorms ? 16 : 0];
+        documentNorms = new double[documentOrdinals.length];
+        termMaxScores = new HashMap<>();
+        documentCount = 0;
+    }
+
+    /**
+     * Adds document to this partial index.
+     *
+     * @param tokens Preprocessed tokens of the document.
+     * @param documentOrdinal Ordinal reserved for the document, must be higher than ordinals of the documents
+     *                        already indexed by this partial index.
+     */
+    public void indexDocument(String[] tokens, int documentOrdinal) {
+        for (String token : tokens) {
+            PostingList postingList = postings.get(token);
+            if (postingList == null) {
+                postingList = new PostingList();
+                postings.put(token, postingList);
+            }
+
+            postingList.addOccurrence(documentOrdinal);
+        }
+
+        if (termFrequencyNorms) {
+            Map<String, Integer> termFrequencies = InvertedIndex.termFrequencies(tokens);
+            double norm = InvertedIndex.termFrequencyNorm(termFrequencies.values());
+            if (documentCount == documentOrdinals.length) {
+                documentOrdinals = Arrays.copyOf(documentOrdinals, documentCount * 2);
+                documentNorms = Arrays.copyOf(documentNorms, documentCount * 2);
+            }
+            documentOrdinals[documentCount] = documentOrdinal;
+            documentNorms[documentCount] = norm;
+
+            for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+                termMaxScores.merge(entry.getKey(), Posting.tfIdf(entry.getValue(), 1) / norm, Math::max);
+            }
+        }
+        documentCount++;
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    Map<String, PostingList> getPostings() {
+        return postings;
+    }
+
+    Map<String, Double> getTermMaxScores() {
+        return termMaxScores;
+    }
+
+    /**
+     * Copies norms of the indexed documents to the norms of all documents.
+     *
+     * @param norms Norms indexed by document ordinals.
+     */
+    void copyNormsTo(double[] norms) {
+        if (!termFrequencyNorms) {
+            return;
+        }
+        for (int i = 0; i < documentCount; i++) {
+            norms[documentOrdinals[i]] = documentNorms[i];
+        }
+    }
+}
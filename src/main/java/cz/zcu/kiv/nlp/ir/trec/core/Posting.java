@@ -8,31 +8,22 @@ import java.io.Serializable;
 public class Posting implements Serializable{
 
     /**
-     * Id of document term occurs in.
+     * Ordinal of document term occurs in. See {@link DocumentDictionary}.
      */
-    private String documentId;
+    private int documentOrdinal;
 
     /**
      * Number of occurrences of term in document.
      */
     private int termFrequency;
 
-    /**
-     * TF-IDF of this term in this document.
-     */
-    private double tfIdf;
-
-    public Posting(String documentId) {
-        this.documentId = documentId;
+    public Posting(int documentOrdinal) {
+        this.documentOrdinal = documentOrdinal;
         this.termFrequency = 1;
     }
 
-    public String getDocumentId() {
-        return documentId;
-    }
-
-    public void setDocumentId(String documentId) {
-        this.documentId = documentId;
+    public int getDocumentOrdinal() {
+        return documentOrdinal;
     }
 
     public int getTermFrequency() {
@@ -51,27 +42,14 @@ public class Posting implements Serializable{
     }
 
     /**
-     * Returns hash of document id. If the id is null, 0 is returned.
-     * Use this to sort postings by document ids even if those aren't integers.
+     * Calculates TF-IDF from term frequency and IDF of the term.
      *
-     * @return Hash of document id.
+     * @param termFrequency Term frequency, must be greater than 0.
+     * @param termIdf IDF of term.
+     * @return TF-IDF.
      */
-    public int documentIdHash() {
-        if (documentId == null)  { return 0; }
-        else { return documentId.hashCode(); }
-    }
-
-    /**
-     * Re-calculates TF-IDF of this posting. Assumes termFrequency is set correctly.
-     *
-     * @param termIdf IDF of term in this posting.
-     */
-    public void recalculateTfIdf(double termIdf) {
-        tfIdf = termIdf * (1 + Math.log10(termFrequency));
-    }
-
-    public double getTfIdf() {
-        return tfIdf;
+    public static double tfIdf(int termFrequency, double termIdf) {
+        return termIdf * (1 + Math.log10(termFrequency));
     }
 
     @Override
@@ -81,11 +59,19 @@ public class Posting implements Serializable{
 
         Posting posting = (Posting) o;
 
-        return documentId != null ? documentId.equals(posting.documentId) : posting.documentId == null;
+        return documentOrdinal == posting.documentOrdinal;
     }
 
     @Override
     public int hashCode() {
-        return documentId != null ? documentId.hashCode() : 0;
+        return documentOrdinal;
+    }
+
+    @Override
+    public String toString() {
+        return "Posting{" +
+                "documentOrdinal=" + documentOrdinal +
+                ", termFrequency=" + termFrequency +
+                '}';
     }
 }
@@ -0,0 +1,459 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.codec.PostingsCodec;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.VByteCodec;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Posting list of one term backed by parallel primitive arrays.
+ *
+ * Postings are kept sorted by document ordinal in ascending order all the time, so the list
+ * can be iterated directly by queries without copying and sorting it first.
+ *
+ * Once the list is complete, it can be encoded ({@link #encode(PostingsCodec)}) to a compressed form. Encoded list
+ * is decoded lazily by its {@link #iterator()} and the index-based accessors are not available.
+ * If the encoded list is modified, it's decoded back to arrays first.
+ */
+public class PostingList implements Serializable {
+
+    private static final int DEFAULT_CAPACITY = 4;
+
+    /**
+     * Codec used by {@link #encode()}.
+     */
+    private static final PostingsCodec DEFAULT_CODEC = new VByteCodec();
+
+    /**
+     * Ordinals of documents, sorted in ascending order.
+     */
+    private int[] documentOrdinals;
+
+    /**
+     * Term frequencies. Item on index i belongs to document on index i in documentOrdinals.
+     */
+    private int[] termFrequencies;
+
+    /**
+     * Compressed postings. Null if the list is not encoded or it's encoded in a mapped file.
+     */
+    private byte[] encodedPostings;
+
+    /**
+     * Compressed postings in a memory-mapped index file. Null if the list is not encoded or it's encoded on heap.
+     */
+    private transient ByteBuffer mappedPostings;
+
+    /**
+     * Codec the postings were encoded with. Null if the list is not encoded.
+     */
+    private PostingsCodec codec;
+
+    /**
+     * Number of postings in this list.
+     */
+    private int size;
+
+    public PostingList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PostingList(int initialCapacity) {
+        documentOrdinals = new int[initialCapacity];
+        termFrequencies = new int[initialCapacity];
+        size = 0;
+    }
+
+    /**
+     * Creates list from already encoded postings.
+     *
+     * @param encodedPostings Encoded postings.
+     * @param size Number of encoded postings.
+     * @param codec Codec the postings were encoded with.
+     * @return Encoded posting list.
+     */
+    static PostingList encoded(byte[] encodedPostings, int size, PostingsCodec codec) {
+        PostingList postingList = new PostingList(0);
+        postingList.encodedPostings = encodedPostings;
+        postingList.codec = codec;
+        postingList.size = size;
+        postingList.documentOrdinals = null;
+        postingList.termFrequencies = null;
+        return postingList;
+    }
+
+    /**
+     * Creates list from postings encoded in a memory-mapped file. The postings are not copied.
+     *
+     * @param mappedPostings Encoded postings, the buffer must contain only the postings of this list.
+     * @param size Number of encoded postings.
+     * @param codec Codec the postings were encoded with.
+     * @return Encoded posting list.
+     */
+    static PostingList mapped(ByteBuffer mappedPostings, int size, PostingsCodec codec) {
+        PostingList postingList = encoded(null, size, codec);
+        postingList.mappedPostings = mappedPostings;
+        return postingList;
+    }
+
+    /**
+     * Records one occurrence of the term in given document. If the document is already in the list,
+     * its term frequency is incremented, otherwise new posting with term frequency 1 is inserted so that
+     * the list stays sorted.
+     *
+     * Documents are usually indexed in ascending order of their ordinals so the new posting is
+     * simply appended to the end of the list.
+     *
+     * @param documentOrdinal Ordinal of document.
+     */
+    public void addOccurrence(int documentOrdinal) {
+        decode();
+
+        // fast path: document is the last one in the list or comes after it
+        if (size > 0 && documentOrdinals[size - 1] == documentOrdinal) {
+            termFrequencies[size - 1]++;
+            return;
+        } else if (size == 0 || documentOrdinals[size - 1] < documentOrdinal) {
+            add(documentOrdinal, 1);
+            return;
+        }
+
+        int index = Arrays.binarySearch(documentOrdinals, 0, size, documentOrdinal);
+        if (index >= 0) {
+            termFrequencies[index]++;
+        } else {
+            insert(-index - 1, documentOrdinal, 1);
+        }
+    }
+
+    /**
+     * Appends posting to the end of the list.
+     *
+     * @param documentOrdinal Ordinal of document. Must be greater than the ordinal of the last posting in the list.
+     * @param termFrequency Term frequency.
+     */
+    public void add(int documentOrdinal, int termFrequency) {
+        decode();
+        if (size > 0 && documentOrdinals[size - 1] >= documentOrdinal) {
+            throw new IllegalArgumentException("Posting for document " + documentOrdinal + " would break the order of posting list.");
+        }
+
+        ensureCapacity(size + 1);
+        documentOrdinals[size] = documentOrdinal;
+        termFrequencies[size] = termFrequency;
+        size++;
+    }
+
+    /**
+     * Number of postings in this list which is also the document frequency of the term.
+     * @return Number of postings.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getDocumentOrdinal(int index) {
+        checkNotEncoded();
+        checkIndex(index);
+        return documentOrdinals[index];
+    }
+
+    public int getTermFrequency(int index) {
+        checkNotEncoded();
+        checkIndex(index);
+        return termFrequencies[index];
+    }
+
+    /**
+     * Returns the posting on given index as an object.
+     *
+     * @param index Index of the posting.
+     * @return Posting.
+     */
+    public Posting get(int index) {
+        Posting p = new Posting(getDocumentOrdinal(index));
+        p.setTermFrequency(termFrequencies[index]);
+        return p;
+    }
+
+    /**
+     * Finds index of the posting of given document using binary search.
+     *
+     * @param documentOrdinal Ordinal of document.
+     * @return Index of the posting or -1 if the document is not in this list.
+     */
+    public int indexOf(int documentOrdinal) {
+        checkNotEncoded();
+        int index = Arrays.binarySearch(documentOrdinals, 0, size, documentOrdinal);
+        return index >= 0 ? index : -1;
+    }
+
+    public boolean contains(int documentOrdinal) {
+        return termFrequencyOf(documentOrdinal) > 0;
+    }
+
+    /**
+     * Returns the term frequency in given document.
+     *
+     * @param documentOrdinal Ordinal of document.
+     * @return Term frequency or 0 if the document is not in this list.
+     */
+    public int termFrequencyOf(int documentOrdinal) {
+        if (isEncoded()) {
+            PostingsIterator it = iterator();
+            return it.advance(documentOrdinal) == documentOrdinal ? it.termFrequency() : 0;
+        }
+
+        int index = indexOf(documentOrdinal);
+        return index >= 0 ? termFrequencies[index] : 0;
+    }
+
+    /**
+     * Returns new iterator over postings of this list. Encoded list is decoded while the iterator moves.
+     *
+     * @return Postings iterator.
+     */
+    public PostingsIterator iterator() {
+        if (mappedPostings != null) {
+            return codec.decode(mappedPostings.duplicate(), size);
+        } else if (isEncoded()) {
+            return codec.decode(ByteBuffer.wrap(encodedPostings), size);
+        }
+        return new ArrayPostingsIterator(documentOrdinals, termFrequencies, size);
+    }
+
+    /**
+     * Compresses the postings using the default (variable-byte) codec.
+     */
+    public void encode() {
+        encode(DEFAULT_CODEC);
+    }
+
+    /**
+     * Compresses the postings and releases the backing arrays. If the list is already encoded
+     * by other codec, it's re-encoded.
+     *
+     * @param codec Codec to be used.
+     */
+    public void encode(PostingsCodec codec) {
+        if (isEncoded()) {
+            if (this.codec.getName().equals(codec.getName())) {
+                return;
+            }
+            decode();
+        }
+
+        encodedPostings = codec.encode(iterator());
+        this.codec = codec;
+        documentOrdinals = null;
+        termFrequencies = null;
+    }
+
+    /**
+     * Decodes compressed postings back to arrays so that the list can be modified.
+     */
+    public void decode() {
+        if (!isEncoded()) {
+            return;
+        }
+
+        int[] ordinals = new int[size];
+        int[] frequencies = new int[size];
+        PostingsIterator it = iterator();
+        for (int i = 0; it.nextDoc() != PostingsIterator.NO_MORE_DOCS; i++) {
+            ordinals[i] = it.docOrdinal();
+            frequencies[i] = it.termFrequency();
+        }
+
+        documentOrdinals = ordinals;
+        termFrequencies = frequencies;
+        encodedPostings = null;
+        mappedPostings = null;
+        codec = null;
+    }
+
+    public boolean isEncoded() {
+        return encodedPostings != null || mappedPostings != null;
+    }
+
+    /**
+     * Returns the codec this list is encoded with.
+     *
+     * @return Codec or null if the list is not encoded.
+     */
+    public PostingsCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Returns the postings encoded by given codec. If the list is already encoded by the codec, its bytes
+     * are returned without copying, otherwise the postings are encoded and the list is left as it is.
+     *
+     * @param codec Codec.
+     * @return Encoded postings, must not be modified.
+     */
+    byte[] getEncodedPostings(PostingsCodec codec) {
+        if (isEncoded() && this.codec.getName().equals(codec.getName())) {
+            return mappedPostings != null ? copyMappedPostings() : encodedPostings;
+        }
+        return codec.encode(iterator());
+    }
+
+    private byte[] copyMappedPostings() {
+        byte[] bytes = new byte[mappedPostings.remaining()];
+        mappedPostings.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Approximate number of bytes occupied by the postings. Postings in a mapped file are counted too,
+     * although they don't occupy the heap.
+     *
+     * @return Number of bytes.
+     */
+    public long sizeInBytes() {
+        if (mappedPostings != null) {
+            return mappedPostings.remaining();
+        }
+        return isEncoded() ? encodedPostings.length : 8L * documentOrdinals.length;
+    }
+
+    /**
+     * Shrinks backing arrays to the size of the list.
+     */
+    public void trimToSize() {
+        if (!isEncoded() && documentOrdinals.length > size) {
+            documentOrdinals = Arrays.copyOf(documentOrdinals, size);
+            termFrequencies = Arrays.copyOf(termFrequencies, size);
+        }
+    }
+
+    private void insert(int index, int documentOrdinal, int termFrequency) {
+        ensureCapacity(size + 1);
+        System.arraycopy(documentOrdinals, index, documentOrdinals, index + 1, size - index);
+        System.arraycopy(termFrequencies, index, termFrequencies, index + 1, size - index);
+        documentOrdinals[index] = documentOrdinal;
+        termFrequencies[index] = termFrequency;
+        size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > documentOrdinals.length) {
+            int newCapacity = Math.max(capacity, Math.max(DEFAULT_CAPACITY, documentOrdinals.length + (documentOrdinals.length >> 1)));
+            documentOrdinals = Arrays.copyOf(documentOrdinals, newCapacity);
+            termFrequencies = Arrays.copyOf(termFrequencies, newCapacity);
+        }
+    }
+
+    private void checkNotEncoded() {
+        if (isEncoded()) {
+            throw new IllegalStateException("Posting list is encoded, use iterator() to read it.");
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    /**
+     * Only the used part of the arrays is serialized. Postings in a mapped file are copied to the heap first.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (mappedPostings != null) {
+            encodedPostings = copyMappedPostings();
+            mappedPostings = null;
+        }
+        trimToSize();
+        out.defaultWriteObject();
+    }
+
+    /**
+     * Iterator over not encoded postings.
+     */
+    private static class ArrayPostingsIterator implements PostingsIterator {
+
+        private final int[] documentOrdinals;
+        private final int[] termFrequencies;
+        private final int size;
+
+        private int index;
+        private int doc;
+
+        ArrayPostingsIterator(int[] documentOrdinals, int[] termFrequencies, int size) {
+            this.documentOrdinals = documentOrdinals;
+            this.termFrequencies = termFrequencies;
+            this.size = size;
+            index = -1;
+            doc = -1;
+        }
+
+        @Override
+        public int docOrdinal() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            index++;
+            doc = index < size ? documentOrdinals[index] : NO_MORE_DOCS;
+            return doc;
+        }
+
+        /**
+         * Galloping search: probes postings at exponentially growing distances from the current one
+         * and then binary searches the last interval, so advancing costs O(log distance).
+         */
+        @Override
+        public int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+
+            int low = index + 1;
+            int bound = 1;
+            int high = low;
+            while (high < size && documentOrdinals[high] < target) {
+                low = high + 1;
+                high = index + 1 + bound;
+                bound <<= 1;
+            }
+            high = Math.min(high, size - 1);
+
+            if (low > high) {
+                index = size;
+                doc = NO_MORE_DOCS;
+                return doc;
+            }
+
+            int found = Arrays.binarySearch(documentOrdinals, low, high + 1, target);
+            index = found >= 0 ? found : -found - 1;
+            doc = index < size ? documentOrdinals[index] : NO_MORE_DOCS;
+            return doc;
+        }
+
+        @Override
+        public int termFrequency() {
+            return termFrequencies[index];
+        }
+
+        @Override
+        public int position() {
+            return index;
+        }
+
+        @Override
+        public long cost() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cache of decoded posting lists bounded by their total size. When the cache is full, the least recently used
+ * lists are evicted. Counts hits, misses and evictions so that the size of the cache can be tuned, the statistics
+ * are logged whenever lists are evicted.
+ *
+ * The cache is thread safe. Lists are loaded outside of the lock, so two threads which miss the same term at once
+ * may both load it; only one of the lists is cached.
+ */
+public class PostingsCache {
+
+    private static Logger log = LoggerFactory.getLogger(PostingsCache.class);
+
+    /**
+     * Approximate number of bytes taken by a cache entry besides the postings: the term, the list object and the map entry.
+     */
+    static final long ENTRY_OVERHEAD = 96;
+
+    private final long maxSizeInBytes;
+
+    /**
+     * Lists in access order, the least recently used first.
+     */
+    private final LinkedHashMap<String, PostingList> lists;
+
+    private long sizeInBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxSizeInBytes Max total size of the cached lists, see {@link PostingList#sizeInBytes()}.
+     */
+    public PostingsCache(long maxSizeInBytes) {
+        if (maxSizeInBytes < 0) {
+            throw new IllegalArgumentException("Size of the cache must not be negative: " + maxSizeInBytes);
+        }
+        this.maxSizeInBytes = maxSizeInBytes;
+        lists = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns cached posting list of the term or loads it and adds it to the cache. List larger than the whole
+     * cache is returned without being cached.
+     *
+     * @param term Term.
+     * @param loader Loads the list of a term which is not cached.
+     * @return Posting list.
+     */
+    public PostingList get(String term, Function<String, PostingList> loader) {
+        synchronized (this) {
+            PostingList postings = lists.get(term);
+            if (postings != null) {
+                hits++;
+                return postings;
+            }
+            misses++;
+        }
+
+        PostingList loaded = loader.apply(term);
+        long size = sizeOf(term, loaded);
+        synchronized (this) {
+            PostingList postings = lists.get(term);
+            if (postings != null) {
+                // loaded by other thread meanwhile
+                return postings;
+            } else if (size > maxSizeInBytes) {
+                return loaded;
+            }
+
+            lists.put(term, loaded);
+            sizeInBytes += size;
+            if (sizeInBytes > maxSizeInBytes) {
+                Iterator<Map.Entry<String, PostingList>> eldest = lists.entrySet().iterator();
+                while (sizeInBytes > maxSizeInBytes) {
+                    Map.Entry<String, PostingList> entry = eldest.next();
+                    sizeInBytes -= sizeOf(entry.getKey(), entry.getValue());
+                    eldest.remove();
+                    evictions++;
+                }
+                log.debug("Evicted lists to cache postings of {}, {}", term, this);
+            }
+        }
+        return loaded;
+    }
+
+    private static long sizeOf(String term, PostingList postings) {
+        return postings.sizeInBytes() + 2L * term.length() + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * Removes all lists from the cache. Statistics are kept.
+     */
+    public synchronized void clear() {
+        lists.clear();
+        sizeInBytes = 0;
+    }
+
+    public long getMaxSizeInBytes() {
+        return maxSizeInBytes;
+    }
+
+    /**
+     * Approximate size of the cached lists.
+     *
+     * @return Size in bytes.
+     */
+    public synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return lists.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Ratio of requests which were served from the cache.
+     *
+     * @return Hit ratio between 0 and 1, 0 if there were no requests.
+     */
+    public synchronized double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : hits / (double) requests;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("postings cache: %d lists, %d / %d bytes, %d hits, %d misses (hit ratio %.2f), %d evictions",
+                lists.size(), sizeInBytes, maxSizeInBytes, hits, misses, getHitRatio(), evictions);
+    }
+}
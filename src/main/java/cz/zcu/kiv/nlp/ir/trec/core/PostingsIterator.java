@@ -0,0 +1,64 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+/**
+ * Cursor which streams postings of one posting list in ascending order of document ordinals.
+ *
+ * Newly created iterator is not positioned on any document, {@link #nextDoc()} or {@link #advance(int)}
+ * has to be called first.
+ */
+public interface PostingsIterator {
+
+    /**
+     * Returned when there are no more postings in the list.
+     */
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     * Returns ordinal of the current document.
+     *
+     * @return Ordinal of current document, -1 if the iterator wasn't moved yet or {@link #NO_MORE_DOCS}
+     * if the iterator is exhausted.
+     */
+    int docOrdinal();
+
+    /**
+     * Moves to the next posting.
+     *
+     * @return Ordinal of the next document or {@link #NO_MORE_DOCS}.
+     */
+    int nextDoc();
+
+    /**
+     * Moves to the first posting whose document ordinal is greater or equal to target.
+     * If the iterator is already positioned on such posting, it stays there.
+     *
+     * @param target Target document ordinal.
+     * @return Ordinal of the document the iterator is positioned on or {@link #NO_MORE_DOCS}.
+     */
+    int advance(int target);
+
+    /**
+     * Term frequency of the current posting.
+     *
+     * @return Term frequency.
+     */
+    int termFrequency();
+
+    /**
+     * Position of the current posting in its posting list, e.g. to find values stored for the postings
+     * in parallel arrays like {@link Impacts}. Iterators which combine several lists don't support it.
+     *
+     * @return Position of the current posting, starting at 0.
+     * @throws UnsupportedOperationException If the iterator doesn't iterate over a single posting list.
+     */
+    default int position() {
+        throw new UnsupportedOperationException("Postings of " + getClass().getSimpleName() + " have no position!");
+    }
+
+    /**
+     * Upper bound of the number of postings this iterator can return.
+     *
+     * @return Number of postings.
+     */
+    long cost();
+}
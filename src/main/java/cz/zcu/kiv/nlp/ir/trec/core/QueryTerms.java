@@ -0,0 +1,36 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Helper for selecting the query terms which contribute to document scores.
+ */
+public final class QueryTerms {
+
+    /**
+     * Terms with IDF below this value are not in the index (or are in all documents) and are skipped
+     * the same way as in {@link CosineSimilarityCalculator}.
+     */
+    public static final double MIN_IDF = 0.01;
+
+    private QueryTerms() {
+    }
+
+    /**
+     * Returns distinct query terms which have postings and non-zero IDF, in the order of their first occurrence.
+     *
+     * @param invertedIndex Index.
+     * @param query Preprocessed query tokens.
+     * @return Scored terms.
+     */
+    public static String[] scoredTerms(SearchableIndex invertedIndex, String[] query) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String token : query) {
+            if (invertedIndex.idf(token) >= MIN_IDF) {
+                terms.add(token);
+            }
+        }
+        return terms.toArray(new String[0]);
+    }
+}
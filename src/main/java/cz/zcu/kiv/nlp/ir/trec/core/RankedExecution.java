@@ -0,0 +1,29 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+/**
+ * Ways of evaluating ranked queries. All of them return the same scores, they differ in how many
+ * documents they have to score. If all results are requested, nothing can be skipped and
+ * {@link #TERM_AT_A_TIME} is always used.
+ */
+public enum RankedExecution {
+
+    /**
+     * Exhaustive scoring of all postings of query terms, see {@link TermAtATimeScorer}.
+     */
+    TERM_AT_A_TIME,
+
+    /**
+     * Top K documents by {@link WandScorer}.
+     */
+    WAND,
+
+    /**
+     * Top K documents by {@link BlockMaxWandScorer}.
+     */
+    BLOCK_MAX_WAND,
+
+    /**
+     * Top K documents by {@link MaxScoreScorer}.
+     */
+    MAX_SCORE
+}
@@ -3,7 +3,7 @@ package cz.zcu.kiv.nlp.ir.trec.core;
 import org.apache.lucene.search.BooleanClause;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 
@@ -13,7 +13,7 @@ import java.util.Map;
 public class SearchQueryNode {
 
     /**
-     * Child nodes mapped to possible boolean operators.
+     * Child nodes mapped to possible boolean operators. Operators are iterated in the order of their declaration.
      */
     private Map<BooleanClause.Occur, List<SearchQueryNode>> children;
 
@@ -28,7 +28,7 @@ public class SearchQueryNode {
     private boolean isTerm;
 
     public SearchQueryNode() {
-        children = new HashMap<>();
+        children = new EnumMap<>(BooleanClause.Occur.class);
     }
 
     public void addChild(BooleanClause.Occur occur, SearchQueryNode child) {
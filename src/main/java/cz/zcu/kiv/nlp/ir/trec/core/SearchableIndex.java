@@ -0,0 +1,447 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.bitmap.RoaringBitmap;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.PostingsCodec;
+
+import java.util.*;
+
+/**
+ * Index which can be searched: postings and statistics of terms and documents, and boolean queries evaluated
+ * on top of the postings. It's implemented by the in-memory {@link InvertedIndex}, which can be modified,
+ * and by the read-only indexes backed by an index file ({@link FileInvertedIndex}). Scorers and searching
+ * depend only on this class.
+ */
+public abstract class SearchableIndex {
+
+    /**
+     * Returns postings list for a term. The list is sorted by document ordinal in ascending order.
+     * The returned list may be the one stored in the index, so it must not be modified.
+     *
+     * @param term Term.
+     * @return
+     */
+    public abstract PostingList getPostingsForTerm(String term);
+
+    /**
+     * Get document frequency of one term.
+     * @param term Term.
+     * @return Document frequency of one term.
+     */
+    public abstract int documentFrequency(String term);
+
+    /**
+     * Returns IDF of given term.
+     *
+     * @param term Term.
+     * @return IDF of given term or 0 if the term is not indexed.
+     */
+    public abstract double idf(String term);
+
+    /**
+     * Returns the max contribution of given term to the cosine score of any document.
+     *
+     * @param term Term.
+     * @return Upper bound of TF-IDF / norm of the term, 0 if the term is not indexed.
+     */
+    public abstract double maxScore(String term);
+
+    /**
+     * Returns upper bounds of the score contributions of given term in blocks of its postings.
+     *
+     * @param term Term.
+     * @return Block max scores or null if the term is not indexed or the bounds were not calculated.
+     */
+    public abstract BlockMaxScores getBlockMaxScores(String term);
+
+    /**
+     * Returns number of indexed documents.
+     * @return
+     */
+    public abstract int getDocumentCount();
+
+    /**
+     * Get term frequency of term in document.
+     * @param term Term.
+     * @param documentId Document.
+     * @return Term frequency.
+     */
+    public abstract int getTermFrequency(String term, String documentId);
+
+    /**
+     * Checks whether the document with given id is already indexed.
+     * @param documentId Id of document.
+     * @return True if the document is indexed.
+     */
+    public abstract boolean isIndexed(String documentId);
+
+    /**
+     * Returns ordinal of indexed document.
+     * @param documentId Id of document.
+     * @return Ordinal of document or {@link DocumentDictionary#NOT_FOUND}.
+     */
+    public abstract int getDocumentOrdinal(String documentId);
+
+    /**
+     * Resolves document ordinal back to the document id.
+     * @param documentOrdinal Ordinal of document.
+     * @return Id of document.
+     */
+    public abstract String getDocumentId(int documentOrdinal);
+
+    public abstract DocumentDictionary getDocumentDictionary();
+
+    /**
+     * Returns tf-idf for given term-document combination.
+     * @param term Term.
+     * @param documentOrdinal Ordinal of document.
+     * @return TF-IDF for given document-term or 0 if such combination is not indexed.
+     */
+    public abstract double getTfIdfOfTermInDocument(String term, int documentOrdinal);
+
+    /**
+     * Returns the size of TF-IDF vector of given document.
+     * @param documentOrdinal Ordinal of document.
+     * @return Norm of the TF-IDF vector or 0 if the norms weren't calculated for this document yet.
+     */
+    public abstract double getTfIdfNormForDocument(int documentOrdinal);
+
+    /**
+     * Returns TF-IDF vector for given document.
+     * @param documentId Id of document.
+     * @return term -> TF-IDF map.
+     */
+    public abstract Map<String, Double> getDocumentTfIdf(String documentId);
+
+    public abstract IdfMode getIdfMode();
+
+    /**
+     * Returns precision of the stored impacts.
+     *
+     * @return Precision or null if impacts are not stored.
+     */
+    public abstract ImpactPrecision getImpactPrecision();
+
+    /**
+     * Returns impacts of all postings.
+     *
+     * @return Impacts or null if they are not used or were not calculated yet.
+     */
+    public abstract Impacts getImpacts();
+
+    public abstract PostingsCodec getPostingsCodec();
+
+    /**
+     * Returns sorted dictionary of all indexed terms, e.g. to find terms with a prefix.
+     *
+     * @return Term dictionary.
+     */
+    public abstract TermDictionary getTermDictionary();
+
+    /**
+     * Returns all indexed terms. Used by {@link IndexFile} to write the index.
+     */
+    abstract Set<String> getTerms();
+
+    /**
+     * Returns stored IDF of the term.
+     *
+     * @param term Term.
+     * @return IDF or NaN if it was not calculated yet or it's calculated at query time.
+     */
+    abstract double getStoredIdf(String term);
+
+    /**
+     * Returns stored max score contribution of the term, without IDF in {@link IdfMode#QUERY_TIME}.
+     *
+     * @param term Term.
+     * @return Max score or NaN if it was not calculated yet.
+     */
+    abstract double getStoredMaxScore(String term);
+
+    /**
+     * Whether the statistics of the term have to be updated by {@link InvertedIndex#updateStatistics()}.
+     */
+    abstract boolean isPending(String term);
+
+    /**
+     * Norms of all documents, may be shorter than the number of documents if the statistics are not up to date.
+     */
+    abstract double[] getDocumentNorms();
+
+    /**
+     * Number of documents at the time of the last full recalculation of statistics.
+     */
+    abstract int getStatisticsDocumentCount();
+
+    /**
+     * Returns compressed bitmap of documents which contain the term. The bitmap is built from the postings
+     * on every call, so bitmaps of read-only indexes take memory only while a query is evaluated.
+     *
+     * @param term Term.
+     * @return Bitmap of documents.
+     */
+    public RoaringBitmap getBitmapForTerm(String term) {
+        return RoaringBitmap.fromPostings(getPostingsForTerm(term).iterator());
+    }
+
+    /**
+     * Gets the posting list that should be used for query. In case of term, simple postings list from
+     * inverted index is returned. Otherwise the query is evaluated by {@link #getIteratorForQuery(SearchQueryNode)}
+     * and the matching postings are collected to a new list.
+     *
+     * @param rootQuery Node which represents root of the query.
+     * @return
+     */
+    public PostingList getPostingsForQuery(SearchQueryNode rootQuery) {
+        return getPostingsForQueryRec(rootQuery, false);
+    }
+
+    /**
+     * Returns postings of documents matching the query node.
+     *
+     * @param node Query node.
+     * @param notClause If this is true, all documents except the ones matching the node will be returned.
+     * @return
+     */
+    public PostingList getPostingsForQueryRec(SearchQueryNode node, boolean notClause) {
+        if (node.isTerm() && !notClause) {
+            return getPostingsForTerm(node.getText());
+        }
+
+        PostingsIterator postings = getIteratorForQuery(node);
+        if (notClause) {
+            postings = new ExclusionIterator(new AllDocumentsIterator(getDocumentCount()), postings);
+        }
+        return toPostingList(postings, 0);
+    }
+
+    /**
+     * Builds lazy iterator over documents matching the query. No postings are materialized, every node of the
+     * query tree is a cursor composed of the cursors of its children, so the caller can stop consuming
+     * the results at any time.
+     *
+     * Clauses of one node are combined as follows: MUST clauses are intersected ({@link ConjunctionIterator}),
+     * documents matching any of the MUST_NOT clauses are excluded from them ({@link ExclusionIterator}). If there
+     * are no MUST clauses, all documents except the excluded ones are used instead. Finally, SHOULD clauses are
+     * united with the result ({@link DisjunctionIterator}).
+     *
+     * MUST clauses with terms which are not indexed are ignored.
+     *
+     * The query is rewritten and the order of operands and the way they're combined is chosen by {@link BooleanQueryPlanner}.
+     *
+     * @param node Query node.
+     * @return Iterator over matching documents.
+     */
+    public PostingsIterator getIteratorForQuery(SearchQueryNode node) {
+        return new BooleanQueryPlanner(this).plan(node);
+    }
+
+    /**
+     * Returns all indexed documents which are not in the given list.
+     * The list is subtracted from implicit list of all documents, so the cost is proportional
+     * to the number of documents and not to the size of the whole index.
+     *
+     * @param postingList Posting list.
+     * @return Complement of the posting list.
+     */
+    public PostingList complement(PostingList postingList) {
+        return toPostingList(new ExclusionIterator(new AllDocumentsIterator(getDocumentCount()), postingList.iterator()),
+                getDocumentCount() - postingList.size());
+    }
+
+    /**
+     * Returns postings of the first list whose documents are not in the second list (a AND NOT b).
+     * Both lists are streamed and the second one is only advanced to the documents of the first one.
+     *
+     * @param postingList Posting list.
+     * @param excluded Postings of documents to be excluded.
+     * @return Difference of the lists.
+     */
+    public PostingList difference(PostingList postingList, PostingList excluded) {
+        if (postingList.isEmpty() || excluded.isEmpty()) {
+            return postingList;
+        }
+        return toPostingList(new ExclusionIterator(postingList.iterator(), excluded.iterator()), postingList.size());
+    }
+
+    /**
+     * Intersect two lists so that none of them will contain postings of given term.
+     * Basically: resultList = sourceList \ index[notTem].
+     *
+     * @param postingList1 Result list.
+     * @param postingList2 Source list. It is expected that this list already contains NOT [term] postings
+     *                     so the actual intersection is AND (NOT [term]).
+     * @return List of postings.
+     */
+    public PostingList notIntersect(PostingList postingList1, PostingList postingList2) {
+        if (postingList1.isEmpty() && postingList2.isEmpty()) {
+            return new PostingList(0);
+        } else if (postingList2.isEmpty()) {
+            return postingList1;
+        } else if (postingList1.isEmpty()) {
+            return postingList2;
+        }
+
+        PostingList res = new PostingList();
+
+        // lists are not empty, take items from source list which are also in result list
+        // both lists are sorted so one pass over them is enough
+        PostingsIterator postings1 = postingList1.iterator();
+        PostingsIterator postings2 = postingList2.iterator();
+        int d2 = postings2.nextDoc();
+        while (d2 != PostingsIterator.NO_MORE_DOCS) {
+            int d1 = postings1.advance(d2);
+            if (d1 == PostingsIterator.NO_MORE_DOCS) {
+                break;
+            } else if (d1 == d2) {
+                res.add(d2, postings2.termFrequency());
+                d2 = postings2.nextDoc();
+            } else {
+                d2 = postings2.advance(d1);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Performs AND intersection over two posting lists and returns result.
+     * Both lists are expected to be sorted by document ordinal.
+     *
+     * @param postingList1 Posting list 1.
+     * @param postingList2 Posting list 2.
+     * @return AND intersection of two posting lists.
+     */
+    public PostingList andIntersect(PostingList postingList1, PostingList postingList2) {
+        return andIntersect(Arrays.asList(postingList1, postingList2));
+    }
+
+    /**
+     * Performs AND intersection over multiple posting lists and returns result.
+     *
+     * Lists are intersected starting from the shortest one. Its postings are used as candidates and other
+     * iterators are advanced to them (skipping postings in between), so the cost is roughly proportional
+     * to the length of the shortest list. Empty lists are ignored, same as in {@link #orIntersect(PostingList, PostingList)}.
+     *
+     * @param postingLists Posting lists sorted by document ordinal.
+     * @return AND intersection of the lists.
+     */
+    public PostingList andIntersect(List<PostingList> postingLists) {
+        List<PostingList> lists = new ArrayList<>(postingLists.size());
+        for (PostingList postingList : postingLists) {
+            if (!postingList.isEmpty()) {
+                lists.add(postingList);
+            }
+        }
+
+        if (lists.isEmpty()) {
+            return new PostingList(0);
+        } else if (lists.size() == 1) {
+            return copyOf(lists.get(0));
+        }
+
+        // rarest term first
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        PostingsIterator[] postings = new PostingsIterator[lists.size()];
+        for (int i = 0; i < postings.length; i++) {
+            postings[i] = lists.get(i).iterator();
+        }
+
+        PostingsIterator lead = postings[0];
+        PostingList res = new PostingList();
+        int doc = lead.nextDoc();
+        while (doc != PostingsIterator.NO_MORE_DOCS) {
+            int i = 1;
+            for (; i < postings.length; i++) {
+                int other = postings[i].advance(doc);
+                if (other > doc) {
+                    // candidate not in this list, move lead to the next possible document
+                    doc = lead.advance(other);
+                    break;
+                }
+            }
+
+            if (i == postings.length) {
+                res.add(doc, lead.termFrequency());
+                doc = lead.nextDoc();
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Performs OR intersection over two posting lists and returns result.
+     * Both lists are expected to be sorted by document ordinal.
+     *
+     * @param postingList1 Posting list 1.
+     * @param postingList2 Posting list 2.
+     * @return OR intersection of two posting lists.
+     */
+    public PostingList orIntersect(PostingList postingList1, PostingList postingList2) {
+
+        // check for 'first timers' where at least one of the provided lists is empty.
+        PostingList resultForEmptyPosting = checkEmptyPostingsLists(postingList1, postingList2);
+        if (resultForEmptyPosting != null) {
+            return resultForEmptyPosting;
+        }
+
+        PostingsIterator postings1 = postingList1.iterator();
+        PostingsIterator postings2 = postingList2.iterator();
+        PostingList res = new PostingList(postingList1.size() + postingList2.size());
+
+        // merge lists together while sorting them
+        int d1 = postings1.nextDoc();
+        int d2 = postings2.nextDoc();
+        while (d1 != PostingsIterator.NO_MORE_DOCS && d2 != PostingsIterator.NO_MORE_DOCS) {
+            if (d1 == d2) {
+                res.add(d1, postings1.termFrequency());
+                d1 = postings1.nextDoc();
+                d2 = postings2.nextDoc();
+            } else if (d1 < d2) {
+                res.add(d1, postings1.termFrequency());
+                d1 = postings1.nextDoc();
+            } else {
+                res.add(d2, postings2.termFrequency());
+                d2 = postings2.nextDoc();
+            }
+        }
+
+        // add rest of the postings
+        while (d1 != PostingsIterator.NO_MORE_DOCS) {
+            res.add(d1, postings1.termFrequency());
+            d1 = postings1.nextDoc();
+        }
+        while (d2 != PostingsIterator.NO_MORE_DOCS) {
+            res.add(d2, postings2.termFrequency());
+            d2 = postings2.nextDoc();
+        }
+
+        return res;
+    }
+
+    /**
+     * Returns copy of the non-empty list if at least one of the lists is empty. Returns null otherwise.
+     */
+    private PostingList checkEmptyPostingsLists(PostingList postings1, PostingList postings2) {
+        if (postings1.isEmpty() && postings2.isEmpty()) {
+            return new PostingList(0);
+        } else if (postings1.isEmpty()) {
+            return copyOf(postings2);
+        } else if (postings2.isEmpty()) {
+            return copyOf(postings1);
+        }
+
+        return null;
+    }
+
+    private PostingList copyOf(PostingList postingList) {
+        return toPostingList(postingList.iterator(), postingList.size());
+    }
+
+    private PostingList toPostingList(PostingsIterator postings, int expectedSize) {
+        PostingList res = new PostingList(Math.max(expectedSize, 0));
+        while (postings.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+            res.add(postings.docOrdinal(), postings.termFrequency());
+        }
+        return res;
+    }
+}
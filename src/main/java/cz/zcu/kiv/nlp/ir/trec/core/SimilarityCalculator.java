@@ -8,8 +8,8 @@ public interface SimilarityCalculator {
     /**
      * Calculates similarity between query and document.
      *
-     * @param documentId Id of document.
+     * @param documentOrdinal Ordinal of document.
      * @return Similarity.
      */
-    double calculateScore(String documentId);
+    double calculateScore(int documentOrdinal);
 }
@@ -0,0 +1,181 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import java.util.Arrays;
+
+/**
+ * Term-at-a-time ranked retrieval. Postings of query terms are walked one term after another and the score
+ * contribution of each posting (its impact, see {@link Impacts}) is added to the accumulator of its document.
+ * Only the documents which were touched are then collected, so the cost is proportional to the number of
+ * postings of query terms and not to the number of indexed documents.
+ *
+ * Scores are the same as the ones calculated by {@link CosineSimilarityCalculator}.
+ *
+ * Accumulators are kept per thread and reused by subsequent queries.
+ */
+public class TermAtATimeScorer {
+
+    /**
+     * Documents with lower score are not returned.
+     */
+    public static final double MIN_SCORE = 0.001;
+
+    private static final ThreadLocal<Accumulators> ACCUMULATORS = ThreadLocal.withInitial(Accumulators::new);
+
+    private final SearchableIndex invertedIndex;
+
+    private final String[] queryTerms;
+    private final long postingCount;
+
+    private final Accumulators accumulators;
+
+    /**
+     * Currently processed term and its postings.
+     */
+    private int currentTerm;
+    private TermCursor currentPostings;
+    private long processedPostings;
+
+    public TermAtATimeScorer(SearchableIndex invertedIndex, String[] query) {
+        this.invertedIndex = invertedIndex;
+        queryTerms = QueryTerms.scoredTerms(invertedIndex, query);
+
+        long count = 0;
+        for (String term : queryTerms) {
+            count += invertedIndex.documentFrequency(term);
+        }
+        postingCount = count;
+
+        accumulators = ACCUMULATORS.get();
+        accumulators.reset(invertedIndex.getDocumentCount());
+        currentTerm = -1;
+        processedPostings = 0;
+    }
+
+    /**
+     * Scores all postings and offers documents with non-zero score to the collector.
+     *
+     * @param collector Collector of top K documents.
+     */
+    public void score(TopKCollector collector) {
+        scorePostings(Long.MAX_VALUE);
+        collect(collector);
+    }
+
+    /**
+     * Adds TF-IDF of next postings to the accumulators.
+     *
+     * @param maxPostings Max number of postings to process.
+     * @return Number of processed postings.
+     */
+    public long scorePostings(long maxPostings) {
+        long processed = 0;
+        while (processed < maxPostings && nextPostings()) {
+            int doc;
+            while (processed < maxPostings && (doc = currentPostings.nextDoc()) != PostingsIterator.NO_MORE_DOCS) {
+                accumulators.add(doc, (float) currentPostings.score());
+                processed++;
+            }
+        }
+        processedPostings += processed;
+        return processed;
+    }
+
+    /**
+     * Offers documents with non-zero accumulated score to the collector and clears the accumulators.
+     *
+     * @param collector Collector of top K documents.
+     */
+    public void collect(TopKCollector collector) {
+        for (int i = 0; i < accumulators.touchedCount; i++) {
+            int doc = accumulators.touched[i];
+            float score = accumulators.scores[doc];
+            accumulators.scores[doc] = 0;
+
+            if (score > MIN_SCORE) {
+                collector.collect(doc, score);
+            }
+        }
+        accumulators.touchedCount = 0;
+    }
+
+    /**
+     * Whether all postings of query terms were processed.
+     *
+     * @return True if there are no more postings to score.
+     */
+    public boolean isDone() {
+        return processedPostings >= postingCount;
+    }
+
+    /**
+     * Number of documents with non-zero accumulated score, i.e. max number of results.
+     *
+     * @return Number of documents.
+     */
+    public int getTouchedDocumentCount() {
+        return accumulators.touchedCount;
+    }
+
+    /**
+     * Total number of postings of query terms.
+     *
+     * @return Number of postings.
+     */
+    public long getPostingCount() {
+        return postingCount;
+    }
+
+    public long getProcessedPostings() {
+        return processedPostings;
+    }
+
+    /**
+     * Moves to the next term if postings of the current one are exhausted.
+     *
+     * @return False if there are no more terms.
+     */
+    private boolean nextPostings() {
+        if (currentPostings != null && currentPostings.docOrdinal() != PostingsIterator.NO_MORE_DOCS) {
+            return true;
+        }
+
+        currentTerm++;
+        if (currentTerm >= queryTerms.length) {
+            return false;
+        }
+        currentPostings = new TermCursor(invertedIndex, queryTerms[currentTerm]);
+        return true;
+    }
+
+    /**
+     * Score accumulators indexed by document ordinal together with the list of touched documents,
+     * so that only they have to be cleared.
+     */
+    private static class Accumulators {
+
+        private float[] scores = new float[0];
+        private int[] touched = new int[16];
+        private int touchedCount;
+
+        void reset(int documentCount) {
+            if (scores.length < documentCount) {
+                scores = new float[documentCount];
+            } else {
+                for (int i = 0; i < touchedCount; i++) {
+                    scores[touched[i]] = 0;
+                }
+            }
+            touchedCount = 0;
+        }
+
+        void add(int doc, float score) {
+            if (scores[doc] == 0) {
+                if (touchedCount == touched.length) {
+                    touched = Arrays.copyOf(touched, touched.length * 2);
+                }
+                touched[touchedCount++] = doc;
+            }
+            scores[doc] += score;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+/**
+ * Postings of one query term together with its IDF and upper bounds of its score contribution,
+ * used by scorers. If the index stores {@link Impacts}, the score contribution of a posting is read
+ * from them directly.
+ *
+ * Besides moving over postings, the cursor can move over blocks of {@link BlockMaxScores} without
+ * touching the postings (shallow advance). It also counts the postings and blocks it actually
+ * landed on, so that scorers can report how much was skipped.
+ */
+class TermCursor {
+
+    private final SearchableIndex invertedIndex;
+    private final PostingsIterator postings;
+    private final double idf;
+
+    /**
+     * Impacts of the index and of the term, null if the scores are calculated from term frequencies.
+     */
+    private final Impacts impacts;
+    private final byte[] termImpacts;
+    private final double maxScore;
+    private final long postingCount;
+
+    /**
+     * Block bounds, may be null if they were not calculated. Whole list is then one block bounded by max score.
+     */
+    private final BlockMaxScores blocks;
+    private int block;
+
+    private long visitedPostings;
+    private int visitedBlocks;
+    private int lastVisitedBlock;
+
+    TermCursor(SearchableIndex invertedIndex, String term) {
+        this.invertedIndex = invertedIndex;
+        impacts = invertedIndex.getImpacts();
+        termImpacts = impacts == null ? null : impacts.getImpactsForTerm(term);
+        postings = invertedIndex.getPostingsForTerm(term).iterator();
+        idf = invertedIndex.idf(term);
+        maxScore = invertedIndex.maxScore(term);
+        postingCount = invertedIndex.documentFrequency(term);
+        blocks = invertedIndex.getBlockMaxScores(term);
+        block = 0;
+        lastVisitedBlock = -1;
+    }
+
+    int docOrdinal() {
+        return postings.docOrdinal();
+    }
+
+    int nextDoc() {
+        return landed(postings.nextDoc());
+    }
+
+    int advance(int target) {
+        int doc = postings.docOrdinal();
+        return doc >= target ? doc : landed(postings.advance(target));
+    }
+
+    /**
+     * Contribution of the term to the cosine score of the current document: TF-IDF / norm of the document.
+     */
+    double score() {
+        if (termImpacts != null) {
+            return impacts.getImpact(termImpacts, postings.position());
+        }
+        return Posting.tfIdf(postings.termFrequency(), idf) / invertedIndex.getTfIdfNormForDocument(postings.docOrdinal());
+    }
+
+    double getMaxScore() {
+        return maxScore;
+    }
+
+    /**
+     * Moves the block pointer to the block which may contain the target document. Postings are not moved.
+     *
+     * @param target Document ordinal, must not be lower than the target of the previous call.
+     */
+    void shallowAdvance(int target) {
+        if (blocks != null) {
+            block = blocks.findBlock(target, block);
+        }
+    }
+
+    /**
+     * Upper bound of the score contribution in the current block.
+     */
+    double blockMaxScore() {
+        if (blocks == null) {
+            return maxScore;
+        }
+        return block < blocks.getBlockCount() ? blocks.getMaxScore(block) : 0;
+    }
+
+    /**
+     * Ordinal of the last document of the current block.
+     */
+    int blockLastDocument() {
+        if (blocks == null || block >= blocks.getBlockCount()) {
+            return PostingsIterator.NO_MORE_DOCS;
+        }
+        return blocks.getLastDocument(block);
+    }
+
+    long getPostingCount() {
+        return postingCount;
+    }
+
+    int getBlockCount() {
+        return blocks == null ? 1 : blocks.getBlockCount();
+    }
+
+    long getVisitedPostings() {
+        return visitedPostings;
+    }
+
+    int getVisitedBlocks() {
+        return visitedBlocks;
+    }
+
+    private int landed(int doc) {
+        if (doc != PostingsIterator.NO_MORE_DOCS) {
+            visitedPostings++;
+            shallowAdvance(doc);
+            if (block != lastVisitedBlock) {
+                visitedBlocks++;
+                lastVisitedBlock = block;
+            }
+        }
+        return doc;
+    }
+}
@@ -0,0 +1,388 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable sorted dictionary which assigns dense integer ids to terms. Terms are sorted by their UTF-8 bytes,
+ * which is the order of their code points, and ids are their positions in that order, starting at 0. Terms with
+ * a common prefix therefore have consecutive ids.
+ *
+ * Terms are front-coded in blocks of {@link #BLOCK_SIZE}: the first term of a block is stored whole, every following
+ * term only as the length of the prefix it shares with the previous term and the rest of its bytes. Lengths are
+ * variable-byte numbers. Neighbouring terms usually share long prefixes, so the dictionary takes a few bytes per term
+ * instead of a string and a hash map entry. The dictionary is a single buffer:
+ *
+ * <pre>
+ * int termCount, int blockCount, int[blockCount] offsets of the blocks, blocks
+ * </pre>
+ *
+ * It's read directly from the buffer, so the buffer may be on the heap as well as mapped from a file. A term is found
+ * by binary search over the first terms of the blocks and decoding of a single block.
+ *
+ * The dictionary is thread safe, the buffer is only read through its duplicates.
+ */
+public class TermDictionary implements Iterable<String> {
+
+    /**
+     * Returned by {@link #getTermId(String)} when the term is not in the dictionary.
+     */
+    public static final int NOT_FOUND = -1;
+
+    /**
+     * Number of terms in a block.
+     */
+    public static final int BLOCK_SIZE = 16;
+
+    /**
+     * Length of the term count and the block count.
+     */
+    private static final int HEADER_LENGTH = 8;
+
+    private final ByteBuffer buffer;
+    private final int termCount;
+    private final int blockCount;
+
+    /**
+     * Position of the first block in the buffer.
+     */
+    private final int blocksOffset;
+
+    /**
+     * Wraps buffer with a dictionary created by {@link #build(Collection)}. The content of the buffer is not copied.
+     *
+     * @param buffer Buffer with the dictionary between its position and limit.
+     * @throws IllegalArgumentException If the buffer doesn't hold a valid dictionary.
+     */
+    public TermDictionary(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+        if (this.buffer.limit() < HEADER_LENGTH) {
+            throw new IllegalArgumentException("Term dictionary is truncated!");
+        }
+        termCount = this.buffer.getInt(0);
+        blockCount = this.buffer.getInt(4);
+        if (termCount < 0 || blockCount != (termCount + BLOCK_SIZE - 1) / BLOCK_SIZE
+                || this.buffer.limit() < HEADER_LENGTH + 4L * blockCount) {
+            throw new IllegalArgumentException("Invalid term dictionary: " + termCount + " terms in " + blockCount + " blocks!");
+        }
+        blocksOffset = HEADER_LENGTH + 4 * blockCount;
+    }
+
+    /**
+     * Creates dictionary of given terms in a heap buffer.
+     *
+     * @param terms Terms in any order.
+     * @return Dictionary.
+     * @throws IllegalArgumentException If the terms contain duplicates.
+     */
+    public static TermDictionary build(Collection<String> terms) {
+        byte[][] sorted = new byte[terms.size()][];
+        int i = 0;
+        for (String term : terms) {
+            sorted[i++] = term.getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(sorted, TermDictionary::compareBytes);
+
+        int blockCount = (sorted.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] blockOffsets = new int[blockCount];
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        for (i = 0; i < sorted.length; i++) {
+            byte[] term = sorted[i];
+            if (i > 0 && Arrays.equals(sorted[i - 1], term)) {
+                throw new IllegalArgumentException("Duplicate term in dictionary: " + new String(term, StandardCharsets.UTF_8));
+            }
+            if (i % BLOCK_SIZE == 0) {
+                blockOffsets[i / BLOCK_SIZE] = blocks.size();
+                writeVInt(blocks, term.length);
+                blocks.write(term, 0, term.length);
+                continue;
+            }
+
+            byte[] previous = sorted[i - 1];
+            int shared = 0;
+            int length = Math.min(previous.length, term.length);
+            while (shared < length && previous[shared] == term[shared]) {
+                shared++;
+            }
+            writeVInt(blocks, shared);
+            writeVInt(blocks, term.length - shared);
+            blocks.write(term, shared, term.length - shared);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + 4 * blockCount + blocks.size());
+        buffer.putInt(sorted.length);
+        buffer.putInt(blockCount);
+        for (int blockOffset : blockOffsets) {
+            buffer.putInt(blockOffset);
+        }
+        buffer.put(blocks.toByteArray());
+        buffer.flip();
+        return new TermDictionary(buffer);
+    }
+
+    /**
+     * Returns number of terms in the dictionary.
+     *
+     * @return Number of terms, ids of the terms are 0 to size - 1.
+     */
+    public int size() {
+        return termCount;
+    }
+
+    /**
+     * Returns id of given term.
+     *
+     * @param term Term.
+     * @return Id of the term or {@link #NOT_FOUND} if the term is not in the dictionary.
+     */
+    public int getTermId(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        Cursor cursor = new Cursor();
+        int termId = search(cursor, key, false);
+        if (termId == termCount) {
+            return NOT_FOUND;
+        } else if (cursor.termId != termId) {
+            cursor.seek(termId);
+        }
+        return compare(cursor.term, cursor.length, key, false) == 0 ? termId : NOT_FOUND;
+    }
+
+    /**
+     * Returns term with given id.
+     *
+     * @param termId Id of the term.
+     * @return Term.
+     * @throws IndexOutOfBoundsException If there's no term with the id.
+     */
+    public String getTerm(int termId) {
+        if (termId < 0 || termId >= termCount) {
+            throw new IndexOutOfBoundsException("Term id: " + termId + ", size: " + termCount);
+        }
+        Cursor cursor = new Cursor();
+        cursor.seek(termId);
+        return cursor.toTerm();
+    }
+
+    /**
+     * Returns ids of all terms which start with given prefix. The ids are consecutive.
+     *
+     * @param prefix Prefix, the empty prefix matches all terms.
+     * @return Range of ids: the first id and the last id + 1. Both are equal if no term starts with the prefix.
+     */
+    public int[] getPrefixRange(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        Cursor cursor = new Cursor();
+        return new int[] {search(cursor, key, false), search(cursor, key, true)};
+    }
+
+    /**
+     * Returns all terms which start with given prefix.
+     *
+     * @param prefix Prefix, the empty prefix matches all terms.
+     * @return Terms in the order of their ids.
+     */
+    public List<String> getTermsWithPrefix(String prefix) {
+        int[] range = getPrefixRange(prefix);
+        List<String> terms = new ArrayList<>(range[1] - range[0]);
+        if (range[0] < range[1]) {
+            Cursor cursor = new Cursor();
+            cursor.seek(range[0]);
+            terms.add(cursor.toTerm());
+            while (cursor.termId + 1 < range[1]) {
+                cursor.next();
+                terms.add(cursor.toTerm());
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Iterates over all terms in the order of their ids.
+     *
+     * @return Iterator.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+
+            private final Cursor cursor = new Cursor();
+
+            @Override
+            public boolean hasNext() {
+                return cursor.termId + 1 < termCount;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (cursor.termId < 0) {
+                    cursor.seek(0);
+                } else {
+                    cursor.next();
+                }
+                return cursor.toTerm();
+            }
+        };
+    }
+
+    /**
+     * Returns the dictionary in the format read by {@link #TermDictionary(ByteBuffer)}, e.g. to be written to a file.
+     *
+     * @return Read-only buffer with the whole dictionary between its position and limit.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Size of the dictionary in its buffer.
+     *
+     * @return Size in bytes.
+     */
+    public int sizeInBytes() {
+        return buffer.limit();
+    }
+
+    /**
+     * Finds the first term which is not before the key. Block is found by binary search over the first terms
+     * of the blocks and then searched sequentially.
+     *
+     * @param cursor Cursor used for the search, it's left at the found term if it's in the searched block.
+     * @param key UTF-8 bytes of the key.
+     * @param afterPrefix If true, terms which start with the key are considered to be before it,
+     *                    so the first term after all terms with the prefix is found.
+     * @return Id of the found term or the size of the dictionary if all terms are before the key.
+     */
+    private int search(Cursor cursor, byte[] key, boolean afterPrefix) {
+        // the last block whose first term is before the key
+        int block = -1;
+        int low = 0;
+        int high = blockCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            cursor.seek(middle * BLOCK_SIZE);
+            if (isBefore(cursor, key, afterPrefix)) {
+                block = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (block < 0) {
+            return 0;
+        }
+
+        int blockEnd = Math.min(termCount, (block + 1) * BLOCK_SIZE);
+        cursor.seek(block * BLOCK_SIZE);
+        while (cursor.termId + 1 < blockEnd) {
+            cursor.next();
+            if (!isBefore(cursor, key, afterPrefix)) {
+                return cursor.termId;
+            }
+        }
+        return blockEnd;
+    }
+
+    private static boolean isBefore(Cursor cursor, byte[] key, boolean afterPrefix) {
+        int comparison = compare(cursor.term, cursor.length, key, afterPrefix);
+        return afterPrefix ? comparison <= 0 : comparison < 0;
+    }
+
+    /**
+     * Compares term with key by their unsigned bytes.
+     *
+     * @param prefix If true, term which starts with the key is equal to it.
+     */
+    private static int compare(byte[] term, int length, byte[] key, boolean prefix) {
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (term[i] & 0xff) - (key[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        if (prefix && length >= key.length) {
+            return 0;
+        }
+        return length - key.length;
+    }
+
+    private static int compareBytes(byte[] term1, byte[] term2) {
+        return compare(term1, term1.length, term2, false);
+    }
+
+    private static void writeVInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Decodes terms of the blocks one by one through its own duplicate of the buffer.
+     */
+    private class Cursor {
+
+        private final ByteBuffer in = buffer.duplicate();
+
+        /**
+         * UTF-8 bytes of the current term.
+         */
+        private byte[] term = new byte[32];
+        private int length;
+        private int termId = -1;
+
+        /**
+         * Moves to the term with given id, decoding its block from the beginning.
+         */
+        void seek(int id) {
+            int block = id / BLOCK_SIZE;
+            in.position(blocksOffset + buffer.getInt(HEADER_LENGTH + 4 * block));
+            termId = block * BLOCK_SIZE - 1;
+            do {
+                next();
+            } while (termId < id);
+        }
+
+        /**
+         * Moves to the next term. Blocks are stored one after another, so the next block is decoded
+         * after the last term of a block.
+         */
+        void next() {
+            termId++;
+            int shared = termId % BLOCK_SIZE == 0 ? 0 : readVInt();
+            int suffix = readVInt();
+            if (shared + suffix > term.length) {
+                term = Arrays.copyOf(term, Math.max(shared + suffix, 2 * term.length));
+            }
+            in.get(term, shared, suffix);
+            length = shared + suffix;
+        }
+
+        String toTerm() {
+            return new String(term, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private int readVInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = in.get();
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
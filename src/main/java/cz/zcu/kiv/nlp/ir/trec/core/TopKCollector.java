@@ -0,0 +1,164 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.data.Result;
+import cz.zcu.kiv.nlp.ir.trec.data.ResultImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps K documents with the highest score in a bounded min-heap of primitive (score, ordinal) pairs.
+ * The lowest score in a full heap is the threshold a document has to beat to get to the top K.
+ *
+ * {@link Result} objects are created only for the final K documents.
+ */
+public class TopKCollector {
+
+    private final int k;
+    private final float[] scores;
+    private final int[] ordinals;
+    private int size;
+
+    /**
+     * Number of documents offered to the collector.
+     */
+    private long totalHits;
+
+    /**
+     * @param k Max number of collected documents, must be positive.
+     */
+    public TopKCollector(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("K must be positive: " + k);
+        }
+        this.k = k;
+        scores = new float[k];
+        ordinals = new int[k];
+        size = 0;
+    }
+
+    /**
+     * Offers document to the collector. Document is kept if the collector isn't full yet or if its score
+     * is higher than the current threshold.
+     *
+     * @param documentOrdinal Ordinal of the document.
+     * @param score Score of the document.
+     * @return True if the document was kept.
+     */
+    public boolean collect(int documentOrdinal, float score) {
+        totalHits++;
+        if (size < k) {
+            scores[size] = score;
+            ordinals[size] = documentOrdinal;
+            siftUp(size);
+            size++;
+            return true;
+        } else if (score > scores[0]) {
+            scores[0] = score;
+            ordinals[0] = documentOrdinal;
+            siftDown(0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Score a document has to exceed to get to the top K.
+     *
+     * @return Lowest collected score or negative infinity if the collector isn't full yet.
+     */
+    public float threshold() {
+        return isFull() ? scores[0] : Float.NEGATIVE_INFINITY;
+    }
+
+    public boolean isFull() {
+        return size == k;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Number of documents offered to the collector, including the ones which didn't get to the top K.
+     * Scorers which skip documents that can't get to the top K don't offer all matching documents.
+     *
+     * @return Number of documents.
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Creates results for collected documents, resolves their ids and ranks. The collector is emptied.
+     *
+     * @param invertedIndex Index the documents are from.
+     * @return Results sorted by their score in descending order.
+     */
+    public List<Result> toResults(SearchableIndex invertedIndex) {
+        // heap sort: the lowest score goes to the end
+        int count = size;
+        while (size > 1) {
+            size--;
+            float score = scores[size];
+            int ordinal = ordinals[size];
+            scores[size] = scores[0];
+            ordinals[size] = ordinals[0];
+            scores[0] = score;
+            ordinals[0] = ordinal;
+            siftDown(0);
+        }
+        size = 0;
+
+        List<Result> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ResultImpl r = new ResultImpl();
+            r.setDocumentOrdinal(ordinals[i]);
+            r.setDocumentID(invertedIndex.getDocumentId(ordinals[i]));
+            r.setScore(scores[i]);
+            r.setRank(i + 1);
+            results.add(r);
+        }
+        return results;
+    }
+
+    private void siftUp(int i) {
+        float score = scores[i];
+        int ordinal = ordinals[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= score) {
+                break;
+            }
+            scores[i] = scores[parent];
+            ordinals[i] = ordinals[parent];
+            i = parent;
+        }
+        scores[i] = score;
+        ordinals[i] = ordinal;
+    }
+
+    private void siftDown(int i) {
+        float score = scores[i];
+        int ordinal = ordinals[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && scores[child + 1] < scores[child]) {
+                child++;
+            }
+            if (score <= scores[child]) {
+                break;
+            }
+            scores[i] = scores[child];
+            ordinals[i] = ordinals[child];
+            i = child;
+        }
+        scores[i] = score;
+        ordinals[i] = ordinal;
+    }
+}
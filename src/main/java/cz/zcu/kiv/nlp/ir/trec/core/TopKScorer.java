@@ -0,0 +1,28 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+/**
+ * Ranked retrieval which scores only documents that can get to the top K.
+ */
+public interface TopKScorer {
+
+    /**
+     * Scores documents which can get to the top K and offers them to the collector.
+     *
+     * @param collector Collector of top K documents.
+     */
+    void score(TopKCollector collector);
+
+    /**
+     * Number of documents which were fully scored.
+     *
+     * @return Number of documents.
+     */
+    long getScoredDocuments();
+
+    /**
+     * Number of postings of query terms which were never looked at.
+     *
+     * @return Number of postings.
+     */
+    long getSkippedPostings();
+}
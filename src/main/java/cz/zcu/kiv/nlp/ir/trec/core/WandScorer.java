@@ -0,0 +1,156 @@
+package cz.zcu.kiv.nlp.ir.trec.core;
+
+/**
+ * Document-at-a-time top K ranked retrieval using the WAND (weak AND) algorithm.
+ *
+ * Every query term has an upper bound of its contribution to the score (see {@link SearchableIndex#maxScore(String)}).
+ * Cursors over postings of query terms are kept sorted by their current document. The pivot is the first cursor
+ * at which the sum of upper bounds of the preceding cursors exceeds the score of the K-th best document found so
+ * far. Documents before the pivot document can't get to the top K, so the preceding cursors are advanced directly
+ * to it. Only documents at which all cursors up to the pivot meet are fully scored.
+ *
+ * Scores are the same as the ones calculated by {@link CosineSimilarityCalculator}.
+ */
+public class WandScorer implements TopKScorer {
+
+    /**
+     * Cursors of query terms, the ones in [0, cursorCount) are sorted by their current document.
+     */
+    protected final TermCursor[] cursors;
+    protected int cursorCount;
+
+    /**
+     * Number of fully scored documents.
+     */
+    private long scoredDocuments;
+
+    public WandScorer(SearchableIndex invertedIndex, String[] query) {
+        String[] terms = QueryTerms.scoredTerms(invertedIndex, query);
+        cursors = new TermCursor[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            cursors[i] = new TermCursor(invertedIndex, terms[i]);
+        }
+        cursorCount = cursors.length;
+    }
+
+    @Override
+    public void score(TopKCollector collector) {
+        for (int i = 0; i < cursorCount; i++) {
+            cursors[i].nextDoc();
+        }
+        sortCursors();
+
+        int pivot;
+        double threshold;
+        while ((pivot = findPivot(threshold = Math.max(collector.threshold(), TermAtATimeScorer.MIN_SCORE))) >= 0) {
+            moveToPivot(pivot, threshold, collector);
+            sortCursors();
+        }
+    }
+
+    @Override
+    public long getScoredDocuments() {
+        return scoredDocuments;
+    }
+
+    @Override
+    public long getSkippedPostings() {
+        long skipped = 0;
+        for (TermCursor cursor : cursors) {
+            skipped += cursor.getPostingCount() - cursor.getVisitedPostings();
+        }
+        return skipped;
+    }
+
+    /**
+     * Number of posting blocks (see {@link BlockMaxScores}) of query terms in which the cursors never landed.
+     *
+     * @return Number of blocks.
+     */
+    public long getSkippedBlocks() {
+        long skipped = 0;
+        for (TermCursor cursor : cursors) {
+            skipped += cursor.getBlockCount() - cursor.getVisitedBlocks();
+        }
+        return skipped;
+    }
+
+    /**
+     * Makes one step after the pivot was found: either scores the pivot document if all preceding cursors
+     * are on it, or advances them to it.
+     *
+     * @param pivot Index of the pivot cursor.
+     * @param threshold Score a document has to exceed.
+     * @param collector Collector of top K documents.
+     */
+    protected void moveToPivot(int pivot, double threshold, TopKCollector collector) {
+        int pivotDoc = cursors[pivot].docOrdinal();
+        if (cursors[0].docOrdinal() == pivotDoc) {
+            scoreDocument(pivotDoc, collector);
+        } else {
+            // documents before the pivot document can't get to the top K
+            for (int i = 0; i < pivot; i++) {
+                cursors[i].advance(pivotDoc);
+            }
+        }
+    }
+
+    /**
+     * Scores the document all the first cursors are on and moves them to their next documents.
+     */
+    protected void scoreDocument(int doc, TopKCollector collector) {
+        double score = 0;
+        int matching = 0;
+        while (matching < cursorCount && cursors[matching].docOrdinal() == doc) {
+            score += cursors[matching].score();
+            matching++;
+        }
+        scoredDocuments++;
+
+        if ((float) score > TermAtATimeScorer.MIN_SCORE) {
+            collector.collect(doc, (float) score);
+        }
+
+        for (int i = 0; i < matching; i++) {
+            cursors[i].nextDoc();
+        }
+    }
+
+    /**
+     * Finds the first cursor at which the sum of upper bounds exceeds the threshold.
+     *
+     * @param threshold Score a document has to exceed.
+     * @return Index of the pivot cursor or -1 if no remaining document can exceed the threshold.
+     */
+    private int findPivot(double threshold) {
+        double upperBound = 0;
+        for (int i = 0; i < cursorCount; i++) {
+            upperBound += cursors[i].getMaxScore();
+            if (upperBound > threshold) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Insertion sort by current document, cursors are nearly sorted after each step. Exhausted cursors
+     * are dropped.
+     */
+    private void sortCursors() {
+        for (int i = 1; i < cursorCount; i++) {
+            TermCursor cursor = cursors[i];
+            int doc = cursor.docOrdinal();
+            int j = i - 1;
+            while (j >= 0 && cursors[j].docOrdinal() > doc) {
+                cursors[j + 1] = cursors[j];
+                j--;
+            }
+            cursors[j + 1] = cursor;
+        }
+
+        while (cursorCount > 0 && cursors[cursorCount - 1].docOrdinal() == PostingsIterator.NO_MORE_DOCS) {
+            cursorCount--;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package cz.zcu.kiv.nlp.ir.trec.core.bitmap;
+
+import java.util.Arrays;
+
+/**
+ * Sparse container which stores sorted values in an array.
+ */
+class ArrayContainer extends Container {
+
+    private char[] values;
+    private int size;
+
+    ArrayContainer() {
+        this(new char[4], 0);
+    }
+
+    ArrayContainer(char[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    static ArrayContainer fromContainer(Container container) {
+        char[] values = new char[container.cardinality()];
+        int size = 0;
+        for (int value = container.nextValue(0); value >= 0; value = value < MAX_VALUES - 1 ? container.nextValue(value + 1) : -1) {
+            values[size++] = (char) value;
+        }
+        return new ArrayContainer(values, size);
+    }
+
+    static int sizeInBytes(int cardinality) {
+        return 2 * cardinality + 4;
+    }
+
+    @Override
+    Container add(char value) {
+        // values are usually added in ascending order
+        int index = size > 0 && values[size - 1] < value ? -size - 1 : Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0) {
+            return this;
+        }
+        if (size == MAX_ARRAY_SIZE) {
+            return toBitmapContainer().add(value);
+        }
+
+        index = -index - 1;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.min(MAX_ARRAY_SIZE, values.length * 2));
+        }
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+        return this;
+    }
+
+    @Override
+    boolean contains(char value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    @Override
+    int cardinality() {
+        return size;
+    }
+
+    @Override
+    int nextValue(int from) {
+        int index = Arrays.binarySearch(values, 0, size, (char) from);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index < size ? values[index] : -1;
+    }
+
+    @Override
+    int sizeInBytes() {
+        return sizeInBytes(size);
+    }
+
+    @Override
+    BitmapContainer toBitmapContainer() {
+        BitmapContainer bitmap = new BitmapContainer();
+        for (int i = 0; i < size; i++) {
+            bitmap.set(values[i]);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Only values of this container can be in the result, so they're just filtered.
+     */
+    @Override
+    Container and(Container other) {
+        char[] res = new char[size];
+        int resSize = 0;
+        for (int i = 0; i < size; i++) {
+            if (other.contains(values[i])) {
+                res[resSize++] = values[i];
+            }
+        }
+        return new ArrayContainer(res, resSize);
+    }
+
+    @Override
+    Container or(Container other) {
+        if (!(other instanceof ArrayContainer) || size + other.cardinality() > MAX_ARRAY_SIZE) {
+            return super.or(other);
+        }
+
+        // merge two sorted arrays
+        ArrayContainer o = (ArrayContainer) other;
+        char[] res = new char[size + o.size];
+        int i = 0, j = 0, resSize = 0;
+        while (i < size && j < o.size) {
+            if (values[i] == o.values[j]) {
+                res[resSize++] = values[i++];
+                j++;
+            } else if (values[i] < o.values[j]) {
+                res[resSize++] = values[i++];
+            } else {
+                res[resSize++] = o.values[j++];
+            }
+        }
+        while (i < size) {
+            res[resSize++] = values[i++];
+        }
+        while (j < o.size) {
+            res[resSize++] = o.values[j++];
+        }
+        return new ArrayContainer(res, resSize);
+    }
+
+    @Override
+    Container andNot(Container other) {
+        char[] res = new char[size];
+        int resSize = 0;
+        for (int i = 0; i < size; i++) {
+            if (!other.contains(values[i])) {
+                res[resSize++] = values[i];
+            }
+        }
+        return new ArrayContainer(res, resSize);
+    }
+}
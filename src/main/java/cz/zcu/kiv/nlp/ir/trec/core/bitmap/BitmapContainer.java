@@ -0,0 +1,129 @@
+package cz.zcu.kiv.nlp.ir.trec.core.bitmap;
+
+/**
+ * Dense container which stores one bit for every possible value.
+ */
+class BitmapContainer extends Container {
+
+    static final int SIZE_IN_BYTES = MAX_VALUES / 8;
+
+    private final long[] words;
+    private int cardinality;
+
+    BitmapContainer() {
+        this(new long[MAX_VALUES / 64], 0);
+    }
+
+    private BitmapContainer(long[] words, int cardinality) {
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    void set(int value) {
+        long mask = 1L << value;
+        int word = value >>> 6;
+        if ((words[word] & mask) == 0) {
+            words[word] |= mask;
+            cardinality++;
+        }
+    }
+
+    /**
+     * Sets all values from start to end (exclusive).
+     */
+    void setRange(int start, int end) {
+        for (int word = start >>> 6; word <= (end - 1) >>> 6; word++) {
+            long mask = -1L;
+            if (word == start >>> 6) {
+                mask &= -1L << start;
+            }
+            if (word == (end - 1) >>> 6) {
+                mask &= -1L >>> (63 - ((end - 1) & 63));
+            }
+            cardinality += Long.bitCount(mask & ~words[word]);
+            words[word] |= mask;
+        }
+    }
+
+    @Override
+    Container add(char value) {
+        set(value);
+        return this;
+    }
+
+    @Override
+    boolean contains(char value) {
+        return (words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    int nextValue(int from) {
+        int word = from >>> 6;
+        if (word >= words.length) {
+            return -1;
+        }
+        long bits = words[word] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                return word * 64 + Long.numberOfTrailingZeros(bits);
+            }
+            word++;
+            if (word == words.length) {
+                return -1;
+            }
+            bits = words[word];
+        }
+    }
+
+    @Override
+    int sizeInBytes() {
+        return SIZE_IN_BYTES;
+    }
+
+    @Override
+    BitmapContainer toBitmapContainer() {
+        return this;
+    }
+
+    BitmapContainer andBitmap(BitmapContainer other) {
+        long[] res = new long[words.length];
+        int resCardinality = 0;
+        for (int i = 0; i < words.length; i++) {
+            res[i] = words[i] & other.words[i];
+            resCardinality += Long.bitCount(res[i]);
+        }
+        return new BitmapContainer(res, resCardinality);
+    }
+
+    BitmapContainer orBitmap(BitmapContainer other) {
+        long[] res = new long[words.length];
+        int resCardinality = 0;
+        for (int i = 0; i < words.length; i++) {
+            res[i] = words[i] | other.words[i];
+            resCardinality += Long.bitCount(res[i]);
+        }
+        return new BitmapContainer(res, resCardinality);
+    }
+
+    BitmapContainer andNotBitmap(BitmapContainer other) {
+        long[] res = new long[words.length];
+        int resCardinality = 0;
+        for (int i = 0; i < words.length; i++) {
+            res[i] = words[i] & ~other.words[i];
+            resCardinality += Long.bitCount(res[i]);
+        }
+        return new BitmapContainer(res, resCardinality);
+    }
+
+    /**
+     * Converts sparse result of an operation to array.
+     */
+    Container optimize() {
+        return cardinality <= MAX_ARRAY_SIZE ? ArrayContainer.fromContainer(this) : this;
+    }
+}
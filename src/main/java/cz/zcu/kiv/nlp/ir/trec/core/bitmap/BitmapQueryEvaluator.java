@@ -0,0 +1,88 @@
+package cz.zcu.kiv.nlp.ir.trec.core.bitmap;
+
+import cz.zcu.kiv.nlp.ir.trec.core.BooleanQueryPlanner;
+import cz.zcu.kiv.nlp.ir.trec.core.SearchQueryNode;
+import cz.zcu.kiv.nlp.ir.trec.core.SearchableIndex;
+import org.apache.lucene.search.BooleanClause;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Evaluates boolean queries over compressed bitmaps of terms ({@link SearchableIndex#getBitmapForTerm(String)}).
+ * Results are the same as the ones of {@link SearchableIndex#getIteratorForQuery(SearchQueryNode)}, the query is
+ * rewritten by the same {@link BooleanQueryPlanner#rewrite(SearchQueryNode)} first.
+ */
+public class BitmapQueryEvaluator {
+
+    private final SearchableIndex invertedIndex;
+
+    private final BooleanQueryPlanner planner;
+
+    public BitmapQueryEvaluator(SearchableIndex invertedIndex) {
+        this.invertedIndex = invertedIndex;
+        planner = new BooleanQueryPlanner(invertedIndex);
+    }
+
+    /**
+     * Rewrites the query and returns bitmap of documents matching it.
+     *
+     * @param root Root of the query.
+     * @return Bitmap of matching documents.
+     */
+    public RoaringBitmap evaluate(SearchQueryNode root) {
+        return evaluateNode(planner.rewrite(root));
+    }
+
+    private RoaringBitmap evaluateNode(SearchQueryNode node) {
+        if (node.isTerm()) {
+            return invertedIndex.getBitmapForTerm(node.getText());
+        }
+
+        RoaringBitmap res = null;
+
+        // NOT
+        RoaringBitmap excluded = null;
+        if (node.getChildren().containsKey(BooleanClause.Occur.MUST_NOT)) {
+            excluded = union(node.getChildren().get(BooleanClause.Occur.MUST_NOT));
+        }
+
+        // AND, from the smallest operand, terms which are not indexed are ignored
+        if (node.getChildren().containsKey(BooleanClause.Occur.MUST)) {
+            List<RoaringBitmap> operands = new ArrayList<>();
+            for (SearchQueryNode child : node.getChildren().get(BooleanClause.Occur.MUST)) {
+                if (!planner.isUnknownTerm(child)) {
+                    operands.add(evaluateNode(child));
+                }
+            }
+            operands.sort(Comparator.comparingLong(RoaringBitmap::cardinality));
+
+            res = operands.isEmpty() ? new RoaringBitmap() : operands.get(0);
+            for (int i = 1; i < operands.size() && !res.isEmpty(); i++) {
+                res = res.and(operands.get(i));
+            }
+            if (excluded != null && !operands.isEmpty()) {
+                res = res.andNot(excluded);
+            }
+        } else if (excluded != null) {
+            res = RoaringBitmap.allDocuments(invertedIndex.getDocumentCount()).andNot(excluded);
+        }
+
+        // OR
+        if (node.getChildren().containsKey(BooleanClause.Occur.SHOULD)) {
+            RoaringBitmap union = union(node.getChildren().get(BooleanClause.Occur.SHOULD));
+            res = res == null ? union : res.or(union);
+        }
+
+        return res == null ? new RoaringBitmap() : res;
+    }
+
+    private RoaringBitmap union(List<SearchQueryNode> nodes) {
+        RoaringBitmap res = new RoaringBitmap();
+        for (SearchQueryNode node : nodes) {
+            res = res.or(evaluateNode(node));
+        }
+        return res;
+    }
+}
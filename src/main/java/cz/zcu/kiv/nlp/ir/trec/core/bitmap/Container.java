@@ -0,0 +1,97 @@
+package cz.zcu.kiv.nlp.ir.trec.core.bitmap;
+
+import java.io.Serializable;
+
+/**
+ * Set of 16-bit values (low bits of document ordinals) which share the same high 16 bits.
+ *
+ * Operations may return container of different type than the one they were called on, callers always have
+ * to use the returned container.
+ */
+abstract class Container implements Serializable {
+
+    /**
+     * Max cardinality of {@link ArrayContainer}, bigger sets are stored in {@link BitmapContainer}.
+     */
+    static final int MAX_ARRAY_SIZE = 4096;
+
+    /**
+     * Number of distinct values in one container.
+     */
+    static final int MAX_VALUES = 1 << 16;
+
+    abstract Container add(char value);
+
+    abstract boolean contains(char value);
+
+    abstract int cardinality();
+
+    /**
+     * Returns the smallest value in this container which is greater or equal to from.
+     *
+     * @param from Value from 0 to 65535.
+     * @return Found value or -1.
+     */
+    abstract int nextValue(int from);
+
+    /**
+     * Approximate number of bytes used by the container.
+     */
+    abstract int sizeInBytes();
+
+    abstract BitmapContainer toBitmapContainer();
+
+    Container and(Container other) {
+        if (other instanceof ArrayContainer) {
+            return other.and(this);
+        }
+        return toBitmapContainer().andBitmap(other.toBitmapContainer()).optimize();
+    }
+
+    Container or(Container other) {
+        if (other instanceof ArrayContainer && !(this instanceof ArrayContainer)) {
+            return other.or(this);
+        }
+        return toBitmapContainer().orBitmap(other.toBitmapContainer()).optimize();
+    }
+
+    Container andNot(Container other) {
+        return toBitmapContainer().andNotBitmap(other.toBitmapContainer()).optimize();
+    }
+
+    /**
+     * Converts the container to the smallest of array, bitmap and run representation.
+     *
+     * @return Converted container.
+     */
+    Container runOptimize() {
+        int runs = countRuns();
+        int runSize = RunContainer.sizeInBytes(runs);
+        int cardinality = cardinality();
+        int arraySize = cardinality <= MAX_ARRAY_SIZE ? ArrayContainer.sizeInBytes(cardinality) : Integer.MAX_VALUE;
+        int bitmapSize = BitmapContainer.SIZE_IN_BYTES;
+
+        if (runSize < arraySize && runSize < bitmapSize) {
+            return this instanceof RunContainer ? this : RunContainer.fromContainer(this, runs);
+        } else if (arraySize <= bitmapSize) {
+            return this instanceof ArrayContainer ? this : ArrayContainer.fromContainer(this);
+        } else {
+            return this instanceof BitmapContainer ? this : toBitmapContainer();
+        }
+    }
+
+    /**
+     * Number of runs of consecutive values.
+     */
+    int countRuns() {
+        int runs = 0;
+        int previous = -2;
+        for (int value = nextValue(0); value >= 0; value = value < MAX_VALUES - 1 ? nextValue(value + 1) : -1) {
+            if (value != previous + 1) {
+                runs++;
+            }
+            previous = value;
+        }
+        return runs;
+    }
+}
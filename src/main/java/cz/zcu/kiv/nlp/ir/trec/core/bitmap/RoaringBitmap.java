@@ -0,0 +1,296 @@
+package cz.zcu.kiv.nlp.ir.trec.core.bitmap;
+
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Compressed set of document ordinals in the style of Roaring bitmaps.
+ *
+ * Ordinals are split by their high 16 bits into chunks, each chunk is stored in a container chosen by its
+ * density: sorted array for sparse chunks, 2^16 bit bitmap for dense ones and runs of consecutive ordinals
+ * for clustered ones. AND, OR and AND NOT are performed container by container, dense containers
+ * are combined word by word.
+ *
+ * Operations don't modify their operands and return new bitmap. The result may share containers with
+ * the operands, so it should only be read.
+ */
+public class RoaringBitmap implements Serializable {
+
+    /**
+     * High 16 bits of ordinals in containers, sorted.
+     */
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public RoaringBitmap() {
+        this(4);
+    }
+
+    private RoaringBitmap(int capacity) {
+        keys = new char[capacity];
+        containers = new Container[capacity];
+        size = 0;
+    }
+
+    /**
+     * Creates bitmap of all documents of the posting stream. Containers are run-optimized.
+     *
+     * @param postings Iterator which wasn't moved yet.
+     * @return Bitmap.
+     */
+    public static RoaringBitmap fromPostings(PostingsIterator postings) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        while (postings.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+            bitmap.add(postings.docOrdinal());
+        }
+        bitmap.runOptimize();
+        return bitmap;
+    }
+
+    /**
+     * Creates bitmap containing ordinals 0..documentCount-1, stored as runs.
+     *
+     * @param documentCount Number of documents.
+     * @return Bitmap.
+     */
+    public static RoaringBitmap allDocuments(int documentCount) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int start = 0; start < documentCount; start += Container.MAX_VALUES) {
+            int end = Math.min(documentCount - start, Container.MAX_VALUES);
+            bitmap.append((char) (start >>> 16), RunContainer.range(0, end));
+        }
+        return bitmap;
+    }
+
+    /**
+     * Adds ordinal to the set.
+     *
+     * @param documentOrdinal Non-negative document ordinal.
+     */
+    public void add(int documentOrdinal) {
+        char key = (char) (documentOrdinal >>> 16);
+        char low = (char) documentOrdinal;
+
+        // ordinals are usually added in ascending order
+        int index = size > 0 && keys[size - 1] == key ? size - 1 : indexOf(key);
+        if (index >= 0) {
+            containers[index] = containers[index].add(low);
+        } else {
+            index = -index - 1;
+            ensureCapacity(size + 1);
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(containers, index, containers, index + 1, size - index);
+            keys[index] = key;
+            containers[index] = new ArrayContainer().add(low);
+            size++;
+        }
+    }
+
+    public boolean contains(int documentOrdinal) {
+        int index = indexOf((char) (documentOrdinal >>> 16));
+        return index >= 0 && containers[index].contains((char) documentOrdinal);
+    }
+
+    /**
+     * Number of ordinals in the set.
+     *
+     * @return Cardinality.
+     */
+    public long cardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Approximate number of bytes occupied by the bitmap.
+     *
+     * @return Number of bytes.
+     */
+    public long sizeInBytes() {
+        long bytes = 3L * size;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Converts every container to its smallest representation.
+     */
+    public void runOptimize() {
+        for (int i = 0; i < size; i++) {
+            containers[i] = containers[i].runOptimize();
+        }
+    }
+
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap res = new RoaringBitmap(Math.min(size, other.size));
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] == other.keys[j]) {
+                res.appendNonEmpty(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            } else if (keys[i] < other.keys[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return res;
+    }
+
+    public RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap res = new RoaringBitmap(size + other.size);
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] == other.keys[j]) {
+                res.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            } else if (keys[i] < other.keys[j]) {
+                res.append(keys[i], containers[i]);
+                i++;
+            } else {
+                res.append(other.keys[j], other.containers[j]);
+                j++;
+            }
+        }
+        for (; i < size; i++) {
+            res.append(keys[i], containers[i]);
+        }
+        for (; j < other.size; j++) {
+            res.append(other.keys[j], other.containers[j]);
+        }
+        return res;
+    }
+
+    /**
+     * Returns ordinals of this bitmap which are not in the other one.
+     *
+     * @param other Excluded ordinals.
+     * @return Difference.
+     */
+    public RoaringBitmap andNot(RoaringBitmap other) {
+        RoaringBitmap res = new RoaringBitmap(size);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                res.appendNonEmpty(keys[i], containers[i].andNot(other.containers[j]));
+            } else {
+                res.append(keys[i], containers[i]);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns iterator over ordinals in the set in ascending order. Term frequency is always 1.
+     *
+     * @return Postings iterator.
+     */
+    public PostingsIterator iterator() {
+        return new BitmapPostingsIterator();
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    /**
+     * Appends container with the key greater than all keys in the bitmap. Containers are immutable
+     * once they're shared between bitmaps, so they're not copied.
+     */
+    private void append(char key, Container container) {
+        ensureCapacity(size + 1);
+        keys[size] = key;
+        containers[size] = container;
+        size++;
+    }
+
+    private void appendNonEmpty(char key, Container container) {
+        if (container.cardinality() > 0) {
+            append(key, container);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > keys.length) {
+            int newCapacity = Math.max(capacity, keys.length * 2);
+            keys = Arrays.copyOf(keys, newCapacity);
+            containers = Arrays.copyOf(containers, newCapacity);
+        }
+    }
+
+    private class BitmapPostingsIterator implements PostingsIterator {
+
+        private final long cost;
+
+        private int container;
+        private int doc;
+
+        BitmapPostingsIterator() {
+            cost = cardinality();
+            container = 0;
+            doc = -1;
+        }
+
+        @Override
+        public int docOrdinal() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            return advance(doc + 1);
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+
+            char key = (char) (target >>> 16);
+            while (container < size && keys[container] < key) {
+                container++;
+            }
+
+            while (container < size) {
+                int from = keys[container] == key ? target & 0xFFFF : 0;
+                int value = containers[container].nextValue(from);
+                if (value >= 0) {
+                    doc = keys[container] << 16 | value;
+                    return doc;
+                }
+                container++;
+            }
+
+            doc = NO_MORE_DOCS;
+            return doc;
+        }
+
+        @Override
+        public int termFrequency() {
+            return 1;
+        }
+
+        @Override
+        public long cost() {
+            return cost;
+        }
+    }
+}
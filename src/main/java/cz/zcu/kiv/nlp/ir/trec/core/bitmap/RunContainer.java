@@ -0,0 +1,110 @@
+package cz.zcu.kiv.nlp.ir.trec.core.bitmap;
+
+import java.util.Arrays;
+
+/**
+ * Container which stores runs of consecutive values as (start, length - 1) pairs. Used for very dense
+ * or clustered sets such as the set of all documents.
+ */
+class RunContainer extends Container {
+
+    private final char[] starts;
+    private final char[] lengths;
+    private final int runs;
+    private final int cardinality;
+
+    RunContainer(char[] starts, char[] lengths, int runs) {
+        this.starts = starts;
+        this.lengths = lengths;
+        this.runs = runs;
+        int c = 0;
+        for (int i = 0; i < runs; i++) {
+            c += lengths[i] + 1;
+        }
+        cardinality = c;
+    }
+
+    /**
+     * Container with all values from start to end (exclusive).
+     */
+    static RunContainer range(int start, int end) {
+        return new RunContainer(new char[] {(char) start}, new char[] {(char) (end - start - 1)}, 1);
+    }
+
+    static RunContainer fromContainer(Container container, int runs) {
+        char[] starts = new char[runs];
+        char[] lengths = new char[runs];
+        int run = -1;
+        int previous = -2;
+        for (int value = container.nextValue(0); value >= 0; value = value < MAX_VALUES - 1 ? container.nextValue(value + 1) : -1) {
+            if (value != previous + 1) {
+                run++;
+                starts[run] = (char) value;
+            } else {
+                lengths[run]++;
+            }
+            previous = value;
+        }
+        return new RunContainer(starts, lengths, runs);
+    }
+
+    static int sizeInBytes(int runs) {
+        return 4 * runs + 4;
+    }
+
+    @Override
+    Container add(char value) {
+        if (contains(value)) {
+            return this;
+        }
+        // run containers are built at once, adding to them is rare
+        return toBitmapContainer().add(value).runOptimize();
+    }
+
+    @Override
+    boolean contains(char value) {
+        int run = runOf(value);
+        return run >= 0 && value <= starts[run] + lengths[run];
+    }
+
+    @Override
+    int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    int nextValue(int from) {
+        int run = runOf(from);
+        if (run >= 0 && from <= starts[run] + lengths[run]) {
+            return from;
+        }
+        return run + 1 < runs ? starts[run + 1] : -1;
+    }
+
+    @Override
+    int sizeInBytes() {
+        return sizeInBytes(runs);
+    }
+
+    @Override
+    int countRuns() {
+        return runs;
+    }
+
+    @Override
+    BitmapContainer toBitmapContainer() {
+        BitmapContainer bitmap = new BitmapContainer();
+        for (int i = 0; i < runs; i++) {
+            bitmap.setRange(starts[i], starts[i] + lengths[i] + 1);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Index of the last run which starts at or before the value, -1 if there's none.
+     */
+    private int runOf(int value) {
+        int index = Arrays.binarySearch(starts, 0, runs, (char) value);
+        return index >= 0 ? index : -index - 2;
+    }
+}
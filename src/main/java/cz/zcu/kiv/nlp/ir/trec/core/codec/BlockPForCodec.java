@@ -0,0 +1,339 @@
+package cz.zcu.kiv.nlp.ir.trec.core.codec;
+
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import static cz.zcu.kiv.nlp.ir.trec.core.codec.VByteCodec.readVLong;
+import static cz.zcu.kiv.nlp.ir.trec.core.codec.VByteCodec.vLongSize;
+import static cz.zcu.kiv.nlp.ir.trec.core.codec.VByteCodec.writeVLong;
+
+/**
+ * Encodes posting lists in blocks of {@link #BLOCK_SIZE} postings using patched frame-of-reference (PFOR)
+ * bit packing.
+ *
+ * Every block starts with a header which contains the ordinal of the last document in the block (as a delta
+ * from the previous block), maximal term frequency in the block and length of the block payload. Readers can
+ * therefore skip whole blocks without decoding them.
+ *
+ * Payload contains document gaps followed by term frequencies. Both are packed as: reference value (minimum
+ * of the block), bit width b, exceptions (values which don't fit into b bits, stored as position and the
+ * high bits) and finally the low b bits of every value minus the reference.
+ */
+public class BlockPForCodec implements PostingsCodec {
+
+    public static final String NAME = "block-pfor";
+
+    /**
+     * Number of postings in one block. Only the last block of the list can be smaller.
+     */
+    public static final int BLOCK_SIZE = 128;
+
+    @Override
+    public byte[] encode(PostingsIterator postings) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        int[] gaps = new int[BLOCK_SIZE];
+        int[] tfs = new int[BLOCK_SIZE];
+
+        int count = 0;
+        int maxTf = 0;
+        int lastDoc = 0;
+        int previousBlockLastDoc = 0;
+        int doc;
+        while ((doc = postings.nextDoc()) != PostingsIterator.NO_MORE_DOCS) {
+            gaps[count] = doc - lastDoc;
+            tfs[count] = postings.termFrequency();
+            maxTf = Math.max(maxTf, tfs[count]);
+            lastDoc = doc;
+            count++;
+
+            if (count == BLOCK_SIZE) {
+                writeBlock(out, payload, gaps, tfs, count, lastDoc - previousBlockLastDoc, maxTf);
+                previousBlockLastDoc = lastDoc;
+                count = 0;
+                maxTf = 0;
+            }
+        }
+
+        if (count > 0) {
+            writeBlock(out, payload, gaps, tfs, count, lastDoc - previousBlockLastDoc, maxTf);
+        }
+
+        return out.toByteArray();
+    }
+
+    @Override
+    public PostingsIterator decode(ByteBuffer encodedPostings, int size) {
+        return new BlockPForPostingsIterator(encodedPostings, size);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    private void writeBlock(ByteArrayOutputStream out, ByteArrayOutputStream payload, int[] gaps, int[] tfs, int count, int lastDocDelta, int maxTf) {
+        payload.reset();
+        writePFor(payload, gaps, count);
+        writePFor(payload, tfs, count);
+
+        writeVLong(out, lastDocDelta);
+        writeVLong(out, maxTf);
+        writeVLong(out, payload.size());
+        byte[] payloadBytes = payload.toByteArray();
+        out.write(payloadBytes, 0, payloadBytes.length);
+    }
+
+    /**
+     * Writes values using patched frame of reference.
+     */
+    private void writePFor(ByteArrayOutputStream out, int[] values, int count) {
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+
+        int bits = bestBitWidth(values, count, min, max);
+        writeVLong(out, min);
+        out.write(bits);
+
+        // exceptions
+        int exceptions = 0;
+        for (int i = 0; i < count; i++) {
+            if (((values[i] - min) >>> bits) != 0) {
+                exceptions++;
+            }
+        }
+        writeVLong(out, exceptions);
+        for (int i = 0; i < count; i++) {
+            int high = (values[i] - min) >>> bits;
+            if (high != 0) {
+                out.write(i);
+                writeVLong(out, high);
+            }
+        }
+
+        // low bits of all values
+        long mask = (1L << bits) - 1;
+        long buffer = 0;
+        int bufferedBits = 0;
+        for (int i = 0; i < count; i++) {
+            buffer |= ((values[i] - min) & mask) << bufferedBits;
+            bufferedBits += bits;
+            while (bufferedBits >= 8) {
+                out.write((int) (buffer & 0xFF));
+                buffer >>>= 8;
+                bufferedBits -= 8;
+            }
+        }
+        if (bufferedBits > 0) {
+            out.write((int) (buffer & 0xFF));
+        }
+    }
+
+    /**
+     * Finds the bit width which results in the smallest encoded size including exceptions.
+     */
+    private int bestBitWidth(int[] values, int count, int min, int max) {
+        int maxBits = 32 - Integer.numberOfLeadingZeros(max - min);
+        int bestBits = maxBits;
+        long bestSize = Long.MAX_VALUE;
+        for (int bits = maxBits; bits >= 0; bits--) {
+            long size = (count * (long) bits + 7) / 8;
+            for (int i = 0; i < count && size < bestSize; i++) {
+                int high = (values[i] - min) >>> bits;
+                if (high != 0) {
+                    size += 1 + vLongSize(high);
+                }
+            }
+
+            if (size < bestSize) {
+                bestSize = size;
+                bestBits = bits;
+            }
+        }
+        return bestBits;
+    }
+
+    /**
+     * Reads values written by {@link #writePFor(ByteArrayOutputStream, int[], int)}.
+     */
+    private static void readPFor(ByteBuffer in, int[] values, int count, int[] exceptionPositions, int[] exceptionValues) {
+        int min = (int) readVLong(in);
+        int bits = in.get() & 0xFF;
+
+        int exceptions = (int) readVLong(in);
+        for (int i = 0; i < exceptions; i++) {
+            exceptionPositions[i] = in.get() & 0xFF;
+            exceptionValues[i] = (int) readVLong(in);
+        }
+
+        long mask = (1L << bits) - 1;
+        long buffer = 0;
+        int bufferedBits = 0;
+        for (int i = 0; i < count; i++) {
+            while (bufferedBits < bits) {
+                buffer |= (long) (in.get() & 0xFF) << bufferedBits;
+                bufferedBits += 8;
+            }
+            values[i] = (int) (buffer & mask);
+            buffer >>>= bits;
+            bufferedBits -= bits;
+        }
+
+        for (int i = 0; i < exceptions; i++) {
+            values[exceptionPositions[i]] |= exceptionValues[i] << bits;
+        }
+        for (int i = 0; i < count; i++) {
+            values[i] += min;
+        }
+    }
+
+    /**
+     * Iterator which decodes one block at a time and skips blocks which can't contain the target document.
+     */
+    private static class BlockPForPostingsIterator implements PostingsIterator {
+
+        private final ByteBuffer in;
+        private final int size;
+
+        private final int[] docs = new int[BLOCK_SIZE];
+        private final int[] tfs = new int[BLOCK_SIZE];
+        private final int[] exceptionPositions = new int[BLOCK_SIZE];
+        private final int[] exceptionValues = new int[BLOCK_SIZE];
+
+        /**
+         * Number of postings in blocks before the current one and in the current block.
+         */
+        private int postingsBeforeBlock;
+        private int blockSize;
+
+        private int previousBlockLastDoc;
+        private int blockLastDoc;
+        private int payloadPosition;
+        private int payloadLength;
+        private boolean payloadDecoded;
+
+        private int index;
+        private int doc;
+
+        BlockPForPostingsIterator(ByteBuffer in, int size) {
+            this.in = in;
+            this.size = size;
+            doc = -1;
+        }
+
+        @Override
+        public int docOrdinal() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (doc == NO_MORE_DOCS) {
+                return doc;
+            }
+
+            if (payloadDecoded && index + 1 < blockSize) {
+                index++;
+                doc = docs[index];
+                return doc;
+            }
+
+            if (!nextBlockHeader()) {
+                doc = NO_MORE_DOCS;
+                return doc;
+            }
+            decodePayload();
+            index = 0;
+            doc = docs[0];
+            return doc;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+
+            if (!payloadDecoded || blockLastDoc < target) {
+                // skip blocks which end before the target
+                do {
+                    if (!nextBlockHeader()) {
+                        doc = NO_MORE_DOCS;
+                        return doc;
+                    }
+                } while (blockLastDoc < target);
+
+                decodePayload();
+                index = -1;
+            }
+
+            // the last document of current block is >= target
+            do {
+                index++;
+            } while (docs[index] < target);
+            doc = docs[index];
+            return doc;
+        }
+
+        @Override
+        public int termFrequency() {
+            return tfs[index];
+        }
+
+        @Override
+        public int position() {
+            return postingsBeforeBlock + index;
+        }
+
+        @Override
+        public long cost() {
+            return size;
+        }
+
+        /**
+         * Reads header of the next block and positions the buffer on its payload.
+         *
+         * @return False if there are no more blocks.
+         */
+        private boolean nextBlockHeader() {
+            int nextBlockStart = postingsBeforeBlock + blockSize;
+            if (nextBlockStart >= size) {
+                return false;
+            }
+
+            if (blockSize > 0) {
+                in.position(payloadPosition + payloadLength);
+            }
+
+            postingsBeforeBlock = nextBlockStart;
+            blockSize = Math.min(BLOCK_SIZE, size - nextBlockStart);
+            previousBlockLastDoc = blockLastDoc;
+            blockLastDoc = previousBlockLastDoc + (int) readVLong(in);
+            // max term frequency of the block, not needed to iterate the postings
+            readVLong(in);
+            payloadLength = (int) readVLong(in);
+            payloadPosition = in.position();
+            payloadDecoded = false;
+            return true;
+        }
+
+        private void decodePayload() {
+            in.position(payloadPosition);
+            readPFor(in, docs, blockSize, exceptionPositions, exceptionValues);
+            readPFor(in, tfs, blockSize, exceptionPositions, exceptionValues);
+
+            // gaps -> ordinals
+            docs[0] += previousBlockLastDoc;
+            for (int i = 1; i < blockSize; i++) {
+                docs[i] += docs[i - 1];
+            }
+            payloadDecoded = true;
+        }
+    }
+}
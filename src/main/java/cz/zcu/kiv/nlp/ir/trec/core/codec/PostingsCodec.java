@@ -0,0 +1,57 @@
+package cz.zcu.kiv.nlp.ir.trec.core.codec;
+
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Codec which compresses posting lists. Codecs are stateless and the same instance
+ * can be used to encode and decode any number of lists.
+ *
+ * Codec is stored together with encoded posting list so it must be serializable.
+ */
+public interface PostingsCodec extends Serializable {
+
+    /**
+     * Encodes postings.
+     *
+     * @param postings Iterator over postings to be encoded. Postings must be sorted by document ordinal.
+     * @return Encoded postings.
+     */
+    byte[] encode(PostingsIterator postings);
+
+    /**
+     * Returns iterator which decodes the postings while it's being moved.
+     *
+     * @param encodedPostings Buffer with encoded postings, positioned on the first byte of the postings.
+     * @param size Number of encoded postings.
+     * @return Postings iterator.
+     */
+    PostingsIterator decode(ByteBuffer encodedPostings, int size);
+
+    /**
+     * Name of the codec.
+     *
+     * @return Name of the codec.
+     */
+    String getName();
+
+    /**
+     * Returns codec with given name.
+     *
+     * @param name Name of the codec, see {@link #getName()}.
+     * @return Codec.
+     * @throws IllegalArgumentException If there's no codec with given name.
+     */
+    static PostingsCodec forName(String name) {
+        switch (name) {
+            case VByteCodec.NAME:
+                return new VByteCodec();
+            case BlockPForCodec.NAME:
+                return new BlockPForCodec();
+            default:
+                throw new IllegalArgumentException("Unknown postings codec: " + name);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package cz.zcu.kiv.nlp.ir.trec.core.codec;
+
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes posting lists as delta-encoded document gaps and term frequencies stored in variable-byte format.
+ *
+ * Each posting is stored as value (gap << 1 | tf==1). If the lowest bit is 0, term frequency follows as
+ * another variable-byte value. Every variable-byte value uses 7 bits of each byte, the highest bit marks
+ * that more bytes follow.
+ *
+ * Postings are preceded by skip data: number of skip entries, length of the skip data in bytes and then
+ * one entry for every {@link #SKIP_INTERVAL} postings. Entry contains the ordinal of the last document
+ * before the skip point and offset of the first posting after it (both as deltas from the previous entry).
+ * {@link PostingsIterator#advance(int)} uses them to jump over postings without decoding them.
+ */
+public class VByteCodec implements PostingsCodec {
+
+    public static final String NAME = "vbyte";
+
+    /**
+     * Number of postings between two skip entries.
+     */
+    public static final int SKIP_INTERVAL = 64;
+
+    @Override
+    public byte[] encode(PostingsIterator postingList) {
+        ByteArrayOutputStream postings = new ByteArrayOutputStream();
+        ByteArrayOutputStream skipData = new ByteArrayOutputStream();
+        int skipCount = 0;
+        int lastSkipDoc = 0;
+        int lastSkipOffset = 0;
+
+        int count = 0;
+        int lastDoc = 0;
+        int doc;
+        while ((doc = postingList.nextDoc()) != PostingsIterator.NO_MORE_DOCS) {
+            if (count > 0 && count % SKIP_INTERVAL == 0) {
+                writeVLong(skipData, lastDoc - lastSkipDoc);
+                writeVLong(skipData, postings.size() - lastSkipOffset);
+                lastSkipDoc = lastDoc;
+                lastSkipOffset = postings.size();
+                skipCount++;
+            }
+
+            long gap = doc - lastDoc;
+            int tf = postingList.termFrequency();
+            if (tf == 1) {
+                writeVLong(postings, gap << 1 | 1);
+            } else {
+                writeVLong(postings, gap << 1);
+                writeVLong(postings, tf);
+            }
+            lastDoc = doc;
+            count++;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(postings.size() + skipData.size() + 10);
+        writeVLong(out, skipCount);
+        writeVLong(out, skipData.size());
+        byte[] bytes = skipData.toByteArray();
+        out.write(bytes, 0, bytes.length);
+        bytes = postings.toByteArray();
+        out.write(bytes, 0, bytes.length);
+        return out.toByteArray();
+    }
+
+    @Override
+    public PostingsIterator decode(ByteBuffer encodedPostings, int size) {
+        return new VBytePostingsIterator(encodedPostings, size);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    static void writeVLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static int vLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static long readVLong(ByteBuffer in) {
+        byte b = in.get();
+        long value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = in.get();
+            value |= (b & 0x7FL) << shift;
+        }
+        return value;
+    }
+
+    /**
+     * Streaming decoder of variable-byte postings.
+     */
+    private static class VBytePostingsIterator implements PostingsIterator {
+
+        private final ByteBuffer in;
+        private final int size;
+
+        /**
+         * Skip data are parsed on the first call of {@link #advance(int)}.
+         */
+        private final int skipCount;
+        private final int skipDataPosition;
+        private final int postingsPosition;
+        private int[] skipDocs;
+        private int[] skipOffsets;
+        private int nextSkip;
+
+        private int read;
+        private int doc;
+        private int tf;
+
+        VBytePostingsIterator(ByteBuffer in, int size) {
+            this.in = in;
+            this.size = size;
+            skipCount = (int) readVLong(in);
+            int skipDataLength = (int) readVLong(in);
+            skipDataPosition = in.position();
+            postingsPosition = skipDataPosition + skipDataLength;
+            in.position(postingsPosition);
+            read = 0;
+            doc = -1;
+        }
+
+        @Override
+        public int docOrdinal() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (read >= size) {
+                doc = NO_MORE_DOCS;
+                return doc;
+            }
+
+            long value = readVLong(in);
+            int gap = (int) (value >>> 1);
+            tf = (value & 1) != 0 ? 1 : (int) readVLong(in);
+            doc = read == 0 ? gap : doc + gap;
+            read++;
+            return doc;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+
+            if (skipCount > 0) {
+                skipTo(target);
+            }
+            while (doc < target) {
+                nextDoc();
+            }
+            return doc;
+        }
+
+        @Override
+        public int termFrequency() {
+            return tf;
+        }
+
+        @Override
+        public int position() {
+            return read - 1;
+        }
+
+        @Override
+        public long cost() {
+            return size;
+        }
+
+        /**
+         * Jumps to the last skip point whose preceding document is lower than target, if it's ahead
+         * of the current position.
+         */
+        private void skipTo(int target) {
+            if (skipDocs == null) {
+                readSkipData();
+            }
+
+            int skip = nextSkip;
+            while (skip < skipCount && skipDocs[skip] < target) {
+                skip++;
+            }
+
+            // skip - 1 is the last entry which can be used
+            int postingsBefore = skip * SKIP_INTERVAL;
+            if (skip > nextSkip && postingsBefore > read) {
+                in.position(postingsPosition + skipOffsets[skip - 1]);
+                doc = skipDocs[skip - 1];
+                read = postingsBefore;
+            }
+            nextSkip = skip;
+        }
+
+        private void readSkipData() {
+            skipDocs = new int[skipCount];
+            skipOffsets = new int[skipCount];
+            ByteBuffer skipData = in.duplicate();
+            skipData.position(skipDataPosition);
+            int skipDoc = 0;
+            int skipOffset = 0;
+            for (int i = 0; i < skipCount; i++) {
+                skipDoc += (int) readVLong(skipData);
+                skipOffset += (int) readVLong(skipData);
+                skipDocs[i] = skipDoc;
+                skipOffsets[i] = skipOffset;
+            }
+        }
+    }
+}
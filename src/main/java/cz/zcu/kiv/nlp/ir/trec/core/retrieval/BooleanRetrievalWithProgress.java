@@ -1,13 +1,8 @@
 package cz.zcu.kiv.nlp.ir.trec.core.retrieval;
 
 import cz.zcu.kiv.nlp.ir.trec.Configuration;
-import cz.zcu.kiv.nlp.ir.trec.core.Posting;
-import cz.zcu.kiv.nlp.ir.trec.data.Result;
-import cz.zcu.kiv.nlp.ir.trec.data.ResultImpl;
-
-import java.util.Iterator;
-import java.util.List;
-import java.util.PriorityQueue;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKCollector;
 
 /**
  * Boolean retrieval with trackable progress.
@@ -15,29 +10,32 @@ import java.util.PriorityQueue;
 public class BooleanRetrievalWithProgress implements RetrievalWithProgress {
 
     /**
-     * Postings to process.
+     * Lazy iterator over postings to process.
      */
-    private List<Posting> postings;
-    private Iterator<Posting> postingIterator;
+    private PostingsIterator postingIterator;
 
     /**
-     * Queue to store results into.
+     * Collector of top results.
      */
-    private PriorityQueue<Result> resultQueue;
+    private TopKCollector collector;
 
     private double progress;
     private double progressStep;
 
-    public BooleanRetrievalWithProgress(List<Posting> postings, PriorityQueue<Result> resultQueue) {
-        this.postings = postings;
-        this.resultQueue = resultQueue;
+    /**
+     * @param postingIterator Iterator over matching documents. Its cost is used to estimate the progress.
+     * @param collector Collector of top results. All matching documents are offered to it, so that they are counted.
+     */
+    public BooleanRetrievalWithProgress(PostingsIterator postingIterator, TopKCollector collector) {
+        this.postingIterator = postingIterator;
+        this.collector = collector;
 
-        postingIterator = postings.iterator();
+        postingIterator.nextDoc();
         progress = 0;
-        if (postings.size() == 0) {
+        if (postingIterator.cost() == 0) {
             progressStep = 0;
         } else {
-            progressStep = ((double) Configuration.getMaxProgress()) / postings.size();
+            progressStep = ((double) Configuration.getMaxProgress()) / postingIterator.cost();
         }
     }
 
@@ -47,27 +45,28 @@ public class BooleanRetrievalWithProgress implements RetrievalWithProgress {
             return;
         }
 
-        Posting p = postingIterator.next();
+        int documentOrdinal = postingIterator.docOrdinal();
+        postingIterator.nextDoc();
 
-        ResultImpl r = new ResultImpl();
-        r.setDocumentID(p.getDocumentId());
-        r.setScore(1f);
-        resultQueue.add(r);
+        collector.collect(documentOrdinal, 1f);
         progress += progressStep;
     }
 
     @Override
     public boolean done() {
-        return !postingIterator.hasNext();
+        return postingIterator.docOrdinal() == PostingsIterator.NO_MORE_DOCS;
     }
 
+    /**
+     * Progress is estimated from the cost of the iterator, so it may be lower than max when the search is done.
+     */
     @Override
     public int getProgress() {
-        return (int)progress;
+        return done() ? Configuration.getMaxProgress() : (int) Math.min(progress, Configuration.getMaxProgress());
     }
 
     @Override
-    public PriorityQueue<Result> getResultQueue() {
-        return resultQueue;
+    public TopKCollector getCollector() {
+        return collector;
     }
 }
@@ -1,8 +1,6 @@
 package cz.zcu.kiv.nlp.ir.trec.core.retrieval;
 
-import cz.zcu.kiv.nlp.ir.trec.data.Result;
-
-import java.util.PriorityQueue;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKCollector;
 
 public interface RetrievalWithProgress {
 
@@ -24,8 +22,8 @@ public interface RetrievalWithProgress {
     int getProgress();
 
     /**
-     * Priority queue with results.
+     * Collector of top results.
      * @return
      */
-    PriorityQueue<Result> getResultQueue();
+    TopKCollector getCollector();
 }
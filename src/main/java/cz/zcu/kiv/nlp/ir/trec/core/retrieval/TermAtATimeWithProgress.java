@@ -0,0 +1,63 @@
+package cz.zcu.kiv.nlp.ir.trec.core.retrieval;
+
+import cz.zcu.kiv.nlp.ir.trec.Configuration;
+import cz.zcu.kiv.nlp.ir.trec.core.TermAtATimeScorer;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKCollector;
+
+/**
+ * Term-at-a-time ranked retrieval with trackable progress. Each step scores a batch of postings,
+ * documents are offered to the collector after the last batch.
+ */
+public class TermAtATimeWithProgress implements RetrievalWithProgress {
+
+    /**
+     * Number of postings scored in one step.
+     */
+    public static final int POSTINGS_PER_STEP = 1000;
+
+    private TermAtATimeScorer scorer;
+
+    /**
+     * Collector of top results.
+     */
+    private TopKCollector collector;
+
+    private boolean collected;
+
+    public TermAtATimeWithProgress(TermAtATimeScorer scorer, TopKCollector collector) {
+        this.scorer = scorer;
+        this.collector = collector;
+        collected = false;
+    }
+
+    @Override
+    public void oneStep() {
+        if (done()) {
+            return;
+        }
+
+        scorer.scorePostings(POSTINGS_PER_STEP);
+        if (scorer.isDone()) {
+            scorer.collect(collector);
+            collected = true;
+        }
+    }
+
+    @Override
+    public boolean done() {
+        return collected;
+    }
+
+    @Override
+    public int getProgress() {
+        if (scorer.getPostingCount() == 0) {
+            return collected ? Configuration.getMaxProgress() : 0;
+        }
+        return (int) (Configuration.getMaxProgress() * scorer.getProcessedPostings() / scorer.getPostingCount());
+    }
+
+    @Override
+    public TopKCollector getCollector() {
+        return collector;
+    }
+}
@@ -0,0 +1,40 @@
+package cz.zcu.kiv.nlp.ir.trec.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Stream of documents which are read one by one, so the whole input doesn't have to be loaded into memory.
+ */
+public interface DocumentSource extends Closeable {
+
+    /**
+     * Reads next document.
+     *
+     * @return Document or null if there are no more documents.
+     * @throws IOException If the document can't be read.
+     */
+    Document next() throws IOException;
+
+    /**
+     * Creates source of documents which are already loaded, e.g. by {@link cz.zcu.kiv.nlp.ir.trec.SerializedDataHelper}.
+     *
+     * @param documents Documents.
+     * @return Source.
+     */
+    static DocumentSource of(List<Document> documents) {
+        Iterator<Document> it = documents.iterator();
+        return new DocumentSource() {
+            @Override
+            public Document next() {
+                return it.hasNext() ? it.next() : null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
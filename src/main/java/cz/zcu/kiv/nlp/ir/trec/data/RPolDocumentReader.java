@@ -1,5 +1,6 @@
 package cz.zcu.kiv.nlp.ir.trec.data;
 
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.File;
@@ -34,6 +35,37 @@ public class RPolDocumentReader {
         return documents;
     }
 
+    /**
+     * Opens the file for streaming. Comments are parsed one by one as they're read from the source,
+     * only the current one is kept in memory.
+     *
+     * @param file Json file with array of comments.
+     * @return Source of documents, must be closed.
+     * @throws IOException If the file can't be opened.
+     */
+    public DocumentSource open(File file) throws IOException {
+        sdf = new SimpleDateFormat(DATA_ORIGINAL_DATE_FORMAT, Locale.ENGLISH);
+        MappingIterator<Map<String, Object>> comments = new ObjectMapper().readerFor(Map.class).readValues(file);
+        return new DocumentSource() {
+            @Override
+            public Document next() throws IOException {
+                if (!comments.hasNextValue()) {
+                    return null;
+                }
+                try {
+                    return getDocument(comments.nextValue());
+                } catch (ParseException e) {
+                    throw new IOException("Error while parsing date: " + e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                comments.close();
+            }
+        };
+    }
+
     private Document getDocument(Map<String, Object> rpolData) throws ParseException {
         String username = rpolData.get("username").toString();
         Object timestampStr = rpolData.get("timestamp");
@@ -8,4 +8,18 @@ package cz.zcu.kiv.nlp.ir.trec.data;
  * která dědí od abstraktní třídy {@link AbstractResult}
  */
 public class ResultImpl extends AbstractResult {
+
+    /**
+     * Ordinal of the document in index. Document id is resolved from it
+     * only when the final results are extracted.
+     */
+    int documentOrdinal = -1;
+
+    public int getDocumentOrdinal() {
+        return documentOrdinal;
+    }
+
+    public void setDocumentOrdinal(int documentOrdinal) {
+        this.documentOrdinal = documentOrdinal;
+    }
 }
@@ -28,7 +28,7 @@ public class IndexManagementPanel extends AbstractGUIPanel {
     private JTextArea documentTextArea;
     private JFormattedTextField documentDateField;
     private JLabel indexedDocumentsCountDisplay;
-    private JButton indexBtn, indexDocumentsFromFile, saveIndexBtn, loadIndexBtn;
+    private JButton indexBtn, indexDocumentsFromFile, saveIndexBtn, loadIndexBtn, mapIndexBtn, openIndexBtn;
     private JProgressBar indexFromDocProgressBar;
 
     public IndexManagementPanel(MainWindow mainWindow) {
@@ -53,6 +53,8 @@ public class IndexManagementPanel extends AbstractGUIPanel {
         add(Box.createVerticalStrut(50));
         add(createSaveIndexBtn());
         add(createLoadIndexBtn());
+        add(createMapIndexBtn());
+        add(createOpenIndexBtn());
         add(Box.createVerticalBox());
     }
 
@@ -92,7 +94,7 @@ public class IndexManagementPanel extends AbstractGUIPanel {
                 @Override
                 public void onIndexingFinished() {
                     setIndexedDocumentsCount(Main.getIndex().getDocumentCount());
-                    Main.recalculateIndex();
+                    Main.updateIndex();
                     mainWindow.enableButtons();
                 }
             });
@@ -112,7 +114,7 @@ public class IndexManagementPanel extends AbstractGUIPanel {
                 @Override
                 public void onIndexingFinished() {
                     setIndexedDocumentsCount(Main.getIndex().getDocumentCount());
-                    Main.recalculateIndex();
+                    Main.updateIndex();
                     mainWindow.enableButtons();
                 }
             });
@@ -233,7 +235,47 @@ public class IndexManagementPanel extends AbstractGUIPanel {
     }
 
     private JButton createLoadIndexBtn() {
-        saveIndexBtn = new JButton(new AbstractAction("Load index") {
+        saveIndexBtn = createOpenIndexBtn("Load index", OpenMode.LOAD);
+        return saveIndexBtn;
+    }
+
+    private JButton createMapIndexBtn() {
+        mapIndexBtn = createOpenIndexBtn("Open index read-only", OpenMode.MAP);
+        return mapIndexBtn;
+    }
+
+    private JButton createOpenIndexBtn() {
+        openIndexBtn = createOpenIndexBtn("Open large index read-only", OpenMode.LAZY);
+        return openIndexBtn;
+    }
+
+    /**
+     * How index file is opened.
+     */
+    private enum OpenMode {
+        /**
+         * Whole index is loaded to memory.
+         */
+        LOAD,
+        /**
+         * File is mapped to memory as read-only index.
+         */
+        MAP,
+        /**
+         * Postings are read from file when they're needed, see {@link Main#openIndexFromFile(String)}.
+         */
+        LAZY
+    }
+
+    /**
+     * Creates button which opens index from file.
+     *
+     * @param name Label of the button.
+     * @param openMode How the file is opened.
+     * @return Button.
+     */
+    private JButton createOpenIndexBtn(String name, final OpenMode openMode) {
+        JButton button = new JButton(new AbstractAction(name) {
             @Override
             public void actionPerformed(ActionEvent e) {
                 log.info("Loading index from file, waiting for user to choose it ...");
@@ -252,7 +294,16 @@ public class IndexManagementPanel extends AbstractGUIPanel {
                         return;
                     }
                     try {
-                        Main.loadIndexFromFile(file.getPath());
+                        switch (openMode) {
+                            case MAP:
+                                Main.mapIndexFromFile(file.getPath());
+                                break;
+                            case LAZY:
+                                Main.openIndexFromFile(file.getPath());
+                                break;
+                            default:
+                                Main.loadIndexFromFile(file.getPath());
+                        }
                         setIndexedDocumentsCount(Main.getIndex().getDocumentCount());
                         log.info("Index successfully loaded from file.");
                     } catch (Exception ex) {
@@ -265,9 +316,9 @@ public class IndexManagementPanel extends AbstractGUIPanel {
                 mainWindow.enableButtons();
             }
         });
-        saveIndexBtn.setAlignmentX(0.5f);
+        button.setAlignmentX(0.5f);
 
-        return saveIndexBtn;
+        return button;
     }
 
 
@@ -296,6 +347,8 @@ public class IndexManagementPanel extends AbstractGUIPanel {
         indexDocumentsFromFile.setEnabled(true);
         saveIndexBtn.setEnabled(true);
         loadIndexBtn.setEnabled(true);
+        mapIndexBtn.setEnabled(true);
+        openIndexBtn.setEnabled(true);
     }
 
     public void disableButtons() {
@@ -303,5 +356,7 @@ public class IndexManagementPanel extends AbstractGUIPanel {
         indexDocumentsFromFile.setEnabled(false);
         saveIndexBtn.setEnabled(false);
         loadIndexBtn.setEnabled(false);
+        mapIndexBtn.setEnabled(false);
+        openIndexBtn.setEnabled(false);
     }
 }
@@ -2,6 +2,7 @@ package cz.zcu.kiv.nlp.ir.trec.gui.indexmgmt.actions;
 
 import cz.zcu.kiv.nlp.ir.trec.SerializedDataHelper;
 import cz.zcu.kiv.nlp.ir.trec.data.Document;
+import cz.zcu.kiv.nlp.ir.trec.data.DocumentSource;
 import cz.zcu.kiv.nlp.ir.trec.data.RPolDocumentReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +12,7 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 public abstract class IndexCzDataFromFile extends AbstractAction {
 
@@ -53,11 +55,22 @@ public abstract class IndexCzDataFromFile extends AbstractAction {
                 log.debug("Done.");
 
                 log.debug("Creating task for indexing documents.");
-                IndexDocumentsFromFileTask task = new IndexDocumentsFromFileTask(documents, progressBar) {
+                IndexDocumentsFromFileTask task = new IndexDocumentsFromFileTask(DocumentSource.of(documents), progressBar) {
                     @Override
                     protected void done() {
-                        onIndexingFinished();
                         super.done();
+                        try {
+                            get();
+                            onIndexingFinished();
+                        } catch (ExecutionException ex) {
+                            // documents indexed before the failure are kept
+                            log.error("Exception while indexing documents: ", ex.getCause());
+                            onIndexingFinished();
+                            onError("Error while indexing documents: "+ex.getCause().getMessage());
+                        } catch (InterruptedException ex) {
+                            log.error("Interrupted while waiting for indexing: ", ex);
+                            onError("Indexing interrupted: "+ex.getMessage());
+                        }
                     }
                 };
                 task.execute();
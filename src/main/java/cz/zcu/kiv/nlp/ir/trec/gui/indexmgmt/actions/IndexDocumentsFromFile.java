@@ -1,6 +1,6 @@
 package cz.zcu.kiv.nlp.ir.trec.gui.indexmgmt.actions;
 
-import cz.zcu.kiv.nlp.ir.trec.data.Document;
+import cz.zcu.kiv.nlp.ir.trec.data.DocumentSource;
 import cz.zcu.kiv.nlp.ir.trec.data.RPolDocumentReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,7 +9,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.io.File;
-import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Action for reading documents from file and indexing them.
@@ -50,16 +50,26 @@ public abstract class IndexDocumentsFromFile extends AbstractAction {
 
 
             try {
-                log.debug("Reading and parsing file.");
-                List<Document> documents = reader.readFile(file);
-                log.debug("Done.");
+                log.debug("Opening file, documents are parsed while they're indexed.");
+                DocumentSource documents = reader.open(file);
 
                 log.debug("Creating task for indexing documents.");
                 IndexDocumentsFromFileTask task = new IndexDocumentsFromFileTask(documents, progressBar) {
                     @Override
                     protected void done() {
-                        onIndexingFinished();
                         super.done();
+                        try {
+                            get();
+                            onIndexingFinished();
+                        } catch (ExecutionException ex) {
+                            // documents indexed before the failure are kept
+                            log.error("Exception while indexing documents: ", ex.getCause());
+                            onIndexingFinished();
+                            onError("Error while indexing documents: "+ex.getCause().getMessage());
+                        } catch (InterruptedException ex) {
+                            log.error("Interrupted while waiting for indexing: ", ex);
+                            onError("Indexing interrupted: "+ex.getMessage());
+                        }
                     }
                 };
                 task.execute();
@@ -2,22 +2,24 @@ package cz.zcu.kiv.nlp.ir.trec.gui.indexmgmt.actions;
 
 import cz.zcu.kiv.nlp.ir.trec.Configuration;
 import cz.zcu.kiv.nlp.ir.trec.Main;
-import cz.zcu.kiv.nlp.ir.trec.data.Document;
+import cz.zcu.kiv.nlp.ir.trec.data.DocumentSource;
 
 import javax.swing.*;
 import java.util.List;
 
 /**
- * Background worker for indexing chunks of documents. Progress is tracked via progress bar.
+ * Background worker for indexing a stream of documents. The number of documents isn't known in advance,
+ * so the progress bar is indeterminate until the indexing is finished.
  */
 public class IndexDocumentsFromFileTask extends SwingWorker<Void, Integer> {
 
-    private List<Document> documentsToIndex;
+    private DocumentSource documentsToIndex;
     private JProgressBar progressBar;
 
-    public IndexDocumentsFromFileTask(List<Document> documentsToIndex, JProgressBar progressBar) {
+    public IndexDocumentsFromFileTask(DocumentSource documentsToIndex, JProgressBar progressBar) {
         this.documentsToIndex = documentsToIndex;
         this.progressBar = progressBar;
+        progressBar.setIndeterminate(true);
     }
 
     @Override
@@ -28,15 +30,18 @@ public class IndexDocumentsFromFileTask extends SwingWorker<Void, Integer> {
 
     @Override
     protected Void doInBackground() throws Exception {
-        double progress = 0;
-        double progressStep = Configuration.getMaxProgress() / (double)documentsToIndex.size();
-
-        for(Document d : documentsToIndex) {
-            Main.indexDocument(d);
-            progress += progressStep;
-            publish((int)progress);
+        try {
+            Main.indexDocuments(documentsToIndex);
+        } finally {
+            documentsToIndex.close();
         }
+        publish(Configuration.getMaxProgress());
 
         return null;
     }
+
+    @Override
+    protected void done() {
+        progressBar.setIndeterminate(false);
+    }
 }
@@ -49,8 +49,8 @@ public class SearchIndexTask extends SwingWorker<List, Integer> {
 
         publish(Configuration.getMaxProgress());
 
-        totalDocumentCount = retrievalWithProgress.getResultQueue().size();
-        return Main.extractTopKResults(retrievalWithProgress.getResultQueue(), topK);
+        totalDocumentCount = (int) retrievalWithProgress.getCollector().getTotalHits();
+        return Main.extractTopKResults(retrievalWithProgress.getCollector());
     }
 
     /**
@@ -0,0 +1,302 @@
+package cz.zcu.kiv.nlp.ir.trec.ingest;
+
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.data.Document;
+import cz.zcu.kiv.nlp.ir.trec.data.DocumentSource;
+import cz.zcu.kiv.nlp.ir.trec.preprocess.Preprocessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Indexes a stream of documents in three stages connected by bounded queues:
+ *
+ * <ol>
+ *     <li>reader reads batches of documents from {@link DocumentSource},</li>
+ *     <li>pool of analyzers preprocesses the documents to tokens, each with its own copy of the preprocessor,</li>
+ *     <li>inverter adds the tokens to the inverted index in the order in which the documents were read.</li>
+ * </ol>
+ *
+ * The stages run concurrently. When a stage is slower than the previous one, the queue between them fills up
+ * and the previous stage waits. Batches which were analyzed out of order and wait for the inverter are limited too,
+ * the reader waits until the inverter takes some of them. So at most a few batches of documents are in memory
+ * at once. Throughput of each stage is measured by {@link StageStatistics}.
+ *
+ * The inverter runs in the thread which calls {@link #run(DocumentSource)}, so the inverted index is modified
+ * only by that thread. Statistics of the index have to be recalculated afterwards.
+ */
+public class IngestPipeline {
+
+    private static Logger log = LoggerFactory.getLogger(IngestPipeline.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * Default capacity of the queues in batches.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    /**
+     * Marks the end of the stream in the queues.
+     */
+    private static final Batch END = new Batch(-1, new ArrayList<>());
+
+    private final InvertedIndex invertedIndex;
+    private final Preprocessor preprocessor;
+    private final int analyzerThreads;
+
+    private int batchSize;
+    private int queueCapacity;
+
+    private StageStatistics readerStatistics;
+    private StageStatistics analyzerStatistics;
+    private StageStatistics inverterStatistics;
+
+    /**
+     * @param invertedIndex Index the documents are added to.
+     * @param preprocessor Preprocessor, copied for each analyzer thread.
+     * @param analyzerThreads Number of analyzer threads.
+     */
+    public IngestPipeline(InvertedIndex invertedIndex, Preprocessor preprocessor, int analyzerThreads) {
+        if (analyzerThreads < 1) {
+            throw new IllegalArgumentException("Number of analyzer threads must be positive: " + analyzerThreads);
+        }
+        this.invertedIndex = invertedIndex;
+        this.preprocessor = preprocessor;
+        this.analyzerThreads = analyzerThreads;
+        batchSize = DEFAULT_BATCH_SIZE;
+        queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    }
+
+    /**
+     * Reads all documents from the source and adds them to the index. The source is not closed.
+     *
+     * @param source Source of documents.
+     * @return Number of indexed documents.
+     * @throws RuntimeException If any of the stages fails or a document is already indexed.
+     */
+    public long run(DocumentSource source) {
+        readerStatistics = new StageStatistics("reader", 1);
+        analyzerStatistics = new StageStatistics("analyzer", analyzerThreads);
+        inverterStatistics = new StageStatistics("inverter", 1);
+
+        BlockingQueue<Batch> readQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Batch> analyzedQueue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger runningAnalyzers = new AtomicInteger(analyzerThreads);
+        // batches in both queues and one in each analyzer, acquired by the reader and released by the inverter
+        Semaphore inFlight = new Semaphore(2 * queueCapacity + analyzerThreads);
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(analyzerThreads + 1);
+        try {
+            executor.submit(() -> {
+                try {
+                    read(source, readQueue, inFlight);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            for (int i = 0; i < analyzerThreads; i++) {
+                Preprocessor threadPreprocessor = preprocessor.copy();
+                executor.submit(() -> {
+                    try {
+                        analyze(threadPreprocessor, readQueue, analyzedQueue, runningAnalyzers);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+            }
+
+            long indexed = invert(analyzedQueue, inFlight, failure);
+            log.info("Indexed {} documents in {} ms.", indexed, (System.nanoTime() - start) / 1_000_000);
+            for (StageStatistics statistics : getStatistics()) {
+                log.info("{}", statistics);
+            }
+            return indexed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Indexing interrupted!", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void read(DocumentSource source, BlockingQueue<Batch> readQueue, Semaphore inFlight) throws Exception {
+        long sequence = 0;
+        boolean end = false;
+        while (!end) {
+            long start = System.nanoTime();
+            List<Document> documents = new ArrayList<>(batchSize);
+            while (documents.size() < batchSize) {
+                Document document = source.next();
+                if (document == null) {
+                    end = true;
+                    break;
+                }
+                documents.add(document);
+            }
+            readerStatistics.addWork(documents.size(), System.nanoTime() - start);
+
+            if (!documents.isEmpty()) {
+                long waitStart = System.nanoTime();
+                inFlight.acquire();
+                readerStatistics.addOutputWait(System.nanoTime() - waitStart);
+                put(readQueue, new Batch(sequence++, documents), readerStatistics);
+            }
+        }
+        put(readQueue, END, readerStatistics);
+    }
+
+    private void analyze(Preprocessor preprocessor, BlockingQueue<Batch> readQueue, BlockingQueue<Batch> analyzedQueue,
+                         AtomicInteger runningAnalyzers) throws InterruptedException {
+        while (true) {
+            Batch batch = take(readQueue, analyzerStatistics);
+            if (batch == END) {
+                // let the other analyzers know, the last one passes the end to the inverter
+                readQueue.put(END);
+                if (runningAnalyzers.decrementAndGet() == 0) {
+                    put(analyzedQueue, END, analyzerStatistics);
+                }
+                return;
+            }
+
+            long start = System.nanoTime();
+            batch.tokens = new String[batch.documents.size()][];
+            for (int i = 0; i < batch.tokens.length; i++) {
+                batch.tokens[i] = preprocessor.processText(batch.documents.get(i).getText());
+            }
+            analyzerStatistics.addWork(batch.tokens.length, System.nanoTime() - start);
+
+            put(analyzedQueue, batch, analyzerStatistics);
+        }
+    }
+
+    /**
+     * Adds analyzed batches to the index. Analyzers may finish the batches in different order than they were read,
+     * so batches which come too early wait until the previous ones are inverted. The batch with the next sequence
+     * was read before all waiting batches, so it holds its permit and the reader can't block it from coming.
+     * The queue is therefore always drained, even if the reader waits for permits.
+     */
+    private long invert(BlockingQueue<Batch> analyzedQueue, Semaphore inFlight, AtomicReference<Throwable> failure)
+            throws InterruptedException {
+        Map<Long, Batch> waiting = new HashMap<>();
+        long nextSequence = 0;
+        long indexed = 0;
+        while (true) {
+            long waitStart = System.nanoTime();
+            Batch batch = analyzedQueue.poll(100, TimeUnit.MILLISECONDS);
+            inverterStatistics.addInputWait(System.nanoTime() - waitStart);
+            if (failure.get() != null) {
+                throw new RuntimeException("Error while indexing documents: " + failure.get().getMessage(), failure.get());
+            } else if (batch == END) {
+                return indexed;
+            } else if (batch == null) {
+                continue;
+            }
+
+            waiting.put(batch.sequence, batch);
+            while ((batch = waiting.remove(nextSequence)) != null) {
+                long start = System.nanoTime();
+                for (int i = 0; i < batch.tokens.length; i++) {
+                    String documentId = batch.documents.get(i).getId();
+                    if (invertedIndex.isIndexed(documentId)) {
+                        throw new RuntimeException("Document with id " + documentId + " is already indexed!");
+                    }
+                    invertedIndex.indexDocument(batch.tokens[i], documentId);
+                }
+                inverterStatistics.addWork(batch.tokens.length, System.nanoTime() - start);
+                indexed += batch.tokens.length;
+                nextSequence++;
+                inFlight.release();
+            }
+        }
+    }
+
+    private static Batch take(BlockingQueue<Batch> queue, StageStatistics statistics) throws InterruptedException {
+        long start = System.nanoTime();
+        Batch batch = queue.take();
+        statistics.addInputWait(System.nanoTime() - start);
+        return batch;
+    }
+
+    private static void put(BlockingQueue<Batch> queue, Batch batch, StageStatistics statistics) throws InterruptedException {
+        long start = System.nanoTime();
+        queue.put(batch);
+        statistics.addOutputWait(System.nanoTime() - start);
+    }
+
+    /**
+     * Returns statistics of the stages of the last run.
+     *
+     * @return Statistics of the reader, analyzers and inverter or empty list if the pipeline didn't run yet.
+     */
+    public List<StageStatistics> getStatistics() {
+        if (readerStatistics == null) {
+            return new ArrayList<>();
+        }
+        return Arrays.asList(readerStatistics, analyzerStatistics, inverterStatistics);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the capacity of the queues between the stages.
+     *
+     * @param queueCapacity Max number of batches waiting in each queue.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Batch of documents passed between the stages.
+     */
+    private static class Batch {
+
+        /**
+         * Order in which the batch was read.
+         */
+        private final long sequence;
+        private final List<Document> documents;
+
+        /**
+         * Tokens of the documents, set by analyzer.
+         */
+        private String[][] tokens;
+
+        private Batch(long sequence, List<Document> documents) {
+            this.sequence = sequence;
+            this.documents = documents;
+        }
+    }
+}
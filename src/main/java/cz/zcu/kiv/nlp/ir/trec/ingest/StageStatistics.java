@@ -0,0 +1,94 @@
+package cz.zcu.kiv.nlp.ir.trec.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of one stage of {@link IngestPipeline}. Time of the stage's threads is split to the time they
+ * were working and the time they were blocked waiting for input from the previous stage or for free space
+ * in the queue of the next stage. A stage which is rarely waiting for input is the bottleneck.
+ *
+ * Statistics are updated concurrently by all threads of the stage.
+ */
+public class StageStatistics {
+
+    private final String name;
+    private final int threads;
+
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong inputWaitNanos = new AtomicLong();
+    private final AtomicLong outputWaitNanos = new AtomicLong();
+
+    StageStatistics(String name, int threads) {
+        this.name = name;
+        this.threads = threads;
+    }
+
+    void addWork(long documentCount, long nanos) {
+        documents.addAndGet(documentCount);
+        busyNanos.addAndGet(nanos);
+    }
+
+    void addInputWait(long nanos) {
+        inputWaitNanos.addAndGet(nanos);
+    }
+
+    void addOutputWait(long nanos) {
+        outputWaitNanos.addAndGet(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getDocuments() {
+        return documents.get();
+    }
+
+    /**
+     * Time all threads of the stage spent working.
+     *
+     * @return Time in milliseconds.
+     */
+    public long getBusyTime() {
+        return busyNanos.get() / 1_000_000;
+    }
+
+    /**
+     * Time all threads of the stage spent waiting for input.
+     *
+     * @return Time in milliseconds.
+     */
+    public long getInputWaitTime() {
+        return inputWaitNanos.get() / 1_000_000;
+    }
+
+    /**
+     * Time all threads of the stage spent waiting for free space in the output queue.
+     *
+     * @return Time in milliseconds.
+     */
+    public long getOutputWaitTime() {
+        return outputWaitNanos.get() / 1_000_000;
+    }
+
+    /**
+     * Number of documents the stage is able to process per second with all its threads if it never waits.
+     *
+     * @return Documents per second or infinity if the stage didn't do any work.
+     */
+    public double getThroughput() {
+        long busy = busyNanos.get();
+        return busy == 0 ? Double.POSITIVE_INFINITY : documents.get() * threads * 1e9 / busy;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%d threads): %d documents, %.0f docs/s, busy %d ms, waiting for input %d ms, for output %d ms",
+                name, threads, getDocuments(), getThroughput(), getBusyTime(), getInputWaitTime(), getOutputWaitTime());
+    }
+}
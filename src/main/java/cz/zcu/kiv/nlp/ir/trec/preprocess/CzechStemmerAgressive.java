@@ -17,6 +17,11 @@ public class CzechStemmerAgressive implements Stemmer{
      */
     public CzechStemmerAgressive(){} // constructor
 
+    @Override
+    public Stemmer copy() {
+        return new CzechStemmerAgressive();
+    }
+
     public String stem(String input){
         //
         input=input.toLowerCase();
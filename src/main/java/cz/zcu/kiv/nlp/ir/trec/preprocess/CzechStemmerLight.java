@@ -21,6 +21,11 @@ public class CzechStemmerLight implements Stemmer {
      */
     public CzechStemmerLight(){} // constructor
 
+    @Override
+    public Stemmer copy() {
+        return new CzechStemmerLight();
+    }
+
     public String stem(String input){
 
         //
@@ -535,6 +535,11 @@ public class EnglishStemmer implements Stemmer {
         i = 0;
     }
 
+    @Override
+    public Stemmer copy() {
+        return new EnglishStemmer();
+    }
+
     /**
      * Stems <code>s</code> and returns stemmed <code>String</code>.
      */
@@ -42,6 +42,16 @@ public class Preprocessor {
         this(tokenizer, stemmer, stopwords, true, true);
     }
 
+    /**
+     * Creates preprocessor with the same settings which can be used by another thread.
+     * Stemmer is copied, tokenizer and stopwords are shared.
+     *
+     * @return Preprocessor.
+     */
+    public Preprocessor copy() {
+        return new Preprocessor(tokenizer, stemmer == null ? null : stemmer.copy(), stopwords, useStemmer, useStopWords);
+    }
+
     /**
      * Processes one term (uses stemmer only).
      * @param term Term to be processed.
@@ -6,4 +6,14 @@ package cz.zcu.kiv.nlp.ir.trec.preprocess;
 public interface Stemmer {
 
     String stem(String input);
+
+    /**
+     * Returns stemmer which can be used by another thread. Stemmers which keep state between calls
+     * of {@link #stem(String)} must return a new instance.
+     *
+     * @return Stemmer.
+     */
+    default Stemmer copy() {
+        return this;
+    }
 }
@@ -0,0 +1,17 @@
+package cz.zcu.kiv.nlp.trec;
+
+import cz.zcu.kiv.nlp.ir.trec.core.BooleanExecution;
+import org.junit.Before;
+
+/**
+ * Same boolean queries as in {@link BooleanSearchTest} evaluated over compressed bitmaps.
+ */
+public class BitmapBooleanSearchTest extends BooleanSearchTest {
+
+    @Before
+    @Override
+    public void setUp() {
+        super.setUp();
+        index.setBooleanExecution(BooleanExecution.BITMAPS);
+    }
+}
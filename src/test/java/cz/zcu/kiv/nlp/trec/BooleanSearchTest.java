@@ -256,6 +256,18 @@ public class BooleanSearchTest {
         checkResultsScoreNotNanOrZero(results);
     }
 
+    /**
+     * Unknown term is ignored only in its own conjunction, which then matches nothing.
+     */
+    @Test
+    public void testUnknownTermInNestedAnd() throws QueryNodeException {
+        String query = "auto AND (neznamy AND NOT uplne)";
+        int expResCount = 0;
+
+        List<Result> results = index.search(query, SearchMode.BOOLEAN);
+        assertEquals("Wrong number of results returned!", expResCount, results.size() );
+    }
+
     /**
      * Checks that result scores are not NaN or 0.
      * @param results
@@ -0,0 +1,149 @@
+package cz.zcu.kiv.nlp.trec;
+
+import cz.zcu.kiv.nlp.ir.trec.Index;
+import cz.zcu.kiv.nlp.ir.trec.core.IdfMode;
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+import cz.zcu.kiv.nlp.ir.trec.data.Document;
+import cz.zcu.kiv.nlp.ir.trec.data.DocumentNew;
+import cz.zcu.kiv.nlp.ir.trec.data.DocumentSource;
+import cz.zcu.kiv.nlp.ir.trec.data.RPolDocumentReader;
+import cz.zcu.kiv.nlp.ir.trec.preprocess.AdvancedTokenizer;
+import cz.zcu.kiv.nlp.ir.trec.preprocess.EnglishStemmer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Documents indexed by several threads must end up in the same index as if they were indexed by one.
+ */
+public class ParallelIndexingTest {
+
+    private static final int DOCUMENT_COUNT = 3000;
+
+    private static final String[] WORDS = new String[] {"insurance", "cars", "driving", "houses", "running", "gardens",
+            "policies", "claims", "accidents", "roads", "cities", "villages", "rivers", "bridges", "trains", "stations"};
+
+    private List<Document> documents;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(17);
+        documents = new ArrayList<>(DOCUMENT_COUNT);
+        for (int i = 0; i < DOCUMENT_COUNT; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = 3 + random.nextInt(30);
+            for (int j = 0; j < length; j++) {
+                text.append(WORDS[(int) (WORDS.length * Math.pow(random.nextDouble(), 2))]).append(random.nextInt(50)).append(' ');
+            }
+            documents.add(new DocumentNew(text.toString(), "d" + i));
+        }
+    }
+
+    @Test
+    public void testSameIndexAsSequential() {
+        InvertedIndex expected = index(documents, 1, IdfMode.INDEX_TIME).getWritableIndex();
+        Index parallel = index(documents.subList(0, 1000), 4, IdfMode.INDEX_TIME);
+        parallel.index(documents.subList(1000, DOCUMENT_COUNT));
+
+        assertSameIndex(expected, parallel.getWritableIndex());
+    }
+
+    @Test
+    public void testSameIndexAsSequentialQueryTimeIdf() {
+        InvertedIndex expected = index(documents, 1, IdfMode.QUERY_TIME).getWritableIndex();
+        InvertedIndex actual = index(documents, 4, IdfMode.QUERY_TIME).getWritableIndex();
+
+        assertSameIndex(expected, actual);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testDuplicateDocument() {
+        List<Document> duplicate = new ArrayList<>(documents);
+        duplicate.add(new DocumentNew("cars", "d10"));
+        index(duplicate, 4, IdfMode.INDEX_TIME);
+    }
+
+    /**
+     * Documents indexed before the stream fails must have their statistics up to date.
+     */
+    @Test
+    public void testMalformedStream() throws IOException {
+        File file = File.createTempFile("rpol-malformed", ".json");
+        try {
+            try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+                writer.println("[");
+                for (Document d : documents.subList(0, 1000)) {
+                    writer.println("{\"username\":\"" + d.getId() + "\", \"text\":\"" + d.getText() + "\", \"score\":1, \"timestamp\":\"Tue Feb 25 00:49:25 2020 UTC\"},");
+                }
+                writer.println("{\"username\":\"broken\", \"text\":\"cars\", \"score\":1, \"timestamp\":\"yesterday\"}");
+                writer.println("]");
+            }
+
+            Index index = index(documents.subList(1000, DOCUMENT_COUNT), 4, IdfMode.INDEX_TIME);
+            boolean failed = false;
+            try (DocumentSource source = new RPolDocumentReader().open(file)) {
+                index.indexStream(source);
+            } catch (RuntimeException e) {
+                failed = true;
+            }
+
+            assertTrue("Malformed stream indexed without error!", failed);
+            InvertedIndex invertedIndex = index.getWritableIndex();
+            assertTrue("No documents of the stream indexed!", invertedIndex.getDocumentCount() > DOCUMENT_COUNT - 1000);
+            for (int i = 0; i < invertedIndex.getDocumentCount(); i++) {
+                assertTrue("Norm of document " + i + " not calculated!", invertedIndex.getTfIdfNormForDocument(i) > 0);
+            }
+            for (String word : WORDS) {
+                String term = new EnglishStemmer().stem(word + 0);
+                assertFalse("IDF of " + term + " not calculated!", Double.isNaN(invertedIndex.idf(term)));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private Index index(List<Document> documents, int threads, IdfMode idfMode) {
+        Index index = new Index(new AdvancedTokenizer(), new EnglishStemmer(), new HashSet<>());
+        index.getWritableIndex().setIdfMode(idfMode);
+        index.setIndexingThreads(threads);
+        index.index(documents);
+        return index;
+    }
+
+    private void assertSameIndex(InvertedIndex expected, InvertedIndex actual) {
+        assertEquals("Wrong document count!", expected.getDocumentCount(), actual.getDocumentCount());
+        for (int i = 0; i < expected.getDocumentCount(); i++) {
+            assertEquals("Wrong document id!", expected.getDocumentId(i), actual.getDocumentId(i));
+            assertEquals("Wrong norm of document " + i + "!", expected.getTfIdfNormForDocument(i), actual.getTfIdfNormForDocument(i), 1e-9);
+        }
+
+        for (String word : WORDS) {
+            for (int n = 0; n < 50; n++) {
+                String term = new EnglishStemmer().stem(word + n);
+                assertTrue("Term " + term + " not indexed!", expected.documentFrequency(term) > 0);
+                assertEquals("Wrong IDF of " + term + "!", expected.idf(term), actual.idf(term), 1e-9);
+                assertEquals("Wrong max score of " + term + "!", expected.maxScore(term), actual.maxScore(term), 1e-9);
+
+                PostingsIterator expectedPostings = expected.getPostingsForTerm(term).iterator();
+                PostingsIterator actualPostings = actual.getPostingsForTerm(term).iterator();
+                while (expectedPostings.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                    assertEquals("Wrong posting of " + term + "!", expectedPostings.docOrdinal(), actualPostings.nextDoc());
+                    assertEquals("Wrong term frequency of " + term + "!", expectedPostings.termFrequency(), actualPostings.termFrequency());
+                }
+                assertEquals("Too many postings of " + term + "!", PostingsIterator.NO_MORE_DOCS, actualPostings.nextDoc());
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.BlockMaxScores;
+import cz.zcu.kiv.nlp.ir.trec.core.BlockMaxWandScorer;
+import cz.zcu.kiv.nlp.ir.trec.core.CosineSimilarityCalculator;
+import cz.zcu.kiv.nlp.ir.trec.core.ImpactPrecision;
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingList;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKCollector;
+import cz.zcu.kiv.nlp.ir.trec.core.WandScorer;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.BlockPForCodec;
+import cz.zcu.kiv.nlp.ir.trec.data.Result;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BlockMaxWandScorerTest {
+
+    private static final int DOCUMENT_COUNT = 20000;
+
+    private InvertedIndex invertedIndex;
+
+    @Before
+    public void setUp() {
+        invertedIndex = RandomIndexes.create(11, DOCUMENT_COUNT, 50, new BlockPForCodec());
+    }
+
+    /**
+     * Every posting of a block must be within the block bounds.
+     */
+    @Test
+    public void testBlockMaxScores() {
+        String term = "t7";
+        BlockMaxScores blocks = invertedIndex.getBlockMaxScores(term);
+        PostingList postings = invertedIndex.getPostingsForTerm(term);
+        assertEquals("Wrong number of blocks!", (postings.size() + BlockMaxScores.BLOCK_SIZE - 1) / BlockMaxScores.BLOCK_SIZE, blocks.getBlockCount());
+
+        CosineSimilarityCalculator calculator = new CosineSimilarityCalculator(invertedIndex, new String[] {term});
+        PostingsIterator it = postings.iterator();
+        int count = 0;
+        while (it.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+            int block = count / BlockMaxScores.BLOCK_SIZE;
+            assertTrue("Document after the end of its block!", it.docOrdinal() <= blocks.getLastDocument(block));
+            assertTrue("Score above the block bound!", calculator.calculateScore(it.docOrdinal()) <= blocks.getMaxScore(block));
+            assertEquals("Wrong block found!", block, blocks.findBlock(it.docOrdinal(), 0));
+            count++;
+        }
+    }
+
+    /**
+     * Top K documents must have the same scores as the top K of exhaustive term-at-a-time scoring.
+     */
+    @Test
+    public void testSameTopKAsTermAtATime() {
+        String[] query = new String[] {"t0", "t1", "t3", "t10", "t10", "t25", "t42", "nonexistent"};
+        for (int k : new int[] {1, 10, 100, 1000}) {
+            List<Result> expected = RandomIndexes.scoreAll(invertedIndex, query);
+
+            TopKCollector collector = new TopKCollector(k);
+            new BlockMaxWandScorer(invertedIndex, query).score(collector);
+            List<Result> actual = collector.toResults(invertedIndex);
+
+            assertEquals("Wrong number of results returned!", Math.min(k, expected.size()), actual.size());
+            for (int i = 0; i < actual.size(); i++) {
+                assertEquals("Wrong score of result!", expected.get(i).getScore(), actual.get(i).getScore(), 0.0001);
+            }
+        }
+    }
+
+    /**
+     * Block bounds must let the scorer skip more than plain WAND does.
+     */
+    @Test
+    public void testSkipsMoreThanWand() {
+        String[] query = new String[] {"t0", "t1", "t2", "t30"};
+        WandScorer wand = new WandScorer(invertedIndex, query);
+        wand.score(new TopKCollector(10));
+        WandScorer blockMaxWand = new BlockMaxWandScorer(invertedIndex, query);
+        blockMaxWand.score(new TopKCollector(10));
+
+        assertTrue("Block-Max WAND scored more documents than WAND!", blockMaxWand.getScoredDocuments() < wand.getScoredDocuments());
+        assertTrue("No postings skipped!", blockMaxWand.getSkippedPostings() > wand.getSkippedPostings());
+    }
+
+    /**
+     * Term 'a' reaches its max score only in the last 10 documents which contain nothing else, so WAND has to score
+     * all documents. The first 10 documents score higher than the rest of them, so Block-Max WAND skips every block
+     * but the first and the last one.
+     */
+    @Test
+    public void testSkipsBlocks() {
+        InvertedIndex index = new InvertedIndex();
+        // impacts exactly equal to the float scores in the collector, so the bound of the first block equals the threshold
+        index.setImpactPrecision(ImpactPrecision.FLOAT);
+        int documentCount = 100 * BlockMaxScores.BLOCK_SIZE;
+        for (int i = 0; i < documentCount; i++) {
+            if (i < 10) {
+                index.indexDocument(new String[] {"a", "x"}, "d" + i);
+            } else if (i < documentCount - 10) {
+                index.indexDocument(new String[] {"a", "x", "y", "z"}, "d" + i);
+            } else {
+                index.indexDocument(new String[] {"a"}, "d" + i);
+            }
+        }
+        // documents without 'a', so that its IDF is not negligible
+        for (int i = 0; i < 1000; i++) {
+            index.indexDocument(new String[] {"b"}, "b" + i);
+        }
+        index.recalculateTermIdfs();
+        index.recalculateDocumentTfIdfs();
+        index.compressPostings();
+
+        WandScorer wand = new WandScorer(index, new String[] {"a"});
+        wand.score(new TopKCollector(10));
+        WandScorer blockMaxWand = new BlockMaxWandScorer(index, new String[] {"a"});
+        TopKCollector collector = new TopKCollector(10);
+        blockMaxWand.score(collector);
+
+        assertEquals("Wrong threshold!", 1.0, collector.threshold(), 0.0001);
+        assertEquals("WAND skipped documents!", documentCount, wand.getScoredDocuments());
+        assertEquals("Wrong number of skipped blocks!", 98, blockMaxWand.getSkippedBlocks());
+        assertTrue("Too many documents scored: " + blockMaxWand.getScoredDocuments(), blockMaxWand.getScoredDocuments() <= 2 * BlockMaxScores.BLOCK_SIZE);
+    }
+}
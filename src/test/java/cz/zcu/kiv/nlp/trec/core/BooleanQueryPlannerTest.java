@@ -0,0 +1,155 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.BooleanQueryPlanner;
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingList;
+import cz.zcu.kiv.nlp.ir.trec.core.SearchQueryNode;
+import cz.zcu.kiv.nlp.ir.trec.core.bitmap.BitmapQueryEvaluator;
+import org.apache.lucene.search.BooleanClause;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BooleanQueryPlannerTest {
+
+    private static final int DOCUMENT_COUNT = 5000;
+
+    private InvertedIndex invertedIndex;
+    private BooleanQueryPlanner planner;
+
+    /**
+     * Term 'common' is in every document, 'half' in every second, 'rare' in every 100th
+     * and 'third' in every third document.
+     */
+    @Before
+    public void setUp() {
+        invertedIndex = new InvertedIndex();
+        for (int i = 0; i < DOCUMENT_COUNT; i++) {
+            List<String> tokens = new ArrayList<>();
+            tokens.add("common");
+            if (i % 2 == 0) {
+                tokens.add("half");
+            }
+            if (i % 3 == 0) {
+                tokens.add("third");
+            }
+            if (i % 100 == 0) {
+                tokens.add("rare");
+            }
+            invertedIndex.indexDocument(tokens.toArray(new String[0]), "d" + i);
+        }
+        invertedIndex.compressPostings();
+        planner = new BooleanQueryPlanner(invertedIndex);
+    }
+
+    /**
+     * rare AND (half AND (third AND common)) is flattened to one conjunction.
+     */
+    @Test
+    public void testFlattenAnd() {
+        SearchQueryNode inner = node(BooleanClause.Occur.MUST, term("third"), term("common"));
+        SearchQueryNode middle = node(BooleanClause.Occur.MUST, term("half"), inner);
+        SearchQueryNode root = node(BooleanClause.Occur.MUST, term("rare"), middle);
+
+        SearchQueryNode rewritten = planner.rewrite(root);
+
+        assertEquals("Wrong number of AND operands!", 4, rewritten.getChildren().get(BooleanClause.Occur.MUST).size());
+        for (SearchQueryNode child : rewritten.getChildren().get(BooleanClause.Occur.MUST)) {
+            assertTrue("Nested node not flattened!", child.isTerm());
+        }
+        checkResult(root, i -> i % 300 == 0);
+    }
+
+    /**
+     * half AND NOT (NOT rare) = half AND rare.
+     */
+    @Test
+    public void testDoubleNegation() {
+        SearchQueryNode notRare = node(BooleanClause.Occur.MUST_NOT, term("rare"));
+        SearchQueryNode root = new SearchQueryNode();
+        root.addChild(BooleanClause.Occur.MUST, term("half"));
+        root.addChild(BooleanClause.Occur.MUST_NOT, notRare);
+
+        SearchQueryNode rewritten = planner.rewrite(root);
+
+        assertFalse("Double negation not removed!", rewritten.getChildren().containsKey(BooleanClause.Occur.MUST_NOT));
+        checkResult(root, i -> i % 100 == 0);
+    }
+
+    /**
+     * rare AND (unknown AND NOT third) matches nothing, unknown term must not be ignored in the parent conjunction.
+     */
+    @Test
+    public void testUnknownTermNotFlattened() {
+        SearchQueryNode inner = new SearchQueryNode();
+        inner.addChild(BooleanClause.Occur.MUST, term("unknown"));
+        inner.addChild(BooleanClause.Occur.MUST_NOT, term("third"));
+        SearchQueryNode root = node(BooleanClause.Occur.MUST, term("rare"), inner);
+
+        SearchQueryNode rewritten = planner.rewrite(root);
+
+        assertFalse("Nested node flattened!", rewritten.getChildren().containsKey(BooleanClause.Occur.MUST_NOT));
+        checkResult(root, i -> false);
+        assertTrue("Bitmaps returned documents!", new BitmapQueryEvaluator(invertedIndex).evaluate(root).isEmpty());
+    }
+
+    @Test
+    public void testStrategies() {
+        assertEquals("Wrong strategy!", BooleanQueryPlanner.Strategy.GALLOP, planner.conjunctionStrategy(new long[] {50, 2500}));
+        assertEquals("Wrong strategy!", BooleanQueryPlanner.Strategy.MERGE, planner.conjunctionStrategy(new long[] {50, 60}));
+        assertEquals("Wrong strategy!", BooleanQueryPlanner.Strategy.BITSET, planner.conjunctionStrategy(new long[] {2500, 5000}));
+    }
+
+    /**
+     * Every strategy must return the same documents.
+     */
+    @Test
+    public void testStrategiesSameResults() {
+        // bit sets
+        checkResult(node(BooleanClause.Occur.MUST, term("half"), term("third"), term("common")), i -> i % 6 == 0);
+        // gallop
+        checkResult(node(BooleanClause.Occur.MUST, term("rare"), term("third")), i -> i % 300 == 0);
+        // union and exclusion
+        SearchQueryNode root = new SearchQueryNode();
+        root.addChild(BooleanClause.Occur.MUST, node(BooleanClause.Occur.SHOULD, term("rare"), term("third")));
+        root.addChild(BooleanClause.Occur.MUST_NOT, term("half"));
+        checkResult(root, i -> (i % 100 == 0 || i % 3 == 0) && i % 2 != 0);
+    }
+
+    private void checkResult(SearchQueryNode query, DocumentFilter expected) {
+        PostingList res = invertedIndex.getPostingsForQuery(query);
+        int expectedCount = 0;
+        for (int i = 0; i < DOCUMENT_COUNT; i++) {
+            if (expected.matches(i)) {
+                expectedCount++;
+                assertTrue("Document "+i+" not returned!", res.contains(i));
+            }
+        }
+        assertEquals("Wrong number of results returned!", expectedCount, res.size());
+    }
+
+    private SearchQueryNode node(BooleanClause.Occur occur, SearchQueryNode... children) {
+        SearchQueryNode node = new SearchQueryNode();
+        for (SearchQueryNode child : children) {
+            node.addChild(occur, child);
+        }
+        return node;
+    }
+
+    private SearchQueryNode term(String text) {
+        SearchQueryNode node = new SearchQueryNode();
+        node.setTerm(true);
+        node.setText(text);
+        return node;
+    }
+
+    private interface DocumentFilter {
+        boolean matches(int documentOrdinal);
+    }
+}
@@ -46,9 +46,9 @@ public class CosineSimilarityCalculatorTest {
      */
     @Test
     public void testCalculateScoreD1() {
-        String documentId = "d1";
+        int documentOrdinal = invertedIndex.getDocumentOrdinal("d1");
         double expectedScore = 1.197433761433455;
-        double realScore = similarityCalculator.calculateScore(documentId);
+        double realScore = similarityCalculator.calculateScore(documentOrdinal);
         assertEquals("Wrong score for query-document1!", expectedScore, realScore, 0.01);
     }
 
@@ -57,9 +57,9 @@ public class CosineSimilarityCalculatorTest {
      */
     @Test
     public void testCalculateScoreD2() {
-        String documentId = "d2";
+        int documentOrdinal = invertedIndex.getDocumentOrdinal("d2");
         double expectedScore = 0.6219267648071095;
-        double realScore = similarityCalculator.calculateScore(documentId);
+        double realScore = similarityCalculator.calculateScore(documentOrdinal);
         assertEquals("Wrong score for query-document2!", expectedScore, realScore, 0.01);
     }
 
@@ -68,11 +68,11 @@ public class CosineSimilarityCalculatorTest {
      */
     @Test
     public void testCalculateScoreD3() {
-        String documentId = "d3";
+        int documentOrdinal = invertedIndex.getDocumentOrdinal("d3");
 
         double expectedScore = 0;
 
-        double realScore = similarityCalculator.calculateScore(documentId);
+        double realScore = similarityCalculator.calculateScore(documentOrdinal);
         assertEquals("Wrong score for query-document3!", expectedScore, realScore, 0.01);
     }
 }
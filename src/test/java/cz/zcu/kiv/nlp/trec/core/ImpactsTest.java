@@ -0,0 +1,139 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.ImpactPrecision;
+import cz.zcu.kiv.nlp.ir.trec.core.Impacts;
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKCollector;
+import cz.zcu.kiv.nlp.ir.trec.core.WandScorer;
+import cz.zcu.kiv.nlp.ir.trec.data.Result;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ImpactsTest {
+
+    private static final int DOCUMENT_COUNT = 3000;
+
+    private static final String[] QUERY = new String[] {"t0", "t2", "t7", "t15", "t33"};
+
+    private InvertedIndex createIndex(ImpactPrecision precision) {
+        InvertedIndex invertedIndex = new InvertedIndex();
+        invertedIndex.setImpactPrecision(precision);
+        return RandomIndexes.index(invertedIndex, RandomIndexes.createDocuments(11, DOCUMENT_COUNT, 50), "d");
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        for (ImpactPrecision precision : ImpactPrecision.values()) {
+            double maxError = precision == ImpactPrecision.FLOAT ? 1e-7 : 0.5 / ((1 << precision.getBits()) - 1);
+            for (double impact : new double[] {0, 0.001, 0.25, 0.5, 0.999, 1}) {
+                assertEquals("Wrong decoded impact of " + precision + "!", impact, precision.decode(precision.encode(impact)), maxError);
+            }
+        }
+    }
+
+    /**
+     * Impacts must be TF-IDF of the posting divided by the norm of its document, one per posting.
+     */
+    @Test
+    public void testImpactsOfPostings() {
+        InvertedIndex invertedIndex = createIndex(ImpactPrecision.FLOAT);
+        Impacts impacts = invertedIndex.getImpacts();
+        PostingsIterator postings = invertedIndex.getPostingsForTerm("t7").iterator();
+        byte[] termImpacts = impacts.getImpactsForTerm("t7");
+        assertEquals("Wrong size of impacts!", invertedIndex.documentFrequency("t7") * 4, termImpacts.length);
+        double idf = invertedIndex.idf("t7");
+        while (postings.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+            double expected = idf * (1 + Math.log10(postings.termFrequency())) / invertedIndex.getTfIdfNormForDocument(postings.docOrdinal());
+            assertEquals("Wrong impact!", expected, impacts.getImpact(termImpacts, postings.position()), 1e-6);
+        }
+        assertNull("Unknown term has impacts!", impacts.getImpactsForTerm("nonexistent"));
+    }
+
+    /**
+     * Impacts take a fixed number of bytes per posting, no documents are stored with them.
+     */
+    @Test
+    public void testSizeOfImpacts() {
+        for (ImpactPrecision precision : ImpactPrecision.values()) {
+            InvertedIndex invertedIndex = createIndex(precision);
+            long postingCount = 0;
+            for (int t = 0; t < 50; t++) {
+                postingCount += invertedIndex.documentFrequency("t" + t);
+            }
+            assertEquals("Wrong size of " + precision + " impacts!", postingCount * precision.getBits() / 8,
+                    invertedIndex.getImpacts().sizeInBytes());
+        }
+    }
+
+    /**
+     * Postings added after the impacts were calculated don't contribute until the statistics are updated.
+     */
+    @Test
+    public void testPendingPostings() {
+        InvertedIndex invertedIndex = createIndex(ImpactPrecision.BITS_16);
+        int documentFrequency = invertedIndex.documentFrequency("t7");
+        invertedIndex.indexDocument(new String[] {"t7"}, "new");
+        Impacts impacts = invertedIndex.getImpacts();
+        assertEquals("Impact of pending posting!", 0, impacts.getImpact(impacts.getImpactsForTerm("t7"), documentFrequency), 0);
+
+        invertedIndex.updateStatistics();
+        impacts = invertedIndex.getImpacts();
+        assertTrue("Impact of updated posting not calculated!", impacts.getImpact(impacts.getImpactsForTerm("t7"), documentFrequency) > 0);
+    }
+
+    /**
+     * Quantized impacts take less space and scores stay within the quantization error.
+     */
+    @Test
+    public void testQuantizedImpacts() {
+        List<Result> exact = RandomIndexes.scoreAll(createIndex(ImpactPrecision.FLOAT), QUERY);
+        long exactSize = Long.MAX_VALUE;
+        for (ImpactPrecision precision : new ImpactPrecision[] {ImpactPrecision.FLOAT, ImpactPrecision.BITS_16, ImpactPrecision.BITS_8}) {
+            InvertedIndex invertedIndex = createIndex(precision);
+            assertNotNull("Impacts not calculated!", invertedIndex.getImpacts());
+            long size = invertedIndex.getImpacts().sizeInBytes();
+            assertTrue("Impacts of " + precision + " not smaller: " + size, size < exactSize);
+            exactSize = size;
+
+            List<Result> results = RandomIndexes.scoreAll(invertedIndex, QUERY);
+            assertEquals("Wrong number of results returned!", exact.size(), results.size());
+            double maxError = QUERY.length * (precision == ImpactPrecision.FLOAT ? 1e-6 : 0.5 / ((1 << precision.getBits()) - 1));
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals("Wrong score of result " + i + "!", exact.get(i).getScore(), results.get(i).getScore(), maxError);
+            }
+        }
+    }
+
+    /**
+     * Bounds are calculated from quantized impacts, so WAND returns the same top K as exhaustive scoring.
+     */
+    @Test
+    public void testWandWithQuantizedImpacts() {
+        InvertedIndex invertedIndex = createIndex(ImpactPrecision.BITS_8);
+        List<Result> expected = RandomIndexes.scoreAll(invertedIndex, QUERY);
+
+        TopKCollector collector = new TopKCollector(10);
+        new WandScorer(invertedIndex, QUERY).score(collector);
+        List<Result> actual = collector.toResults(invertedIndex);
+
+        assertEquals("Wrong number of results returned!", 10, actual.size());
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals("Wrong score of result " + i + "!", expected.get(i).getScore(), actual.get(i).getScore(), 0.0001);
+        }
+    }
+
+    @Test
+    public void testImpactsDisabled() {
+        InvertedIndex invertedIndex = createIndex(null);
+
+        assertNull("Impacts calculated!", invertedIndex.getImpacts());
+        assertEquals("Wrong number of results returned!", RandomIndexes.scoreAll(createIndex(ImpactPrecision.FLOAT), QUERY).size(), RandomIndexes.scoreAll(invertedIndex, QUERY).size());
+    }
+}
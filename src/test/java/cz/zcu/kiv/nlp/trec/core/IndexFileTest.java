@@ -0,0 +1,211 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.BlockMaxWandScorer;
+import cz.zcu.kiv.nlp.ir.trec.core.IdfMode;
+import cz.zcu.kiv.nlp.ir.trec.core.ImpactPrecision;
+import cz.zcu.kiv.nlp.ir.trec.core.IndexFile;
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKCollector;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.BlockPForCodec;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.PostingsCodec;
+import cz.zcu.kiv.nlp.ir.trec.data.Result;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IndexFileTest {
+
+    private static final int DOCUMENT_COUNT = 2000;
+
+    private static final String[] QUERY = new String[] {"t0", "t3", "t8", "t21", "t40"};
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("index", ".indx");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private InvertedIndex createIndex(IdfMode idfMode) {
+        InvertedIndex invertedIndex = new InvertedIndex();
+        invertedIndex.setIdfMode(idfMode);
+        invertedIndex.setPostingsCodec(new BlockPForCodec());
+        return RandomIndexes.index(invertedIndex, RandomIndexes.createDocuments(5, DOCUMENT_COUNT, 60), "doc-č");
+    }
+
+    /**
+     * Read index must have the same documents, postings and statistics and return the same results.
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        for (IdfMode idfMode : IdfMode.values()) {
+            InvertedIndex written = createIndex(idfMode);
+            IndexFile.write(written, file);
+            InvertedIndex read = IndexFile.read(file);
+
+            assertEquals("Wrong IDF mode!", idfMode, read.getIdfMode());
+            assertEquals("Wrong codec!", BlockPForCodec.NAME, read.getPostingsCodec().getName());
+            assertEquals("Wrong number of indexed documents!", written.getDocumentCount(), read.getDocumentCount());
+            for (int i = 0; i < written.getDocumentCount(); i++) {
+                assertEquals("Wrong document id!", written.getDocumentId(i), read.getDocumentId(i));
+                assertEquals("Wrong norm!", written.getTfIdfNormForDocument(i), read.getTfIdfNormForDocument(i), 0);
+            }
+            for (int t = 0; t < 60; t++) {
+                String term = "t" + t;
+                assertEquals("Wrong document frequency!", written.documentFrequency(term), read.documentFrequency(term));
+                assertEquals("Wrong IDF!", written.idf(term), read.idf(term), 0);
+                assertEquals("Wrong max score!", written.maxScore(term), read.maxScore(term), 0);
+                assertTrue("Postings are not compressed!", read.documentFrequency(term) == 0 || read.getPostingsForTerm(term).isEncoded());
+                PostingsIterator expected = written.getPostingsForTerm(term).iterator();
+                PostingsIterator actual = read.getPostingsForTerm(term).iterator();
+                while (expected.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                    assertEquals("Wrong posting!", expected.docOrdinal(), actual.nextDoc());
+                    assertEquals("Wrong term frequency!", expected.termFrequency(), actual.termFrequency());
+                }
+                assertEquals("More postings read than written!", PostingsIterator.NO_MORE_DOCS, actual.nextDoc());
+            }
+            if (idfMode == IdfMode.QUERY_TIME) {
+                assertNull("Impacts calculated at query time!", read.getImpacts());
+            }
+
+            List<Result> expected = RandomIndexes.scoreAll(written, QUERY);
+            List<Result> actual = RandomIndexes.scoreAll(read, QUERY);
+            assertEquals("Wrong number of results returned!", expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals("Wrong result " + i + "!", expected.get(i).getDocumentID(), actual.get(i).getDocumentID());
+                assertEquals("Wrong score of result " + i + "!", expected.get(i).getScore(), actual.get(i).getScore(), 0);
+            }
+
+            TopKCollector collector = new TopKCollector(10);
+            new BlockMaxWandScorer(read, QUERY).score(collector);
+            List<Result> topK = collector.toResults(read);
+            for (int i = 0; i < topK.size(); i++) {
+                assertEquals("Wrong score of top result " + i + "!", expected.get(i).getScore(), topK.get(i).getScore(), 0.0001);
+            }
+        }
+    }
+
+    /**
+     * Documents indexed after the statistics were calculated stay pending and are updated after the index is read.
+     */
+    @Test
+    public void testPendingStatistics() throws IOException {
+        InvertedIndex written = createIndex(IdfMode.INDEX_TIME);
+        written.setImpactPrecision(ImpactPrecision.BITS_8);
+        written.recalculateDocumentTfIdfs();
+        written.indexDocument(new String[] {"t1", "new"}, "new-document");
+
+        IndexFile.write(written, file);
+        InvertedIndex read = IndexFile.read(file);
+        assertEquals("Wrong number of indexed documents!", DOCUMENT_COUNT + 1, read.getDocumentCount());
+        assertEquals("Wrong impact precision!", ImpactPrecision.BITS_8, read.getImpacts().getPrecision());
+        assertNull("Pending term has impacts!", read.getImpacts().getImpactsForTerm("new"));
+
+        written.updateStatistics();
+        read.updateStatistics();
+        assertEquals("Wrong IDF after update!", written.idf("new"), read.idf("new"), 0);
+        assertEquals("Wrong norm after update!", written.getTfIdfNormForDocument(DOCUMENT_COUNT), read.getTfIdfNormForDocument(DOCUMENT_COUNT), 0);
+        List<Result> expected = RandomIndexes.scoreAll(written, QUERY);
+        List<Result> actual = RandomIndexes.scoreAll(read, QUERY);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("Wrong score of result " + i + "!", expected.get(i).getScore(), actual.get(i).getScore(), 0);
+        }
+    }
+
+    @Test
+    public void testEmptyIndex() throws IOException {
+        IndexFile.write(new InvertedIndex(), file);
+        InvertedIndex read = IndexFile.read(file);
+
+        assertEquals("Wrong number of indexed documents!", 0, read.getDocumentCount());
+        assertEquals("Wrong document frequency!", 0, read.documentFrequency("t0"));
+    }
+
+    /**
+     * Failed write must keep the previous file and leave no temporary file behind.
+     */
+    @Test
+    public void testFailedWrite() throws IOException {
+        IndexFile.write(createIndex(IdfMode.INDEX_TIME), file);
+        InvertedIndex failing = new InvertedIndex();
+        failing.setPostingsCodec(new PostingsCodec() {
+            @Override
+            public byte[] encode(PostingsIterator postings) {
+                throw new IllegalStateException("Encoding failed!");
+            }
+
+            @Override
+            public PostingsIterator decode(ByteBuffer encodedPostings, int size) {
+                throw new IllegalStateException("Decoding failed!");
+            }
+
+            @Override
+            public String getName() {
+                return "failing";
+            }
+        });
+        failing.indexDocument(new String[] {"t0"}, "d0");
+        try {
+            IndexFile.write(failing, file);
+            fail("Failure of the codec not propagated!");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertEquals("Previous file not kept!", DOCUMENT_COUNT, IndexFile.read(file).getDocumentCount());
+        assertFalse("Temporary file not deleted!", new File(file.getPath() + ".tmp").exists());
+    }
+
+    /**
+     * Any changed byte must be detected by checksums.
+     */
+    @Test
+    public void testCorruptedFile() throws IOException {
+        IndexFile.write(createIndex(IdfMode.INDEX_TIME), file);
+        long length = file.length();
+        for (long position : new long[] {0, 5, 20, 100, length / 2, length - 1}) {
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.seek(position);
+                int value = randomAccessFile.read();
+                randomAccessFile.seek(position);
+                randomAccessFile.write(value ^ 0x10);
+                try {
+                    IndexFile.read(file);
+                    fail("Corrupted byte " + position + " not detected!");
+                } catch (IOException e) {
+                    // expected
+                }
+                randomAccessFile.seek(position);
+                randomAccessFile.write(value);
+            }
+        }
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(length - 3);
+        }
+        try {
+            IndexFile.read(file);
+            fail("Truncated file not detected!");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package cz.zcu.kiv.nlp.trec.core;
 
+import cz.zcu.kiv.nlp.ir.trec.core.DocumentDictionary;
+import cz.zcu.kiv.nlp.ir.trec.core.IdfMode;
 import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
-import cz.zcu.kiv.nlp.ir.trec.core.Posting;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingList;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.BlockPForCodec;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -53,29 +56,51 @@ public class InvertedIndexTest {
         documentCount = 3;
     }
 
+    /**
+     * car AND NOT worst = [d1]
+     */
+    @Test
+    public void testDifference() {
+        PostingList res = invertedIndex.difference(invertedIndex.getPostingsForTerm("car"), invertedIndex.getPostingsForTerm("worst"));
+
+        assertEquals("Wrong number of results returned!", 1, res.size());
+        assertEquals("Wrong document returned!", "d1", invertedIndex.getDocumentId(res.getDocumentOrdinal(0)));
+    }
+
+    /**
+     * NOT car = [d3], computed from implicit list of all documents.
+     */
+    @Test
+    public void testComplement() {
+        invertedIndex.compressPostings();
+        PostingList res = invertedIndex.complement(invertedIndex.getPostingsForTerm("car"));
+
+        assertEquals("Wrong number of results returned!", 1, res.size());
+        assertEquals("Wrong document returned!", "d3", invertedIndex.getDocumentId(res.getDocumentOrdinal(0)));
+    }
+
     /**
      * Test AND intersection of two posting lists.
      *
      * [d1,d2,d3] AND [d2,d3,d4] = [d2,d3]
+     * Documents are represented by their ordinals 0..3.
      */
     @Test
     public void testAndIntersect() {
-        List<Posting> p1 = new ArrayList<>();
-        p1.add(new Posting("d1"));
-        p1.add(new Posting("d2"));
-        p1.add(new Posting("d3"));
-        List<Posting> p2 = new ArrayList<>();
-        p2.add(new Posting("d2"));
-        p2.add(new Posting("d3"));
-        p2.add(new Posting("d4"));
-        List<Posting> expectedResult = new ArrayList<>();
-        expectedResult.add(new Posting("d2"));
-        expectedResult.add(new Posting("d3"));
-
-        List<Posting> res = invertedIndex.andIntersect(p1, p2);
-
-        assertEquals("Wrong number of results returned!", expectedResult.size(), res.size());
-        for(Posting expectedP : expectedResult) {
+        PostingList p1 = new PostingList();
+        p1.add(0, 1);
+        p1.add(1, 1);
+        p1.add(2, 1);
+        PostingList p2 = new PostingList();
+        p2.add(1, 1);
+        p2.add(2, 1);
+        p2.add(3, 1);
+        int[] expectedResult = new int[] {1, 2};
+
+        PostingList res = invertedIndex.andIntersect(p1, p2);
+
+        assertEquals("Wrong number of results returned!", expectedResult.length, res.size());
+        for(int expectedP : expectedResult) {
             assertTrue(expectedP+" not returned!", res.contains(expectedP));
         }
     }
@@ -84,36 +109,68 @@ public class InvertedIndexTest {
      * Test OR intersection of two posting lists.
      *
      * [d1,d2,d3] AND [d2,d3,d4] = [d1,d2,d3,d4]
+     * Documents are represented by their ordinals 0..3.
      */
     @Test
     public void testOrIntersect() {
-        List<Posting> p1 = new ArrayList<>();
-        p1.add(new Posting("d1"));
-        p1.add(new Posting("d2"));
-        p1.add(new Posting("d3"));
-        List<Posting> p2 = new ArrayList<>();
-        p2.add(new Posting("d2"));
-        p2.add(new Posting("d3"));
-        p2.add(new Posting("d4"));
-        List<Posting> expectedResult = new ArrayList<>();
-        expectedResult.add(new Posting("d1"));
-        expectedResult.add(new Posting("d2"));
-        expectedResult.add(new Posting("d3"));
-        expectedResult.add(new Posting("d4"));
-
-        List<Posting> res = invertedIndex.orIntersect(p1, p2);
-
-        assertEquals("Wrong number of results returned!", expectedResult.size(), res.size());
-        for(Posting expectedP : expectedResult) {
-            assertTrue(expectedP+" not returned!", res.contains(expectedP));
+        PostingList p1 = new PostingList();
+        p1.add(0, 1);
+        p1.add(1, 1);
+        p1.add(2, 1);
+        PostingList p2 = new PostingList();
+        p2.add(1, 1);
+        p2.add(2, 1);
+        p2.add(3, 1);
+        int[] expectedResult = new int[] {0, 1, 2, 3};
+
+        PostingList res = invertedIndex.orIntersect(p1, p2);
+
+        assertEquals("Wrong number of results returned!", expectedResult.length, res.size());
+        for (int i = 0; i < expectedResult.length; i++) {
+            assertEquals("Result is not sorted!", expectedResult[i], res.getDocumentOrdinal(i));
         }
     }
 
+    /**
+     * Compressed index must return the same postings and statistics.
+     */
+    @Test
+    public void testCompressPostings() {
+        invertedIndex.compressPostings();
+
+        assertEquals("Wrong document frequency for term 'car'", 2, invertedIndex.documentFrequency("car"));
+        assertEquals("Wrong term frequency for term 'insurance'", 2, invertedIndex.getTermFrequency("insurance", "d1"));
+        PostingList res = invertedIndex.andIntersect(invertedIndex.getPostingsForTerm("car"), invertedIndex.getPostingsForTerm("worst"));
+        assertEquals("Wrong number of results returned!", 1, res.size());
+        assertEquals("Wrong document returned!", "d2", invertedIndex.getDocumentId(res.getDocumentOrdinal(0)));
+    }
+
+    @Test
+    public void testCompressPostingsBlockPFor() {
+        invertedIndex.setPostingsCodec(new BlockPForCodec());
+        invertedIndex.compressPostings();
+
+        assertEquals("Wrong document frequency for term 'car'", 2, invertedIndex.documentFrequency("car"));
+        assertEquals("Wrong term frequency for term 'insurance'", 2, invertedIndex.getTermFrequency("insurance", "d1"));
+        PostingList res = invertedIndex.andIntersect(invertedIndex.getPostingsForTerm("car"), invertedIndex.getPostingsForTerm("worst"));
+        assertEquals("Wrong number of results returned!", 1, res.size());
+        assertEquals("Wrong document returned!", "d2", invertedIndex.getDocumentId(res.getDocumentOrdinal(0)));
+    }
+
     @Test
     public void testGetDocumentCount() {
         assertEquals("Wrong document count!", documentCount, invertedIndex.getDocumentCount());
     }
 
+    @Test
+    public void testDocumentOrdinals() {
+        assertEquals("Wrong ordinal of first document!", 0, invertedIndex.getDocumentOrdinal("d1"));
+        assertEquals("Wrong ordinal of second document!", 1, invertedIndex.getDocumentOrdinal("d2"));
+        assertEquals("Wrong ordinal of third document!", 2, invertedIndex.getDocumentOrdinal("d3"));
+        assertEquals("Wrong document id for ordinal!", "d2", invertedIndex.getDocumentId(1));
+        assertEquals("Non existing document has ordinal!", DocumentDictionary.NOT_FOUND, invertedIndex.getDocumentOrdinal("d4"));
+    }
+
     @Test
     public void testGetDocumentFrequency_nonExistentTerm() {
         assertEquals("Wrong document frequency for non existing term.", 0, invertedIndex.documentFrequency("nonexistent"));
@@ -159,10 +216,11 @@ public class InvertedIndexTest {
         documentTermFreq.put("d1", 1);
         documentTermFreq.put("d2", 1);
 
-        List<Posting> postings = invertedIndex.getPostingsForTerm(term);
-        for (Posting p : postings) {
-            assertTrue("Posting contains unexpected document!", documentTermFreq.containsKey(p.getDocumentId()));
-            assertEquals("Wrong term frequency of term "+term+" in document "+p.getDocumentId(), documentTermFreq.get(p.getDocumentId()).intValue(), p.getTermFrequency());
+        PostingList postings = invertedIndex.getPostingsForTerm(term);
+        for (int i = 0; i < postings.size(); i++) {
+            String documentId = invertedIndex.getDocumentId(postings.getDocumentOrdinal(i));
+            assertTrue("Posting contains unexpected document!", documentTermFreq.containsKey(documentId));
+            assertEquals("Wrong term frequency of term "+term+" in document "+documentId, documentTermFreq.get(documentId).intValue(), postings.getTermFrequency(i));
         }
     }
 
@@ -173,10 +231,11 @@ public class InvertedIndexTest {
         documentTermFreq.put("d1", 2);
         documentTermFreq.put("d2", 1);
 
-        List<Posting> postings = invertedIndex.getPostingsForTerm(term);
-        for (Posting p : postings) {
-            assertTrue("Posting contains unexpected document!", documentTermFreq.containsKey(p.getDocumentId()));
-            assertEquals("Wrong term frequency of term "+term+" in document "+p.getDocumentId(), documentTermFreq.get(p.getDocumentId()).intValue(), p.getTermFrequency());
+        PostingList postings = invertedIndex.getPostingsForTerm(term);
+        for (int i = 0; i < postings.size(); i++) {
+            String documentId = invertedIndex.getDocumentId(postings.getDocumentOrdinal(i));
+            assertTrue("Posting contains unexpected document!", documentTermFreq.containsKey(documentId));
+            assertEquals("Wrong term frequency of term "+term+" in document "+documentId, documentTermFreq.get(documentId).intValue(), postings.getTermFrequency(i));
         }
     }
 
@@ -195,5 +254,105 @@ public class InvertedIndexTest {
         }
     }
 
+    /**
+     * Adding a document to a small index grows it over the limit, so all statistics are recalculated.
+     */
+    @Test
+    public void testUpdateStatisticsFull() {
+        invertedIndex.indexDocument(new String[] {"car", "auto"}, "d4");
+        invertedIndex.updateStatistics();
+
+        assertEquals("Wrong IDF of untouched term!", Math.log10(4 / 2.0), invertedIndex.idf("insurance"), 0.0001);
+        assertEquals("Wrong IDF of updated term!", Math.log10(4 / 3.0), invertedIndex.idf("car"), 0.0001);
+        assertEquals("Wrong norm of new document!", Math.sqrt(2) * Math.log10(4 / 3.0), invertedIndex.getTfIdfNormForDocument(3), 0.0001);
+    }
+
+    /**
+     * Only the statistics of the new document and its terms are updated, statistics of other terms are kept.
+     */
+    @Test
+    public void testUpdateStatisticsIncremental() {
+        for (int i = 0; i < 100; i++) {
+            invertedIndex.indexDocument(new String[] {"filler", "t" + (i % 7)}, "f" + i);
+        }
+        invertedIndex.recalculateTermIdfs();
+        invertedIndex.recalculateDocumentTfIdfs();
+        double insuranceIdf = invertedIndex.idf("insurance");
+        double d1Norm = invertedIndex.getTfIdfNormForDocument(0);
+
+        invertedIndex.indexDocument(new String[] {"car", "new", "new"}, "d104");
+        invertedIndex.updateStatistics();
+
+        assertEquals("IDF of untouched term changed!", insuranceIdf, invertedIndex.idf("insurance"), 0);
+        assertEquals("Norm of old document changed!", d1Norm, invertedIndex.getTfIdfNormForDocument(0), 0);
+        double carIdf = Math.log10(104 / 3.0);
+        double newIdf = Math.log10(104 / 1.0);
+        assertEquals("Wrong IDF of updated term!", carIdf, invertedIndex.idf("car"), 0.0001);
+        assertEquals("Wrong IDF of new term!", newIdf, invertedIndex.idf("new"), 0.0001);
+
+        double norm = Math.sqrt(carIdf * carIdf + Math.pow(newIdf * (1 + Math.log10(2)), 2));
+        assertEquals("Wrong norm of new document!", norm, invertedIndex.getTfIdfNormForDocument(103), 0.0001);
+        assertEquals("Wrong max score of new term!", 1 + Math.log10(2), invertedIndex.maxScore("new") * norm / newIdf, 0.0001);
+        assertEquals("Wrong impact of new document!", newIdf * (1 + Math.log10(2)) / norm,
+                invertedIndex.getImpacts().getImpact(invertedIndex.getImpacts().getImpactsForTerm("new"), 0), 0.0001);
+    }
+
+    /**
+     * IDFs follow the live document frequencies and norms are calculated during indexing without IDF.
+     */
+    @Test
+    public void testQueryTimeIdf() {
+        InvertedIndex index = new InvertedIndex();
+        index.setIdfMode(IdfMode.QUERY_TIME);
+        index.indexDocument(d1, "d1");
+        index.indexDocument(d2, "d2");
+        index.indexDocument(d3, "d3");
+
+        assertEquals("Wrong IDF!", Math.log10(3 / 2.0), index.idf("car"), 0.0001);
+        double norm = Math.sqrt(2 + Math.pow(1 + Math.log10(2), 2));
+        assertEquals("Wrong norm!", norm, index.getTfIdfNormForDocument(0), 0.0001);
+        assertEquals("Wrong max score!", Math.log10(3 / 2.0) * (1 + Math.log10(2)) / norm, index.maxScore("insurance"), 0.0001);
+
+        index.indexDocument(new String[] {"car"}, "d4");
+        assertEquals("IDF not updated!", Math.log10(4 / 3.0), index.idf("car"), 0.0001);
+        assertEquals("Wrong max score!", Math.log10(4 / 3.0), index.maxScore("car"), 0.0001);
+        assertEquals("Wrong norm!", 1, index.getTfIdfNormForDocument(3), 0.0001);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testChangeIdfModeOfNonEmptyIndex() {
+        invertedIndex.setIdfMode(IdfMode.QUERY_TIME);
+    }
+
+    /**
+     * Statistics recalculated in parallel must be the same as the ones calculated in one thread.
+     */
+    @Test
+    public void testParallelRecalculation() {
+        InvertedIndex sequential = new InvertedIndex();
+        sequential.setParallelism(1);
+        InvertedIndex parallel = new InvertedIndex();
+        parallel.setParallelism(4);
+        Random random = new Random(13);
+        for (int i = 0; i < 10000; i++) {
+            String[] tokens = new String[5 + random.nextInt(20)];
+            for (int j = 0; j < tokens.length; j++) {
+                tokens[j] = "t" + (int) (1000 * Math.pow(random.nextDouble(), 3));
+            }
+            sequential.indexDocument(tokens, "d" + i);
+            parallel.indexDocument(tokens, "d" + i);
+        }
+        for (InvertedIndex index : Arrays.asList(sequential, parallel)) {
+            index.recalculateTermIdfs();
+            index.recalculateDocumentTfIdfs();
+        }
 
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("Wrong IDF!", sequential.idf("t" + i), parallel.idf("t" + i), 0);
+            assertEquals("Wrong max score!", sequential.maxScore("t" + i), parallel.maxScore("t" + i), 1e-9);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertEquals("Wrong norm of document " + i + "!", sequential.getTfIdfNormForDocument(i), parallel.getTfIdfNormForDocument(i), 1e-9);
+        }
+    }
 }
@@ -0,0 +1,132 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.IndexFile;
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.LazyInvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsCache;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKCollector;
+import cz.zcu.kiv.nlp.ir.trec.core.WandScorer;
+import cz.zcu.kiv.nlp.ir.trec.core.bitmap.RoaringBitmap;
+import cz.zcu.kiv.nlp.ir.trec.data.Result;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LazyInvertedIndexTest {
+
+    private static final int DOCUMENT_COUNT = 2000;
+
+    private static final String[] QUERY = new String[] {"t0", "t2", "t5", "t17", "t44"};
+
+    private File file;
+    private InvertedIndex expected;
+
+    @Before
+    public void setUp() throws IOException {
+        expected = new InvertedIndex();
+        expected.setImpactPrecision(null);
+        RandomIndexes.index(expected, RandomIndexes.createDocuments(8, DOCUMENT_COUNT, 50), "d");
+
+        file = File.createTempFile("lazy", ".indx");
+        IndexFile.write(expected, file);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Lazy index returns the same results as the index in memory and repeated queries are served from the cache.
+     */
+    @Test
+    public void testSameAsInMemory() throws IOException {
+        try (LazyInvertedIndex lazy = IndexFile.open(file, 1 << 20)) {
+            for (int t = 0; t < 50; t++) {
+                String term = "t" + t;
+                assertEquals("Wrong document frequency!", expected.documentFrequency(term), lazy.documentFrequency(term));
+                assertEquals("Wrong IDF!", expected.idf(term), lazy.idf(term), 0);
+            }
+
+            List<Result> expectedResults = RandomIndexes.scoreAll(expected, QUERY);
+            PostingsCache cache = lazy.getCache();
+            long misses = cache.getMisses();
+            for (int run = 0; run < 3; run++) {
+                List<Result> results = RandomIndexes.scoreAll(lazy, QUERY);
+                assertEquals("Wrong number of results returned!", expectedResults.size(), results.size());
+                for (int i = 0; i < results.size(); i++) {
+                    assertEquals("Wrong result " + i + "!", expectedResults.get(i).getDocumentID(), results.get(i).getDocumentID());
+                    assertEquals("Wrong score of result " + i + "!", expectedResults.get(i).getScore(), results.get(i).getScore(), 0);
+                }
+            }
+            assertEquals("Postings of query terms loaded more than once!", misses + QUERY.length, cache.getMisses());
+            assertTrue("Repeated queries not served from cache!", cache.getHits() >= 2 * QUERY.length);
+            assertEquals("Lists evicted from large cache!", 0, cache.getEvictions());
+        }
+    }
+
+    /**
+     * Small cache evicts lists, but the results stay the same.
+     */
+    @Test
+    public void testSmallCache() throws IOException {
+        try (LazyInvertedIndex lazy = IndexFile.open(file, 4096)) {
+            List<Result> expectedResults = RandomIndexes.scoreAll(expected, QUERY);
+            for (int run = 0; run < 2; run++) {
+                TopKCollector collector = new TopKCollector(10);
+                new WandScorer(lazy, QUERY).score(collector);
+                List<Result> results = collector.toResults(lazy);
+                for (int i = 0; i < results.size(); i++) {
+                    assertEquals("Wrong score of result " + i + "!", expectedResults.get(i).getScore(), results.get(i).getScore(), 0.0001);
+                }
+            }
+            PostingsCache cache = lazy.getCache();
+            assertTrue("No lists evicted!", cache.getEvictions() > 0);
+            assertTrue("Cache is larger than its limit!", cache.getSizeInBytes() <= 4096);
+        }
+    }
+
+    /**
+     * Bitmaps of terms are built from the cached postings and are not kept by the index.
+     */
+    @Test
+    public void testBitmapsNotKept() throws IOException {
+        try (LazyInvertedIndex lazy = IndexFile.open(file, 4096)) {
+            for (String term : QUERY) {
+                RoaringBitmap bitmap = lazy.getBitmapForTerm(term);
+                assertEquals("Wrong number of documents in bitmap!", expected.documentFrequency(term), bitmap.cardinality());
+                assertEquals("Wrong size of bitmap!", expected.getBitmapForTerm(term).cardinality(), bitmap.cardinality());
+                assertNotSame("Bitmap kept by read-only index!", bitmap, lazy.getBitmapForTerm(term));
+            }
+        }
+    }
+
+    /**
+     * Dictionary is verified when the index is opened.
+     */
+    @Test
+    public void testCorruptedDictionary() throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(200);
+            int value = randomAccessFile.read();
+            randomAccessFile.seek(200);
+            randomAccessFile.write(value ^ 1);
+        }
+        try {
+            IndexFile.open(file, 1 << 20).close();
+            fail("Corrupted file not detected!");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
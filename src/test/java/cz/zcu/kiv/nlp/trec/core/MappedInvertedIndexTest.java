@@ -0,0 +1,207 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.Index;
+import cz.zcu.kiv.nlp.ir.trec.core.IdfMode;
+import cz.zcu.kiv.nlp.ir.trec.core.ImpactPrecision;
+import cz.zcu.kiv.nlp.ir.trec.core.IndexFile;
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.MappedInvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.Posting;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKCollector;
+import cz.zcu.kiv.nlp.ir.trec.core.WandScorer;
+import cz.zcu.kiv.nlp.ir.trec.data.DocumentNew;
+import cz.zcu.kiv.nlp.ir.trec.data.Result;
+import cz.zcu.kiv.nlp.ir.trec.preprocess.AdvancedTokenizer;
+import cz.zcu.kiv.nlp.ir.trec.preprocess.EnglishStemmer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappedInvertedIndexTest {
+
+    private static final int DOCUMENT_COUNT = 1500;
+
+    /**
+     * Terms with diacritics and chars above U+FFFF, whose UTF-16 and UTF-8 orders differ.
+     */
+    private static final String[] SPECIAL_TERMS = new String[] {"žába", "zebra", "\uD834\uDD1E", "\uFFFD", "a", "aa"};
+
+    private static final String[] QUERY = new String[] {"t0", "t4", "t9", "t30", "žába", "\uD834\uDD1E"};
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("mapped", ".indx");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private InvertedIndex createIndex(IdfMode idfMode) {
+        InvertedIndex invertedIndex = new InvertedIndex();
+        invertedIndex.setIdfMode(idfMode);
+        invertedIndex.setImpactPrecision(null);
+        List<String[]> documents = RandomIndexes.createDocuments(3, DOCUMENT_COUNT, 50);
+        Random random = new Random(3);
+        for (String[] tokens : documents) {
+            for (int j = 0; j < tokens.length; j++) {
+                if (random.nextInt(10) == 0) {
+                    tokens[j] = SPECIAL_TERMS[random.nextInt(SPECIAL_TERMS.length)];
+                }
+            }
+        }
+        return RandomIndexes.index(invertedIndex, documents, "d");
+    }
+
+    /**
+     * Mapped index must return the same postings, statistics and results as the index in memory, also when
+     * the postings are mapped in small segments and long lists don't fit in them.
+     */
+    @Test
+    public void testSameAsInMemory() throws IOException {
+        for (IdfMode idfMode : IdfMode.values()) {
+            InvertedIndex expected = createIndex(idfMode);
+            IndexFile.write(expected, file);
+            for (int segmentSize : new int[] {MappedInvertedIndex.SEGMENT_SIZE, 256}) {
+                MappedInvertedIndex mapped = IndexFile.map(file, segmentSize);
+
+                assertEquals("Wrong IDF mode!", idfMode, mapped.getIdfMode());
+                assertEquals("Wrong number of indexed documents!", expected.getDocumentCount(), mapped.getDocumentCount());
+                for (int i = 0; i < expected.getDocumentCount(); i += 7) {
+                    assertEquals("Wrong document id!", expected.getDocumentId(i), mapped.getDocumentId(i));
+                    assertEquals("Wrong document ordinal!", i, mapped.getDocumentOrdinal("d" + i));
+                    assertEquals("Wrong norm!", expected.getTfIdfNormForDocument(i), mapped.getTfIdfNormForDocument(i), 0);
+                }
+                assertFalse("Unknown document is indexed!", mapped.isIndexed("unknown"));
+
+                for (String term : expected.getDocumentTfIdf("d1").keySet()) {
+                    assertEquals("Wrong TF-IDF!", expected.getTfIdfOfTermInDocument(term, 1), mapped.getTfIdfOfTermInDocument(term, 1), 0);
+                }
+                for (String term : allTerms()) {
+                    assertEquals("Wrong document frequency of " + term + "!", expected.documentFrequency(term), mapped.documentFrequency(term));
+                    assertEquals("Wrong IDF!", expected.idf(term), mapped.idf(term), 0);
+                    assertEquals("Wrong max score!", expected.maxScore(term), mapped.maxScore(term), 0);
+                    PostingsIterator expectedPostings = expected.getPostingsForTerm(term).iterator();
+                    PostingsIterator mappedPostings = mapped.getPostingsForTerm(term).iterator();
+                    while (expectedPostings.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                        assertEquals("Wrong posting!", expectedPostings.docOrdinal(), mappedPostings.nextDoc());
+                        assertEquals("Wrong term frequency!", expectedPostings.termFrequency(), mappedPostings.termFrequency());
+                    }
+                    assertEquals("More postings mapped than written!", PostingsIterator.NO_MORE_DOCS, mappedPostings.nextDoc());
+                }
+
+                List<Result> expectedResults = RandomIndexes.scoreAll(expected, QUERY);
+                List<Result> mappedResults = RandomIndexes.scoreAll(mapped, QUERY);
+                assertEquals("Wrong number of results returned!", expectedResults.size(), mappedResults.size());
+                for (int i = 0; i < expectedResults.size(); i++) {
+                    assertEquals("Wrong result " + i + "!", expectedResults.get(i).getDocumentID(), mappedResults.get(i).getDocumentID());
+                    assertEquals("Wrong score of result " + i + "!", expectedResults.get(i).getScore(), mappedResults.get(i).getScore(), 0);
+                }
+
+                TopKCollector collector = new TopKCollector(10);
+                new WandScorer(mapped, QUERY).score(collector);
+                List<Result> topK = collector.toResults(mapped);
+                assertEquals("Wrong number of results returned!", 10, topK.size());
+                for (int i = 0; i < topK.size(); i++) {
+                    assertEquals("Wrong score of top result " + i + "!", expectedResults.get(i).getScore(), topK.get(i).getScore(), 0.0001);
+                }
+            }
+        }
+    }
+
+    /**
+     * Mapped index scores exactly, so the stored max scores must bound the exact scores, not only the quantized impacts.
+     */
+    @Test
+    public void testMaxScoreBoundsExactScores() throws IOException {
+        InvertedIndex written = createIndex(IdfMode.INDEX_TIME);
+        written.setImpactPrecision(ImpactPrecision.BITS_8);
+        written.recalculateDocumentTfIdfs();
+        IndexFile.write(written, file);
+        MappedInvertedIndex mapped = IndexFile.map(file);
+
+        for (String term : allTerms()) {
+            double maxScore = mapped.maxScore(term);
+            PostingsIterator postings = mapped.getPostingsForTerm(term).iterator();
+            while (postings.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                double score = Posting.tfIdf(postings.termFrequency(), mapped.idf(term)) / mapped.getTfIdfNormForDocument(postings.docOrdinal());
+                assertTrue("Score of " + term + " above its max score!", score <= maxScore);
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownTerm() throws IOException {
+        IndexFile.write(createIndex(IdfMode.INDEX_TIME), file);
+        MappedInvertedIndex mapped = IndexFile.map(file);
+
+        assertEquals("Unknown term has postings!", 0, mapped.getPostingsForTerm("unknown").size());
+        assertEquals("Unknown term has IDF!", 0, mapped.idf("unknown"), 0);
+        assertEquals("Unknown term has max score!", 0, mapped.maxScore("unknown"), 0);
+        assertNull("Mapped index has impacts!", mapped.getImpacts());
+    }
+
+    @Test
+    public void testReadOnly() throws IOException {
+        IndexFile.write(createIndex(IdfMode.INDEX_TIME), file);
+        MappedInvertedIndex mapped = IndexFile.map(file);
+        Index index = new Index(new AdvancedTokenizer(), new EnglishStemmer(), new HashSet<>());
+        index.setInvertedIndex(mapped);
+
+        try {
+            index.index(new DocumentNew("new", "new-document"));
+            fail("Document indexed to read-only index!");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals("Wrong number of indexed documents!", DOCUMENT_COUNT, mapped.getDocumentCount());
+    }
+
+    /**
+     * Mapped index can be written to another file and loaded to memory.
+     */
+    @Test
+    public void testWriteMapped() throws IOException {
+        InvertedIndex expected = createIndex(IdfMode.INDEX_TIME);
+        IndexFile.write(expected, file);
+        File copy = File.createTempFile("mapped-copy", ".indx");
+        try {
+            IndexFile.write(IndexFile.map(file), copy);
+            InvertedIndex read = IndexFile.read(copy);
+
+            assertEquals("Wrong number of indexed documents!", expected.getDocumentCount(), read.getDocumentCount());
+            for (String term : allTerms()) {
+                assertEquals("Wrong document frequency!", expected.documentFrequency(term), read.documentFrequency(term));
+                assertEquals("Wrong IDF!", expected.idf(term), read.idf(term), 0);
+            }
+            assertTrue("Scores differ!", RandomIndexes.scoreAll(expected, QUERY).get(0).getScore() == RandomIndexes.scoreAll(read, QUERY).get(0).getScore());
+        } finally {
+            copy.delete();
+        }
+    }
+
+    private String[] allTerms() {
+        String[] terms = new String[50 + SPECIAL_TERMS.length];
+        for (int i = 0; i < 50; i++) {
+            terms[i] = "t" + i;
+        }
+        System.arraycopy(SPECIAL_TERMS, 0, terms, 50, SPECIAL_TERMS.length);
+        return terms;
+    }
+}
@@ -0,0 +1,82 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.BlockMaxWandScorer;
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.MaxScoreScorer;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKCollector;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKScorer;
+import cz.zcu.kiv.nlp.ir.trec.core.WandScorer;
+import cz.zcu.kiv.nlp.ir.trec.data.Result;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MaxScoreScorerTest {
+
+    private static final int DOCUMENT_COUNT = 10000;
+
+    private InvertedIndex invertedIndex;
+
+    /**
+     * Long query like the ones built from TREC topic description and narrative.
+     */
+    private String[] longQuery;
+
+    @Before
+    public void setUp() {
+        // long documents, so that most of them contain some of the frequent terms
+        invertedIndex = RandomIndexes.index(new InvertedIndex(), RandomIndexes.createDocuments(3, DOCUMENT_COUNT, 200, 64), "d");
+
+        // frequent terms are more likely to be in the query than in the documents
+        Random random = new Random(3);
+        longQuery = new String[40];
+        for (int i = 0; i < longQuery.length; i++) {
+            longQuery[i] = "t" + (int) (200 * Math.pow(random.nextDouble(), 2));
+        }
+    }
+
+    /**
+     * All top K strategies must return the same scores as exhaustive term-at-a-time scoring.
+     */
+    @Test
+    public void testSameTopKAsTermAtATime() {
+        List<Result> expected = RandomIndexes.scoreAll(invertedIndex, longQuery);
+
+        for (int k : new int[] {1, 10, 50, 1000}) {
+            TopKScorer[] scorers = new TopKScorer[] {
+                    new MaxScoreScorer(invertedIndex, longQuery),
+                    new WandScorer(invertedIndex, longQuery),
+                    new BlockMaxWandScorer(invertedIndex, longQuery)
+            };
+            for (TopKScorer scorer : scorers) {
+                TopKCollector collector = new TopKCollector(k);
+                scorer.score(collector);
+                List<Result> actual = collector.toResults(invertedIndex);
+
+                assertEquals("Wrong number of results returned by " + scorer.getClass().getSimpleName() + "!", Math.min(k, expected.size()), actual.size());
+                for (int i = 0; i < actual.size(); i++) {
+                    assertEquals("Wrong score of result returned by " + scorer.getClass().getSimpleName() + "!", expected.get(i).getScore(), actual.get(i).getScore(), 0.0001);
+                }
+            }
+        }
+    }
+
+    /**
+     * Postings of non-essential terms are probed only for candidates, so MaxScore skips more postings than WAND.
+     */
+    @Test
+    public void testSkipsPostings() {
+        MaxScoreScorer maxScore = new MaxScoreScorer(invertedIndex, longQuery);
+        maxScore.score(new TopKCollector(10));
+        WandScorer wand = new WandScorer(invertedIndex, longQuery);
+        wand.score(new TopKCollector(10));
+
+        assertTrue("Too few postings skipped: " + maxScore.getSkippedPostings(), maxScore.getSkippedPostings() > wand.getSkippedPostings());
+        assertTrue("All documents scored!", maxScore.getScoredDocuments() < DOCUMENT_COUNT);
+    }
+}
@@ -0,0 +1,87 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.PostingList;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PostingListTest {
+
+    /**
+     * Occurrences of the same document are merged into one posting.
+     */
+    @Test
+    public void testAddOccurrence() {
+        PostingList postings = new PostingList();
+        postings.addOccurrence(0);
+        postings.addOccurrence(0);
+        postings.addOccurrence(3);
+
+        assertEquals("Wrong number of postings!", 2, postings.size());
+        assertEquals("Wrong term frequency!", 2, postings.getTermFrequency(0));
+        assertEquals("Wrong term frequency!", 1, postings.getTermFrequency(1));
+    }
+
+    /**
+     * Documents added out of order must still end up sorted.
+     */
+    @Test
+    public void testAddOccurrence_outOfOrder() {
+        PostingList postings = new PostingList();
+        int[] ordinals = new int[] {5, 1, 9, 3, 1, 7};
+        for (int ordinal : ordinals) {
+            postings.addOccurrence(ordinal);
+        }
+
+        int[] expected = new int[] {1, 3, 5, 7, 9};
+        assertEquals("Wrong number of postings!", expected.length, postings.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("Postings are not sorted!", expected[i], postings.getDocumentOrdinal(i));
+        }
+        assertEquals("Wrong term frequency of document 1!", 2, postings.termFrequencyOf(1));
+    }
+
+    @Test
+    public void testContains() {
+        PostingList postings = new PostingList();
+        for (int i = 0; i < 100; i += 2) {
+            postings.add(i, 1);
+        }
+
+        assertTrue("Document 42 not found!", postings.contains(42));
+        assertFalse("Document 43 found!", postings.contains(43));
+        assertEquals("Wrong index of document!", 21, postings.indexOf(42));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAdd_wrongOrder() {
+        PostingList postings = new PostingList();
+        postings.add(2, 1);
+        postings.add(1, 1);
+    }
+
+    /**
+     * Galloping advance must find the same postings as the linear scan.
+     */
+    @Test
+    public void testAdvance() {
+        PostingList postings = new PostingList();
+        for (int i = 0; i < 1000; i += 3) {
+            postings.add(i, 1 + i % 5);
+        }
+
+        PostingsIterator it = postings.iterator();
+        assertEquals("Wrong document after advance!", 3, it.advance(1));
+        assertEquals("Iterator moved!", 3, it.advance(3));
+        assertEquals("Wrong document after advance!", 6, it.advance(4));
+        assertEquals("Wrong document after advance!", 501, it.advance(500));
+        assertEquals("Wrong term frequency!", 1 + 501 % 5, it.termFrequency());
+        assertEquals("Wrong position!", 501 / 3, it.position());
+        assertEquals("Wrong next document!", 504, it.nextDoc());
+        assertEquals("Wrong document after advance!", 999, it.advance(999));
+        assertEquals("Iterator not exhausted!", PostingsIterator.NO_MORE_DOCS, it.advance(1000));
+    }
+}
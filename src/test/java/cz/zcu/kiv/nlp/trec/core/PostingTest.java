@@ -8,31 +8,26 @@ import static org.junit.Assert.assertEquals;
 public class PostingTest {
 
     /**
-     * Test that two postings with same document id will produce same document id hash. Otherwise the intersetion
+     * Test that two postings with same document ordinal are equal. Otherwise the intersetion
      * algorithms would not work properly.
      */
     @Test
-    public void testDocumentIdHashEquals() {
-        final String docId = "asf";
-        Posting p1 = new Posting(docId);
-        Posting p2 = new Posting(docId);
+    public void testDocumentOrdinalEquals() {
+        final int docOrdinal = 42;
+        Posting p1 = new Posting(docOrdinal);
+        Posting p2 = new Posting(docOrdinal);
 
-        assertEquals("Postings hashes are not same!", p1.documentIdHash(), p2.documentIdHash());
+        assertEquals("Postings are not same!", p1, p2);
+        assertEquals("Postings hashes are not same!", p1.hashCode(), p2.hashCode());
     }
 
     @Test
-    public void testRecalculateTfIdf() {
+    public void testTfIdf() {
         // some random numbers
         final double idf = Math.log10(10537/8735.0);
-        final double tf = 375;
+        final int tf = 375;
         final double expectedTfIdf = idf * (1+Math.log10(tf));
 
-        Posting p = new Posting("d");
-        for (int i = 0; i < tf; i++) {
-            p.incrementTermFrequency();
-        }
-        p.recalculateTfIdf(idf);
-
-        assertEquals("Wrong TF-IDF", expectedTfIdf, p.getTfIdf(), 0.001);
+        assertEquals("Wrong TF-IDF", expectedTfIdf, Posting.tfIdf(tf, idf), 0.001);
     }
 }
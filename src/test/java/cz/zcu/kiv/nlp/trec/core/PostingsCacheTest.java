@@ -0,0 +1,83 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.PostingList;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsCache;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PostingsCacheTest {
+
+    /**
+     * Terms loaded by the loader.
+     */
+    private final List<String> loaded = new ArrayList<>();
+
+    /**
+     * Loads list with 100 postings (800 bytes) for every term.
+     */
+    private final Function<String, PostingList> loader = term -> {
+        loaded.add(term);
+        PostingList postings = new PostingList(100);
+        for (int i = 0; i < 100; i++) {
+            postings.add(i, 1);
+        }
+        return postings;
+    };
+
+    @Test
+    public void testHitsAndMisses() {
+        PostingsCache cache = new PostingsCache(1 << 20);
+        PostingList first = cache.get("a", loader);
+        assertSame("Cached list not returned!", first, cache.get("a", loader));
+        cache.get("b", loader);
+
+        assertEquals("Wrong number of loaded lists!", 2, loaded.size());
+        assertEquals("Wrong number of hits!", 1, cache.getHits());
+        assertEquals("Wrong number of misses!", 2, cache.getMisses());
+        assertEquals("Wrong number of evictions!", 0, cache.getEvictions());
+        assertEquals("Wrong hit ratio!", 1 / 3.0, cache.getHitRatio(), 1e-9);
+        assertEquals("Wrong number of cached lists!", 2, cache.getEntryCount());
+    }
+
+    /**
+     * The least recently used list is evicted when the cache is full.
+     */
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        PostingsCache cache = new PostingsCache(3 * 1000);
+        cache.get("a", loader);
+        cache.get("b", loader);
+        cache.get("c", loader);
+        cache.get("a", loader);
+        cache.get("d", loader);
+
+        assertEquals("Wrong number of evictions!", 1, cache.getEvictions());
+        assertTrue("Cache is larger than its limit!", cache.getSizeInBytes() <= cache.getMaxSizeInBytes());
+
+        // b was evicted, a is still cached
+        loaded.clear();
+        cache.get("a", loader);
+        cache.get("c", loader);
+        cache.get("b", loader);
+        assertEquals("Wrong lists loaded again!", 1, loaded.size());
+        assertEquals("Wrong list loaded again!", "b", loaded.get(0));
+    }
+
+    @Test
+    public void testListLargerThanCache() {
+        PostingsCache cache = new PostingsCache(100);
+        cache.get("a", loader);
+        cache.get("a", loader);
+
+        assertEquals("Large list cached!", 0, cache.getEntryCount());
+        assertEquals("Wrong number of loaded lists!", 2, loaded.size());
+        assertEquals("Wrong number of misses!", 2, cache.getMisses());
+    }
+}
@@ -0,0 +1,82 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.AllDocumentsIterator;
+import cz.zcu.kiv.nlp.ir.trec.core.ConjunctionIterator;
+import cz.zcu.kiv.nlp.ir.trec.core.DisjunctionIterator;
+import cz.zcu.kiv.nlp.ir.trec.core.ExclusionIterator;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingList;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of lazy iterators used to evaluate boolean queries.
+ */
+public class QueryIteratorsTest {
+
+    @Test
+    public void testConjunction() {
+        PostingsIterator it = new ConjunctionIterator(Arrays.asList(
+                postings(1, 2, 3, 5, 8, 13, 21).iterator(),
+                postings(2, 3, 5, 7, 11, 13).iterator(),
+                postings(0, 3, 6, 9, 12, 13, 15).iterator()
+        ));
+
+        assertArrayEquals("Wrong documents returned!", new int[] {3, 13}, toArray(it));
+    }
+
+    @Test
+    public void testDisjunction() {
+        PostingsIterator it = new DisjunctionIterator(Arrays.asList(
+                postings(1, 5, 9).iterator(),
+                postings(2, 5, 10).iterator(),
+                postings(5).iterator()
+        ));
+
+        assertEquals("Wrong document after advance!", 5, it.advance(3));
+        assertEquals("Wrong term frequency sum!", 3, it.termFrequency());
+        assertEquals("Wrong next document!", 9, it.nextDoc());
+        assertEquals("Wrong next document!", 10, it.nextDoc());
+        assertEquals("Iterator not exhausted!", PostingsIterator.NO_MORE_DOCS, it.nextDoc());
+    }
+
+    @Test
+    public void testExclusion() {
+        PostingsIterator it = new ExclusionIterator(new AllDocumentsIterator(6), postings(0, 2, 3).iterator());
+
+        assertArrayEquals("Wrong documents returned!", new int[] {1, 4, 5}, toArray(it));
+    }
+
+    /**
+     * (a OR b) AND NOT c composed from nested iterators.
+     */
+    @Test
+    public void testNested() {
+        PostingsIterator or = new DisjunctionIterator(Arrays.asList(postings(1, 4, 7).iterator(), postings(2, 4, 8).iterator()));
+        PostingsIterator it = new ExclusionIterator(or, postings(4, 8).iterator());
+
+        assertArrayEquals("Wrong documents returned!", new int[] {1, 2, 7}, toArray(it));
+    }
+
+    private PostingList postings(int... ordinals) {
+        PostingList postings = new PostingList();
+        for (int ordinal : ordinals) {
+            postings.add(ordinal, 1);
+        }
+        return postings;
+    }
+
+    private int[] toArray(PostingsIterator it) {
+        List<Integer> docs = new ArrayList<>();
+        while (it.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+            docs.add(it.docOrdinal());
+        }
+        return docs.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,111 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.SearchableIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.TermAtATimeScorer;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKCollector;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.PostingsCodec;
+import cz.zcu.kiv.nlp.ir.trec.data.Result;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random indexes shared by the tests of scorers and of stored indexes.
+ *
+ * Documents consist of terms from vocabulary t0, t1, ..., term i is roughly i times rarer than term 0,
+ * so the index has both long and short posting lists.
+ */
+final class RandomIndexes {
+
+    private RandomIndexes() {
+    }
+
+    /**
+     * Creates index of random documents with ids d0, d1, ... and default settings except for the codec.
+     *
+     * @param seed Seed of the documents.
+     * @param documentCount Number of documents.
+     * @param vocabulary Number of distinct terms.
+     * @param codec Codec of the postings.
+     * @return Index with up to date statistics and compressed postings.
+     */
+    static InvertedIndex create(long seed, int documentCount, int vocabulary, PostingsCodec codec) {
+        InvertedIndex invertedIndex = new InvertedIndex();
+        invertedIndex.setPostingsCodec(codec);
+        return index(invertedIndex, createDocuments(seed, documentCount, vocabulary), "d");
+    }
+
+    /**
+     * Creates random documents of 3 to 22 terms.
+     *
+     * @param seed Seed of the documents.
+     * @param documentCount Number of documents.
+     * @param vocabulary Number of distinct terms.
+     * @return Tokens of the documents.
+     */
+    static List<String[]> createDocuments(long seed, int documentCount, int vocabulary) {
+        return createDocuments(seed, documentCount, vocabulary, 22);
+    }
+
+    /**
+     * Creates random documents of 3 to given number of terms.
+     *
+     * @param seed Seed of the documents.
+     * @param documentCount Number of documents.
+     * @param vocabulary Number of distinct terms.
+     * @param maxLength Maximal number of terms of a document.
+     * @return Tokens of the documents.
+     */
+    static List<String[]> createDocuments(long seed, int documentCount, int vocabulary, int maxLength) {
+        Random random = new Random(seed);
+        List<String[]> documents = new ArrayList<>(documentCount);
+        for (int i = 0; i < documentCount; i++) {
+            String[] tokens = new String[3 + random.nextInt(maxLength - 2)];
+            for (int j = 0; j < tokens.length; j++) {
+                tokens[j] = randomTerm(random, vocabulary);
+            }
+            documents.add(tokens);
+        }
+        return documents;
+    }
+
+    /**
+     * Returns random term of the vocabulary, term i is roughly i times rarer than term 0.
+     */
+    static String randomTerm(Random random, int vocabulary) {
+        return "t" + (int) (vocabulary * Math.pow(random.nextDouble(), 3));
+    }
+
+    /**
+     * Indexes documents to an index with custom settings, updates its statistics and compresses the postings.
+     *
+     * @param invertedIndex Empty index.
+     * @param documents Tokens of the documents.
+     * @param idPrefix Prefix of the ids of the documents, followed by their position in the list.
+     * @return The index.
+     */
+    static InvertedIndex index(InvertedIndex invertedIndex, List<String[]> documents, String idPrefix) {
+        for (int i = 0; i < documents.size(); i++) {
+            invertedIndex.indexDocument(documents.get(i), idPrefix + i);
+        }
+        // all statistics of a new index are recalculated, in query time IDF mode they're maintained during indexing
+        invertedIndex.updateStatistics();
+        invertedIndex.compressPostings();
+        return invertedIndex;
+    }
+
+    /**
+     * Scores all documents matching the query exhaustively.
+     *
+     * @param invertedIndex Index.
+     * @param query Terms of the query.
+     * @return Results ordered by their scores.
+     */
+    static List<Result> scoreAll(SearchableIndex invertedIndex, String[] query) {
+        TopKCollector collector = new TopKCollector(invertedIndex.getDocumentCount());
+        new TermAtATimeScorer(invertedIndex, query).score(collector);
+        return collector.toResults(invertedIndex);
+    }
+}
@@ -0,0 +1,106 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingList;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Regression benchmark for set operations over large posting lists. Results are compared with a simple
+ * set-based implementation. Time of each operation is only logged, wall-clock time is not reliable enough
+ * to be asserted.
+ */
+public class SetOperationsBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SetOperationsBenchmarkTest.class);
+
+    private static final int DOCUMENT_COUNT = 1000000;
+
+    private InvertedIndex invertedIndex;
+    private PostingList large1;
+    private PostingList large2;
+
+    @Before
+    public void setUp() {
+        invertedIndex = new InvertedIndex();
+        Random random = new Random(42);
+        large1 = randomPostings(random, 2);
+        large2 = randomPostings(random, 3);
+    }
+
+    @Test
+    public void testNotIntersect() {
+        checkNotIntersect(large1, large2);
+    }
+
+    @Test
+    public void testNotIntersectEncoded() {
+        large1.encode();
+        large2.encode();
+        checkNotIntersect(large1, large2);
+    }
+
+    @Test
+    public void testDifference() {
+        large1.encode();
+
+        long start = System.currentTimeMillis();
+        PostingList res = invertedIndex.difference(large1, large2);
+        long time = System.currentTimeMillis() - start;
+        log.info("difference of {} and {} postings: {} ms", large1.size(), large2.size(), time);
+
+        Set<Integer> expected = toSet(large1);
+        expected.removeAll(toSet(large2));
+        checkResult(expected, res);
+    }
+
+    private void checkNotIntersect(PostingList postingList1, PostingList postingList2) {
+        long start = System.currentTimeMillis();
+        PostingList res = invertedIndex.notIntersect(postingList1, postingList2);
+        long time = System.currentTimeMillis() - start;
+        log.info("notIntersect of {} and {} postings: {} ms", postingList1.size(), postingList2.size(), time);
+
+        Set<Integer> expected = toSet(postingList2);
+        expected.retainAll(toSet(postingList1));
+        checkResult(expected, res);
+    }
+
+    private void checkResult(Set<Integer> expected, PostingList res) {
+        assertEquals("Wrong number of results returned!", expected.size(), res.size());
+        for (int i = 0; i < res.size(); i++) {
+            assertTrue("Wrong document returned!", expected.contains(res.getDocumentOrdinal(i)));
+        }
+    }
+
+    /**
+     * Roughly every n-th document.
+     */
+    private PostingList randomPostings(Random random, int n) {
+        PostingList postings = new PostingList();
+        for (int i = 0; i < DOCUMENT_COUNT; i++) {
+            if (random.nextInt(n) == 0) {
+                postings.add(i, 1 + random.nextInt(3));
+            }
+        }
+        return postings;
+    }
+
+    private Set<Integer> toSet(PostingList postingList) {
+        Set<Integer> set = new HashSet<>();
+        PostingsIterator postings = postingList.iterator();
+        while (postings.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+            set.add(postings.docOrdinal());
+        }
+        return set;
+    }
+}
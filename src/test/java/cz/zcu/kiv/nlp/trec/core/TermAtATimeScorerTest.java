@@ -0,0 +1,67 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.CosineSimilarityCalculator;
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.TermAtATimeScorer;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKCollector;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.VByteCodec;
+import cz.zcu.kiv.nlp.ir.trec.data.Result;
+import cz.zcu.kiv.nlp.ir.trec.data.ResultImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TermAtATimeScorerTest {
+
+    private static final int DOCUMENT_COUNT = 2000;
+
+    private InvertedIndex invertedIndex;
+
+    @Before
+    public void setUp() {
+        invertedIndex = RandomIndexes.create(42, DOCUMENT_COUNT, 50, new VByteCodec());
+    }
+
+    /**
+     * Every scored document must have the same score as the one calculated by cosine similarity calculator
+     * and no document with non-zero score may be missing.
+     */
+    @Test
+    public void testSameScoresAsCosineSimilarity() {
+        String[] query = new String[] {"t3", "t10", "t10", "t42", "nonexistent"};
+        List<Result> results = RandomIndexes.scoreAll(invertedIndex, query);
+
+        CosineSimilarityCalculator calculator = new CosineSimilarityCalculator(invertedIndex, query);
+        int expectedCount = 0;
+        for (int i = 0; i < DOCUMENT_COUNT; i++) {
+            if (calculator.calculateScore(i) > TermAtATimeScorer.MIN_SCORE) {
+                expectedCount++;
+            }
+        }
+        assertEquals("Wrong number of results returned!", expectedCount, results.size());
+
+        calculator = new CosineSimilarityCalculator(invertedIndex, query);
+        for (Result result : results) {
+            int ordinal = ((ResultImpl) result).getDocumentOrdinal();
+            assertEquals("Wrong score of document " + ordinal + "!", calculator.calculateScore(ordinal), result.getScore(), 0.0001);
+        }
+    }
+
+    /**
+     * Accumulators are reused, second query must not see scores of the first one.
+     */
+    @Test
+    public void testAccumulatorsReused() {
+        TermAtATimeScorer scorer = new TermAtATimeScorer(invertedIndex, new String[] {"t1"});
+        // first query is abandoned in the middle
+        scorer.scorePostings(10);
+
+        TopKCollector second = new TopKCollector(DOCUMENT_COUNT);
+        new TermAtATimeScorer(invertedIndex, new String[] {"t2"}).score(second);
+
+        assertEquals("Wrong number of results returned!", invertedIndex.documentFrequency("t2"), second.size());
+    }
+}
@@ -0,0 +1,199 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.TermDictionary;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TermDictionaryTest {
+
+    /**
+     * Terms with diacritics and chars above U+FFFF, whose UTF-16 and UTF-8 orders differ.
+     */
+    private static final String[] SPECIAL_TERMS = new String[] {"\u017E\u00E1ba", "zebra", "\uD834\uDD1E", "\uD834\uDD1Ea",
+            "\uFFFD", "a", ""};
+
+    /**
+     * Creates random terms over a small alphabet, so they share long prefixes.
+     */
+    private static List<String> createTerms(int count) {
+        Random random = new Random(5);
+        TreeSet<String> terms = new TreeSet<>(Arrays.asList(SPECIAL_TERMS));
+        while (terms.size() < count) {
+            StringBuilder term = new StringBuilder();
+            int length = 1 + random.nextInt(12);
+            for (int i = 0; i < length; i++) {
+                term.append((char) ('a' + random.nextInt(4)));
+            }
+            terms.add(term.toString());
+        }
+        List<String> shuffled = new ArrayList<>(terms);
+        Collections.shuffle(shuffled, random);
+        return shuffled;
+    }
+
+    /**
+     * Sorts terms by their UTF-8 bytes, which is the expected order of ids.
+     */
+    private static List<String> sortByBytes(List<String> terms) {
+        List<String> sorted = new ArrayList<>(terms);
+        sorted.sort((term1, term2) -> {
+            byte[] bytes1 = term1.getBytes(StandardCharsets.UTF_8);
+            byte[] bytes2 = term2.getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < Math.min(bytes1.length, bytes2.length); i++) {
+                if (bytes1[i] != bytes2[i]) {
+                    return (bytes1[i] & 0xff) - (bytes2[i] & 0xff);
+                }
+            }
+            return bytes1.length - bytes2.length;
+        });
+        return sorted;
+    }
+
+    private static void assertDictionary(List<String> terms, TermDictionary dictionary) {
+        List<String> sorted = sortByBytes(terms);
+        assertEquals("Wrong number of terms!", sorted.size(), dictionary.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals("Wrong id of term " + sorted.get(i) + "!", i, dictionary.getTermId(sorted.get(i)));
+            assertEquals("Wrong term with id " + i + "!", sorted.get(i), dictionary.getTerm(i));
+        }
+        List<String> iterated = new ArrayList<>();
+        dictionary.forEach(iterated::add);
+        assertEquals("Wrong order of terms!", sorted, iterated);
+
+        for (String missing : new String[] {"aaaaaaaaaaaaa", "e", "ab\u0000", "\uD834\uDD1F", "zebr", "zebras", "\u00E1"}) {
+            if (!terms.contains(missing)) {
+                assertEquals("Missing term " + missing + " found!", TermDictionary.NOT_FOUND, dictionary.getTermId(missing));
+            }
+        }
+
+        for (String prefix : new String[] {"", "a", "ab", "abc", "dd", "dddd", "e", "z", "\uD834\uDD1E", "\u017E"}) {
+            List<String> expected = new ArrayList<>();
+            for (String term : sorted) {
+                if (term.startsWith(prefix)) {
+                    expected.add(term);
+                }
+            }
+            int[] range = dictionary.getPrefixRange(prefix);
+            assertEquals("Wrong terms with prefix " + prefix + "!", expected, dictionary.getTermsWithPrefix(prefix));
+            assertEquals("Wrong size of range of prefix " + prefix + "!", expected.size(), range[1] - range[0]);
+            if (!expected.isEmpty()) {
+                assertEquals("Wrong start of range of prefix " + prefix + "!", sorted.indexOf(expected.get(0)), range[0]);
+            }
+        }
+    }
+
+    @Test
+    public void testHeap() {
+        for (int count : new int[] {SPECIAL_TERMS.length, 16, 17, 1000}) {
+            List<String> terms = createTerms(count);
+            assertDictionary(terms, TermDictionary.build(terms));
+        }
+    }
+
+    /**
+     * Dictionary read directly from a mapped file gives the same results.
+     */
+    @Test
+    public void testMapped() throws IOException {
+        List<String> terms = createTerms(1000);
+        TermDictionary dictionary = TermDictionary.build(terms);
+        File file = File.createTempFile("terms", ".dict");
+        try {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = dictionary.getBuffer();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                TermDictionary mapped = new TermDictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                assertEquals("Wrong size of mapped dictionary!", dictionary.sizeInBytes(), mapped.sizeInBytes());
+                assertDictionary(terms, mapped);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Front coding stores the shared prefixes of sorted terms only once.
+     */
+    @Test
+    public void testSize() {
+        List<String> terms = new ArrayList<>();
+        int bytes = 0;
+        for (int i = 0; i < 1000; i++) {
+            terms.add("preprocessing" + i);
+            bytes += terms.get(i).length();
+        }
+        TermDictionary dictionary = TermDictionary.build(terms);
+        assertTrue("Dictionary is not smaller than the terms!", dictionary.sizeInBytes() < bytes / 2);
+        assertDictionary(terms, dictionary);
+    }
+
+    @Test
+    public void testEmpty() {
+        TermDictionary dictionary = TermDictionary.build(Collections.emptyList());
+        assertEquals("Wrong number of terms!", 0, dictionary.size());
+        assertEquals("Term found in empty dictionary!", TermDictionary.NOT_FOUND, dictionary.getTermId("a"));
+        assertArrayEquals("Wrong range of prefix!", new int[] {0, 0}, dictionary.getPrefixRange(""));
+        assertTrue("Empty dictionary has terms!", dictionary.getTermsWithPrefix("").isEmpty());
+    }
+
+    @Test
+    public void testDuplicateTerms() {
+        try {
+            TermDictionary.build(Arrays.asList("a", "b", "a"));
+            fail("Duplicate term accepted!");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInvalidBuffer() {
+        try {
+            new TermDictionary(ByteBuffer.wrap(new byte[] {0, 0, 0, 100, 0, 0, 0, 1}));
+            fail("Invalid dictionary accepted!");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Dictionary of an index is kept until the index is modified.
+     */
+    @Test
+    public void testDictionaryOfIndex() {
+        InvertedIndex invertedIndex = new InvertedIndex();
+        invertedIndex.indexDocument(new String[] {"kocka", "kos", "pes"}, "d1");
+        TermDictionary dictionary = invertedIndex.getTermDictionary();
+        assertSame("Dictionary created again!", dictionary, invertedIndex.getTermDictionary());
+        assertEquals("Wrong terms with prefix!", Arrays.asList("kocka", "kos"), dictionary.getTermsWithPrefix("ko"));
+
+        invertedIndex.indexDocument(new String[] {"koza"}, "d2");
+        assertNotSame("Dictionary not dropped after indexing!", dictionary, invertedIndex.getTermDictionary());
+        assertEquals("Wrong terms with prefix!", Arrays.asList("kocka", "kos", "koza"),
+                invertedIndex.getTermDictionary().getTermsWithPrefix("ko"));
+    }
+}
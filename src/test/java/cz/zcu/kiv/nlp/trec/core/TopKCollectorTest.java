@@ -0,0 +1,86 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKCollector;
+import cz.zcu.kiv.nlp.ir.trec.data.Result;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TopKCollectorTest {
+
+    private static final int DOCUMENT_COUNT = 1000;
+
+    private InvertedIndex invertedIndex;
+
+    @Before
+    public void setUp() {
+        invertedIndex = new InvertedIndex();
+        for (int i = 0; i < DOCUMENT_COUNT; i++) {
+            invertedIndex.indexDocument(new String[] {"t" + i}, "d" + i);
+        }
+    }
+
+    @Test
+    public void testCollectorKeepsTopK() {
+        TopKCollector collector = new TopKCollector(3);
+        float[] scores = new float[] {0.5f, 0.1f, 0.9f, 0.3f, 0.7f, 0.2f};
+        for (int i = 0; i < scores.length; i++) {
+            collector.collect(i, scores[i]);
+        }
+
+        assertTrue("Collector is not full!", collector.isFull());
+        assertEquals("Wrong threshold!", 0.5f, collector.threshold(), 0);
+        assertFalse("Document below threshold kept!", collector.collect(10, 0.4f));
+        assertEquals("Wrong number of offered documents!", 7, collector.getTotalHits());
+
+        List<Result> results = collector.toResults(invertedIndex);
+        assertEquals("Wrong number of results returned!", 3, results.size());
+        assertEquals("Wrong best document!", "d2", results.get(0).getDocumentID());
+        assertEquals("Wrong second document!", "d4", results.get(1).getDocumentID());
+        assertEquals("Wrong third document!", "d0", results.get(2).getDocumentID());
+        assertEquals("Wrong rank!", 3, results.get(2).getRank());
+        assertEquals("Collector not emptied!", 0, collector.size());
+    }
+
+    /**
+     * Collected scores must be the K highest of all offered ones, in descending order.
+     */
+    @Test
+    public void testSameAsSorting() {
+        Random random = new Random(5);
+        float[] scores = new float[DOCUMENT_COUNT];
+        TopKCollector collector = new TopKCollector(50);
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = random.nextFloat();
+            collector.collect(i, scores[i]);
+        }
+        Arrays.sort(scores);
+
+        List<Result> results = collector.toResults(invertedIndex);
+        assertEquals("Wrong number of results returned!", 50, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals("Wrong score of result " + i + "!", scores[scores.length - 1 - i], results.get(i).getScore(), 0);
+        }
+    }
+
+    @Test
+    public void testThresholdOfNotFullCollector() {
+        TopKCollector collector = new TopKCollector(10);
+        collector.collect(0, 0.5f);
+
+        assertEquals("Threshold of not full collector!", Float.NEGATIVE_INFINITY, collector.threshold(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroK() {
+        new TopKCollector(0);
+    }
+}
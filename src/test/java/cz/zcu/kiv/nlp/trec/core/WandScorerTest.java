@@ -0,0 +1,107 @@
+package cz.zcu.kiv.nlp.trec.core;
+
+import cz.zcu.kiv.nlp.ir.trec.core.BlockMaxWandScorer;
+import cz.zcu.kiv.nlp.ir.trec.core.CosineSimilarityCalculator;
+import cz.zcu.kiv.nlp.ir.trec.core.IdfMode;
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.TopKCollector;
+import cz.zcu.kiv.nlp.ir.trec.core.WandScorer;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.VByteCodec;
+import cz.zcu.kiv.nlp.ir.trec.data.Result;
+import cz.zcu.kiv.nlp.ir.trec.data.ResultImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WandScorerTest {
+
+    private static final int DOCUMENT_COUNT = 5000;
+
+    private InvertedIndex invertedIndex;
+
+    @Before
+    public void setUp() {
+        invertedIndex = RandomIndexes.create(7, DOCUMENT_COUNT, 50, new VByteCodec());
+    }
+
+    /**
+     * Max score of a term must be reached by some document and must not be exceeded by any.
+     */
+    @Test
+    public void testMaxScore() {
+        String[] query = new String[] {"t5"};
+        CosineSimilarityCalculator calculator = new CosineSimilarityCalculator(invertedIndex, query);
+        double max = 0;
+        for (int i = 0; i < DOCUMENT_COUNT; i++) {
+            max = Math.max(max, calculator.calculateScore(i));
+        }
+
+        assertEquals("Wrong max score!", max, invertedIndex.maxScore("t5"), 0.0001);
+        assertEquals("Unknown term has max score!", 0, invertedIndex.maxScore("nonexistent"), 0);
+    }
+
+    /**
+     * Top K documents must have the same scores as the top K of exhaustive term-at-a-time scoring.
+     */
+    @Test
+    public void testSameTopKAsTermAtATime() {
+        String[] query = new String[] {"t0", "t3", "t10", "t10", "t25", "t42", "nonexistent"};
+        for (int k : new int[] {1, 10, 50, 1000}) {
+            List<Result> expected = RandomIndexes.scoreAll(invertedIndex, query);
+
+            TopKCollector collector = new TopKCollector(k);
+            new WandScorer(invertedIndex, query).score(collector);
+            List<Result> actual = collector.toResults(invertedIndex);
+
+            assertEquals("Wrong number of results returned!", Math.min(k, expected.size()), actual.size());
+            CosineSimilarityCalculator calculator = new CosineSimilarityCalculator(invertedIndex, query);
+            for (int i = 0; i < actual.size(); i++) {
+                Result result = actual.get(i);
+                assertEquals("Wrong score of result!", expected.get(i).getScore(), result.getScore(), 0.0001);
+                int ordinal = ((ResultImpl) result).getDocumentOrdinal();
+                assertEquals("Wrong score of document " + ordinal + "!", calculator.calculateScore(ordinal), result.getScore(), 0.0001);
+            }
+        }
+    }
+
+    /**
+     * With small K, most of the documents matching a frequent term can be skipped.
+     */
+    @Test
+    public void testSkipsDocuments() {
+        String[] query = new String[] {"t0", "t1", "t40"};
+        WandScorer scorer = new WandScorer(invertedIndex, query);
+        scorer.score(new TopKCollector(10));
+
+        assertTrue("Too many documents scored: " + scorer.getScoredDocuments(),
+                scorer.getScoredDocuments() < invertedIndex.documentFrequency("t0"));
+    }
+
+    /**
+     * Max scores maintained during indexing must be valid bounds when IDFs are calculated at query time.
+     */
+    @Test
+    public void testSameTopKWithQueryTimeIdf() {
+        InvertedIndex index = new InvertedIndex();
+        index.setIdfMode(IdfMode.QUERY_TIME);
+        RandomIndexes.index(index, RandomIndexes.createDocuments(7, DOCUMENT_COUNT, 50), "d");
+
+        String[] query = new String[] {"t0", "t3", "t10", "t25", "t42"};
+        List<Result> expected = RandomIndexes.scoreAll(index, query);
+
+        TopKCollector collector = new TopKCollector(10);
+        WandScorer scorer = new BlockMaxWandScorer(index, query);
+        scorer.score(collector);
+        List<Result> actual = collector.toResults(index);
+
+        assertEquals("Wrong number of results returned!", 10, actual.size());
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals("Wrong score of result!", expected.get(i).getScore(), actual.get(i).getScore(), 0.0001);
+        }
+        assertTrue("Too many documents scored: " + scorer.getScoredDocuments(), scorer.getScoredDocuments() < DOCUMENT_COUNT);
+    }
+}
@@ -0,0 +1,113 @@
+package cz.zcu.kiv.nlp.trec.core.bitmap;
+
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+import cz.zcu.kiv.nlp.ir.trec.core.bitmap.RoaringBitmap;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RoaringBitmapTest {
+
+    private static final int DOCUMENT_COUNT = 300000;
+
+    /**
+     * Operations over sparse, dense and clustered sets are compared with {@link BitSet}.
+     */
+    @Test
+    public void testOperations() {
+        Random random = new Random(42);
+        BitSet[] sets = new BitSet[] {
+                randomSet(random, 1000),
+                randomSet(random, 3),
+                clusteredSet(),
+                randomSet(random, 20)
+        };
+
+        for (BitSet set1 : sets) {
+            for (BitSet set2 : sets) {
+                RoaringBitmap bitmap1 = toBitmap(set1);
+                RoaringBitmap bitmap2 = toBitmap(set2);
+
+                BitSet expected = (BitSet) set1.clone();
+                expected.and(set2);
+                checkBitmap(expected, bitmap1.and(bitmap2));
+
+                expected = (BitSet) set1.clone();
+                expected.or(set2);
+                checkBitmap(expected, bitmap1.or(bitmap2));
+
+                expected = (BitSet) set1.clone();
+                expected.andNot(set2);
+                checkBitmap(expected, bitmap1.andNot(bitmap2));
+            }
+        }
+    }
+
+    /**
+     * Set of all documents is stored as runs and takes just a few bytes.
+     */
+    @Test
+    public void testAllDocuments() {
+        RoaringBitmap all = RoaringBitmap.allDocuments(DOCUMENT_COUNT);
+
+        assertEquals("Wrong cardinality!", DOCUMENT_COUNT, all.cardinality());
+        assertTrue("Bitmap of all documents is too big!", all.sizeInBytes() < 100);
+        BitSet expected = new BitSet();
+        expected.set(0, DOCUMENT_COUNT);
+        checkBitmap(expected, all);
+    }
+
+    @Test
+    public void testAdvance() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bitmap.add(5);
+        bitmap.add(70000);
+        bitmap.add(200000);
+        bitmap.runOptimize();
+
+        PostingsIterator it = bitmap.iterator();
+        assertEquals("Wrong document after advance!", 70000, it.advance(6));
+        assertEquals("Wrong document after advance!", 200000, it.advance(131072));
+        assertEquals("Iterator not exhausted!", PostingsIterator.NO_MORE_DOCS, it.nextDoc());
+    }
+
+    private void checkBitmap(BitSet expected, RoaringBitmap bitmap) {
+        assertEquals("Wrong cardinality!", expected.cardinality(), bitmap.cardinality());
+        PostingsIterator it = bitmap.iterator();
+        for (int doc = expected.nextSetBit(0); doc >= 0; doc = expected.nextSetBit(doc + 1)) {
+            assertEquals("Wrong document!", doc, it.nextDoc());
+        }
+        assertEquals("Iterator not exhausted!", PostingsIterator.NO_MORE_DOCS, it.nextDoc());
+    }
+
+    private RoaringBitmap toBitmap(BitSet set) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int doc = set.nextSetBit(0); doc >= 0; doc = set.nextSetBit(doc + 1)) {
+            bitmap.add(doc);
+        }
+        bitmap.runOptimize();
+        return bitmap;
+    }
+
+    private BitSet randomSet(Random random, int n) {
+        BitSet set = new BitSet(DOCUMENT_COUNT);
+        for (int i = 0; i < DOCUMENT_COUNT; i++) {
+            if (random.nextInt(n) == 0) {
+                set.set(i);
+            }
+        }
+        return set;
+    }
+
+    private BitSet clusteredSet() {
+        BitSet set = new BitSet(DOCUMENT_COUNT);
+        for (int i = 0; i < DOCUMENT_COUNT; i += 10000) {
+            set.set(i, i + 3000);
+        }
+        return set;
+    }
+}
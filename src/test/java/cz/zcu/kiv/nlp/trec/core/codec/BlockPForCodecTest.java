@@ -0,0 +1,99 @@
+package cz.zcu.kiv.nlp.trec.core.codec;
+
+import cz.zcu.kiv.nlp.ir.trec.core.PostingList;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.BlockPForCodec;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.PostingsCodec;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.VByteCodec;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BlockPForCodecTest {
+
+    /**
+     * Encode random postings (several full blocks and one partial) and check that decoding returns the same ones.
+     */
+    @Test
+    public void testEncodeDecode() {
+        PostingList postings = randomPostings(10000 + BlockPForCodec.BLOCK_SIZE / 2);
+
+        BlockPForCodec codec = new BlockPForCodec();
+        byte[] encoded = codec.encode(postings.iterator());
+        assertTrue("Postings weren't compressed!", encoded.length < 8 * postings.size());
+
+        PostingsIterator decoded = codec.decode(ByteBuffer.wrap(encoded), postings.size());
+        for (int i = 0; i < postings.size(); i++) {
+            assertEquals("Wrong document ordinal!", postings.getDocumentOrdinal(i), decoded.nextDoc());
+            assertEquals("Wrong term frequency!", postings.getTermFrequency(i), decoded.termFrequency());
+        }
+        assertEquals("Iterator not exhausted!", PostingsIterator.NO_MORE_DOCS, decoded.nextDoc());
+    }
+
+    /**
+     * Both codecs must return the same postings when advancing to random targets.
+     */
+    @Test
+    public void testAdvanceSameAsVByte() {
+        PostingList postings = randomPostings(5000);
+        PostingsCodec vbyte = new VByteCodec();
+        PostingsCodec pfor = new BlockPForCodec();
+        PostingsIterator expected = vbyte.decode(ByteBuffer.wrap(vbyte.encode(postings.iterator())), postings.size());
+        PostingsIterator actual = pfor.decode(ByteBuffer.wrap(pfor.encode(postings.iterator())), postings.size());
+
+        Random random = new Random(7);
+        int target = 0;
+        while (expected.docOrdinal() != PostingsIterator.NO_MORE_DOCS) {
+            target += random.nextInt(5000);
+            assertEquals("Wrong document after advance!", expected.advance(target), actual.advance(target));
+            if (expected.docOrdinal() != PostingsIterator.NO_MORE_DOCS) {
+                assertEquals("Wrong term frequency!", expected.termFrequency(), actual.termFrequency());
+                assertEquals("Wrong position!", expected.position(), actual.position());
+            }
+        }
+        assertEquals("Iterator not exhausted!", PostingsIterator.NO_MORE_DOCS, actual.docOrdinal());
+    }
+
+    @Test
+    public void testSingleValueBlock() {
+        PostingList postings = new PostingList();
+        for (int i = 0; i < BlockPForCodec.BLOCK_SIZE * 2; i++) {
+            postings.add(i, 1);
+        }
+
+        BlockPForCodec codec = new BlockPForCodec();
+        PostingsIterator decoded = codec.decode(ByteBuffer.wrap(codec.encode(postings.iterator())), postings.size());
+        assertEquals("Wrong document after advance!", 200, decoded.advance(200));
+        assertEquals("Wrong term frequency!", 1, decoded.termFrequency());
+        assertEquals("Wrong next document!", 201, decoded.nextDoc());
+    }
+
+    @Test
+    public void testReencodePostingList() {
+        PostingList postings = randomPostings(1000);
+        int expectedTf = postings.getTermFrequency(500);
+        int doc = postings.getDocumentOrdinal(500);
+
+        postings.encode(new VByteCodec());
+        postings.encode(new BlockPForCodec());
+
+        assertEquals("Wrong codec!", BlockPForCodec.NAME, postings.getCodec().getName());
+        assertEquals("Wrong term frequency!", expectedTf, postings.termFrequencyOf(doc));
+    }
+
+    private PostingList randomPostings(int count) {
+        Random random = new Random(42);
+        PostingList postings = new PostingList();
+        int doc = 0;
+        for (int i = 0; i < count; i++) {
+            // mix of small and large gaps and term frequencies to produce exceptions
+            doc += 1 + (i % 10 == 0 ? random.nextInt(100000) : random.nextInt(10));
+            postings.add(doc, i % 3 == 0 ? 1 + random.nextInt(500) : 1);
+        }
+        return postings;
+    }
+}
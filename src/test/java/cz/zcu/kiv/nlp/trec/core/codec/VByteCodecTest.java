@@ -0,0 +1,100 @@
+package cz.zcu.kiv.nlp.trec.core.codec;
+
+import cz.zcu.kiv.nlp.ir.trec.core.PostingList;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+import cz.zcu.kiv.nlp.ir.trec.core.codec.VByteCodec;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VByteCodecTest {
+
+    /**
+     * Encode random postings and check that decoding returns the same ones.
+     */
+    @Test
+    public void testEncodeDecode() {
+        Random random = new Random(42);
+        PostingList postings = new PostingList();
+        int doc = 0;
+        for (int i = 0; i < 10000; i++) {
+            // mix of small and large gaps and term frequencies
+            doc += 1 + (i % 10 == 0 ? random.nextInt(100000) : random.nextInt(10));
+            postings.add(doc, i % 3 == 0 ? 1 + random.nextInt(500) : 1);
+        }
+
+        VByteCodec codec = new VByteCodec();
+        byte[] encoded = codec.encode(postings.iterator());
+        assertTrue("Postings weren't compressed!", encoded.length < 8 * postings.size());
+
+        PostingsIterator decoded = codec.decode(ByteBuffer.wrap(encoded), postings.size());
+        for (int i = 0; i < postings.size(); i++) {
+            assertEquals("Wrong document ordinal!", postings.getDocumentOrdinal(i), decoded.nextDoc());
+            assertEquals("Wrong term frequency!", postings.getTermFrequency(i), decoded.termFrequency());
+        }
+        assertEquals("Iterator not exhausted!", PostingsIterator.NO_MORE_DOCS, decoded.nextDoc());
+    }
+
+    @Test
+    public void testAdvance() {
+        PostingList postings = new PostingList();
+        for (int i = 0; i < 1000; i += 10) {
+            postings.add(i, 2);
+        }
+
+        VByteCodec codec = new VByteCodec();
+        PostingsIterator decoded = codec.decode(ByteBuffer.wrap(codec.encode(postings.iterator())), postings.size());
+        assertEquals("Wrong document after advance!", 500, decoded.advance(495));
+        assertEquals("Iterator moved backwards!", 500, decoded.advance(10));
+        assertEquals("Iterator not exhausted!", PostingsIterator.NO_MORE_DOCS, decoded.advance(991));
+    }
+
+    /**
+     * Encoded list can still be modified, it's decoded back first.
+     */
+    @Test
+    public void testModifyEncodedList() {
+        PostingList postings = new PostingList();
+        postings.addOccurrence(1);
+        postings.addOccurrence(5);
+        postings.encode();
+
+        postings.addOccurrence(5);
+        postings.addOccurrence(7);
+
+        assertEquals("Wrong number of postings!", 3, postings.size());
+        assertEquals("Wrong term frequency!", 2, postings.termFrequencyOf(5));
+    }
+
+    /**
+     * Advancing over skip entries must return the same postings as reading them one by one.
+     */
+    @Test
+    public void testAdvanceWithSkips() {
+        Random random = new Random(3);
+        PostingList postings = new PostingList();
+        int doc = 0;
+        for (int i = 0; i < 20 * VByteCodec.SKIP_INTERVAL + 7; i++) {
+            doc += 1 + random.nextInt(50);
+            postings.add(doc, 1 + random.nextInt(3));
+        }
+
+        VByteCodec codec = new VByteCodec();
+        byte[] encoded = codec.encode(postings.iterator());
+        for (int target = 0; target < doc + 10; target += 1 + random.nextInt(2000)) {
+            PostingsIterator expected = postings.iterator();
+            PostingsIterator decoded = codec.decode(ByteBuffer.wrap(encoded), postings.size());
+            decoded.nextDoc();
+            assertEquals("Wrong document after advance to "+target+"!", expected.advance(target), decoded.advance(target));
+            if (decoded.docOrdinal() != PostingsIterator.NO_MORE_DOCS) {
+                assertEquals("Wrong term frequency!", expected.termFrequency(), decoded.termFrequency());
+                assertEquals("Wrong position!", expected.position(), decoded.position());
+                assertEquals("Wrong next document!", expected.nextDoc(), decoded.nextDoc());
+            }
+        }
+    }
+}
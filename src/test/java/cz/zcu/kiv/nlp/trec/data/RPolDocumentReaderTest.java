@@ -1,6 +1,7 @@
 package cz.zcu.kiv.nlp.trec.data;
 
 import cz.zcu.kiv.nlp.ir.trec.data.Document;
+import cz.zcu.kiv.nlp.ir.trec.data.DocumentSource;
 import cz.zcu.kiv.nlp.ir.trec.data.RPolDocumentReader;
 import org.junit.Test;
 
@@ -13,6 +14,7 @@ import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 
 public class RPolDocumentReaderTest {
 
@@ -45,6 +47,20 @@ public class RPolDocumentReaderTest {
         checkDocument(documents.get(1), "SpinningHead", 17);
     }
 
+    @Test
+    public void testStreamTwo() throws URISyntaxException, IOException {
+        String fname = "rpol-two.json";
+        URL url = getClass().getResource("/"+fname);
+        File f = new File(url.toURI());
+        RPolDocumentReader reader = new RPolDocumentReader();
+
+        try (DocumentSource source = reader.open(f)) {
+            checkDocument(source.next(), "TwilitSky", 25);
+            checkDocument(source.next(), "SpinningHead", 17);
+            assertNull("Too many documents", source.next());
+        }
+    }
+
     private void checkDocument(Document d, String username, int score) {
         assertEquals("Wrong username", username, d.getUsername());
         assertEquals("Wrong title", RPolDocumentReader.DEFAULT_TITLE, d.getTitle());
@@ -0,0 +1,114 @@
+package cz.zcu.kiv.nlp.trec.ingest;
+
+import cz.zcu.kiv.nlp.ir.trec.core.InvertedIndex;
+import cz.zcu.kiv.nlp.ir.trec.core.PostingsIterator;
+import cz.zcu.kiv.nlp.ir.trec.data.Document;
+import cz.zcu.kiv.nlp.ir.trec.data.DocumentNew;
+import cz.zcu.kiv.nlp.ir.trec.data.DocumentSource;
+import cz.zcu.kiv.nlp.ir.trec.ingest.IngestPipeline;
+import cz.zcu.kiv.nlp.ir.trec.ingest.StageStatistics;
+import cz.zcu.kiv.nlp.ir.trec.preprocess.AdvancedTokenizer;
+import cz.zcu.kiv.nlp.ir.trec.preprocess.EnglishStemmer;
+import cz.zcu.kiv.nlp.ir.trec.preprocess.Preprocessor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class IngestPipelineTest {
+
+    private static final int DOCUMENT_COUNT = 2000;
+
+    private static final String[] WORDS = new String[] {"insurance", "cars", "driving", "houses", "running", "gardens",
+            "policies", "claims", "accidents", "roads", "cities", "villages"};
+
+    private Preprocessor preprocessor;
+
+    private List<Document> documents;
+
+    @Before
+    public void setUp() {
+        preprocessor = new Preprocessor(new AdvancedTokenizer(), new EnglishStemmer(), new HashSet<>());
+        Random random = new Random(19);
+        documents = new ArrayList<>(DOCUMENT_COUNT);
+        for (int i = 0; i < DOCUMENT_COUNT; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = 3 + random.nextInt(30);
+            for (int j = 0; j < length; j++) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            documents.add(new DocumentNew(text.toString(), "d" + i));
+        }
+    }
+
+    /**
+     * Documents must be indexed in the order they were read, as if they were indexed one by one.
+     */
+    @Test
+    public void testSameIndexAsSequential() {
+        InvertedIndex expected = new InvertedIndex();
+        for (Document d : documents) {
+            expected.indexDocument(preprocessor.processText(d.getText()), d.getId());
+        }
+
+        InvertedIndex actual = new InvertedIndex();
+        IngestPipeline pipeline = new IngestPipeline(actual, preprocessor, 4);
+        pipeline.setBatchSize(7);
+        pipeline.setQueueCapacity(2);
+        assertEquals("Wrong number of indexed documents!", DOCUMENT_COUNT, pipeline.run(DocumentSource.of(documents)));
+
+        assertEquals("Wrong document count!", DOCUMENT_COUNT, actual.getDocumentCount());
+        for (int i = 0; i < DOCUMENT_COUNT; i++) {
+            assertEquals("Wrong document order!", expected.getDocumentId(i), actual.getDocumentId(i));
+        }
+        for (String word : WORDS) {
+            String term = new EnglishStemmer().stem(word);
+            PostingsIterator expectedPostings = expected.getPostingsForTerm(term).iterator();
+            PostingsIterator actualPostings = actual.getPostingsForTerm(term).iterator();
+            while (expectedPostings.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                assertEquals("Wrong posting of " + term + "!", expectedPostings.docOrdinal(), actualPostings.nextDoc());
+                assertEquals("Wrong term frequency of " + term + "!", expectedPostings.termFrequency(), actualPostings.termFrequency());
+            }
+            assertEquals("Too many postings of " + term + "!", PostingsIterator.NO_MORE_DOCS, actualPostings.nextDoc());
+        }
+
+        List<StageStatistics> statistics = pipeline.getStatistics();
+        assertEquals("Wrong number of stages!", 3, statistics.size());
+        for (StageStatistics stage : statistics) {
+            assertEquals("Wrong number of documents processed by " + stage.getName() + "!", DOCUMENT_COUNT, stage.getDocuments());
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testReaderFailure() {
+        DocumentSource source = new DocumentSource() {
+            private int read = 0;
+
+            @Override
+            public Document next() throws IOException {
+                if (read++ == 500) {
+                    throw new IOException("Broken source");
+                }
+                return documents.get(read);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        new IngestPipeline(new InvertedIndex(), preprocessor, 2).run(source);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testDuplicateDocument() {
+        List<Document> duplicate = new ArrayList<>(documents);
+        duplicate.add(new DocumentNew("cars", "d10"));
+        new IngestPipeline(new InvertedIndex(), preprocessor, 2).run(DocumentSource.of(duplicate));
+    }
+}